@@ -1,5 +1,6 @@
 open module org.lisoft.lsml {
   requires java.desktop; // awt
+  requires java.xml;
   requires javafx.base;
   requires javafx.graphics;
   requires javafx.controls;
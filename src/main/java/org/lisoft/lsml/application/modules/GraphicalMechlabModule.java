@@ -21,11 +21,18 @@ package org.lisoft.lsml.application.modules;
 
 import dagger.Module;
 import dagger.Provides;
+import javafx.application.Platform;
+import org.lisoft.lsml.application.ErrorReporter;
+import org.lisoft.lsml.application.MechlabScope;
 import org.lisoft.lsml.messages.MessageXBar;
 import org.lisoft.lsml.model.loadout.Loadout;
+import org.lisoft.lsml.model.loadout.LoadoutFactory;
+import org.lisoft.lsml.model.metrics.AsyncMetricEngine;
 import org.lisoft.lsml.util.CommandStack;
 
 import javax.inject.Named;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * This {@link Module} provides the necessary services for a mechlab window implemented through JavaFX.
@@ -34,6 +41,14 @@ import javax.inject.Named;
  */
 @Module
 public class GraphicalMechlabModule {
+    // Shared by all mechlab windows, a single thread keeps the UI responsive even when many
+    // windows are open.
+    private static final ExecutorService METRICS_WORKER = Executors.newSingleThreadExecutor(aRunnable -> {
+        final Thread thread = new Thread(aRunnable, "Metrics worker");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
     private final Loadout loadout;
     private final CommandStack stack;
     private final MessageXBar xBar;
@@ -47,6 +62,13 @@ public class GraphicalMechlabModule {
         stack = new CommandStack(200);
     }
 
+    @Provides
+    @MechlabScope
+    AsyncMetricEngine provideAsyncMetricEngine(LoadoutFactory aLoadoutFactory, ErrorReporter aErrorReporter) {
+        return new AsyncMetricEngine(loadout, aLoadoutFactory, xBar, METRICS_WORKER, Platform::runLater,
+                                     aErrorReporter::error);
+    }
+
     @Provides
     Loadout provideLoadout() {
         return loadout;
@@ -17,15 +17,13 @@
  */
 package org.lisoft.lsml.command;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.*;
 import org.lisoft.lsml.messages.MessageDelivery;
+import org.lisoft.lsml.model.ItemDB;
 import org.lisoft.lsml.model.loadout.*;
 import org.lisoft.lsml.model.loadout.EquipResult.EquipResultType;
-import org.lisoft.lsml.util.CommandStack;
 import org.lisoft.lsml.util.CommandStack.Command;
+import org.lisoft.lsml.util.ListArrayUtils;
 import org.lisoft.mwo_data.equipment.Engine;
 import org.lisoft.mwo_data.equipment.HeatSink;
 import org.lisoft.mwo_data.equipment.Internal;
@@ -37,89 +35,127 @@ import org.lisoft.mwo_data.mechs.Location;
  * This operation automatically places an item at a suitable location on the {@link
  * LoadoutStandard}.
  *
+ * <p>The search is a greedy best first search over moves and swaps of already equipped items. The
+ * nodes in the search do not hold copies of the loadout. Instead each node holds the commands that
+ * produce it from its parent together with a compact encoding of the equipped items, and a single
+ * working copy of the loadout is moved between nodes by applying and undoing commands.
+ *
  * @author Li Song
  */
 public class CmdAutoAddItem extends CmdLoadoutBase {
-  private class Node implements Comparable<Node> {
-    final Loadout data;
+  private static final Location[] LOCATIONS = Location.values();
+
+  private class Node {
+    final List<Command> commands;
+    final int depth;
     final Item item;
+    final List<List<Item>> items;
     final Node parent;
     final int score;
     final Location source;
     final Location target;
     final Item targetItem;
+    final int toggles;
+    private final long fingerprint;
+    long sequence;
 
-    Node(Loadout aRoot, Item aItem) {
+    /** Creates the root node from the current state of the working copy. */
+    Node(Item aItem) {
       parent = null;
+      depth = 0;
+      commands = List.of();
       item = aItem;
       source = null;
       target = null;
       targetItem = null;
-      data = aRoot;
+      items = new ArrayList<>(LOCATIONS.length);
+      for (final Location location : LOCATIONS) {
+        items.add(new ArrayList<>(working.getComponent(location).getItemsEquipped()));
+      }
+      toggles = toggles();
       score = score();
+      fingerprint = working.getFingerprint();
     }
 
-    Node(Node aParent, Location aSource, Location aTarget, Item aItem) throws Exception {
-      data = loadoutFactory.produceClone(aParent.data);
+    /**
+     * Creates a child node from the working copy which must be in the state of the child, i.e. the
+     * commands have been applied on top of the parent's state.
+     */
+    Node(
+        Node aParent,
+        Location aSource,
+        Location aTarget,
+        Item aItem,
+        Item aTargetItem,
+        List<Command> aCommands) {
       parent = aParent;
+      depth = aParent.depth + 1;
+      commands = aCommands;
       source = aSource;
       target = aTarget;
-      targetItem = null;
       item = aItem;
-      stack.pushAndApply(new CmdRemoveItem(null, data, data.getComponent(source), item));
-      stack.pushAndApply(new CmdAddItem(null, data, data.getComponent(target), item));
-      score = score();
-    }
-
-    Node(
-        Node aParent,
-        Location aSourcePart,
-        Location aTargetPart,
-        Item aSourceItem,
-        Item aTargetItem)
-        throws Exception {
-      data = loadoutFactory.produceClone(aParent.data);
-      parent = aParent;
-      source = aSourcePart;
-      target = aTargetPart;
       targetItem = aTargetItem;
-      item = aSourceItem;
 
-      stack.pushAndApply(new CmdRemoveItem(null, data, data.getComponent(target), aTargetItem));
-      stack.pushAndApply(new CmdRemoveItem(null, data, data.getComponent(source), aSourceItem));
-      stack.pushAndApply(new CmdAddItem(null, data, data.getComponent(target), aSourceItem));
-      stack.pushAndApply(new CmdAddItem(null, data, data.getComponent(source), aTargetItem));
+      // Equipped items are removed from the back and added to the back, the order matters for the
+      // order in which branches are explored.
+      items = new ArrayList<>(aParent.items);
+      if (targetItem != null) {
+        remove(target, targetItem);
+      }
+      remove(source, item);
+      add(target, item);
+      if (targetItem != null) {
+        add(source, targetItem);
+      }
+      toggles = toggles();
       score = score();
-    }
-
-    @Override
-    public int compareTo(Node aRhs) {
-      return Integer.compare(aRhs.score, score);
+      fingerprint = working.getFingerprint();
     }
 
     @Override
     public boolean equals(Object aObject) {
-      if (aObject == null || !(aObject instanceof Node)) {
+      if (!(aObject instanceof Node that)) {
+        return false;
+      }
+      // The fingerprint is a complete description of the working copy, but may collide.
+      if (fingerprint != that.fingerprint || toggles != that.toggles) {
         return false;
       }
-      return data.equals(((Node) aObject).data);
+      for (int i = 0; i < LOCATIONS.length; ++i) {
+        if (!ListArrayUtils.equalsUnordered(items.get(i), that.items.get(i))) {
+          return false;
+        }
+      }
+      return true;
     }
 
     @Override
     public int hashCode() {
-      return data.hashCode();
+      return Long.hashCode(fingerprint);
+    }
+
+    private void add(Location aLocation, Item aItem) {
+      final List<Item> list = new ArrayList<>(items.get(aLocation.ordinal()));
+      list.add(aItem);
+      items.set(aLocation.ordinal(), list);
+    }
+
+    private void remove(Location aLocation, Item aItem) {
+      final List<Item> list = new ArrayList<>(items.get(aLocation.ordinal()));
+      list.remove(list.lastIndexOf(aItem));
+      items.set(aLocation.ordinal(), list);
     }
 
     private int score() {
       if (itemToPlace instanceof Engine && ((Engine) itemToPlace).getSide().isPresent()) {
         final int slotsFreeCt =
             Math.min(
-                itemToPlace.getSlots(), data.getComponent(Location.CenterTorso).getSlotsFree());
+                itemToPlace.getSlots(), working.getComponent(Location.CenterTorso).getSlotsFree());
         int sideSlots = ((Engine) itemToPlace).getSide().get().getSlots();
         final int slotsFreeLt =
-            Math.min(sideSlots, data.getComponent(Location.LeftTorso).getSlotsFree());
+            Math.min(sideSlots, working.getComponent(Location.LeftTorso).getSlotsFree());
         final int slotsFreeRt =
-            Math.min(sideSlots, data.getComponent(Location.RightTorso).getSlotsFree());
+            Math.min(sideSlots, working.getComponent(Location.RightTorso).getSlotsFree());
         return slotsFreeCt + slotsFreeLt + slotsFreeRt;
       }
       int maxFree = 0;
@@ -127,23 +163,36 @@ public class CmdAutoAddItem extends CmdLoadoutBase {
         maxFree =
             Math.max(
                 maxFree,
-                data.getComponent(location).getSlotsFree()
-                    * (data.getComponent(location)
+                working.getComponent(location).getSlotsFree()
+                    * (working
+                            .getComponent(location)
                             .getInternalComponent()
-                            .isAllowed(item, data.getEngine())
+                            .isAllowed(item, working.getEngine())
                         ? 1
                         : 0));
       }
       return maxFree;
     }
+
+    private int toggles() {
+      int ans = 0;
+      for (final Location location : LOCATIONS) {
+        if (working.getComponent(location) instanceof ConfiguredComponentOmniMech component) {
+          ans |= (component.getToggleState(ItemDB.HA) ? 1 : 0) << (2 * location.ordinal());
+          ans |= (component.getToggleState(ItemDB.LAA) ? 2 : 0) << (2 * location.ordinal());
+        }
+      }
+      return ans;
+    }
   }
 
   private final Item itemToPlace;
   private final LoadoutFactory loadoutFactory;
   private final List<Location> partTraversalOrder;
   private final boolean quiet;
-  private final CommandStack stack = new CommandStack(0);
   private final List<Location> validLocations = new ArrayList<>();
+  private Node current;
+  private Loadout working;
 
   public CmdAutoAddItem(
       Loadout aLoadout,
@@ -187,38 +236,53 @@ public class CmdAutoAddItem extends CmdLoadoutBase {
       return;
     }
 
-    final List<Node> closed = new ArrayList<>();
-    final List<Node> open = new ArrayList<>();
+    working = loadoutFactory.produceClone(loadout);
+    try {
+      search();
+    } finally {
+      working = null;
+      current = null;
+    }
+  }
+
+  private void search() throws EquipException {
+    // Greedy search, I need *a* solution, not the best one. Among equally good nodes, the one that
+    // was found first is explored first.
+    final PriorityQueue<Node> open =
+        new PriorityQueue<>(
+            Comparator.comparingInt((Node aNode) -> -aNode.score)
+                .thenComparingLong(aNode -> aNode.sequence));
+    final Set<Node> visited = new HashSet<>();
+    long sequence = 0;
 
     // Initial node
-    open.add(new Node(loadout, itemToPlace));
+    current = new Node(itemToPlace);
+    open.add(current);
+    visited.add(current);
     while (!open.isEmpty()) {
-      final Node node = open.remove(0);
-      closed.add(node);
+      final Node node = open.poll();
+      moveTo(node);
 
       // Are we there yet?
-      if (EquipResult.SUCCESS == node.data.canEquipDirectly(itemToPlace)) {
+      if (EquipResult.SUCCESS == working.canEquipDirectly(itemToPlace)) {
         applySolution(node);
         return; // Yes we are!
       }
 
       // Not yet sweetie
       for (final Location part : partTraversalOrder) {
-        final ConfiguredComponent component = node.data.getComponent(part);
-        for (final Item i : component.getItemsEquipped()) {
+        for (final Item i : node.items.get(part.ordinal())) {
           if (i instanceof Internal) {
             continue;
           }
-          final List<Node> branches = getBranches(node, part, i);
-          for (final Node branch : branches) {
-            if (!closed.contains(branch) && !open.contains(branch)) {
+          for (final Node branch : getBranches(node, part, i)) {
+            if (visited.add(branch)) {
+              branch.sequence = ++sequence;
               open.add(branch);
             }
           }
         }
       }
-      Collections.sort(open); // Greedy search, I need *a* solution, not
-      // the best one.
     }
 
     if (!quiet) {
@@ -251,7 +315,7 @@ public class CmdAutoAddItem extends CmdLoadoutBase {
     // Look at the solution node to find which part in the original loadout
     // the item should be added to.
     for (final Location part : partTraversalOrder) {
-      final ConfiguredComponent loadoutPart = node.data.getComponent(part);
+      final ConfiguredComponent loadoutPart = working.getComponent(part);
       if (EquipResult.SUCCESS == loadoutPart.canEquip(itemToPlace)) {
         ops.add(new CmdAddItem(messageBuffer, loadout, loadout.getComponent(part), itemToPlace));
         break;
@@ -262,9 +326,29 @@ public class CmdAutoAddItem extends CmdLoadoutBase {
     }
   }
 
+  /**
+   * Applies the given commands to the working copy. If any command fails, the ones already applied
+   * are undone.
+   *
+   * @return <code>true</code> if all commands were applied.
+   */
+  private boolean apply(List<Command> aCommands) {
+    for (int i = 0; i < aCommands.size(); ++i) {
+      try {
+        aCommands.get(i).apply();
+      } catch (final Exception e) {
+        undo(aCommands.subList(0, i));
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Get all possible ways to move the given item out of the source part on the node.
    *
+   * <p>The working copy must be in the state of the parent node and is returned to that state.
+   *
    * @param aParent The parent {@link Node} that we're branching from.
    * @param aSourcePart The source part that we shall remove the {@link Item} from.
    * @param aItem The {@link Item} to be removed.
@@ -274,38 +358,32 @@ public class CmdAutoAddItem extends CmdLoadoutBase {
   private List<Node> getBranches(Node aParent, Location aSourcePart, Item aItem) {
     final List<Node> ans = new ArrayList<>();
 
-    // Create a temporary loadout where the item has been removed and find
-    // all
-    // ways it can be placed on another part.
-    final Loadout tempLoadout = loadoutFactory.produceClone(aParent.data);
-    try {
-      stack.pushAndApply(
-          new CmdRemoveItem(null, tempLoadout, tempLoadout.getComponent(aSourcePart), aItem));
-    } catch (final Exception e) {
+    // Temporarily remove the item and find all ways it can be placed on another part.
+    final Command removal =
+        new CmdRemoveItem(null, working, working.getComponent(aSourcePart), aItem);
+    if (!apply(List.of(removal))) {
       // Item can't be removed? Just skip the branch entirely.
       return ans;
     }
 
-    final ConfiguredComponent srcPart = tempLoadout.getComponent(aSourcePart);
-    for (final Location targetPart : Location.values()) {
+    // Moves and swaps as (target part, item to swap with or null).
+    final List<Location> targets = new ArrayList<>();
+    final List<Item> swaps = new ArrayList<>();
+    final ConfiguredComponent srcPart = working.getComponent(aSourcePart);
+    for (final Location targetPart : LOCATIONS) {
       if (aSourcePart == targetPart) {
         continue;
       }
 
-      final ConfiguredComponent dstPart = tempLoadout.getComponent(targetPart);
+      final ConfiguredComponent dstPart = working.getComponent(targetPart);
       if (EquipResult.SUCCESS == dstPart.canEquip(aItem)) {
         // Don't consider swaps if the item can be directly moved. A
         // swap will be generated in another point
         // of the search tree anyway when we move an item from that
         // component back to this.
-        try {
-          ans.add(new Node(aParent, aSourcePart, targetPart, aItem));
-        } catch (final Exception e) {
-          /*
-           * If creating the node failed for some reason we just skip the branch.
-           */
-        }
-      } else if (dstPart.getInternalComponent().isAllowed(aItem, tempLoadout.getEngine())) {
+        targets.add(targetPart);
+        swaps.add(null);
+      } else if (dstPart.getInternalComponent().isAllowed(aItem, working.getEngine())) {
         // The part couldn't take the item directly, see if we can swap
         // with some item in the part.
         final int minItemSize = aItem.getSlots() - dstPart.getSlotsFree();
@@ -320,7 +398,7 @@ public class CmdAutoAddItem extends CmdLoadoutBase {
           // item of the required
           // type.
         }
-        for (final Item item : dstPart.getItemsEquipped()) {
+        for (final Item item : aParent.items.get(targetPart.ordinal())) {
           // The item has to clear enough room to make our item fit.
           if (item instanceof HeatSink && dstPart.getEngineHeatSinks() > 0) {
             continue; // Engine HS will not clear slots...
@@ -345,17 +423,39 @@ public class CmdAutoAddItem extends CmdLoadoutBase {
           }
 
           if (EquipResult.SUCCESS == srcPart.canEquip(item)) {
-            try {
-              ans.add(new Node(aParent, aSourcePart, targetPart, aItem, item));
-            } catch (final Exception e) {
-              /*
-               * If creating the node failed for some reason we just skip the branch.
-               */
-            }
+            targets.add(targetPart);
+            swaps.add(item);
           }
         }
       }
     }
+    removal.undo();
+
+    for (int i = 0; i < targets.size(); ++i) {
+      final Location targetPart = targets.get(i);
+      final Item swap = swaps.get(i);
+      final ConfiguredComponent src = working.getComponent(aSourcePart);
+      final ConfiguredComponent dst = working.getComponent(targetPart);
+      final List<Command> commands;
+      if (swap == null) {
+        commands =
+            List.of(
+                new CmdRemoveItem(null, working, src, aItem),
+                new CmdAddItem(null, working, dst, aItem));
+      } else {
+        commands =
+            List.of(
+                new CmdRemoveItem(null, working, dst, swap),
+                new CmdRemoveItem(null, working, src, aItem),
+                new CmdAddItem(null, working, dst, aItem),
+                new CmdAddItem(null, working, src, swap));
+      }
+      // If applying the commands failed for some reason we just skip the branch.
+      if (apply(commands)) {
+        ans.add(new Node(aParent, aSourcePart, targetPart, aItem, swap, commands));
+        undo(commands);
+      }
+    }
     return ans;
   }
 
@@ -385,4 +485,40 @@ public class CmdAutoAddItem extends CmdLoadoutBase {
     }
     return Collections.unmodifiableList(order);
   }
+
+  /**
+   * Brings the working copy from the state of the current node to the state of the given node by
+   * undoing the moves up to their common ancestor and applying the moves down to the given node.
+   */
+  private void moveTo(Node aNode) {
+    final Deque<Node> forward = new ArrayDeque<>();
+    Node from = current;
+    Node to = aNode;
+    while (from.depth > to.depth) {
+      undo(from.commands);
+      from = from.parent;
+    }
+    while (to.depth > from.depth) {
+      forward.push(to);
+      to = to.parent;
+    }
+    while (from != to) {
+      undo(from.commands);
+      from = from.parent;
+      forward.push(to);
+      to = to.parent;
+    }
+    for (final Node node : forward) {
+      if (!apply(node.commands)) {
+        throw new IllegalStateException("Unable to reproduce search state!");
+      }
+    }
+    current = aNode;
+  }
+
+  private void undo(List<Command> aCommands) {
+    for (int i = aCommands.size() - 1; i >= 0; --i) {
+      aCommands.get(i).undo();
+    }
+  }
 }
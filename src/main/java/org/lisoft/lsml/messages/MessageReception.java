@@ -21,6 +21,8 @@ package org.lisoft.lsml.messages;
 
 import java.lang.ref.WeakReference;
 
+import org.lisoft.lsml.model.loadout.Loadout;
+
 /**
  * This interface specifies an API for registering for messages.
  *
@@ -45,6 +47,29 @@ public interface MessageReception {
      */
     void attach(WeakReference<MessageReceiver> aWeakReference);
 
+    /**
+     * Attaches a new {@link MessageReceiver} that will only receive messages of the given type, including sub types.
+     * The {@link MessageReceiver} is automatically converted to a weak reference.
+     * <p>
+     * Prefer this over {@link #attach(MessageReceiver)} for receivers that ignore all other messages as they will not
+     * be visited at all for other messages.
+     *
+     * @param aMessageType The type of messages to receive.
+     * @param aReader      The {@link MessageReceiver} to add.
+     */
+    void attach(Class<? extends Message> aMessageType, MessageReceiver aReader);
+
+    /**
+     * Attaches a new {@link MessageReceiver} that will only receive messages of the given type, including sub types,
+     * for which {@link Message#isForMe(Loadout)} is true for the given {@link Loadout}. The {@link MessageReceiver} is
+     * automatically converted to a weak reference.
+     *
+     * @param aMessageType The type of messages to receive.
+     * @param aLoadout     The {@link Loadout} the messages shall be for.
+     * @param aReader      The {@link MessageReceiver} to add.
+     */
+    void attach(Class<? extends Message> aMessageType, Loadout aLoadout, MessageReceiver aReader);
+
     /**
      * Detaches a {@link MessageReceiver} from the {@link MessageXBar}.
      *
@@ -19,22 +19,59 @@ package org.lisoft.lsml.messages;
 
 import java.lang.ref.WeakReference;
 import java.util.*;
+import org.lisoft.lsml.model.loadout.Loadout;
 
 /**
  * Implements a message passing framework for an UI where the components don't have to know about
  * each other, only about the crossbar.
  *
+ * <p>Receivers can either be attached for all messages or subscribe to messages of a given type,
+ * optionally limited to messages for a given {@link Loadout}. Subscriptions are indexed by message
+ * type so that posting a message only visits the receivers that are interested in it. Regardless of
+ * how they were attached, receivers get each message in the order they were attached. Messages
+ * posted while a message is being dispatched are queued and dispatched in the order they were
+ * posted once the current message has been delivered to all receivers.
+ *
  * @author Li Song
  */
 public class MessageXBar implements MessageReception, MessageDelivery {
+  private static class Subscription {
+    final Loadout loadout;
+    final WeakReference<MessageReceiver> receiver;
+    final long sequence;
+
+    Subscription(WeakReference<MessageReceiver> aReceiver, Loadout aLoadout, long aSequence) {
+      receiver = aReceiver;
+      loadout = aLoadout;
+      sequence = aSequence;
+    }
+  }
+
+  private static class Subscriptions {
+    final List<Subscription> list = new ArrayList<>();
+    int purgeAt = MIN_PURGE_SIZE;
+    boolean hasDead = false;
+
+    /** Removes all subscriptions whose receivers have been garbage collected or detached. */
+    void purge() {
+      list.removeIf(s -> s.receiver.get() == null);
+      purgeAt = Math.max(MIN_PURGE_SIZE, 2 * list.size());
+      hasDead = false;
+    }
+  }
+
   private static final boolean debug = false;
+  private static final int MIN_PURGE_SIZE = 16;
+  private final transient Map<Class<?>, List<Subscriptions>> dispatchCache = new HashMap<>();
+  private final transient Map<Loadout, Boolean> forMeCache = new IdentityHashMap<>();
   private final transient Queue<Message> messages = new ArrayDeque<>();
   private final transient Map<Class<? extends MessageReceiver>, Integer> perf_calls =
       debug ? new HashMap<>() : null;
   private final transient Map<Class<? extends MessageReceiver>, Double> perf_walltime =
       debug ? new HashMap<>() : null;
-  private final transient List<WeakReference<MessageReceiver>> readers = new ArrayList<>();
+  private final transient Map<Class<?>, Subscriptions> subscriptions = new HashMap<>();
   private boolean dispatching = false;
+  private long nextSequence = 0;
 
   @Override
   public void attach(MessageReceiver aReader) {
@@ -43,19 +80,18 @@ public class MessageXBar implements MessageReception, MessageDelivery {
 
   @Override
   public void attach(WeakReference<MessageReceiver> aWeakReference) {
-    if (dispatching) {
-      throw new IllegalStateException("Attach from call to post!");
-    }
+    subscribe(Message.class, null, aWeakReference);
+  }
 
-    if (debug) {
-      for (final WeakReference<MessageReceiver> reader : readers) {
-        if (reader.get() == aWeakReference.get()) {
-          throw new RuntimeException("Double registration of reader!");
-        }
-      }
-    }
+  @Override
+  public void attach(Class<? extends Message> aMessageType, MessageReceiver aReader) {
+    subscribe(aMessageType, null, new WeakReference<>(aReader));
+  }
 
-    readers.add(aWeakReference);
+  @Override
+  public void attach(
+      Class<? extends Message> aMessageType, Loadout aLoadout, MessageReceiver aReader) {
+    subscribe(aMessageType, Objects.requireNonNull(aLoadout), new WeakReference<>(aReader));
   }
 
   @Override
@@ -64,7 +100,9 @@ public class MessageXBar implements MessageReception, MessageDelivery {
       throw new IllegalStateException("Detach from call to post!");
     }
     dispatching = true;
-    readers.removeIf(ref -> ref.get() == aReader);
+    for (final Subscriptions typeSubscriptions : subscriptions.values()) {
+      typeSubscriptions.list.removeIf(s -> s.receiver.get() == aReader);
+    }
     dispatching = false;
   }
 
@@ -80,42 +118,135 @@ public class MessageXBar implements MessageReception, MessageDelivery {
     }
   }
 
+  /**
+   * @return The number of subscriptions currently held, including those whose receivers have been
+   *     garbage collected but not yet purged.
+   */
+  int getSubscriptionCount() {
+    int ans = 0;
+    for (final Subscriptions typeSubscriptions : subscriptions.values()) {
+      ans += typeSubscriptions.list.size();
+    }
+    return ans;
+  }
+
+  private void deliver(Subscriptions aSubscriptions, Subscription aSubscription, Message aMessage) {
+    final MessageReceiver reader = aSubscription.receiver.get();
+    if (reader == null) {
+      aSubscriptions.hasDead = true;
+      return;
+    }
+    if (aSubscription.loadout != null && !isForMe(aMessage, aSubscription.loadout)) {
+      return;
+    }
+
+    if (debug) {
+      final long startNs = System.nanoTime();
+      reader.receive(aMessage);
+      final long endNs = System.nanoTime();
+      Double v = perf_walltime.get(reader.getClass());
+      Integer u = perf_calls.get(reader.getClass());
+      if (v == null) {
+        v = 0.0;
+        u = 0;
+      }
+      v += (endNs - startNs) / 1E9;
+      u += 1;
+      perf_walltime.put(reader.getClass(), v);
+      perf_calls.put(reader.getClass(), u);
+    } else {
+      reader.receive(aMessage);
+    }
+  }
+
   private void dispatchMessage(Message aMessage) {
     if (dispatching) {
       throw new IllegalStateException("Recursive dispatch!");
     }
     dispatching = true;
+    final List<Subscriptions> matching =
+        dispatchCache.computeIfAbsent(aMessage.getClass(), this::findSubscriptions);
     try {
-      final Iterator<WeakReference<MessageReceiver>> it = readers.iterator();
-      while (it.hasNext()) {
-        final WeakReference<MessageReceiver> ref = it.next();
-        final MessageReceiver reader = ref.get();
-        if (reader == null) {
-          it.remove();
-          continue;
+      if (matching.size() == 1) {
+        final Subscriptions typeSubscriptions = matching.get(0);
+        for (final Subscription subscription : typeSubscriptions.list) {
+          deliver(typeSubscriptions, subscription, aMessage);
         }
-        if (debug) {
-          final long startNs = System.nanoTime();
-          reader.receive(aMessage);
-          final long endNs = System.nanoTime();
-          Double v = perf_walltime.get(reader.getClass());
-          Integer u = perf_calls.get(reader.getClass());
-          if (v == null) {
-            v = 0.0;
-            u = 0;
+      } else {
+        // Merge the subscriptions of all matching types in the order they were attached.
+        final int[] next = new int[matching.size()];
+        while (true) {
+          int best = -1;
+          long bestSequence = Long.MAX_VALUE;
+          for (int i = 0; i < next.length; ++i) {
+            final List<Subscription> list = matching.get(i).list;
+            if (next[i] < list.size() && list.get(next[i]).sequence < bestSequence) {
+              best = i;
+              bestSequence = list.get(next[i]).sequence;
+            }
+          }
+          if (best < 0) {
+            break;
           }
-          v += (endNs - startNs) / 1E9;
-          u += 1;
-          perf_walltime.put(reader.getClass(), v);
-          perf_calls.put(reader.getClass(), u);
-        } else {
-          reader.receive(aMessage);
+          deliver(matching.get(best), matching.get(best).list.get(next[best]++), aMessage);
         }
       }
     } catch (final Throwable t) {
       Thread.getDefaultUncaughtExceptionHandler().uncaughtException(Thread.currentThread(), t);
     } finally {
+      forMeCache.clear();
+      for (final Subscriptions typeSubscriptions : matching) {
+        if (typeSubscriptions.hasDead) {
+          typeSubscriptions.purge();
+        }
+      }
       dispatching = false;
     }
   }
+
+  private List<Subscriptions> findSubscriptions(Class<?> aMessageClass) {
+    final List<Subscriptions> ans = new ArrayList<>();
+    for (final Map.Entry<Class<?>, Subscriptions> entry : subscriptions.entrySet()) {
+      if (entry.getKey().isAssignableFrom(aMessageClass)) {
+        ans.add(entry.getValue());
+      }
+    }
+    return ans;
+  }
+
+  private boolean isForMe(Message aMessage, Loadout aLoadout) {
+    // Many receivers subscribe for the same loadout, only ask the message once.
+    return forMeCache.computeIfAbsent(aLoadout, aMessage::isForMe);
+  }
+
+  private void subscribe(
+      Class<? extends Message> aMessageType,
+      Loadout aLoadout,
+      WeakReference<MessageReceiver> aWeakReference) {
+    if (dispatching) {
+      throw new IllegalStateException("Attach from call to post!");
+    }
+
+    Subscriptions typeSubscriptions = subscriptions.get(aMessageType);
+    if (typeSubscriptions == null) {
+      typeSubscriptions = new Subscriptions();
+      subscriptions.put(aMessageType, typeSubscriptions);
+      dispatchCache.clear();
+    }
+
+    if (debug) {
+      for (final Subscription subscription : typeSubscriptions.list) {
+        if (subscription.receiver.get() == aWeakReference.get()) {
+          throw new RuntimeException("Double registration of reader!");
+        }
+      }
+    }
+
+    // Receivers of rarely posted types may be garbage collected without ever being seen by a
+    // dispatch, purge them as the list grows so that the dead don't accumulate.
+    if (typeSubscriptions.list.size() >= typeSubscriptions.purgeAt) {
+      typeSubscriptions.purge();
+    }
+    typeSubscriptions.list.add(new Subscription(aWeakReference, aLoadout, nextSequence++));
+  }
 }
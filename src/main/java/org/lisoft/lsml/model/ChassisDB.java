@@ -32,6 +32,7 @@ import org.lisoft.mwo_data.mechs.ChassisStandard;
  */
 public class ChassisDB {
   private static final Map<Integer, List<Chassis>> chassis2variant;
+  private static final Map<ChassisClass, List<Chassis>> class2chassis;
   private static final Map<Integer, Chassis> id2chassis;
   private static final Map<String, Chassis> name2chassis;
   private static final Map<String, List<Chassis>> series2chassis;
@@ -63,22 +64,26 @@ public class ChassisDB {
       }
       series2chassis.get(chassis.getSeriesName()).add(chassis);
     }
+
+    final Map<ChassisClass, List<Chassis>> byClass = new EnumMap<>(ChassisClass.class);
+    for (final Chassis chassis : new LinkedHashSet<>(database.getChassis())) {
+      byClass.computeIfAbsent(chassis.getChassisClass(), k -> new ArrayList<>()).add(chassis);
+    }
+    class2chassis = new EnumMap<>(ChassisClass.class);
+    for (final ChassisClass chassisClass : ChassisClass.values()) {
+      class2chassis.put(chassisClass, List.copyOf(byClass.getOrDefault(chassisClass, List.of())));
+    }
   }
 
   /**
    * Looks up all chassis of the given chassis class.
    *
    * @param aChassisClass The {@link ChassisClass} to look up.
-   * @return An {@link List} of all {@link ChassisStandard} with the given {@link ChassisClass}.
+   * @return An immutable {@link List} of all {@link ChassisStandard} with the given {@link
+   *     ChassisClass}.
    */
   public static Collection<Chassis> lookup(ChassisClass aChassisClass) {
-    final List<Chassis> ans = new ArrayList<>(4 * 4);
-    for (final Chassis chassis : name2chassis.values()) {
-      if (chassis.getChassisClass() == aChassisClass && !ans.contains(chassis)) {
-        ans.add(chassis);
-      }
-    }
-    return ans;
+    return class2chassis.get(aChassisClass);
   }
 
   /**
@@ -109,7 +114,7 @@ public class ChassisDB {
   }
 
   public static Collection<Chassis> lookupAll() {
-    return id2chassis.values();
+    return Collections.unmodifiableCollection(id2chassis.values());
   }
 
   /**
@@ -18,9 +18,11 @@
 package org.lisoft.lsml.model;
 
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import org.lisoft.lsml.view_fx.LiSongMechLab;
 import org.lisoft.mwo_data.Database;
 import org.lisoft.mwo_data.Faction;
@@ -51,6 +53,10 @@ public class ItemDB {
   public static final HeatSink SHS;
   public static final Internal UAA;
   public static final int UAA_ID = 1909; // UpperArmActuator
+  private static final Map<Class<?>, List<Item>> class2items;
+  private static final Map<Class<?>, Map<Faction, List<Item>>> class2itemsByFaction;
+  // Indexed by [type][faction][rating], null where there is no such engine.
+  private static final Engine[][][] engines;
   private static final Map<String, Item> localizedName2item;
   private static final Map<Integer, Item> mwoIndex2item;
   private static final Map<String, Item> mwoName2item;
@@ -71,6 +77,33 @@ public class ItemDB {
       put(item);
     }
 
+    final Map<Class<?>, List<Item>> byClass = new HashMap<>();
+    final Map<Class<?>, Map<Faction, List<Item>>> byClassAndFaction = new HashMap<>();
+    for (final Item item : mwoIndex2item.values()) {
+      for (Class<?> c = item.getClass(); Item.class.isAssignableFrom(c); c = c.getSuperclass()) {
+        byClass.computeIfAbsent(c, k -> new ArrayList<>()).add(item);
+        final Map<Faction, List<Item>> byFaction =
+            byClassAndFaction.computeIfAbsent(c, k -> new EnumMap<>(Faction.class));
+        for (final Faction faction : Faction.values()) {
+          if (item.getFaction().isCompatible(faction)) {
+            byFaction.computeIfAbsent(faction, k -> new ArrayList<>()).add(item);
+          }
+        }
+      }
+    }
+    class2items = new HashMap<>();
+    for (final Entry<Class<?>, List<Item>> entry : byClass.entrySet()) {
+      class2items.put(entry.getKey(), List.copyOf(entry.getValue()));
+    }
+    class2itemsByFaction = new HashMap<>();
+    for (final Entry<Class<?>, Map<Faction, List<Item>>> entry : byClassAndFaction.entrySet()) {
+      final Map<Faction, List<Item>> byFaction = new EnumMap<>(Faction.class);
+      for (final Faction faction : Faction.values()) {
+        byFaction.put(faction, List.copyOf(entry.getValue().getOrDefault(faction, List.of())));
+      }
+      class2itemsByFaction.put(entry.getKey(), byFaction);
+    }
+
     // Initialize special items
     try {
       C_AMS = (AmmoWeapon) lookup("C-AMS");
@@ -98,35 +131,51 @@ public class ItemDB {
     } catch (final NoSuchItemException e) {
       throw new RuntimeException(e);
     }
+
+    // Engines are looked up by name once here, so that the table answers exactly like the names
+    // the engines are known by.
+    int maxRating = 0;
+    for (final Engine engine : items(Engine.class)) {
+      maxRating = Math.max(maxRating, engine.getRating());
+    }
+    engines = new Engine[Engine.EngineType.values().length][Faction.values().length][];
+    for (final Engine.EngineType type : Engine.EngineType.values()) {
+      for (final Faction faction : Faction.values()) {
+        engines[type.ordinal()][faction.ordinal()] = new Engine[maxRating + 1];
+      }
+    }
+    for (final Engine engine : items(Engine.class)) {
+      for (final Faction faction : Faction.values()) {
+        try {
+          if (engine == lookup(engineName(engine.getRating(), engine.getType(), faction))) {
+            engines[engine.getType().ordinal()][faction.ordinal()][engine.getRating()] = engine;
+          }
+        } catch (final NoSuchItemException e) {
+          // Not known by that name for this faction
+        }
+      }
+    }
   }
 
   public static Engine getEngine(int aRating, Engine.EngineType aType, Faction aFaction)
       throws NoSuchItemException {
-    final StringBuilder sb = new StringBuilder();
-    if (aType == Engine.EngineType.XL && aFaction == Faction.CLAN) {
-      sb.append("CLAN ");
-    }
-
-    if (aType == Engine.EngineType.LE) {
-      sb.append("LIGHT");
-    } else {
-      sb.append(aType.name());
+    final Engine[] ratings = engines[aType.ordinal()][aFaction.ordinal()];
+    if (aRating < 0 || aRating >= ratings.length || null == ratings[aRating]) {
+      throw new NoSuchItemException("No item with name:" + engineName(aRating, aType, aFaction));
     }
-
-    sb.append(" ENGINE ").append(aRating);
-    return (Engine) lookup(sb.toString());
+    return ratings[aRating];
   }
 
-  @SuppressWarnings("unchecked")
-  // It is checked...
+  /**
+   * Gets all items of a given type.
+   *
+   * @param aClass The type of items to get.
+   * @param <T> The type of items to get.
+   * @return A {@link List} with all items of the given type, may be modified by the caller. Prefer
+   *     {@link #items(Class)} when the list is not modified.
+   */
   public static <T extends Item> List<T> lookup(Class<T> aClass) {
-    final List<T> ans = new ArrayList<>();
-    for (final Item it : mwoIndex2item.values()) {
-      if (aClass.isInstance(it)) {
-        ans.add((T) it);
-      }
-    }
-    return ans;
+    return new ArrayList<>(items(aClass));
   }
 
   public static Item lookup(int aMwoIndex) throws NoSuchItemException {
@@ -147,10 +196,66 @@ public class ItemDB {
     return localizedName2item.get(key);
   }
 
+  /**
+   * Gets all items of a given type from an index built when the items were loaded.
+   *
+   * @param aClass The type of items to get.
+   * @param <T> The type of items to get.
+   * @return An immutable {@link List} with all items of the given type.
+   */
+  @SuppressWarnings("unchecked")
+  // It is checked...
+  public static <T extends Item> List<T> items(Class<T> aClass) {
+    final List<Item> ans = class2items.get(aClass);
+    if (null != ans) {
+      return (List<T>) ans;
+    }
+    // Types without any items are not indexed
+    return mwoIndex2item.values().stream().filter(aClass::isInstance).map(aClass::cast).toList();
+  }
+
+  /**
+   * Gets all items of a given type that are compatible with a faction, from an index built when the
+   * items were loaded.
+   *
+   * @param aClass The type of items to get.
+   * @param aFaction The {@link Faction} the items must be compatible with.
+   * @param <T> The type of items to get.
+   * @return An immutable {@link List} with the items of the given type that are compatible with the
+   *     given faction.
+   */
+  @SuppressWarnings("unchecked")
+  // It is checked...
+  public static <T extends Item> List<T> items(Class<T> aClass, Faction aFaction) {
+    final Map<Faction, List<Item>> byFaction = class2itemsByFaction.get(aClass);
+    if (null != byFaction) {
+      return (List<T>) byFaction.get(aFaction);
+    }
+    return items(aClass).stream()
+        .filter(aItem -> aItem.getFaction().isCompatible(aFaction))
+        .toList();
+  }
+
   private static String canonize(String aString) {
     return aString.toLowerCase();
   }
 
+  private static String engineName(int aRating, Engine.EngineType aType, Faction aFaction) {
+    final StringBuilder sb = new StringBuilder();
+    if (aType == Engine.EngineType.XL && aFaction == Faction.CLAN) {
+      sb.append("CLAN ");
+    }
+
+    if (aType == Engine.EngineType.LE) {
+      sb.append("LIGHT");
+    } else {
+      sb.append(aType.name());
+    }
+
+    sb.append(" ENGINE ").append(aRating);
+    return sb.toString();
+  }
+
   private static void put(Item aItem) {
     mwoName2item.put(canonize(aItem.getKey()), aItem);
     localizedName2item.put(canonize(aItem.getName()), aItem);
@@ -71,7 +71,7 @@ public class ModifiersDB {
 
   public static Collection<String> getAllWeaponSelectors() {
     final Set<String> ans = new HashSet<>();
-    for (final Weapon w : ItemDB.lookup(Weapon.class)) {
+    for (final Weapon w : ItemDB.items(Weapon.class)) {
       ans.addAll(w.getAliases());
     }
     ans.addAll(ModifierDescription.SEL_HEAT_DISSIPATION);
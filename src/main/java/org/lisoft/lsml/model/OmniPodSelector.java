@@ -17,12 +17,9 @@
  */
 package org.lisoft.lsml.model;
 
-import static java.lang.Math.max;
-
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.inject.Inject;
-import org.lisoft.lsml.math.graph.BackTrackingSolver;
-import org.lisoft.lsml.math.graph.PartialCandidate;
 import org.lisoft.lsml.model.loadout.LoadoutOmniMech;
 import org.lisoft.mwo_data.mechs.*;
 
@@ -30,218 +27,198 @@ import org.lisoft.mwo_data.mechs.*;
  * Determines {@link OmniPod}s for a {@link LoadoutOmniMech} so that the given requirements on hard
  * points is met.
  *
+ * <p>The pods are selected by a depth first search over the locations in a fixed order, trying the
+ * allowed pods of each location in order. A branch is pruned when the best pods of the remaining
+ * locations can't meet the requirements. The pods, what they provide and the bounds for each depth
+ * are precomputed into arrays once per chassis, and answers for the stock pods of a chassis are
+ * cached as the chassis filter asks the same questions over and over.
+ *
  * @author Li Song
  */
 public class OmniPodSelector {
-  private static class PartialSelection implements PartialCandidate<PartialSelection> {
-    /** The order in which different locations are tried. */
-    private static final Location[] LOCATION_ORDER =
-        new Location[] {
-          Location.CenterTorso,
-          Location.RightTorso,
-          Location.LeftTorso,
-          Location.RightArm,
-          Location.LeftArm,
-          Location.Head,
-          Location.LeftLeg,
-          Location.RightLeg
-        };
-
-    private final Map<Location, List<OmniPod>> allowedPods;
-    private final Map<Location, OmniPod> currentState;
-    private final int location;
-    private final int pod;
-    private final int remainingBallistic;
-    private final int remainingECM;
-    private final int remainingEnergy;
-    private final int remainingJumpJet;
-    private final int remainingMissile;
+  /**
+   * The pods to search over and the bounds used for pruning.
+   *
+   * @param locations The locations to search over, in search order. Locations without any allowed
+   *     pods and the centre torso are excluded.
+   * @param pods The allowed pods for each location.
+   * @param provided What each pod at each location provides towards the requirements, indexed by
+   *     location, pod and requirement.
+   * @param bounds The most that all locations from the given one and onwards can provide for each
+   *     requirement. Has one more entry than there are locations, the last being all zeros.
+   */
+  private record Problem(
+      Location[] locations, OmniPod[][] pods, int[][][] provided, int[][] bounds) {}
 
-    /**
-     * Creates a root partial selection to start searching for. Also defines the constraints.
-     *
-     * @param aAllowedPods The pods that are allowed to be selected (preferably (but not
-     *     necessarily) pruned from pods that do not affect the constraints).
-     * @param aWantedEnergy The number of wanted energy hard points.
-     * @param aWantedMissile The number of wanted missile hard points.
-     * @param aWantedBallistic The number of wanted ballistics hard points.
-     * @param aWantedJumpJet The number of wanted jump jets.
-     * @param aWantEcm Whether ECM is wanted or not.
-     */
-    public PartialSelection(
-        Map<Location, List<OmniPod>> aAllowedPods,
-        int aWantedEnergy,
-        int aWantedMissile,
-        int aWantedBallistic,
-        int aWantedJumpJet,
-        boolean aWantEcm) {
-      location = 0; // CT
-      pod = -1; // Not used on root
-      allowedPods = aAllowedPods;
+  /** The requirements that a selection of pods is wanted to satisfy. */
+  private record Requirements(
+      ChassisOmniMech chassis,
+      int energy,
+      int missile,
+      int ballistic,
+      int jumpJet,
+      boolean ecm) {}
 
-      currentState = new HashMap<>();
-      remainingEnergy = aWantedEnergy;
-      remainingMissile = aWantedMissile;
-      remainingBallistic = aWantedBallistic;
-      remainingJumpJet = aWantedJumpJet;
-      remainingECM = aWantEcm ? 1 : 0;
-    }
+  private static final int ANSWER_CACHE_SIZE = 4096;
+  private static final int BALLISTIC = 0;
+  private static final int ECM = 1;
+  private static final int ENERGY = 2;
+  private static final int JUMP_JET = 3;
+  private static final int MISSILE = 4;
+  private static final int NUM_REQUIREMENTS = 5;
+  /** The order in which different locations are tried. */
+  private static final Location[] LOCATION_ORDER =
+      new Location[] {
+        Location.RightTorso,
+        Location.LeftTorso,
+        Location.RightArm,
+        Location.LeftArm,
+        Location.Head,
+        Location.LeftLeg,
+        Location.RightLeg
+      };
 
-    static int getHardpointCountDifference(OmniPod removed, OmniPod added, HardPointType type){
-      return added.getHardPointCount(type) - removed.getHardPointCount(type);
-    }
+  private final Map<Requirements, Optional<Map<Location, OmniPod>>> answers =
+      new ConcurrentHashMap<>();
+  private final Map<ChassisOmniMech, Problem> problems = new ConcurrentHashMap<>();
 
-    private PartialSelection(PartialSelection aPrevious, int aLocation, int aPod) {
-      location = aLocation;
-      pod = aPod;
-      allowedPods = aPrevious.allowedPods;
+  @Inject
+  public OmniPodSelector() {
+    // NOP
+  }
 
-      currentState = new HashMap<>(aPrevious.currentState);
-      final Location key = LOCATION_ORDER[location];
-      if (aPrevious.location == location) {
-        // Change pod
-        final OmniPod oldPod = currentState.get(key);
-        final OmniPod newPod = allowedPods.get(key).get(pod);
-        remainingEnergy =
-            aPrevious.remainingEnergy - getHardpointCountDifference(oldPod, newPod, HardPointType.ENERGY);
-        remainingMissile =
-            aPrevious.remainingMissile - getHardpointCountDifference(oldPod, newPod, HardPointType.MISSILE);
-        remainingBallistic =
-            aPrevious.remainingBallistic - getHardpointCountDifference(oldPod, newPod, HardPointType.BALLISTIC);
-        remainingJumpJet =
-            aPrevious.remainingJumpJet - newPod.getJumpJetsMax() + oldPod.getJumpJetsMax();
-        remainingECM =
-            aPrevious.remainingECM - getHardpointCountDifference(oldPod, newPod, HardPointType.ECM);
-        currentState.put(key, newPod);
-      } else {
-        // Add new pod
-        final OmniPod newPod = allowedPods.get(key).get(pod);
-        remainingEnergy =
-            aPrevious.remainingEnergy - newPod.getHardPointCount(HardPointType.ENERGY);
-        remainingMissile =
-            aPrevious.remainingMissile - newPod.getHardPointCount(HardPointType.MISSILE);
-        remainingBallistic =
-            aPrevious.remainingBallistic - newPod.getHardPointCount(HardPointType.BALLISTIC);
-        remainingJumpJet = aPrevious.remainingJumpJet - newPod.getJumpJetsMax();
-        remainingECM = aPrevious.remainingECM - newPod.getHardPointCount(HardPointType.ECM);
-        currentState.put(key, newPod);
+  private static boolean accepts(int[] aRemaining) {
+    for (final int remaining : aRemaining) {
+      if (remaining > 0) {
+        return false;
       }
     }
+    return true;
+  }
 
-    @Override
-    public boolean accept() {
-      return remainingBallistic <= 0
-          && //
-          remainingMissile <= 0
-          && //
-          remainingEnergy <= 0
-          && //
-          remainingJumpJet <= 0
-          && //
-          remainingECM <= 0;
+  private static Problem makeProblem(Map<Location, List<OmniPod>> aAllowedPods) {
+    final List<Location> locations = new ArrayList<>();
+    final List<OmniPod[]> pods = new ArrayList<>();
+    for (final Location location : LOCATION_ORDER) {
+      final List<OmniPod> allowed = aAllowedPods.get(location);
+      if (!allowed.isEmpty()) {
+        locations.add(location);
+        pods.add(allowed.toArray(new OmniPod[0]));
+      }
     }
 
-    @Override
-    public Optional<PartialSelection> first() {
-      int newLocation = location;
-      final int newPod = 0;
-      List<OmniPod> allowed;
-      do {
-        newLocation = newLocation + 1;
-        if (newLocation >= LOCATION_ORDER.length) {
-          return Optional.empty();
+    final int depth = locations.size();
+    final int[][][] provided = new int[depth][][];
+    final int[][] bounds = new int[depth + 1][NUM_REQUIREMENTS];
+    for (int i = depth - 1; i >= 0; --i) {
+      final OmniPod[] locationPods = pods.get(i);
+      final int[] best = new int[NUM_REQUIREMENTS];
+      provided[i] = new int[locationPods.length][];
+      for (int pod = 0; pod < locationPods.length; ++pod) {
+        provided[i][pod] = provides(locationPods[pod]);
+        for (int requirement = 0; requirement < NUM_REQUIREMENTS; ++requirement) {
+          best[requirement] = Math.max(best[requirement], provided[i][pod][requirement]);
         }
-        allowed = allowedPods.get(LOCATION_ORDER[newLocation]);
-      } while (allowed.isEmpty());
-      return Optional.of(new PartialSelection(this, newLocation, newPod));
-    }
-
-    @Override
-    public Optional<PartialSelection> next() {
-      final List<OmniPod> allowed = allowedPods.get(LOCATION_ORDER[location]);
-      final int newPod = pod + 1;
-      if (newPod < allowed.size()) {
-        return Optional.of(new PartialSelection(this, location, newPod));
       }
-      return Optional.empty();
+      for (int requirement = 0; requirement < NUM_REQUIREMENTS; ++requirement) {
+        bounds[i][requirement] = bounds[i + 1][requirement] + best[requirement];
+      }
     }
+    return new Problem(
+        locations.toArray(new Location[0]), pods.toArray(new OmniPod[0][]), provided, bounds);
+  }
 
-    @Override
-    public boolean reject() {
-      int maxPossibleEnergy = 0;
-      int maxPossibleMissile = 0;
-      int maxPossibleBallistic = 0;
-      int maxPossibleJumpJet = 0;
-      int maxPossibleEcm = 0;
-
-      for (int remLoc = location + 1; remLoc < LOCATION_ORDER.length; ++remLoc) {
-        final List<OmniPod> allowed = allowedPods.get(LOCATION_ORDER[remLoc]);
-        int localMaxPossibleEnergy = 0;
-        int localMaxPossibleMissile = 0;
-        int localMaxPossibleBallistic = 0;
-        int localMaxPossibleJumpJet = 0;
-        int localMaxPossibleEcm = 0;
+  private static int[] provides(OmniPod aOmniPod) {
+    final int[] ans = new int[NUM_REQUIREMENTS];
+    ans[BALLISTIC] = aOmniPod.getHardPointCount(HardPointType.BALLISTIC);
+    ans[ECM] = aOmniPod.getHardPointCount(HardPointType.ECM);
+    ans[ENERGY] = aOmniPod.getHardPointCount(HardPointType.ENERGY);
+    ans[JUMP_JET] = aOmniPod.getJumpJetsMax();
+    ans[MISSILE] = aOmniPod.getHardPointCount(HardPointType.MISSILE);
+    return ans;
+  }
 
-        for (final OmniPod omniPod : allowed) {
-          localMaxPossibleBallistic =
-              max(localMaxPossibleBallistic, omniPod.getHardPointCount(HardPointType.BALLISTIC));
-          localMaxPossibleEnergy =
-              max(localMaxPossibleEnergy, omniPod.getHardPointCount(HardPointType.ENERGY));
-          localMaxPossibleMissile =
-              max(localMaxPossibleMissile, omniPod.getHardPointCount(HardPointType.MISSILE));
-          localMaxPossibleEcm =
-              max(localMaxPossibleEcm, omniPod.getHardPointCount(HardPointType.ECM));
-          localMaxPossibleJumpJet = max(localMaxPossibleJumpJet, omniPod.getJumpJetsMax());
-        }
-        maxPossibleEnergy += localMaxPossibleEnergy;
-        maxPossibleMissile += localMaxPossibleMissile;
-        maxPossibleBallistic += localMaxPossibleBallistic;
-        maxPossibleJumpJet += localMaxPossibleJumpJet;
-        maxPossibleEcm += localMaxPossibleEcm;
+  private static boolean rejects(int[] aBounds, int[] aRemaining) {
+    for (int requirement = 0; requirement < NUM_REQUIREMENTS; ++requirement) {
+      if (aBounds[requirement] < aRemaining[requirement]) {
+        return true;
       }
-
-      return maxPossibleEnergy < remainingEnergy
-          || // Break it up for coverage
-          maxPossibleMissile < remainingMissile
-          || //
-          maxPossibleBallistic < remainingBallistic
-          || //
-          maxPossibleJumpJet < remainingJumpJet
-          || //
-          maxPossibleEcm < remainingECM;
     }
+    return false;
   }
 
-  private final BackTrackingSolver<PartialSelection> solver = new BackTrackingSolver<>();
+  /**
+   * Searches for the first selection of pods that satisfies the remaining requirements.
+   *
+   * @param aProblem The problem to solve.
+   * @param aDepth The number of locations that have a pod selected.
+   * @param aRemaining The requirements that are not yet met by the selected pods, updated in place
+   *     and restored before returning.
+   * @param aSelection The index of the selected pod for each location, updated in place.
+   * @return The number of locations in the found selection, or -1 if there is no solution.
+   */
+  private static int solve(Problem aProblem, int aDepth, int[] aRemaining, int[] aSelection) {
+    if (rejects(aProblem.bounds()[aDepth], aRemaining)) {
+      return -1;
+    }
+    if (accepts(aRemaining)) {
+      return aDepth;
+    }
+    if (aDepth == aProblem.locations().length) {
+      return -1;
+    }
 
-  @Inject
-  public OmniPodSelector() {
-    // NOP
+    final int[][] provided = aProblem.provided()[aDepth];
+    for (int pod = 0; pod < provided.length; ++pod) {
+      for (int requirement = 0; requirement < NUM_REQUIREMENTS; ++requirement) {
+        aRemaining[requirement] -= provided[pod][requirement];
+      }
+      aSelection[aDepth] = pod;
+      final int ans = solve(aProblem, aDepth + 1, aRemaining, aSelection);
+      for (int requirement = 0; requirement < NUM_REQUIREMENTS; ++requirement) {
+        aRemaining[requirement] += provided[pod][requirement];
+      }
+      if (ans >= 0) {
+        return ans;
+      }
+    }
+    return -1;
   }
 
+  /**
+   * Selects pods among the given allowed pods to meet the requirements. Hard points and jump jets
+   * on the centre torso, which has a fixed pod, count towards the requirements.
+   *
+   * @param aChassis The chassis to select pods for.
+   * @param aWantedEnergy The number of wanted energy hard points.
+   * @param aWantedMissile The number of wanted missile hard points.
+   * @param aWantedBallistic The number of wanted ballistics hard points.
+   * @param aWantedJumpJet The number of wanted jump jets.
+   * @param aWantEcm Whether ECM is wanted or not.
+   * @param allowedPods The pods that are allowed to be selected for each location.
+   * @return The pods to use for the locations that matter to the requirements, if the requirements
+   *     can be met.
+   */
   public Optional<Map<Location, OmniPod>> selectPods(
-          ChassisOmniMech aChassis,
-          int aWantedEnergy,
-          int aWantedMissile,
-          int aWantedBallistic,
-          int aWantedJumpJet,
-          boolean aWantEcm,
-          Map<Location, List<OmniPod>> allowedPods) {
-
-    // Discount hard points in the CT
-    final OmniPod ct = aChassis.getComponent(Location.CenterTorso).getFixedOmniPod();
-    final int energy = aWantedEnergy - ct.getHardPointCount(HardPointType.ENERGY);
-    final int missile = aWantedMissile - ct.getHardPointCount(HardPointType.MISSILE);
-    final int ballistic = aWantedBallistic - ct.getHardPointCount(HardPointType.BALLISTIC);
-    final int jumpJet = aWantedJumpJet - aChassis.getFixedJumpJets();
-    final boolean ecm = ct.getHardPointCount(HardPointType.ECM) <= 0 && aWantEcm;
-
-    final PartialSelection root =
-            new PartialSelection(allowedPods, energy, missile, ballistic, jumpJet, ecm);
-    final Optional<PartialSelection> ans = solver.solveOne(root);
-    return ans.map(partialSelection -> partialSelection.currentState);
+      ChassisOmniMech aChassis,
+      int aWantedEnergy,
+      int aWantedMissile,
+      int aWantedBallistic,
+      int aWantedJumpJet,
+      boolean aWantEcm,
+      Map<Location, List<OmniPod>> allowedPods) {
+    final Requirements requirements =
+        new Requirements(
+            aChassis, aWantedEnergy, aWantedMissile, aWantedBallistic, aWantedJumpJet, aWantEcm);
+    return solve(makeProblem(allowedPods), requirements);
   }
 
+  /**
+   * Selects pods among all pods available to the chassis to meet the requirements. The answers are
+   * cached.
+   *
+   * @see #selectPods(ChassisOmniMech, int, int, int, int, boolean, Map)
+   */
   public Optional<Map<Location, OmniPod>> selectPods(
       ChassisOmniMech aChassis,
       int aWantedEnergy,
@@ -249,15 +226,54 @@ public class OmniPodSelector {
       int aWantedBallistic,
       int aWantedJumpJet,
       boolean aWantEcm) {
+    final Requirements requirements =
+        new Requirements(
+            aChassis, aWantedEnergy, aWantedMissile, aWantedBallistic, aWantedJumpJet, aWantEcm);
 
-    final Map<Location, List<OmniPod>> allowedPods = new HashMap<>();
-    for (final Location location : Location.values()) {
-      if(location == Location.CenterTorso){
-        allowedPods.put(location, Arrays.asList(aChassis.getComponent(Location.CenterTorso).getFixedOmniPod()));
-      }else{
-        allowedPods.put(location, OmniPodDB.lookup(aChassis, location));
+    Optional<Map<Location, OmniPod>> ans = answers.get(requirements);
+    if (null == ans) {
+      final Problem problem =
+          problems.computeIfAbsent(
+              aChassis,
+              aKey -> {
+                final Map<Location, List<OmniPod>> allowedPods = new EnumMap<>(Location.class);
+                for (final Location location : LOCATION_ORDER) {
+                  allowedPods.put(location, OmniPodDB.lookup(aKey, location));
+                }
+                return makeProblem(allowedPods);
+              });
+      ans = solve(problem, requirements).map(Collections::unmodifiableMap);
+      if (answers.size() >= ANSWER_CACHE_SIZE) {
+        answers.clear();
       }
+      answers.put(requirements, ans);
+    }
+    // Callers are free to modify the returned map
+    return ans.map(HashMap::new);
+  }
+
+  private Optional<Map<Location, OmniPod>> solve(Problem aProblem, Requirements aRequirements) {
+    final ChassisOmniMech chassis = aRequirements.chassis();
+
+    // Discount hard points in the CT
+    final OmniPod ct = chassis.getComponent(Location.CenterTorso).getFixedOmniPod();
+    final int[] remaining = new int[NUM_REQUIREMENTS];
+    remaining[ENERGY] = aRequirements.energy() - ct.getHardPointCount(HardPointType.ENERGY);
+    remaining[MISSILE] = aRequirements.missile() - ct.getHardPointCount(HardPointType.MISSILE);
+    remaining[BALLISTIC] =
+        aRequirements.ballistic() - ct.getHardPointCount(HardPointType.BALLISTIC);
+    remaining[JUMP_JET] = aRequirements.jumpJet() - chassis.getFixedJumpJets();
+    remaining[ECM] = ct.getHardPointCount(HardPointType.ECM) <= 0 && aRequirements.ecm() ? 1 : 0;
+
+    final int[] selection = new int[aProblem.locations().length];
+    final int depth = solve(aProblem, 0, remaining, selection);
+    if (depth < 0) {
+      return Optional.empty();
+    }
+    final Map<Location, OmniPod> ans = new HashMap<>();
+    for (int i = 0; i < depth; ++i) {
+      ans.put(aProblem.locations()[i], aProblem.pods()[i][selection[i]]);
     }
-    return selectPods(aChassis, aWantedEnergy, aWantedMissile,aWantedBallistic, aWantedJumpJet, aWantEcm, allowedPods);
+    return Optional.of(ans);
   }
 }
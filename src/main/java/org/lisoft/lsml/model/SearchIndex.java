@@ -26,37 +26,132 @@ import org.lisoft.mwo_data.modifiers.Modifier;
 /**
  * A search index that can be used for finding loadouts based on keywords.
  *
+ * <p>The keywords are split into words which are stored in a trie. Every node of the trie holds
+ * the ids of the documents that have a word starting with the prefix of the node as a sorted
+ * <code>int</code> array, so a query term is answered by walking the trie and the terms of a query
+ * are combined by intersecting sorted arrays. The words of each document are remembered so that
+ * documents can be removed and updated incrementally.
+ *
+ * <p>Documents are identified by identity, not by {@link Loadout#equals(Object)}, as loadouts are
+ * mutable.
+ *
  * @author Li Song
  */
 public class SearchIndex {
-  private static final String ALL_DOCUMENTS = "";
-  private final Map<String, Set<Loadout>> invertedIndex = new HashMap<>();
+  /**
+   * A node in the trie. The postings are the sorted ids of all documents with at least one word
+   * passing through this node together with the number of such words for each document.
+   */
+  private static final class Node {
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final char[] NO_KEYS = new char[0];
+    private static final int[] NO_POSTINGS = new int[0];
+    private Node[] children = NO_CHILDREN;
+    private int[] counts = NO_POSTINGS;
+    private int[] documents = NO_POSTINGS;
+    private char[] keys = NO_KEYS;
+    private int numChildren;
+    private int size;
+
+    void add(int aDocument) {
+      final int index = Arrays.binarySearch(documents, 0, size, aDocument);
+      if (index >= 0) {
+        counts[index]++;
+        return;
+      }
+      final int insert = -(index + 1);
+      if (size == documents.length) {
+        final int capacity = Math.max(4, size + (size >> 1));
+        documents = Arrays.copyOf(documents, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+      }
+      System.arraycopy(documents, insert, documents, insert + 1, size - insert);
+      System.arraycopy(counts, insert, counts, insert + 1, size - insert);
+      documents[insert] = aDocument;
+      counts[insert] = 1;
+      size++;
+    }
+
+    Node child(char aKey) {
+      final int index = Arrays.binarySearch(keys, 0, numChildren, aKey);
+      return index >= 0 ? children[index] : null;
+    }
+
+    Node getOrCreateChild(char aKey) {
+      final int index = Arrays.binarySearch(keys, 0, numChildren, aKey);
+      if (index >= 0) {
+        return children[index];
+      }
+      final int insert = -(index + 1);
+      if (numChildren == keys.length) {
+        final int capacity = Math.max(2, numChildren * 2);
+        keys = Arrays.copyOf(keys, capacity);
+        children = Arrays.copyOf(children, capacity);
+      }
+      System.arraycopy(keys, insert, keys, insert + 1, numChildren - insert);
+      System.arraycopy(children, insert, children, insert + 1, numChildren - insert);
+      final Node node = new Node();
+      keys[insert] = aKey;
+      children[insert] = node;
+      numChildren++;
+      return node;
+    }
+
+    void remove(int aDocument) {
+      final int index = Arrays.binarySearch(documents, 0, size, aDocument);
+      if (index < 0) {
+        return;
+      }
+      if (--counts[index] == 0) {
+        System.arraycopy(documents, index + 1, documents, index, size - index - 1);
+        System.arraycopy(counts, index + 1, counts, index, size - index - 1);
+        size--;
+      }
+    }
+
+    void removeChild(char aKey) {
+      final int index = Arrays.binarySearch(keys, 0, numChildren, aKey);
+      if (index >= 0) {
+        System.arraycopy(keys, index + 1, keys, index, numChildren - index - 1);
+        System.arraycopy(children, index + 1, children, index, numChildren - index - 1);
+        children[--numChildren] = null;
+      }
+    }
+  }
+
+  private final Map<Loadout, Integer> ids = new IdentityHashMap<>();
+  private final List<Loadout> documents = new ArrayList<>();
+  private final Deque<Integer> freeIds = new ArrayDeque<>();
+  /** The root matches the empty query term and therefore holds all documents. */
+  private final Node root = new Node();
+  private final List<String[]> words = new ArrayList<>();
   private boolean dirty = false;
 
   /**
-   * Merges the given loadout into the search index.
+   * Merges the given loadout into the search index. If the loadout is already in the index, it is
+   * updated.
    *
    * @param aLoadout A loadout to merge
    */
   public void merge(Loadout aLoadout) {
-    documentsByKey(ALL_DOCUMENTS).add(aLoadout);
-
-    addPrefixes(aLoadout, aLoadout.getName());
-
-    final Chassis chassis = aLoadout.getChassis();
-    addPrefixes(aLoadout, chassis.getSeriesName());
-    addPrefixes(aLoadout, chassis.getShortName());
-    addPrefixes(aLoadout, chassis.getName());
-    addPrefixes(aLoadout, chassis.getMassMax() + "ton");
-    addPrefixes(aLoadout, chassis.getMassMax() + " ton");
-
-    final Faction faction = chassis.getFaction();
-    addPrefixes(aLoadout, faction.getUiName());
-    addPrefixes(aLoadout, faction.getUiShortName());
+    final Integer existing = ids.get(aLoadout);
+    if (null != existing) {
+      reindex(existing);
+      return;
+    }
 
-    for (final Modifier modifier : aLoadout.getAllModifiers()) {
-      addPrefixes(aLoadout, modifier.getDescription().getUiName());
+    final int id;
+    if (freeIds.isEmpty()) {
+      id = documents.size();
+      documents.add(aLoadout);
+      words.add(null);
+    } else {
+      id = freeIds.pop();
+      documents.set(id, aLoadout);
     }
+    ids.put(aLoadout, id);
+    root.add(id);
+    index(id);
   }
 
   /**
@@ -76,27 +171,35 @@ public class SearchIndex {
       return Collections.emptyList();
     }
 
-    final List<Set<Loadout>> hits = new ArrayList<>();
+    final List<Node> hits = new ArrayList<>();
     for (final String part : aSearchString.toLowerCase().split(" ")) {
-      hits.add(invertedIndex.getOrDefault(part, Collections.emptySet()));
+      final Node node = find(part);
+      if (null == node || node.size == 0) {
+        return Collections.emptyList();
+      }
+      hits.add(node);
     }
-    hits.sort(Comparator.comparingInt(Set::size));
+    hits.sort(Comparator.comparingInt(aNode -> aNode.size));
 
-    final Iterator<Set<Loadout>> it = hits.iterator();
-    final Set<Loadout> ans = new HashSet<>(it.next());
-    while (it.hasNext()) {
-      ans.retainAll(it.next());
+    final Iterator<Node> it = hits.iterator();
+    final Node smallest = it.next();
+    int[] ans = Arrays.copyOf(smallest.documents, smallest.size);
+    int ansSize = smallest.size;
+    while (it.hasNext() && ansSize > 0) {
+      ansSize = intersect(ans, ansSize, it.next());
     }
 
-    return ans;
+    final List<Loadout> result = new ArrayList<>(ansSize);
+    for (int i = 0; i < ansSize; ++i) {
+      result.add(documents.get(ans[i]));
+    }
+    return result;
   }
 
   /** Rebuilds the search index to take updated documents changes into the index. */
   public void rebuild() {
-    final Set<Loadout> documents = documentsByKey(ALL_DOCUMENTS);
-    invertedIndex.clear();
-    for (final Loadout document : documents) {
-      merge(document);
+    for (final int id : ids.values()) {
+      reindex(id);
     }
     dirty = false;
   }
@@ -104,44 +207,129 @@ public class SearchIndex {
   /**
    * Removes the given loadout from the search index.
    *
-   * <p>An index rebuild is automatically performed on the next query if it has not been forced
-   * before the query.
-   *
    * @param aLoadout The {@link Loadout} to remove from the index.
    */
   public void unmerge(Loadout aLoadout) {
-    documentsByKey(ALL_DOCUMENTS).remove(aLoadout);
-    dirty = true;
+    final Integer id = ids.remove(aLoadout);
+    if (null == id) {
+      return;
+    }
+    unindex(id);
+    root.remove(id);
+    documents.set(id, null);
+    freeIds.push(id);
   }
 
   /**
    * Call when a document has been changed. Will cause a reindexing of all documents on the next
-   * query.
+   * query. Prefer {@link #update(Loadout)} when the changed document is known.
    */
   public void update() {
     dirty = true;
   }
 
-  private void addPrefixes(Loadout aLoadout, String aKeyword) {
+  /**
+   * Call when the given document has been changed to reindex it. Documents that are not in the
+   * index are ignored.
+   *
+   * @param aLoadout The {@link Loadout} that changed.
+   */
+  public void update(Loadout aLoadout) {
+    final Integer id = ids.get(aLoadout);
+    if (null != id) {
+      reindex(id);
+    }
+  }
+
+  private void addWords(Set<String> aWords, String aKeyword) {
     if (null == aKeyword) {
       // These keywords will never be null in production but makes
       // setting up tests much easier.
       return;
     }
-    if (aKeyword.contains(" ")) {
-      for (final String part : aKeyword.split(" ")) {
-        addPrefixes(aLoadout, part);
+    for (final String part : aKeyword.split(" ")) {
+      if (!part.isEmpty()) {
+        aWords.add(part.toLowerCase());
       }
     }
-    String prefix = aKeyword.toLowerCase();
-    while (!prefix.isEmpty()) {
-      final Set<Loadout> documents = documentsByKey(prefix);
-      documents.add(aLoadout);
-      prefix = prefix.substring(0, prefix.length() - 1);
+  }
+
+  private Node find(String aTerm) {
+    Node node = root;
+    for (int i = 0; i < aTerm.length() && null != node; ++i) {
+      node = node.child(aTerm.charAt(i));
+    }
+    return node;
+  }
+
+  private void index(int aId) {
+    final Loadout loadout = documents.get(aId);
+    final Set<String> documentWords = new HashSet<>();
+    addWords(documentWords, loadout.getName());
+
+    final Chassis chassis = loadout.getChassis();
+    addWords(documentWords, chassis.getSeriesName());
+    addWords(documentWords, chassis.getShortName());
+    addWords(documentWords, chassis.getName());
+    addWords(documentWords, chassis.getMassMax() + "ton");
+    addWords(documentWords, chassis.getMassMax() + " ton");
+
+    final Faction faction = chassis.getFaction();
+    addWords(documentWords, faction.getUiName());
+    addWords(documentWords, faction.getUiShortName());
+
+    for (final Modifier modifier : loadout.getAllModifiers()) {
+      addWords(documentWords, modifier.getDescription().getUiName());
+    }
+
+    final String[] wordArray = documentWords.toArray(new String[0]);
+    for (final String word : wordArray) {
+      Node node = root;
+      for (int i = 0; i < word.length(); ++i) {
+        node = node.getOrCreateChild(word.charAt(i));
+        node.add(aId);
+      }
     }
+    words.set(aId, wordArray);
   }
 
-  private Set<Loadout> documentsByKey(String aKeyword) {
-    return invertedIndex.computeIfAbsent(aKeyword, k -> new HashSet<>());
+  private int intersect(int[] aDocuments, int aSize, Node aNode) {
+    int ans = 0;
+    int j = 0;
+    for (int i = 0; i < aSize && j < aNode.size; ++i) {
+      final int document = aDocuments[i];
+      j = Arrays.binarySearch(aNode.documents, j, aNode.size, document);
+      if (j >= 0) {
+        aDocuments[ans++] = document;
+        j++;
+      } else {
+        j = -(j + 1);
+      }
+    }
+    return ans;
+  }
+
+  private void reindex(int aId) {
+    unindex(aId);
+    index(aId);
+  }
+
+  private void unindex(int aId) {
+    for (final String word : words.get(aId)) {
+      unindex(root, word, 0, aId);
+    }
+    words.set(aId, null);
+  }
+
+  private void unindex(Node aParent, String aWord, int aDepth, int aId) {
+    final char key = aWord.charAt(aDepth);
+    final Node node = aParent.child(key);
+    node.remove(aId);
+    if (aDepth + 1 < aWord.length()) {
+      unindex(node, aWord, aDepth + 1, aId);
+    }
+    if (node.size == 0) {
+      aParent.removeChild(key);
+    }
   }
 }
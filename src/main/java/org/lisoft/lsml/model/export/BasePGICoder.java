@@ -19,9 +19,7 @@ package org.lisoft.lsml.model.export;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 import javax.inject.Inject;
 import org.lisoft.lsml.util.DecodingException;
 
@@ -29,10 +27,14 @@ import org.lisoft.lsml.util.DecodingException;
  * The new export/import API uses base64 encoding which is actually not even close to RFC 4648, as
  * expected by PGI. For this reason we have to create a new encoder/decoder class
  *
+ * <p>All characters of the alphabet are ASCII, decoding is a lookup in a table indexed by the
+ * character so that no values are boxed.
+ *
  * @author Li Song
  */
 public class BasePGICoder {
-  private static final Map<Character, Integer> decoderTable;
+  private static final int NOT_IN_ALPHABET = -1;
+  private static final int[] decoderTable = new int[128];
   private static final char[] encoderTable =
       new char[] {
         '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', ':', ';', '<', '=', '>', '?', '@', 'A',
@@ -42,11 +44,10 @@ public class BasePGICoder {
       };
 
   static {
-    final Map<Character, Integer> decoder = new HashMap<>(encoderTable.length * 2);
+    Arrays.fill(decoderTable, NOT_IN_ALPHABET);
     for (int i = 0; i < encoderTable.length; i++) {
-      decoder.put(encoderTable[i], i);
+      decoderTable[encoderTable[i]] = i;
     }
-    decoderTable = Collections.unmodifiableMap(decoder);
   }
 
   @Inject
@@ -89,6 +90,24 @@ public class BasePGICoder {
     append(aValue, aStringBuilder, aNumChars, aNumChars);
   }
 
+  /**
+   * Counts the characters that {@link #parseAvailable(Reader, int)} would parse.
+   *
+   * @param aInput The characters to decode.
+   * @param aOffset The index of the first character to decode.
+   * @param maxChars The maximal number of chars to count.
+   * @return The number of characters from <code>aOffset</code>, up to <code>maxChars</code>, that
+   *     are part of the alphabet.
+   */
+  public int countAvailable(CharSequence aInput, int aOffset, int maxChars) {
+    final int end = Math.min(aInput.length(), aOffset + maxChars);
+    int i = aOffset;
+    while (i < end && NOT_IN_ALPHABET != bitsOf(aInput.charAt(i))) {
+      i++;
+    }
+    return i - aOffset;
+  }
+
   /**
    * Parses up to <code>maxChars</code> or until a non parseable character is encountered. Then
    * returns, leaving the input stream pointing at the next unparsed character (may be the
@@ -104,9 +123,8 @@ public class BasePGICoder {
     int value = 0;
     for (int i = 0; i < maxChars; i++) {
       aReader.mark(1);
-      final char ch = (char) aReader.read();
-      final Integer bits = decoderTable.get(ch);
-      if (null == bits) {
+      final int bits = bitsOf((char) aReader.read());
+      if (NOT_IN_ALPHABET == bits) {
         aReader.reset();
         break;
       }
@@ -129,12 +147,44 @@ public class BasePGICoder {
     int value = 0;
     for (int i = 0; i < maxChars; i++) {
       final char ch = (char) aReader.read();
-      final Integer bits = decoderTable.get(ch);
-      if (null == bits) {
+      final int bits = bitsOf(ch);
+      if (NOT_IN_ALPHABET == bits) {
         throw new DecodingException("Unexpected character: " + ch);
       }
       value |= bits << (6 * i);
     }
     return value;
   }
+
+  /**
+   * Decodes exactly <code>aNumChars</code> characters into an int.
+   *
+   * @param aInput The characters to decode.
+   * @param aOffset The index of the first character to decode.
+   * @param aNumChars The number of characters to decode.
+   * @return A integer with the decoded value (may be jibberish if <code>aNumChars</code> it too
+   *     big).
+   * @throws DecodingException If a character that is not part of the alphabet is encountered or
+   *     the input ends prematurely.
+   */
+  public int parseExactly(CharSequence aInput, int aOffset, int aNumChars)
+      throws DecodingException {
+    if (aOffset + aNumChars > aInput.length()) {
+      throw new DecodingException("Unexpected end of input at: " + aInput.length());
+    }
+    int value = 0;
+    for (int i = 0; i < aNumChars; i++) {
+      final char ch = aInput.charAt(aOffset + i);
+      final int bits = bitsOf(ch);
+      if (NOT_IN_ALPHABET == bits) {
+        throw new DecodingException("Unexpected character: " + ch);
+      }
+      value |= bits << (6 * i);
+    }
+    return value;
+  }
+
+  private static int bitsOf(char aChar) {
+    return aChar < decoderTable.length ? decoderTable[aChar] : NOT_IN_ALPHABET;
+  }
 }
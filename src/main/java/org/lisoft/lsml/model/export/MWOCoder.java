@@ -17,10 +17,13 @@
  */
 package org.lisoft.lsml.model.export;
 
-import java.io.IOException;
-import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 import javax.inject.Inject;
 import org.lisoft.lsml.application.ErrorReporter;
 import org.lisoft.lsml.command.*;
@@ -44,6 +47,10 @@ import org.lisoft.mwo_data.mechs.Upgrades;
 /**
  * Implements the string encoded export format in MWO.
  *
+ * <p>Decoding works directly on the {@link CharSequence} by index and encoding appends to a caller
+ * provided {@link StringBuilder}, so that large numbers of strings can be converted without
+ * creating intermediate objects per character.
+ *
  * @author Li Song
  */
 public class MWOCoder {
@@ -52,6 +59,8 @@ public class MWOCoder {
   private static final int ACTUATOR_STATE_R_HA_REMOVED = 1;
   private static final int ACTUATOR_STATE_R_LAA_REMOVED = 2;
   private static final Map<Location, Character> COMPONENT_TERMINATORS;
+  private static final char END_OF_INPUT = Character.MAX_VALUE;
+  private static final int ENCODED_CAPACITY = 128;
   private static final char ITEM_SEPARATOR = '|';
   private static final char MAGIC_V1 = 'A';
   private static final int MIN_LENGTH = 36;
@@ -84,7 +93,7 @@ public class MWOCoder {
   private static final Map<Upgrade, Integer> UPGRADE_TO_BITS;
 
   static {
-    COMPONENT_TERMINATORS = new HashMap<>();
+    COMPONENT_TERMINATORS = new EnumMap<>(Location.class);
     COMPONENT_TERMINATORS.put(Location.CenterTorso, 'p');
     COMPONENT_TERMINATORS.put(Location.RightTorso, 'q');
     COMPONENT_TERMINATORS.put(Location.LeftTorso, 'r');
@@ -139,7 +148,7 @@ public class MWOCoder {
    * @return Returns <code>true</code> if this coder is able to decode the stream, <code>false
    *     </code> otherwise.
    */
-  public boolean canDecode(String aBitStream) {
+  public boolean canDecode(CharSequence aBitStream) {
     return aBitStream.length() >= MIN_LENGTH && aBitStream.charAt(0) == MAGIC_V1;
   }
 
@@ -150,33 +159,55 @@ public class MWOCoder {
    * @return A {@link Loadout} that has been decoded.
    * @throws DecodingException If the bit stream is broken.
    */
-  public Loadout decode(String aMwoString) throws DecodingException {
-    try (StringReader sr = new StringReader(aMwoString)) {
-      if (MAGIC_V1 != sr.read()) {
-        throw new DecodingException(
-            "Magic missmatch, not a MWO loadout or newer version: " + aMwoString);
-      }
+  public Loadout decode(CharSequence aMwoString) throws DecodingException {
+    if (MAGIC_V1 != charAt(aMwoString, 0)) {
+      throw new DecodingException(
+          "Magic missmatch, not a MWO loadout or newer version: " + aMwoString);
+    }
 
-      final int chassisId = baseCoder.parseExactly(sr, 2);
+    try {
+      final int chassisId = baseCoder.parseExactly(aMwoString, 1, 2);
       final Chassis chassis = ChassisDB.lookup(chassisId);
       final Loadout loadout = loadoutFactory.produceEmpty(chassis);
       final LoadoutBuilder builder = new LoadoutBuilder();
 
-      parseUpgrades(sr, builder, loadout);
-      parseActuatorState(sr, builder, loadout);
+      int position = parseUpgrades(aMwoString, 3, builder, loadout);
+      position = parseActuatorState(aMwoString, position, builder, loadout);
       for (final Location location : Location.MWO_EXPORT_ORDER) {
-        parseComponent(sr, builder, loadout, location);
+        position = parseComponent(aMwoString, position, builder, loadout, location);
       }
-      parseBackArmour(sr, builder, loadout);
+      parseBackArmour(aMwoString, position, builder, loadout);
 
       builder.applyAll();
       builder.reportErrors(loadout, errorReporter);
       return loadout;
-    } catch (final NoSuchItemException | IOException e1) {
+    } catch (final NoSuchItemException e1) {
       throw new DecodingException("Couldn't parse: " + aMwoString, e1);
     }
   }
 
+  /**
+   * Decodes a sequence of MWO export strings, such as the lines of a file with one export string
+   * per line.
+   *
+   * @param aMwoStrings The MWO exported strings to decode, the stream is consumed.
+   * @return The decoded {@link Loadout}s in the same order as the strings.
+   * @throws DecodingException If any of the strings couldn't be decoded. The message tells which.
+   */
+  public List<Loadout> decodeAll(Stream<? extends CharSequence> aMwoStrings)
+      throws DecodingException {
+    final List<Loadout> ans = new ArrayList<>();
+    final Iterator<? extends CharSequence> it = aMwoStrings.iterator();
+    while (it.hasNext()) {
+      try {
+        ans.add(decode(it.next()));
+      } catch (final DecodingException e) {
+        throw new DecodingException("Export string " + (ans.size() + 1) + " is invalid.", e);
+      }
+    }
+    return ans;
+  }
+
   /**
    * Encodes the given {@link Loadout} to a raw bit stream.
    *
@@ -184,7 +215,20 @@ public class MWOCoder {
    * @return A raw bit stream representing the {@link LoadoutStandard}.
    */
   public String encode(Loadout aLoadout) {
-    final StringBuilder sb = new StringBuilder();
+    final StringBuilder sb = new StringBuilder(ENCODED_CAPACITY);
+    encode(aLoadout, sb);
+    return sb.toString();
+  }
+
+  /**
+   * Encodes the given {@link Loadout} to a raw bit stream. Use when encoding many loadouts to reuse
+   * the same {@link StringBuilder}.
+   *
+   * @param aLoadout The {@link Loadout} to encode.
+   * @param aOutput The {@link StringBuilder} to append the raw bit stream to.
+   */
+  public void encode(Loadout aLoadout, StringBuilder aOutput) {
+    final StringBuilder sb = aOutput;
     sb.append(MAGIC_V1);
     baseCoder.append(aLoadout.getChassis().getId(), sb, 2);
     // Encode armour/structure/hs/guidance
@@ -237,19 +281,28 @@ public class MWOCoder {
         sb.append(ITEM_SEPARATOR);
         baseCoder.append(item.getId(), sb, 1, 6);
       }
-      sb.append(COMPONENT_TERMINATORS.get(location));
+      final char terminator = COMPONENT_TERMINATORS.get(location);
+      sb.append(terminator);
     }
 
     baseCoder.append(aLoadout.getComponent(Location.CenterTorso).getArmour(ArmourSide.BACK), sb, 2);
     baseCoder.append(aLoadout.getComponent(Location.LeftTorso).getArmour(ArmourSide.BACK), sb, 2);
     baseCoder.append(aLoadout.getComponent(Location.RightTorso).getArmour(ArmourSide.BACK), sb, 2);
-    return sb.toString();
   }
 
-  private void parseActuatorState(StringReader sr, LoadoutBuilder builder, final Loadout loadout)
-      throws DecodingException, IOException {
+  /**
+   * Reads a character like a {@link java.io.Reader} would, past the end of the input {@link
+   * #END_OF_INPUT} is returned.
+   */
+  private static char charAt(CharSequence aInput, int aIndex) {
+    return aIndex < aInput.length() ? aInput.charAt(aIndex) : END_OF_INPUT;
+  }
+
+  private int parseActuatorState(
+      CharSequence aInput, int aPosition, LoadoutBuilder builder, final Loadout loadout)
+      throws DecodingException {
 
-    final int actuatorState = baseCoder.parseExactly(sr, 1);
+    final int actuatorState = baseCoder.parseExactly(aInput, aPosition, 1);
     if (loadout instanceof final LoadoutOmniMech loadoutOmniMech) {
 
       final ConfiguredComponentOmniMech la = loadoutOmniMech.getComponent(Location.LeftArm);
@@ -266,13 +319,15 @@ public class MWOCoder {
         builder.push(new CmdToggleItem(null, loadoutOmniMech, ra, ItemDB.HA, false));
       }
     }
+    return aPosition + 1;
   }
 
-  private void parseBackArmour(StringReader sr, final LoadoutBuilder builder, final Loadout loadout)
-      throws DecodingException, IOException {
-    final int backArmourCT = baseCoder.parseExactly(sr, 2);
-    final int backArmourLT = baseCoder.parseExactly(sr, 2);
-    final int backArmourRT = baseCoder.parseExactly(sr, 2);
+  private void parseBackArmour(
+      CharSequence aInput, int aPosition, final LoadoutBuilder builder, final Loadout loadout)
+      throws DecodingException {
+    final int backArmourCT = baseCoder.parseExactly(aInput, aPosition, 2);
+    final int backArmourLT = baseCoder.parseExactly(aInput, aPosition + 2, 2);
+    final int backArmourRT = baseCoder.parseExactly(aInput, aPosition + 4, 2);
     builder.push(
         new CmdSetArmour(null, loadout, Location.CenterTorso, ArmourSide.BACK, backArmourCT, true));
     builder.push(
@@ -281,12 +336,18 @@ public class MWOCoder {
         new CmdSetArmour(null, loadout, Location.RightTorso, ArmourSide.BACK, backArmourRT, true));
   }
 
-  private void parseComponent(
-      StringReader sr, final LoadoutBuilder builder, final Loadout loadout, final Location location)
-      throws DecodingException, IOException {
+  private int parseComponent(
+      CharSequence aInput,
+      int aPosition,
+      final LoadoutBuilder builder,
+      final Loadout loadout,
+      final Location location)
+      throws DecodingException {
     final ConfiguredComponent component = loadout.getComponent(location);
 
-    final int frontArmour = baseCoder.parseExactly(sr, 2);
+    int position = aPosition;
+    final int frontArmour = baseCoder.parseExactly(aInput, position, 2);
+    position += 2;
     builder.push(
         new CmdSetArmour(
             null,
@@ -297,26 +358,31 @@ public class MWOCoder {
             true));
 
     if (location != Location.CenterTorso && loadout instanceof final LoadoutOmniMech omniMech) {
+      final int podChars = baseCoder.countAvailable(aInput, position, 6);
+      final int podId = baseCoder.parseExactly(aInput, position, podChars);
+      position += podChars;
       try {
-        final OmniPod omniPod = OmniPodDB.lookup(baseCoder.parseAvailable(sr, 6));
+        final OmniPod omniPod = OmniPodDB.lookup(podId);
         builder.push(new CmdSetOmniPod(null, omniMech, omniMech.getComponent(location), omniPod));
       } catch (final NoSuchItemException e) {
         builder.pushError(e);
       }
     }
 
-    char next = (char) sr.read();
+    char next = charAt(aInput, position++);
     while (ITEM_SEPARATOR == next) {
+      final int itemChars = baseCoder.countAvailable(aInput, position, 6);
+      final int itemId = baseCoder.parseExactly(aInput, position, itemChars);
+      position += itemChars;
       try {
-        final int itemId = baseCoder.parseAvailable(sr, 6);
         builder.push(new CmdAddItem(null, loadout, component, ItemDB.lookup(itemId)));
       } catch (final NoSuchItemException e) {
         builder.pushError(e);
       }
-      next = (char) sr.read();
+      next = charAt(aInput, position++);
     }
 
-    final Character expectedTerminator = COMPONENT_TERMINATORS.get(location);
+    final char expectedTerminator = COMPONENT_TERMINATORS.get(location);
     if (expectedTerminator != next) {
       final StringBuilder sb = new StringBuilder();
       sb.append("Malformed MWO export string! ");
@@ -325,12 +391,14 @@ public class MWOCoder {
       sb.append(expectedTerminator);
       throw new DecodingException(sb.toString());
     }
+    return position;
   }
 
-  private void parseUpgrades(StringReader sr, final LoadoutBuilder builder, final Loadout loadout)
-      throws DecodingException, IOException {
-    final int armourStructure = baseCoder.parseExactly(sr, 1);
-    final int guidanceHeatsinks = baseCoder.parseExactly(sr, 1);
+  private int parseUpgrades(
+      CharSequence aInput, int aPosition, final LoadoutBuilder builder, final Loadout loadout)
+      throws DecodingException {
+    final int armourStructure = baseCoder.parseExactly(aInput, aPosition, 1);
+    final int guidanceHeatsinks = baseCoder.parseExactly(aInput, aPosition + 1, 1);
     final boolean artemis = (guidanceHeatsinks & 1) != 0;
     final GuidanceUpgrade guidanceUpgrade = artemis ? UpgradeDB.ARTEMIS_IV : UpgradeDB.STD_GUIDANCE;
     builder.push(new CmdSetGuidanceType(null, loadout, guidanceUpgrade));
@@ -389,5 +457,6 @@ public class MWOCoder {
             new NoSuchItemException("Unknown structure upgrade type: " + structureType));
       }
     }
+    return aPosition + 2;
   }
 }
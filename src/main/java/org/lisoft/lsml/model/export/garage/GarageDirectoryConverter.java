@@ -0,0 +1,80 @@
+/*
+ * Li Song Mechlab - A 'mech building tool for PGI's MechWarrior: Online.
+ * Copyright (C) 2013-2023  Li Song
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.lisoft.lsml.model.export.garage;
+
+import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.reflection.ReflectionConverter;
+import com.thoughtworks.xstream.converters.reflection.ReflectionProvider;
+import com.thoughtworks.xstream.io.HierarchicalStreamDriver;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import com.thoughtworks.xstream.io.copy.HierarchicalStreamCopier;
+import com.thoughtworks.xstream.mapper.Mapper;
+import java.io.ByteArrayInputStream;
+import org.lisoft.lsml.model.garage.GarageDirectory;
+import org.lisoft.lsml.model.garage.LazyValue;
+
+/**
+ * XStream converter for {@link GarageDirectory}. Writes the same XML as the default reflection
+ * converter, but copies the XML of values that haven't been decoded yet straight to the output
+ * instead of decoding them. Reading is left to the reflection converter.
+ *
+ * @author Li Song
+ */
+public class GarageDirectoryConverter extends ReflectionConverter {
+  private final HierarchicalStreamDriver driver;
+
+  public GarageDirectoryConverter(
+      Mapper aMapper, ReflectionProvider aReflectionProvider, HierarchicalStreamDriver aDriver) {
+    super(aMapper, aReflectionProvider);
+    driver = aDriver;
+  }
+
+  @Override
+  public boolean canConvert(Class aClass) {
+    return GarageDirectory.class == aClass;
+  }
+
+  @Override
+  public void marshal(
+      Object aOriginal, HierarchicalStreamWriter aWriter, MarshallingContext aContext) {
+    final GarageDirectory<?> directory = (GarageDirectory<?>) aOriginal;
+    aWriter.addAttribute(
+        mapper.serializedMember(GarageDirectory.class, "name"), directory.getName());
+
+    aWriter.startNode(mapper.serializedMember(GarageDirectory.class, "children"));
+    for (final GarageDirectory<?> child : directory.getDirectories()) {
+      aWriter.startNode(mapper.serializedClass(GarageDirectory.class));
+      aContext.convertAnother(child);
+      aWriter.endNode();
+    }
+    aWriter.endNode();
+
+    final HierarchicalStreamCopier copier = new HierarchicalStreamCopier();
+    aWriter.startNode(mapper.serializedMember(GarageDirectory.class, "values"));
+    for (final Object entry : directory.getEntries()) {
+      if (entry instanceof final LazyValue<?> lazyValue) {
+        copier.copy(driver.createReader(new ByteArrayInputStream(lazyValue.getBody())), aWriter);
+      } else {
+        aWriter.startNode(mapper.serializedClass(entry.getClass()));
+        aContext.convertAnother(entry);
+        aWriter.endNode();
+      }
+    }
+    aWriter.endNode();
+  }
+}
@@ -26,11 +26,18 @@ import org.lisoft.lsml.util.ListArrayUtils;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
  * This class is a folder that can contain sub-folders and mechs.
+ * <p>
+ * The values of a directory that was loaded from a garage index are not decoded until {@link #getValues()} is first
+ * called. Until then the directory holds {@link LazyValue}s, which can be moved around with the directory, named and
+ * saved without being decoded.
  *
  * @param <T> The type of values in this garage directory.
  * @author Li Song
@@ -39,8 +46,13 @@ import java.util.Optional;
 public class GarageDirectory<T> {
     private final List<GarageDirectory<T>> children = new ArrayList<>();
     private final List<T> values = new ArrayList<>();
+    // Values that couldn't be decoded, kept so that they're saved as they are.
+    private transient List<LazyValue<T>> failed;
+    // Not initialised here as XStream doesn't call the constructor.
+    private transient List<Object> lazy;
     @XStreamAsAttribute
     private String name;
+    private transient Map<Object, LazyValue<T>> origins;
 
     /**
      * Creates a default unnamed directory.
@@ -66,8 +78,9 @@ public class GarageDirectory<T> {
         if (aObj instanceof GarageDirectory) {
             @SuppressWarnings("unchecked")
             final GarageDirectory<Object> that = (GarageDirectory<Object>) aObj;
-            return ListArrayUtils.equalsUnordered(values, that.values) &&
-                   ListArrayUtils.equalsUnordered(children, that.children) && name.equals(that.name);
+            // Compare names first so that siblings can be told apart without decoding them
+            return name.equals(that.name) && ListArrayUtils.equalsUnordered(children, that.children) &&
+                   ListArrayUtils.equalsUnordered(getValues(), that.getValues());
         }
         return false;
     }
@@ -90,6 +103,22 @@ public class GarageDirectory<T> {
         return children;
     }
 
+    /**
+     * @return The values of this directory in order, undecoded values are represented by their {@link LazyValue}.
+     * Values that failed to decode follow the decoded values. The list must not be modified.
+     */
+    public List<Object> getEntries() {
+        if (null != lazy) {
+            return Collections.unmodifiableList(lazy);
+        }
+        if (null != failed) {
+            final List<Object> entries = new ArrayList<>(values);
+            entries.addAll(failed);
+            return Collections.unmodifiableList(entries);
+        }
+        return Collections.unmodifiableList(values);
+    }
+
     /**
      * @return the name of this {@link GarageDirectory}.
      */
@@ -98,9 +127,52 @@ public class GarageDirectory<T> {
     }
 
     /**
+     * @return The names of the values in this directory as given by their <code>toString()</code>, without decoding
+     * them.
+     */
+    public List<String> getValueNames() {
+        final List<String> names = new ArrayList<>();
+        for (final Object entry : getEntries()) {
+            names.add(entry.toString());
+        }
+        return names;
+    }
+
+    /**
+     * Gets the values of this directory, decoding any values that haven't been decoded yet. Values that fail to decode
+     * are left out, {@link LazyValue#get()} keeps throwing the failure so that it can be reported.
+     *
      * @return A {@link List} of {@link Loadout} in this directory.
      */
     public List<T> getValues() {
+        if (null != lazy) {
+            if (null == origins) {
+                origins = new IdentityHashMap<>();
+            }
+            for (final Object entry : lazy) {
+                if (entry instanceof LazyValue<?>) {
+                    @SuppressWarnings("unchecked")
+                    final LazyValue<T> lazyValue = (LazyValue<T>) entry;
+                    final T value;
+                    try {
+                        value = lazyValue.get();
+                    } catch (RuntimeException e) {
+                        if (null == failed) {
+                            failed = new ArrayList<>();
+                        }
+                        failed.add(lazyValue);
+                        continue;
+                    }
+                    origins.put(value, lazyValue);
+                    values.add(value);
+                } else {
+                    @SuppressWarnings("unchecked")
+                    final T value = (T) entry;
+                    values.add(value);
+                }
+            }
+            lazy = null;
+        }
         return values;
     }
 
@@ -110,10 +182,17 @@ public class GarageDirectory<T> {
         int result = 1;
         result = prime * result + children.hashCode();
         result = prime * result + name.hashCode();
-        result = prime * result + values.hashCode();
+        result = prime * result + getValues().hashCode();
         return result;
     }
 
+    /**
+     * @return <code>true</code> if all values of this directory have been decoded, sub directories are not considered.
+     */
+    public boolean isDecoded() {
+        return null == lazy;
+    }
+
     /**
      * Recursively creates the given path of directories under this directory. Directories that already exist with those
      * names are re-used. Leading and tailing spaces are trimmed of path components.
@@ -171,8 +250,34 @@ public class GarageDirectory<T> {
         return getName();
     }
 
+    /**
+     * @param aValue A value in this directory.
+     * @return The {@link LazyValue} the given value was decoded from by this directory, or <code>null</code>.
+     */
+    LazyValue<T> originOf(Object aValue) {
+        return null == origins ? null : origins.get(aValue);
+    }
+
+    /**
+     * Replaces the values of this directory.
+     *
+     * @param aEntries The new values, may contain {@link LazyValue}s for values that haven't been decoded.
+     */
+    void setEntries(List<?> aEntries) {
+        values.clear();
+        lazy = null;
+        failed = null;
+        if (aEntries.stream().anyMatch(aEntry -> aEntry instanceof LazyValue<?>)) {
+            lazy = new ArrayList<>(aEntries);
+        } else {
+            @SuppressWarnings("unchecked")
+            final List<T> decoded = (List<T>) aEntries;
+            values.addAll(decoded);
+        }
+    }
+
     private Optional<GaragePath<T>> findIt(T aToFind, GaragePath<T> aThisPath) {
-        if (values.contains(aToFind)) {
+        if (getValues().contains(aToFind)) {
             return Optional.of(new GaragePath<>(aThisPath, aToFind));
         }
         for (final GarageDirectory<T> dir : children) {
@@ -0,0 +1,205 @@
+/*
+ * Li Song Mechlab - A 'mech building tool for PGI's MechWarrior: Online.
+ * Copyright (C) 2013-2023  Li Song
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.lisoft.lsml.model.garage;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.lisoft.lsml.model.NamedObject;
+import org.lisoft.lsml.model.loadout.Loadout;
+import org.lisoft.lsml.util.FileUtils;
+
+/**
+ * A side file to the garage file that allows the garage to be opened without decoding every value.
+ *
+ * <p>The index holds the directory tree of the garage and for every value its header (name and
+ * chassis) and XML, stored separately. Opening the garage from the index only reads the directory
+ * tree and headers, values are held as {@link LazyValue}s and decoded when their directory is
+ * first accessed or when prefetched in the background.
+ *
+ * <p>The garage file remains the primary storage. The index header holds the length and checksum
+ * of the garage file it was written for, an index that doesn't match the garage file is ignored
+ * and the garage is loaded in full.
+ *
+ * @author Li Song
+ */
+public class GarageIndex {
+  private static final int HEADER_SIZE = 28;
+  private static final int MAGIC = 0x4C534931; // "LSI1"
+
+  private GarageIndex() {
+    // Utility class
+  }
+
+  /**
+   * @param aGarageFile The garage file.
+   * @return The index file for the given garage file.
+   */
+  public static File fileFor(File aGarageFile) {
+    return new File(aGarageFile.getParentFile(), aGarageFile.getName() + ".index");
+  }
+
+  /**
+   * Opens a garage from its index without decoding the values.
+   *
+   * @param aFile The index file.
+   * @param aSnapshot The contents of the garage file.
+   * @param aSerializer The {@link GarageSerializer} to decode values with.
+   * @return The garage, or <code>null</code> if there is no index for the given garage file.
+   * @throws IOException if the index couldn't be read.
+   */
+  public static Garage load(File aFile, byte[] aSnapshot, GarageSerializer aSerializer)
+      throws IOException {
+    if (!aFile.exists()) {
+      return null;
+    }
+
+    final ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(aFile.toPath()));
+    if (data.remaining() < HEADER_SIZE
+        || data.getInt() != MAGIC
+        || data.getLong() != aSnapshot.length
+        || data.getLong() != GarageJournal.checksum(aSnapshot)) {
+      return null;
+    }
+    final long checksum = data.getLong();
+    final byte[] payload = new byte[data.remaining()];
+    data.get(payload);
+    if (GarageJournal.checksum(payload) != checksum) {
+      return null;
+    }
+
+    final DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+    final Garage garage = new Garage();
+    read(in, garage.getLoadoutRoot(), aSerializer);
+    read(in, garage.getDropShipRoot(), aSerializer);
+    return garage;
+  }
+
+  /**
+   * Collects the values of the garage that haven't been decoded. The returned values can be
+   * decoded on any thread to prefetch them.
+   *
+   * @param aGarage The garage to search.
+   * @return A {@link List} of {@link LazyValue}s in the order they appear in the garage.
+   */
+  public static List<LazyValue<?>> pending(Garage aGarage) {
+    final List<LazyValue<?>> ans = new ArrayList<>();
+    pending(aGarage.getLoadoutRoot(), ans);
+    pending(aGarage.getDropShipRoot(), ans);
+    return ans;
+  }
+
+  /**
+   * Writes the index for a garage file.
+   *
+   * @param aFile The index file to write.
+   * @param aGarage The garage in the state it was written to the garage file.
+   * @param aSnapshot The contents of the garage file.
+   * @param aSerializer The {@link GarageSerializer} to write values with.
+   * @throws IOException if the index couldn't be written.
+   */
+  public static void write(
+      File aFile, Garage aGarage, byte[] aSnapshot, GarageSerializer aSerializer)
+      throws IOException {
+    final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream(payload);
+    write(out, aGarage.getLoadoutRoot(), aSerializer);
+    write(out, aGarage.getDropShipRoot(), aSerializer);
+    final byte[] bytes = payload.toByteArray();
+
+    final ByteBuffer file = ByteBuffer.allocate(HEADER_SIZE + bytes.length);
+    file.putInt(MAGIC);
+    file.putLong(aSnapshot.length);
+    file.putLong(GarageJournal.checksum(aSnapshot));
+    file.putLong(GarageJournal.checksum(bytes));
+    file.put(bytes);
+    FileUtils.writeAtomically(aFile, file.array());
+  }
+
+  private static void pending(GarageDirectory<?> aDirectory, List<LazyValue<?>> aPending) {
+    for (final Object entry : aDirectory.getEntries()) {
+      if (entry instanceof final LazyValue<?> lazyValue) {
+        aPending.add(lazyValue);
+      }
+    }
+    for (final GarageDirectory<?> child : aDirectory.getDirectories()) {
+      pending(child, aPending);
+    }
+  }
+
+  private static <T> void read(
+      DataInputStream aIn, GarageDirectory<T> aDirectory, GarageSerializer aSerializer)
+      throws IOException {
+    aDirectory.setName(aIn.readUTF());
+    for (int i = aIn.readInt(); i > 0; --i) {
+      final GarageDirectory<T> child = new GarageDirectory<>();
+      read(aIn, child, aSerializer);
+      aDirectory.getDirectories().add(child);
+    }
+
+    final List<LazyValue<T>> entries = new ArrayList<>();
+    for (int i = aIn.readInt(); i > 0; --i) {
+      final String name = aIn.readUTF();
+      final String chassis = aIn.readBoolean() ? aIn.readUTF() : null;
+      final byte[] body = new byte[aIn.readInt()];
+      aIn.readFully(body);
+      entries.add(new LazyValue<>(name, chassis, body, aSerializer));
+    }
+    aDirectory.setEntries(entries);
+  }
+
+  private static void write(
+      DataOutputStream aOut, GarageDirectory<?> aDirectory, GarageSerializer aSerializer)
+      throws IOException {
+    aOut.writeUTF(aDirectory.getName());
+    aOut.writeInt(aDirectory.getDirectories().size());
+    for (final GarageDirectory<?> child : aDirectory.getDirectories()) {
+      write(aOut, child, aSerializer);
+    }
+
+    final List<Object> entries = aDirectory.getEntries();
+    aOut.writeInt(entries.size());
+    for (final Object entry : entries) {
+      final String name;
+      final String chassis;
+      final byte[] body;
+      if (entry instanceof final LazyValue<?> lazyValue) {
+        name = lazyValue.getName();
+        chassis = lazyValue.getChassis();
+        body = lazyValue.getBody();
+      } else {
+        final NamedObject value = (NamedObject) entry;
+        name = value.getName();
+        chassis =
+            value instanceof final Loadout loadout ? loadout.getChassis().getShortName() : null;
+        final ByteArrayOutputStream xml = new ByteArrayOutputStream();
+        aSerializer.saveValue(xml, value);
+        body = xml.toByteArray();
+      }
+      aOut.writeUTF(name);
+      aOut.writeBoolean(null != chassis);
+      if (null != chassis) {
+        aOut.writeUTF(chassis);
+      }
+      aOut.writeInt(body.length);
+      aOut.write(body);
+    }
+  }
+}
@@ -0,0 +1,569 @@
+/*
+ * Li Song Mechlab - A 'mech building tool for PGI's MechWarrior: Online.
+ * Copyright (C) 2013-2023  Li Song
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.lisoft.lsml.model.garage;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+import org.lisoft.lsml.model.NamedObject;
+import org.lisoft.lsml.model.loadout.Loadout;
+import org.lisoft.lsml.util.FileUtils;
+
+/**
+ * An append-only log of the changes made to a {@link Garage} since it was last written to disk in
+ * full (the snapshot). The journal is kept next to the garage file and replayed on top of the
+ * snapshot when the garage is opened, so that changes survive a crash without rewriting the whole
+ * garage on every auto save.
+ *
+ * <p>Every directory and value (loadout or drop ship) in the garage has an id. The snapshot
+ * objects are numbered in the order they are visited by a depth first walk, objects created later
+ * get the next free id. Each call to {@link #append(Garage)} writes one batch of records:
+ *
+ * <ul>
+ *   <li>A value record holds the full XML of a value that was added or modified.
+ *   <li>A directory record holds the name, sub directories and values of a directory that was
+ *       added, renamed or had its contents changed by adding, removing or moving something.
+ * </ul>
+ *
+ * <p>Each batch is written as a frame with its length and a CRC32 checksum. A crash while writing
+ * leaves a torn frame at the end of the log, which is detected and discarded on the next open, so
+ * either all or none of the changes of an auto save are recovered. The journal header holds the
+ * length and checksum of the snapshot it applies to. Once a new snapshot is written the old
+ * journal no longer matches and is ignored, so it doesn't matter if the application dies between
+ * writing the snapshot and starting the new journal.
+ *
+ * <p>Changes are detected by comparing the garage against what was last journaled, values are
+ * considered changed when their name, modification count, fingerprint or weapon groups change.
+ *
+ * @author Li Song
+ */
+public class GarageJournal {
+  private record DirectoryState(String name, List<Integer> directories, List<Integer> values) {}
+
+  /** The state of the garage as seen by a scan. */
+  private static final class Scan {
+    private final Map<Integer, DirectoryState> directories = new HashMap<>();
+    private final Map<Object, Integer> ids = new IdentityHashMap<>();
+    private final Map<Integer, Long> versions = new HashMap<>();
+    private int nextId;
+  }
+
+  private static final byte DIRECTORY_RECORD = 1;
+  private static final int FRAME_HEADER_SIZE = 8;
+  private static final int HEADER_SIZE = 20;
+  private static final int MAGIC = 0x4C534A31; // "LSJ1"
+  private static final byte VALUE_RECORD = 2;
+  private final File file;
+  private final GarageSerializer serializer;
+  private int replayedBatches;
+  private volatile long size;
+  private volatile boolean started;
+  private Scan state = new Scan();
+
+  private GarageJournal(File aFile, GarageSerializer aSerializer) {
+    file = aFile;
+    serializer = aSerializer;
+  }
+
+  /**
+   * @param aData The data to compute a checksum of.
+   * @return The checksum used to match a journal to its snapshot.
+   */
+  public static long checksum(byte[] aData) {
+    final CRC32 crc = new CRC32();
+    crc.update(aData);
+    return crc.getValue();
+  }
+
+  /**
+   * Starts a new, empty journal for a garage that has just been written to a snapshot. Any existing
+   * journal is replaced.
+   *
+   * @param aFile The journal file.
+   * @param aGarage The garage, must be in the state that was written to the snapshot.
+   * @param aSnapshot The contents of the snapshot.
+   * @param aSerializer The {@link GarageSerializer} to write values with.
+   * @return A new {@link GarageJournal}.
+   * @throws IOException if the journal couldn't be written.
+   */
+  public static GarageJournal create(
+      File aFile, Garage aGarage, byte[] aSnapshot, GarageSerializer aSerializer)
+      throws IOException {
+    final GarageJournal journal = prepare(aFile, aGarage, aSerializer);
+    journal.start(aSnapshot);
+    return journal;
+  }
+
+  /**
+   * Prepares a new, empty journal for a garage that is about to be written to a snapshot. Changes
+   * made to the garage after this call can be prepared with {@link #prepareBatch(Garage)} right
+   * away, but nothing is written to the journal until {@link #start(byte[])} has been called with
+   * the written snapshot.
+   *
+   * @param aFile The journal file.
+   * @param aGarage The garage, must be in the state that will be written to the snapshot.
+   * @param aSerializer The {@link GarageSerializer} to write values with.
+   * @return A new {@link GarageJournal}.
+   * @throws IOException if the garage couldn't be scanned.
+   */
+  public static GarageJournal prepare(File aFile, Garage aGarage, GarageSerializer aSerializer)
+      throws IOException {
+    final GarageJournal journal = new GarageJournal(aFile, aSerializer);
+    journal.size = HEADER_SIZE;
+    journal.state = journal.scan(aGarage, numberSnapshot(aGarage), null);
+    return journal;
+  }
+
+  /**
+   * @param aGarageFile The garage file.
+   * @return The journal file for the given garage file.
+   */
+  public static File fileFor(File aGarageFile) {
+    return new File(aGarageFile.getParentFile(), aGarageFile.getName() + ".journal");
+  }
+
+  /**
+   * Opens the journal for a garage that has just been loaded from a snapshot. If the journal
+   * belongs to the snapshot, all complete batches in it are replayed onto the garage and any torn
+   * batch at the end is discarded. Otherwise a new journal is started.
+   *
+   * @param aFile The journal file.
+   * @param aGarage The garage loaded from the snapshot, will be modified by the replay.
+   * @param aSnapshot The contents of the snapshot.
+   * @param aSerializer The {@link GarageSerializer} to read and write values with.
+   * @return A {@link GarageJournal} ready to {@link #append(Garage)} further changes to.
+   * @throws IOException if the journal couldn't be read or contained invalid records.
+   */
+  public static GarageJournal open(
+      File aFile, Garage aGarage, byte[] aSnapshot, GarageSerializer aSerializer)
+      throws IOException {
+    if (!aFile.exists()) {
+      return create(aFile, aGarage, aSnapshot, aSerializer);
+    }
+
+    final ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(aFile.toPath()));
+    if (data.remaining() < HEADER_SIZE
+        || data.getInt() != MAGIC
+        || data.getLong() != aSnapshot.length
+        || data.getLong() != checksum(aSnapshot)) {
+      return create(aFile, aGarage, aSnapshot, aSerializer);
+    }
+
+    final GarageJournal journal = new GarageJournal(aFile, aSerializer);
+    journal.started = true;
+    final Map<Object, Integer> ids = numberSnapshot(aGarage);
+    final Map<Integer, Object> objects = new HashMap<>();
+    final Map<Integer, Integer> parents = new HashMap<>();
+    ids.forEach((aObject, aId) -> objects.put(aId, aObject));
+    findParents(aGarage.getLoadoutRoot(), ids, parents);
+    findParents(aGarage.getDropShipRoot(), ids, parents);
+
+    int end = HEADER_SIZE;
+    while (data.remaining() >= FRAME_HEADER_SIZE) {
+      final int length = data.getInt();
+      final int crc = data.getInt();
+      if (length < 0 || length > data.remaining()) {
+        break; // Torn write
+      }
+      final byte[] payload = new byte[length];
+      data.get(payload);
+      if ((int) checksum(payload) != crc) {
+        break; // Torn write
+      }
+      journal.replay(payload, objects, parents);
+      journal.replayedBatches++;
+      end = data.position();
+    }
+
+    if (end < data.capacity()) {
+      try (FileChannel channel = FileChannel.open(aFile.toPath(), StandardOpenOption.WRITE)) {
+        channel.truncate(end);
+      }
+    }
+    journal.size = end;
+
+    final Map<Object, Integer> replayedIds = new IdentityHashMap<>();
+    objects.forEach((aId, aObject) -> replayedIds.put(aObject, aId));
+    journal.state = journal.scan(aGarage, replayedIds, null);
+    return journal;
+  }
+
+  private static void findParents(
+      GarageDirectory<?> aDirectory, Map<Object, Integer> aIds, Map<Integer, Integer> aParents) {
+    final int id = aIds.get(aDirectory);
+    for (final Object entry : aDirectory.getEntries()) {
+      aParents.put(aIds.get(keyOf(aDirectory, entry)), id);
+    }
+    for (final GarageDirectory<?> child : aDirectory.getDirectories()) {
+      findParents(child, aIds, aParents);
+    }
+  }
+
+  /** Numbers the objects of a garage in the order the snapshot ids are defined by. */
+  private static Map<Object, Integer> numberSnapshot(Garage aGarage) {
+    final Map<Object, Integer> ids = new IdentityHashMap<>();
+    numberSnapshot(aGarage.getLoadoutRoot(), ids);
+    numberSnapshot(aGarage.getDropShipRoot(), ids);
+    return ids;
+  }
+
+  private static void numberSnapshot(GarageDirectory<?> aDirectory, Map<Object, Integer> aIds) {
+    aIds.putIfAbsent(aDirectory, aIds.size());
+    for (final Object entry : aDirectory.getEntries()) {
+      aIds.putIfAbsent(keyOf(aDirectory, entry), aIds.size());
+    }
+    for (final GarageDirectory<?> child : aDirectory.getDirectories()) {
+      numberSnapshot(child, aIds);
+    }
+  }
+
+  /**
+   * Values that were decoded from a {@link LazyValue} keep the identity of the {@link LazyValue} so
+   * that decoding doesn't look like a change.
+   *
+   * @param aDirectory The directory that holds the entry.
+   * @param aEntry A value or {@link LazyValue} in the directory.
+   * @return The object that identifies the entry in the journal.
+   */
+  private static Object keyOf(GarageDirectory<?> aDirectory, Object aEntry) {
+    final LazyValue<?> origin = aDirectory.originOf(aEntry);
+    return null == origin ? aEntry : origin;
+  }
+
+  /**
+   * @param aDirectory The directory that holds the entry.
+   * @param aEntry A value or {@link LazyValue} in the directory.
+   * @return A value that changes whenever the given entry is modified.
+   */
+  private static long versionOf(GarageDirectory<?> aDirectory, Object aEntry) {
+    if (aEntry instanceof final LazyValue<?> lazyValue) {
+      return lazyValue.getVersion();
+    }
+    final LazyValue<?> origin = aDirectory.originOf(aEntry);
+    if (null != origin && origin.isUnmodified(aEntry)) {
+      return origin.getVersion();
+    }
+    return version(aEntry);
+  }
+
+  /**
+   * @param aValue A loadout or drop ship.
+   * @return A value that changes whenever the given value is modified.
+   */
+  static long version(Object aValue) {
+    if (aValue instanceof final Loadout loadout) {
+      long ans = loadout.getFingerprint();
+      ans = 31 * ans + loadout.getModificationCount();
+      ans = 31 * ans + loadout.getWeaponGroups().hashCode();
+      return 31 * ans + loadout.getName().hashCode();
+    } else if (aValue instanceof final DropShip dropShip) {
+      long ans = 31L * dropShip.getName().hashCode() + dropShip.getFaction().ordinal();
+      for (int i = 0; i < DropShip.MECHS_IN_DROPSHIP; ++i) {
+        final Loadout mech = dropShip.getMech(i);
+        ans = 31 * ans + (null == mech ? 0 : System.identityHashCode(mech) + version(mech));
+      }
+      return ans;
+    }
+    throw new IllegalArgumentException("Unsupported garage value: " + aValue);
+  }
+
+  /**
+   * Writes a batch of records for all changes made to the garage since the journal was opened or
+   * last appended to. Does nothing if nothing has changed.
+   *
+   * <p>If writing fails, the journal is restored to its previous length and the changes will be
+   * included in the next append.
+   *
+   * @param aGarage The garage the journal belongs to.
+   * @return <code>true</code> if any changes were written.
+   * @throws IOException if the journal couldn't be written.
+   */
+  public boolean append(Garage aGarage) throws IOException {
+    final Scan previous = state;
+    final byte[] frame = prepareBatch(aGarage);
+    if (null == frame) {
+      return false;
+    }
+    try {
+      write(frame);
+    } catch (final IOException e) {
+      state = previous;
+      throw e;
+    }
+    return true;
+  }
+
+  /**
+   * @return The number of batches that were replayed when the journal was opened.
+   */
+  public int getReplayedBatches() {
+    return replayedBatches;
+  }
+
+  /**
+   * @return The size of the journal file in bytes. Batches that have been prepared but not yet
+   *     written are not included.
+   */
+  public long getSize() {
+    return size;
+  }
+
+  /**
+   * @return <code>true</code> if the journal file has been written, see {@link #start(byte[])}.
+   */
+  public boolean isStarted() {
+    return started;
+  }
+
+  /**
+   * Prepares a batch of records for all changes made to the garage since the last batch was
+   * prepared. Changed values are serialised by this call, the batch can then be written on another
+   * thread with {@link #write(byte[])}. Batches must be written in the order they were prepared.
+   *
+   * @param aGarage The garage the journal belongs to.
+   * @return The batch to write, or <code>null</code> if nothing has changed.
+   * @throws IOException if the changes couldn't be serialised.
+   */
+  public byte[] prepareBatch(Garage aGarage) throws IOException {
+    final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+    final Scan scan = scan(aGarage, state.ids, new DataOutputStream(payload));
+    state = scan;
+    if (payload.size() == 0) {
+      return null;
+    }
+
+    final byte[] bytes = payload.toByteArray();
+    final ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_SIZE + bytes.length);
+    frame.putInt(bytes.length);
+    frame.putInt((int) checksum(bytes));
+    frame.put(bytes);
+    return frame.array();
+  }
+
+  /**
+   * Writes the journal header for the snapshot that the journal was prepared for.
+   *
+   * @param aSnapshot The contents of the written snapshot.
+   * @throws IOException if the journal couldn't be written.
+   */
+  public void start(byte[] aSnapshot) throws IOException {
+    final ByteArrayOutputStream header = new ByteArrayOutputStream(HEADER_SIZE);
+    final DataOutputStream out = new DataOutputStream(header);
+    out.writeInt(MAGIC);
+    out.writeLong(aSnapshot.length);
+    out.writeLong(checksum(aSnapshot));
+    FileUtils.writeAtomically(file, header.toByteArray());
+    size = HEADER_SIZE;
+    started = true;
+  }
+
+  /**
+   * Appends a batch prepared by {@link #prepareBatch(Garage)} to the journal file. Batches for a
+   * journal that hasn't been started are dropped, as the snapshot that starts the journal was
+   * either never written or already contains the changes.
+   *
+   * <p>If writing fails, the journal is restored to its previous length.
+   *
+   * @param aFrame The batch to write.
+   * @return <code>true</code> if the batch was written.
+   * @throws IOException if the journal couldn't be written.
+   */
+  public boolean write(byte[] aFrame) throws IOException {
+    if (!started) {
+      return false;
+    }
+    final ByteBuffer frame = ByteBuffer.wrap(aFrame);
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+      try {
+        channel.position(size);
+        while (frame.hasRemaining()) {
+          channel.write(frame);
+        }
+        channel.force(false);
+      } catch (final IOException e) {
+        // Don't leave a torn frame that would hide later batches
+        channel.truncate(size);
+        throw e;
+      }
+    }
+    size += aFrame.length;
+    return true;
+  }
+
+  private void replay(
+      byte[] aPayload, Map<Integer, Object> aObjects, Map<Integer, Integer> aParents)
+      throws IOException {
+    final Map<Integer, NamedObject> values = new LinkedHashMap<>();
+    final Map<Integer, DirectoryState> directories = new LinkedHashMap<>();
+    final DataInputStream in = new DataInputStream(new ByteArrayInputStream(aPayload));
+    while (in.available() > 0) {
+      final byte type = in.readByte();
+      final int id = in.readInt();
+      if (type == VALUE_RECORD) {
+        final byte[] xml = new byte[in.readInt()];
+        in.readFully(xml);
+        try {
+          values.put(id, serializer.loadValue(new ByteArrayInputStream(xml)));
+        } catch (final RuntimeException e) {
+          throw new IOException("Unable to read garage value " + id + " from the journal.", e);
+        }
+      } else if (type == DIRECTORY_RECORD) {
+        final String name = in.readUTF();
+        final List<Integer> children = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; --i) {
+          children.add(in.readInt());
+        }
+        final List<Integer> contents = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; --i) {
+          contents.add(in.readInt());
+        }
+        directories.put(id, new DirectoryState(name, children, contents));
+      } else {
+        throw new IOException("Unknown journal record type: " + type);
+      }
+    }
+
+    for (final Map.Entry<Integer, NamedObject> entry : values.entrySet()) {
+      final Object old = aObjects.put(entry.getKey(), entry.getValue());
+      final Integer parent = aParents.get(entry.getKey());
+      if (null != old && null != parent) {
+        final GarageDirectory<?> directory = (GarageDirectory<?>) aObjects.get(parent);
+        final List<Object> siblings = new ArrayList<>(directory.getEntries());
+        for (int i = 0; i < siblings.size(); ++i) {
+          if (keyOf(directory, siblings.get(i)) == old) {
+            siblings.set(i, entry.getValue());
+          }
+        }
+        directory.setEntries(siblings);
+      }
+    }
+
+    for (final Map.Entry<Integer, DirectoryState> entry : directories.entrySet()) {
+      final DirectoryState directoryState = entry.getValue();
+      @SuppressWarnings("unchecked")
+      final GarageDirectory<Object> directory =
+          (GarageDirectory<Object>)
+              aObjects.computeIfAbsent(entry.getKey(), aKey -> new GarageDirectory<>());
+      directory.setName(directoryState.name());
+      directory.getDirectories().clear();
+      for (final int child : directoryState.directories()) {
+        @SuppressWarnings("unchecked")
+        final GarageDirectory<Object> childDirectory =
+            (GarageDirectory<Object>)
+                aObjects.computeIfAbsent(child, aKey -> new GarageDirectory<>());
+        directory.getDirectories().add(childDirectory);
+      }
+      final List<Object> contents = new ArrayList<>();
+      for (final int value : directoryState.values()) {
+        final Object object = aObjects.get(value);
+        if (null == object) {
+          throw new IOException("Journal refers to unknown garage value: " + value);
+        }
+        contents.add(object);
+        aParents.put(value, entry.getKey());
+      }
+      directory.setEntries(contents);
+    }
+  }
+
+  /**
+   * Scans the garage, assigning ids to new objects and writing records for everything that differs
+   * from the current state.
+   *
+   * @param aGarage The garage to scan.
+   * @param aIds The ids of already known objects.
+   * @param aOut Where to write records, or <code>null</code> to only record the state.
+   * @return The state of the garage. Objects no longer in the garage are dropped.
+   */
+  private Scan scan(Garage aGarage, Map<Object, Integer> aIds, DataOutputStream aOut)
+      throws IOException {
+    final Scan scan = new Scan();
+    for (final int id : aIds.values()) {
+      scan.nextId = Math.max(scan.nextId, id + 1);
+    }
+    scan.nextId = Math.max(scan.nextId, state.nextId);
+    scan(aGarage.getLoadoutRoot(), aIds, scan, aOut);
+    scan(aGarage.getDropShipRoot(), aIds, scan, aOut);
+    return scan;
+  }
+
+  private int scan(
+      GarageDirectory<?> aDirectory, Map<Object, Integer> aIds, Scan aScan, DataOutputStream aOut)
+      throws IOException {
+    final int id = idOf(aDirectory, aIds, aScan);
+
+    final List<Integer> values = new ArrayList<>();
+    for (final Object entry : aDirectory.getEntries()) {
+      final int valueId = idOf(keyOf(aDirectory, entry), aIds, aScan);
+      final long version = versionOf(aDirectory, entry);
+      values.add(valueId);
+      aScan.versions.put(valueId, version);
+      if (null != aOut && !Long.valueOf(version).equals(state.versions.get(valueId))) {
+        final ByteArrayOutputStream xml = new ByteArrayOutputStream();
+        if (entry instanceof final LazyValue<?> lazyValue) {
+          xml.write(lazyValue.getBody());
+        } else {
+          serializer.saveValue(xml, (NamedObject) entry);
+        }
+        aOut.writeByte(VALUE_RECORD);
+        aOut.writeInt(valueId);
+        aOut.writeInt(xml.size());
+        xml.writeTo(aOut);
+      }
+    }
+
+    final List<Integer> children = new ArrayList<>();
+    for (final GarageDirectory<?> child : aDirectory.getDirectories()) {
+      children.add(scan(child, aIds, aScan, aOut));
+    }
+
+    final DirectoryState directoryState =
+        new DirectoryState(aDirectory.getName(), children, values);
+    aScan.directories.put(id, directoryState);
+    if (null != aOut && !directoryState.equals(state.directories.get(id))) {
+      aOut.writeByte(DIRECTORY_RECORD);
+      aOut.writeInt(id);
+      aOut.writeUTF(directoryState.name());
+      aOut.writeInt(children.size());
+      for (final int child : children) {
+        aOut.writeInt(child);
+      }
+      aOut.writeInt(values.size());
+      for (final int value : values) {
+        aOut.writeInt(value);
+      }
+    }
+    return id;
+  }
+
+  private int idOf(Object aObject, Map<Object, Integer> aIds, Scan aScan) {
+    Integer id = aScan.ids.get(aObject);
+    if (null == id) {
+      id = aIds.get(aObject);
+      if (null == id) {
+        id = aScan.nextId++;
+      }
+      aScan.ids.put(aObject, id);
+    }
+    return id;
+  }
+}
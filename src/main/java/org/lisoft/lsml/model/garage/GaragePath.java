@@ -117,7 +117,7 @@ public class GaragePath<T> {
   public static boolean isNameAvailalble(GaragePath<?> aPath, String aName) {
     final GarageDirectory<?> dir = aPath.getTopDirectory();
     return !ListArrayUtils.containsByToString(aName, dir.getDirectories())
-        && !ListArrayUtils.containsByToString(aName, dir.getValues());
+        && !ListArrayUtils.containsByToString(aName, dir.getValueNames());
   }
 
   /**
@@ -24,6 +24,7 @@ import java.io.OutputStream;
 import java.util.Objects;
 import javax.inject.Inject;
 import org.lisoft.lsml.application.ErrorReporter;
+import org.lisoft.lsml.model.NamedObject;
 import org.lisoft.lsml.model.export.garage.*;
 import org.lisoft.lsml.model.loadout.*;
 import org.lisoft.mwo_data.equipment.Item;
@@ -62,8 +63,31 @@ public class GarageSerializer {
     stream.toXML(Objects.requireNonNull(aGarage, "Save called with a null garage!"), aOutputStream);
   }
 
+  /**
+   * Loads a single value of a garage, as written by {@link #saveValue(OutputStream, NamedObject)}.
+   *
+   * @param aInputStream A {@link InputStream} to load from.
+   * @return A {@link Loadout} or {@link DropShip}.
+   */
+  public NamedObject loadValue(InputStream aInputStream) {
+    final XStream stream = makeStream();
+    return (NamedObject) stream.fromXML(aInputStream);
+  }
+
+  /**
+   * Saves a single value of a garage, without the rest of the garage.
+   *
+   * @param aOutputStream The {@link OutputStream} to write to.
+   * @param aValue The {@link Loadout} or {@link DropShip} to save.
+   */
+  public void saveValue(OutputStream aOutputStream, NamedObject aValue) {
+    final XStream stream = makeStream();
+    stream.toXML(Objects.requireNonNull(aValue, "Save called with a null value!"), aOutputStream);
+  }
+
   private XStream makeStream() {
-    final XStream stream = new XStream(new MXParserDriver());
+    final MXParserDriver driver = new MXParserDriver();
+    final XStream stream = new XStream(driver);
     stream.autodetectAnnotations(true);
     stream.processAnnotations(Garage.class);
     stream.processAnnotations(LoadoutOmniMech.class);
@@ -79,6 +103,8 @@ public class GarageSerializer {
     stream.registerConverter(new EfficienciesConverter());
     stream.registerConverter(
         new GarageConverter(stream.getMapper(), stream.getReflectionProvider()));
+    stream.registerConverter(
+        new GarageDirectoryConverter(stream.getMapper(), stream.getReflectionProvider(), driver));
 
     stream.allowTypeHierarchy(Loadout.class);
     stream.allowTypeHierarchy(DropShip.class);
@@ -0,0 +1,307 @@
+/*
+ * Li Song Mechlab - A 'mech building tool for PGI's MechWarrior: Online.
+ * Copyright (C) 2013-2023  Li Song
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.lisoft.lsml.model.garage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import org.lisoft.lsml.model.loadout.Loadout;
+import org.lisoft.lsml.model.loadout.LoadoutFactory;
+import org.lisoft.lsml.util.FileUtils;
+
+/**
+ * Writes a garage and its {@link GarageJournal} to disk on a background writer so that the owning
+ * thread (typically the JavaFX application thread) isn't stalled by serialisation and disk I/O.
+ *
+ * <p>A save takes a snapshot of the garage on the owning thread. The snapshot shares no mutable
+ * state with the garage, so the user can keep editing while the snapshot is serialised and written
+ * on the writer. Values that haven't changed since the previous save reuse their previous copies,
+ * which makes the snapshot cheap. Saves that are requested before the writer has started on the
+ * previous one are coalesced into a single write of the latest snapshot.
+ *
+ * <p>Auto saves only serialise the changed values into a journal batch and do nothing at all if
+ * nothing changed since the last save. When the journal grows too large, it is compacted by a full
+ * save.
+ *
+ * <p>All methods must be called from the owning thread. The writer must be single threaded.
+ *
+ * @author Li Song
+ */
+public class GarageWriter {
+  /**
+   * The journal is compacted into the garage file when it grows larger than the garage file or this
+   * size.
+   */
+  public static final long MIN_COMPACTION_SIZE = 256 * 1024;
+
+  private record Copy(long version, Object value) {}
+
+  private record SaveRequest(
+      Garage snapshot, GarageJournal journal, CompletableFuture<Void> done, boolean automatic) {}
+
+  private final Consumer<Throwable> errorHandler;
+  private final File file;
+  private final Garage garage;
+  private final File indexFile;
+  private final File journalFile;
+  private final LoadoutFactory loadoutFactory;
+  private final AtomicReference<SaveRequest> pending = new AtomicReference<>();
+  private final GarageSerializer serializer;
+  private final Executor writer;
+  private Map<Object, Copy> copies = new IdentityHashMap<>();
+  private volatile boolean failed;
+  private GarageJournal journal;
+  private long journalBytes;
+  private volatile long snapshotSize;
+
+  /**
+   * Creates a new writer for a garage that was just loaded from, or written to, the given file.
+   *
+   * @param aFile The garage file.
+   * @param aGarage The garage to write.
+   * @param aJournal The {@link GarageJournal} opened for the garage.
+   * @param aSnapshotSize The size of the garage file in bytes.
+   * @param aSerializer The {@link GarageSerializer} to write the garage with.
+   * @param aLoadoutFactory A {@link LoadoutFactory} used to copy loadouts for snapshots.
+   * @param aWriter The {@link Executor} to write on. Must run tasks one at a time, in order.
+   * @param aErrorHandler Called on the writer with any exception thrown while writing for an auto
+   *     save. Failures of explicit saves are reported through the future returned by {@link
+   *     #save()}.
+   */
+  public GarageWriter(
+      File aFile,
+      Garage aGarage,
+      GarageJournal aJournal,
+      long aSnapshotSize,
+      GarageSerializer aSerializer,
+      LoadoutFactory aLoadoutFactory,
+      Executor aWriter,
+      Consumer<Throwable> aErrorHandler) {
+    file = aFile;
+    garage = aGarage;
+    journal = aJournal;
+    journalFile = GarageJournal.fileFor(aFile);
+    indexFile = GarageIndex.fileFor(aFile);
+    snapshotSize = aSnapshotSize;
+    serializer = aSerializer;
+    loadoutFactory = aLoadoutFactory;
+    writer = aWriter;
+    errorHandler = aErrorHandler;
+  }
+
+  /**
+   * Records the changes made to the garage since the last save in the journal. Does nothing if
+   * nothing changed. Falls back to a full save if the journal is too large or a previous write
+   * failed.
+   *
+   * @throws IOException if the changes couldn't be serialised.
+   */
+  public void autoSave() throws IOException {
+    if (failed) {
+      save(true);
+      return;
+    }
+
+    final byte[] batch = journal.prepareBatch(garage);
+    if (null == batch) {
+      return;
+    }
+    final GarageJournal target = journal;
+    writer.execute(
+        () -> {
+          try {
+            target.write(batch);
+          } catch (final Throwable e) {
+            failed = true;
+            errorHandler.accept(e);
+          }
+        });
+
+    journalBytes += batch.length;
+    if (journalBytes > Math.max(MIN_COMPACTION_SIZE, snapshotSize)) {
+      save(true);
+    }
+  }
+
+  /**
+   * Writes the {@link GarageIndex} for the garage file in the background. Use when the garage was
+   * opened without a valid index, later saves keep the index up to date.
+   *
+   * @param aSnapshot The contents of the garage file as it was loaded.
+   */
+  public void index(byte[] aSnapshot) {
+    writer.execute(
+        () -> {
+          try {
+            writeIndex(serializer.load(new ByteArrayInputStream(aSnapshot)), aSnapshot);
+          } catch (final RuntimeException e) {
+            errorHandler.accept(e);
+          }
+        });
+  }
+
+  /**
+   * Saves a snapshot of the garage in its current state to the garage file and starts a new
+   * journal.
+   *
+   * @return A {@link CompletableFuture} that completes when the snapshot, or a later snapshot that
+   *     replaced it, has been written. Completes exceptionally if the write failed.
+   * @throws IOException if the garage couldn't be scanned for the new journal.
+   */
+  public CompletableFuture<Void> save() throws IOException {
+    return save(false);
+  }
+
+  private <T> void copy(
+      GarageDirectory<T> aSource, GarageDirectory<T> aTarget, Map<Object, Copy> aCopies) {
+    aTarget.setName(aSource.getName());
+    for (final GarageDirectory<T> directory : aSource.getDirectories()) {
+      final GarageDirectory<T> child = new GarageDirectory<>();
+      copy(directory, child, aCopies);
+      aTarget.getDirectories().add(child);
+    }
+    final List<Object> entries = new ArrayList<>();
+    for (final Object entry : aSource.getEntries()) {
+      final LazyValue<T> origin = aSource.originOf(entry);
+      if (entry instanceof LazyValue<?>) {
+        entries.add(entry); // Never changes, no need to decode or copy it.
+      } else if (null != origin && origin.isUnmodified(entry)) {
+        entries.add(origin);
+      } else {
+        entries.add(copy(entry, aCopies));
+      }
+    }
+    aTarget.setEntries(entries);
+  }
+
+  private Object copy(Object aValue, Map<Object, Copy> aCopies) {
+    final Copy current = aCopies.get(aValue);
+    if (null != current) {
+      // Loadouts in drop ships may also be in the loadout tree
+      return current.value();
+    }
+    final long version = GarageJournal.version(aValue);
+    final Copy previous = copies.get(aValue);
+    final Object copy;
+    if (null != previous && previous.version() == version) {
+      copy = previous.value();
+    } else if (aValue instanceof final Loadout loadout) {
+      copy = loadoutFactory.produceClone(loadout);
+    } else if (aValue instanceof final DropShip dropShip) {
+      final DropShip dropShipCopy = new DropShip(dropShip.getFaction());
+      dropShipCopy.setName(dropShip.getName());
+      for (int i = 0; i < DropShip.MECHS_IN_DROPSHIP; ++i) {
+        final Loadout mech = dropShip.getMech(i);
+        try {
+          dropShipCopy.setMech(i, null == mech ? null : (Loadout) copy(mech, aCopies));
+        } catch (final GarageException e) {
+          // Can't happen, the copy has the same faction as the original.
+          throw new IllegalStateException(e);
+        }
+      }
+      copy = dropShipCopy;
+    } else {
+      throw new IllegalArgumentException("Unsupported garage value: " + aValue);
+    }
+    aCopies.put(aValue, new Copy(version, copy));
+    return copy;
+  }
+
+  private CompletableFuture<Void> save(boolean aAutomatic) throws IOException {
+    final SaveRequest request =
+        new SaveRequest(
+            snapshot(),
+            GarageJournal.prepare(journalFile, garage, serializer),
+            new CompletableFuture<>(),
+            aAutomatic);
+    // Batches prepared from now on belong to the new journal, they are dropped if it never starts
+    // as the next successful snapshot contains them.
+    journal = request.journal();
+    journalBytes = 0;
+    failed = false;
+
+    final SaveRequest replaced = pending.getAndSet(request);
+    if (null != replaced) {
+      request
+          .done()
+          .whenComplete(
+              (aResult, aThrowable) -> {
+                if (null == aThrowable) {
+                  replaced.done().complete(null);
+                } else {
+                  replaced.done().completeExceptionally(aThrowable);
+                }
+              });
+    } else {
+      writer.execute(this::writePending);
+    }
+    return request.done();
+  }
+
+  private Garage snapshot() {
+    final Map<Object, Copy> used = new IdentityHashMap<>();
+    final Garage snapshot = new Garage();
+    copy(garage.getLoadoutRoot(), snapshot.getLoadoutRoot(), used);
+    copy(garage.getDropShipRoot(), snapshot.getDropShipRoot(), used);
+    // Forget copies of values that have been removed from the garage
+    copies = used;
+    return snapshot;
+  }
+
+  private void writeIndex(Garage aSnapshot, byte[] aData) {
+    try {
+      GarageIndex.write(indexFile, aSnapshot, aData, serializer);
+    } catch (final IOException | RuntimeException e) {
+      // Not fatal, the garage file is intact and a stale index is ignored when opening the garage.
+      errorHandler.accept(e);
+    }
+  }
+
+  private void writePending() {
+    final SaveRequest request = pending.getAndSet(null);
+    if (null == request) {
+      return;
+    }
+    try {
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      serializer.save(out, request.snapshot());
+      final byte[] data = out.toByteArray();
+      FileUtils.writeAtomically(file, data);
+      snapshotSize = data.length;
+      // The old journal no longer matches the garage file and is ignored even if this fails.
+      request.journal().start(data);
+      request.done().complete(null);
+      writeIndex(request.snapshot(), data);
+    } catch (final Throwable e) {
+      failed = true;
+      request.done().completeExceptionally(e);
+      if (request.automatic()) {
+        errorHandler.accept(e);
+      }
+    }
+  }
+}
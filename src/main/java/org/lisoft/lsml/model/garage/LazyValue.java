@@ -0,0 +1,140 @@
+/*
+ * Li Song Mechlab - A 'mech building tool for PGI's MechWarrior: Online.
+ * Copyright (C) 2013-2023  Li Song
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.lisoft.lsml.model.garage;
+
+import java.io.ByteArrayInputStream;
+import org.lisoft.lsml.model.NamedObject;
+
+/**
+ * A garage value (loadout or drop ship) that hasn't been decoded yet. It holds the header of the
+ * value, which is enough to show and manage it in the garage, and the XML of the value which is
+ * decoded on first access.
+ *
+ * <p>The header and XML never change, once decoded the value is owned by the {@link
+ * GarageDirectory} that decoded it. {@link #get()} may be called from any thread, which allows
+ * values to be decoded in the background before they are needed.
+ *
+ * @param <T> The type of the value.
+ * @author Li Song
+ */
+public final class LazyValue<T> {
+  private final byte[] body;
+  private final String chassis;
+  private final String name;
+  private final GarageSerializer serializer;
+  private final long version;
+  private long decodedVersion;
+  private RuntimeException failure;
+  private T value;
+
+  /**
+   * Creates a new {@link LazyValue}.
+   *
+   * @param aName The name of the value.
+   * @param aChassis The short name of the chassis of a loadout, or <code>null</code> for drop
+   *     ships.
+   * @param aBody The XML of the value as written by {@link
+   *     GarageSerializer#saveValue(java.io.OutputStream, NamedObject)}.
+   * @param aSerializer The {@link GarageSerializer} to decode the value with.
+   */
+  public LazyValue(String aName, String aChassis, byte[] aBody, GarageSerializer aSerializer) {
+    name = aName;
+    chassis = aChassis;
+    body = aBody;
+    serializer = aSerializer;
+    version = GarageJournal.checksum(aBody);
+  }
+
+  /**
+   * Decodes the value if that hasn't been done already.
+   *
+   * @return The decoded value, the same object is returned on every call.
+   * @throws RuntimeException if the value couldn't be decoded, the same exception is thrown on
+   *     every call without decoding again.
+   */
+  public synchronized T get() {
+    if (null != failure) {
+      throw failure;
+    }
+    if (null == value) {
+      try {
+        @SuppressWarnings("unchecked")
+        final T decoded = (T) serializer.loadValue(new ByteArrayInputStream(body));
+        decodedVersion = GarageJournal.version(decoded);
+        value = decoded;
+      } catch (RuntimeException e) {
+        failure = e;
+        throw e;
+      }
+    }
+    return value;
+  }
+
+  /**
+   * @return The XML of the value, must not be modified.
+   */
+  public byte[] getBody() {
+    return body;
+  }
+
+  /**
+   * @return The short name of the chassis of a loadout, or <code>null</code> for drop ships.
+   */
+  public String getChassis() {
+    return chassis;
+  }
+
+  /**
+   * @return The name of the value.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return <code>true</code> if {@link #get()} has decoded the value.
+   */
+  public synchronized boolean isDecoded() {
+    return null != value;
+  }
+
+  /** Formats the header the same way as the decoded value formats itself. */
+  @Override
+  public String toString() {
+    if (null == chassis || name.contains(chassis)) {
+      return name;
+    }
+    return name + " (" + chassis + ")";
+  }
+
+  /**
+   * @return A value that identifies the XML of this value.
+   */
+  long getVersion() {
+    return version;
+  }
+
+  /**
+   * @param aValue The decoded value.
+   * @return <code>true</code> if the decoded value has not been modified since it was decoded, in
+   *     which case it is still represented by this {@link LazyValue}.
+   */
+  synchronized boolean isUnmodified(Object aValue) {
+    return aValue == value && GarageJournal.version(aValue) == decodedVersion;
+  }
+}
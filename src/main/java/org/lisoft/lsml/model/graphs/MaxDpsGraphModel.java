@@ -18,7 +18,6 @@
 package org.lisoft.lsml.model.graphs;
 
 import java.util.*;
-import java.util.stream.Collectors;
 import org.lisoft.lsml.model.loadout.Loadout;
 import org.lisoft.lsml.util.Pair;
 import org.lisoft.lsml.util.WeaponRanges;
@@ -62,19 +61,18 @@ public class MaxDpsGraphModel implements DamageGraphModel {
 
     // Calculate the DPS
     final List<Double> ranges = WeaponRanges.getRanges(loadout);
+    final double[] rangeArray = ranges.stream().mapToDouble(Double::doubleValue).toArray();
+    final double[] rangeEff = new double[rangeArray.length];
     for (final Map.Entry<Weapon, Long> uniqueWeaponMultiplicity : multiplicity.entrySet()) {
       final Weapon weapon = uniqueWeaponMultiplicity.getKey();
       final Long mult = uniqueWeaponMultiplicity.getValue();
+      final double dps = weapon.getStat("d/s", modifiers);
+      weapon.getRangeProfile().resolve(modifiers).rangeEffectiveness(rangeArray, rangeEff);
 
-      final List<Pair<Double, Double>> series =
-          ranges.stream()
-              .map(
-                  (aRange) -> {
-                    final double dps = weapon.getStat("d/s", modifiers);
-                    final double rangeEff = weapon.getRangeEffectiveness(aRange, modifiers);
-                    return new Pair<>(aRange, dps * rangeEff * mult);
-                  })
-              .collect(Collectors.toList());
+      final List<Pair<Double, Double>> series = new ArrayList<>(rangeArray.length);
+      for (int i = 0; i < rangeArray.length; ++i) {
+        series.add(new Pair<>(rangeArray[i], dps * rangeEff[i] * mult));
+      }
       result.put(weapon, series);
     }
     return result;
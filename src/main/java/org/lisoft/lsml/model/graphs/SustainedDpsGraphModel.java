@@ -18,7 +18,6 @@
 package org.lisoft.lsml.model.graphs;
 
 import java.util.*;
-import java.util.Map.Entry;
 import org.lisoft.lsml.model.loadout.Loadout;
 import org.lisoft.lsml.model.metrics.MaxSustainedDPS;
 import org.lisoft.lsml.util.Pair;
@@ -54,10 +53,11 @@ public class SustainedDpsGraphModel implements DamageGraphModel {
     final SortedMap<Weapon, List<Pair<Double, Double>>> data =
         new TreeMap<>(ItemComparator.byRange(modifiers));
 
-    for (final double range : WeaponRanges.getRanges(loadout)) {
-      final Set<Entry<Weapon, Double>> damageDistributio =
-          sustainedDPS.getWeaponRatios(range).entrySet();
-      for (final Map.Entry<Weapon, Double> entry : damageDistributio) {
+    final List<Double> ranges = WeaponRanges.getRanges(loadout);
+    final List<Map<Weapon, Double>> ratios = sustainedDPS.getWeaponRatios(ranges);
+    for (int i = 0; i < ranges.size(); ++i) {
+      final double range = ranges.get(i);
+      for (final Map.Entry<Weapon, Double> entry : ratios.get(i).entrySet()) {
         final Weapon weapon = entry.getKey();
         final double ratio = entry.getValue();
         final double dps = weapon.getStat("d/s", modifiers);
@@ -29,6 +29,7 @@ import org.lisoft.mwo_data.mechs.ArmourSide;
 import org.lisoft.mwo_data.mechs.Component;
 import org.lisoft.mwo_data.mechs.HardPoint;
 import org.lisoft.mwo_data.mechs.HardPointType;
+import org.lisoft.mwo_data.mechs.Location;
 import org.lisoft.mwo_data.modifiers.Attribute;
 import org.lisoft.mwo_data.modifiers.Modifier;
 import org.lisoft.mwo_data.modifiers.ModifierDescription;
@@ -42,10 +43,32 @@ import org.lisoft.mwo_data.modifiers.ModifierDescription;
  * @author Li Song
  */
 public abstract class ConfiguredComponent {
+  /**
+   * When enabled, every query of an incrementally maintained aggregate recomputes it from scratch
+   * and throws an {@link AssertionError} on mismatch. Enabled by the test suite.
+   */
+  private static final boolean SELF_CHECK = Boolean.getBoolean("lsml.loadout.selfcheck");
+
+  // Items without a hard point type are counted in the last bucket.
+  private static final int NUM_HARD_POINT_TYPES = HardPointType.values().length + 1;
   private final Map<ArmourSide, Attribute> armour = new HashMap<>();
+  private final int[] equippedHardPoints = new int[NUM_HARD_POINT_TYPES];
+  private final int[] fixedHardPoints = new int[NUM_HARD_POINT_TYPES];
   private final Component internalComponent;
   private final List<Item> items = new ArrayList<>();
+  // Aggregates of the equipped items and armour, updated by every change to them.
+  private int armourTotal;
+  private int equippedJumpJets;
+  private double equippedMass;
+  // Aggregates of the fixed items and slots, recomputed on first use after a modification.
+  private int fixedCacheVersion = -1;
+  private int fixedJumpJets;
+  private double fixedMass;
+  private long fingerprint;
   private boolean manualArmour;
+  private int modificationCount;
+  private int slotsUsedCache;
+  private int slotsUsedCacheVersion = -1;
 
   public ConfiguredComponent(Component aInternalComponent, boolean aManualArmour) {
     internalComponent = aInternalComponent;
@@ -58,6 +81,7 @@ public abstract class ConfiguredComponent {
               0,
               ModifierDescription.SEL_ARMOUR_RESIST,
               ModifierDescription.specifierFor(internalComponent.getLocation(), side)));
+      fingerprint += Zobrist.armour(internalComponent.getLocation(), side, 0);
     }
   }
 
@@ -79,6 +103,11 @@ public abstract class ConfiguredComponent {
     }
 
     items.addAll(aComponent.items);
+    armourTotal = aComponent.armourTotal;
+    fingerprint = aComponent.fingerprint;
+    equippedJumpJets = aComponent.equippedJumpJets;
+    equippedMass = aComponent.equippedMass;
+    System.arraycopy(aComponent.equippedHardPoints, 0, equippedHardPoints, 0, NUM_HARD_POINT_TYPES);
   }
 
   /**
@@ -95,11 +124,17 @@ public abstract class ConfiguredComponent {
    *     going into engine for example).
    */
   public int addItem(Item aItem) {
+    markModified();
+    countEquipped(aItem, 1);
+    fingerprint += itemKey(aItem);
     if (aItem instanceof Internal) {
       items.add(0, aItem);
+      // Keep the summation order identical to a recomputation from scratch.
+      equippedMass = computeEquippedMass();
       return 0;
     } else {
       items.add(aItem);
+      equippedMass += aItem.getMass();
     }
 
     if (aItem instanceof HeatSink && getEngineHeatSinksMax() >= getHeatSinkCount()) {
@@ -204,11 +239,14 @@ public abstract class ConfiguredComponent {
    * @return The total number of armour points on this component.
    */
   public int getArmourTotal() {
-    int sum = 0;
-    for (final Attribute attrib : armour.values()) {
-      sum += attrib.value(null);
+    if (SELF_CHECK) {
+      int sum = 0;
+      for (final Attribute attrib : armour.values()) {
+        sum += attrib.value(null);
+      }
+      checkAggregate("armour total", sum, armourTotal);
     }
-    return sum;
+    return armourTotal;
   }
 
   /**
@@ -255,6 +293,16 @@ public abstract class ConfiguredComponent {
     return 0;
   }
 
+  /**
+   * Returns a 64-bit fingerprint of the equipped items, armour and omnipod of this component, see
+   * {@link Loadout#getFingerprint()}. The fingerprint is maintained as the component changes.
+   *
+   * @return The current fingerprint.
+   */
+  public long getFingerprint() {
+    return fingerprint;
+  }
+
   /**
    * @param aHardpointType The type of {@link HardPoint}s to count.
    * @return The number of {@link HardPoint}s of the given type on this configured component.
@@ -277,14 +325,11 @@ public abstract class ConfiguredComponent {
    * @return The sum of the mass of all items on this component.
    */
   public double getItemMass() {
-    double ans = 0;
-    for (final Item item : items) {
-      ans += item.getMass();
+    if (SELF_CHECK) {
+      checkAggregate("equipped mass", computeEquippedMass(), equippedMass);
     }
-    for (final Item item : getItemsFixed()) {
-      ans += item.getMass();
-    }
-    return ans;
+    updateFixedCache();
+    return equippedMass + fixedMass;
   }
 
   /**
@@ -304,18 +349,38 @@ public abstract class ConfiguredComponent {
    * @return The number of items of the given hard point of type that are equipped.
    */
   public int getItemsOfHardpointType(HardPointType aHardpointType) {
-    int hardPoints = 0;
-    for (final Item it : getItemsEquipped()) {
-      if (it.getHardpointType() == aHardpointType) {
-        hardPoints++;
+    final int type = hardPointIndex(aHardpointType);
+    if (SELF_CHECK) {
+      int hardPoints = 0;
+      for (final Item it : items) {
+        if (it.getHardpointType() == aHardpointType) {
+          hardPoints++;
+        }
       }
+      checkAggregate(aHardpointType + " items", hardPoints, equippedHardPoints[type]);
     }
-    for (final Item it : getInternalComponent().getFixedItems()) {
-      if (it.getHardpointType() == aHardpointType) {
-        hardPoints++;
-      }
+    updateFixedCache();
+    return equippedHardPoints[type] + fixedHardPoints[type];
+  }
+
+  /**
+   * @return The number of jump jets equipped on this component, including fixed jump jets.
+   */
+  public int getJumpJetCount() {
+    if (SELF_CHECK) {
+      checkAggregate(
+          "jump jets", ListArrayUtils.countByType(items, JumpJet.class), equippedJumpJets);
     }
-    return hardPoints;
+    updateFixedCache();
+    return equippedJumpJets + fixedJumpJets;
+  }
+
+  /**
+   * @return A counter that is incremented every time this component is modified. Can be used to
+   *     detect changes and invalidate cached values.
+   */
+  public int getModificationCount() {
+    return modificationCount;
   }
 
   /**
@@ -332,6 +397,22 @@ public abstract class ConfiguredComponent {
    *     slots used by dynamic armour or structure.
    */
   public int getSlotsUsed() {
+    if (slotsUsedCacheVersion != modificationCount) {
+      slotsUsedCache = computeSlotsUsed();
+      slotsUsedCacheVersion = modificationCount;
+    } else if (SELF_CHECK) {
+      checkAggregate("slots used", computeSlotsUsed(), slotsUsedCache);
+    }
+    return slotsUsedCache;
+  }
+
+  /**
+   * Computes the number of critical slots used from scratch, the result is cached by {@link
+   * #getSlotsUsed()} until this component is modified.
+   *
+   * @return The number of critical slots that are used in this component.
+   */
+  protected int computeSlotsUsed() {
     int slotsUsed = getInternalComponent().getFixedItemSlots();
     int engineHsLeft = getEngineHeatSinksMax();
     for (final Item item : items) {
@@ -388,6 +469,10 @@ public abstract class ConfiguredComponent {
     }
 
     items.remove(index);
+    markModified();
+    countEquipped(aItem, -1);
+    fingerprint -= itemKey(aItem);
+    equippedMass = computeEquippedMass();
     final int consumedHs = Math.min(getEngineHeatSinksMax(), hsBefore);
     return index - consumedHs;
   }
@@ -396,8 +481,16 @@ public abstract class ConfiguredComponent {
     if (!armour.containsKey(aArmourSide)) {
       throw new IllegalArgumentException("No such armour side!");
     }
-    armour.get(aArmourSide).setBaseValue(aAmount);
+    final Attribute attribute = armour.get(aArmourSide);
+    final int oldAmount = (int) attribute.value(null);
+    final Location location = internalComponent.getLocation();
+    armourTotal += aAmount - oldAmount;
+    fingerprint +=
+        Zobrist.armour(location, aArmourSide, aAmount)
+            - Zobrist.armour(location, aArmourSide, oldAmount);
+    attribute.setBaseValue(aAmount);
     manualArmour = aManualArmour;
+    markModified();
   }
 
   @Override
@@ -418,6 +511,69 @@ public abstract class ConfiguredComponent {
     return sb.toString();
   }
 
+  /**
+   * Updates the fingerprint of this component for changes to state held by sub classes.
+   *
+   * @param aDelta The difference of the sums of the keys of the new and the old state.
+   */
+  protected void changeFingerprint(long aDelta) {
+    fingerprint += aDelta;
+  }
+
+  /** Must be called by all methods that change the state of this component. */
+  protected void markModified() {
+    modificationCount++;
+  }
+
+  private static void checkAggregate(String aName, double aExpected, double aActual) {
+    if (Double.compare(aExpected, aActual) != 0) {
+      throw new AssertionError(
+          "Incrementally maintained " + aName + " was " + aActual + " expected " + aExpected);
+    }
+  }
+
+  private static int hardPointIndex(HardPointType aHardPointType) {
+    return null == aHardPointType ? NUM_HARD_POINT_TYPES - 1 : aHardPointType.ordinal();
+  }
+
+  private double computeEquippedMass() {
+    double ans = 0;
+    for (final Item item : items) {
+      ans += item.getMass();
+    }
+    return ans;
+  }
+
+  private long itemKey(Item aItem) {
+    return Zobrist.key(Zobrist.ITEM, internalComponent.getLocation(), aItem);
+  }
+
+  private void countEquipped(Item aItem, int aDelta) {
+    equippedHardPoints[hardPointIndex(aItem.getHardpointType())] += aDelta;
+    if (aItem instanceof JumpJet) {
+      equippedJumpJets += aDelta;
+    }
+  }
+
+  private void updateFixedCache() {
+    if (fixedCacheVersion == modificationCount) {
+      return;
+    }
+    fixedMass = 0;
+    fixedJumpJets = 0;
+    for (final Item item : getItemsFixed()) {
+      fixedMass += item.getMass();
+      if (item instanceof JumpJet) {
+        fixedJumpJets++;
+      }
+    }
+    Arrays.fill(fixedHardPoints, 0);
+    for (final Item item : getInternalComponent().getFixedItems()) {
+      fixedHardPoints[hardPointIndex(item.getHardpointType())]++;
+    }
+    fixedCacheVersion = modificationCount;
+  }
+
   private int getHeatSinkCount() {
     return ListArrayUtils.countByType(items, HeatSink.class)
         + ListArrayUtils.countByType(getInternalComponent().getFixedItems(), HeatSink.class);
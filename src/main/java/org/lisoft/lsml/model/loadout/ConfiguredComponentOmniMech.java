@@ -27,6 +27,7 @@ import org.lisoft.mwo_data.equipment.Weapon;
 import org.lisoft.mwo_data.mechs.ComponentOmniMech;
 import org.lisoft.mwo_data.mechs.HardPoint;
 import org.lisoft.mwo_data.mechs.HardPointType;
+import org.lisoft.mwo_data.mechs.Location;
 import org.lisoft.mwo_data.mechs.OmniPod;
 
 /**
@@ -61,8 +62,12 @@ public class ConfiguredComponentOmniMech extends ConfiguredComponent {
 
   public ConfiguredComponentOmniMech(ConfiguredComponentOmniMech aConfiguredComponent) {
     super(aConfiguredComponent);
+    // The copied fingerprint already contains the omnipod and toggles, setOmniPod() adds them again
+    changeFingerprint(-aConfiguredComponent.omniPodFingerprint());
     setOmniPod(aConfiguredComponent.omniPod);
+    changeFingerprint(-omniPodFingerprint());
     toggleStates.putAll(aConfiguredComponent.toggleStates);
+    changeFingerprint(omniPodFingerprint());
   }
 
   @Override
@@ -205,7 +210,7 @@ public class ConfiguredComponentOmniMech extends ConfiguredComponent {
   }
 
   @Override
-  public int getSlotsUsed() {
+  protected int computeSlotsUsed() {
     int slots = 0;
     int engineHsSlots = 0;
     int numHs = 0;
@@ -270,11 +275,33 @@ public class ConfiguredComponentOmniMech extends ConfiguredComponent {
     if (!toggleStates.containsKey(aItem)) {
       throw new IllegalArgumentException("Not a toggleable item: " + aItem);
     }
+    changeFingerprint(-omniPodFingerprint());
     toggleStates.put(aItem, aNewState);
+    changeFingerprint(omniPodFingerprint());
+    markModified();
+  }
+
+  /**
+   * @return The sum of the fingerprint keys of the omnipod and the toggled on items.
+   */
+  private long omniPodFingerprint() {
+    if (null == omniPod) {
+      return 0;
+    }
+    final Location location = getInternalComponent().getLocation();
+    long ans = Zobrist.key(Zobrist.OMNIPOD, location, omniPod);
+    for (final Map.Entry<Item, Boolean> entry : toggleStates.entrySet()) {
+      if (entry.getValue()) {
+        ans += Zobrist.key(Zobrist.TOGGLE, location, entry.getKey());
+      }
+    }
+    return ans;
   }
 
   private void setOmniPod(OmniPod aOmniPod) {
+    changeFingerprint(-omniPodFingerprint());
     omniPod = aOmniPod;
+    markModified();
 
     // Well, I assume that the toggleable internals are only ever defined in the OmniPods and the
     // only fixed items
@@ -283,5 +310,6 @@ public class ConfiguredComponentOmniMech extends ConfiguredComponent {
     for (final Item item : omniPod.getToggleableItems()) {
       toggleStates.put(item, true); // Default enabled
     }
+    changeFingerprint(omniPodFingerprint());
   }
 }
@@ -28,6 +28,7 @@ import org.lisoft.mwo_data.equipment.*;
 import org.lisoft.mwo_data.equipment.Module;
 import org.lisoft.mwo_data.mechs.*;
 import org.lisoft.mwo_data.modifiers.Modifier;
+import org.lisoft.mwo_data.modifiers.ModifierIndex;
 import org.lisoft.mwo_data.modifiers.PilotSkills;
 
 /**
@@ -41,6 +42,10 @@ public abstract class Loadout extends NamedObject {
   private final List<Consumable> consumables = new ArrayList<>();
   private final PilotSkills efficiencies;
   private final WeaponGroups weaponGroups;
+  private transient ModifierIndex modifierCache;
+  private transient int modifierCacheVersion;
+  private long consumablesFingerprint;
+  private int modificationCount;
 
   protected Loadout(
       ConfiguredComponent[] aComponents, Chassis aChassisBase, WeaponGroups aWeaponGroups) {
@@ -56,6 +61,8 @@ public abstract class Loadout extends NamedObject {
    */
   public void addModule(Consumable aModule) {
     consumables.add(aModule);
+    consumablesFingerprint += Zobrist.key(Zobrist.CONSUMABLE, null, aModule);
+    modificationCount++;
   }
 
   /**
@@ -216,6 +223,9 @@ public abstract class Loadout extends NamedObject {
     if (!(obj instanceof final Loadout that)) {
       return false;
     }
+    if (getFingerprint() != that.getFingerprint()) {
+      return false;
+    }
     if (!name.equals(that.name)) {
       return false;
     }
@@ -232,13 +242,22 @@ public abstract class Loadout extends NamedObject {
    * Returns a {@link Collection} of all {@link Modifier}s that affect the loadout. Equipment,
    * quirks and modules.
    *
+   * <p>The result is an immutable {@link ModifierIndex} that is cached until the loadout is
+   * modified (see {@link #getModificationCount()}). The returned collection is a snapshot and will
+   * not reflect later changes to the loadout.
+   *
    * @return The {@link Collection} of modifiers.
    */
   public Collection<Modifier> getAllModifiers() {
-    final Collection<Modifier> modifiers = getEquipmentModifiers();
-    modifiers.addAll(getEfficiencies().getModifiers());
-    modifiers.addAll(getQuirks());
-    return modifiers;
+    final int version = getModificationCount();
+    if (modifierCache == null || modifierCacheVersion != version) {
+      final Collection<Modifier> modifiers = getEquipmentModifiers();
+      modifiers.addAll(getEfficiencies().getModifiers());
+      modifiers.addAll(getQuirks());
+      modifierCache = new ModifierIndex(modifiers);
+      modifierCacheVersion = version;
+    }
+    return modifierCache;
   }
 
   /**
@@ -372,6 +391,33 @@ public abstract class Loadout extends NamedObject {
     return countItemsOfType(HeatSink.class);
   }
 
+  /**
+   * Returns a 64-bit fingerprint of the chassis, omnipods, equipped items, armour, upgrades and
+   * consumables of this loadout. The efficiencies don't hold any state yet and don't contribute.
+   * Loadouts that are equal have the same fingerprint, so a differing fingerprint is a fast way to
+   * tell that two loadouts differ. The name of the loadout is not part of the fingerprint.
+   *
+   * <p>The fingerprint is maintained as the loadout changes and is cheap to query. Unlike {@link
+   * #hashCode()} it is independent of the run of the program and can be used as a cache key for
+   * values derived from the loadout.
+   *
+   * @return The current fingerprint.
+   */
+  public long getFingerprint() {
+    final Upgrades upgrades = getUpgrades();
+    long ans = consumablesFingerprint + Zobrist.key(Zobrist.CHASSIS, null, chassisBase);
+    if (null != upgrades) {
+      ans += Zobrist.key(Zobrist.UPGRADE, null, upgrades.getArmour());
+      ans += Zobrist.key(Zobrist.UPGRADE, null, upgrades.getStructure());
+      ans += Zobrist.key(Zobrist.UPGRADE, null, upgrades.getGuidance());
+      ans += Zobrist.key(Zobrist.UPGRADE, null, upgrades.getHeatSink());
+    }
+    for (final ConfiguredComponent component : components) {
+      ans += component.getFingerprint();
+    }
+    return ans;
+  }
+
   /**
    * @return The amount of free tonnage the loadout can still support.
    */
@@ -413,7 +459,11 @@ public abstract class Loadout extends NamedObject {
    * @return The total number of jump jets equipped.
    */
   public int getJumpJetCount() {
-    return countItemsOfType(JumpJet.class);
+    int ans = 0;
+    for (final ConfiguredComponent component : components) {
+      ans += component.getJumpJetCount();
+    }
+    return ans;
   }
 
   /**
@@ -442,6 +492,22 @@ public abstract class Loadout extends NamedObject {
     return ans;
   }
 
+  /**
+   * Returns a version counter for this loadout. The counter is guaranteed to change whenever
+   * anything that affects the state of the loadout, such as items, armour, upgrades, omnipods,
+   * modules or efficiencies, is changed. Can be used to invalidate cached values.
+   *
+   * @return The current modification count.
+   */
+  public int getModificationCount() {
+    int ans = modificationCount + efficiencies.getModificationCount();
+    ans += getUpgrades().getModificationCount();
+    for (final ConfiguredComponent component : components) {
+      ans += component.getModificationCount();
+    }
+    return ans;
+  }
+
   public MovementProfile getMovementProfile() {
     return getChassis().getMovementProfileBase();
   }
@@ -483,10 +549,8 @@ public abstract class Loadout extends NamedObject {
   public int hashCode() {
     final int prime = 31;
     int result = 1;
-    result = prime * result + chassisBase.hashCode();
-    result = prime * result + efficiencies.hashCode();
     result = prime * result + name.hashCode();
-    result = prime * result + Arrays.hashCode(components);
+    result = prime * result + Long.hashCode(getFingerprint());
     return result;
   }
 
@@ -509,7 +573,10 @@ public abstract class Loadout extends NamedObject {
    * @param aModule The {@link Consumable} to remove from this {@link Loadout}.
    */
   public void removeModule(Consumable aModule) {
-    consumables.remove(aModule);
+    if (consumables.remove(aModule)) {
+      consumablesFingerprint -= Zobrist.key(Zobrist.CONSUMABLE, null, aModule);
+    }
+    modificationCount++;
   }
 
   @Override
@@ -70,7 +70,7 @@ public class LoadoutBuilder {
       PRIORITY_ITEMS = new HashMap<>();
 
       PRIORITY_ITEMS.put(ItemDB.ECM, 7); // Before armour
-      for (final Engine e : ItemDB.lookup(Engine.class)) {
+      for (final Engine e : ItemDB.items(Engine.class)) {
         PRIORITY_ITEMS.put(e, 6); // Before other things
       }
     }
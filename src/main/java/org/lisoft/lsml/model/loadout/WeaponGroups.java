@@ -59,6 +59,14 @@ public class WeaponGroups {
     }
   }
 
+  @Override
+  public boolean equals(Object aObject) {
+    if (aObject instanceof final WeaponGroups that) {
+      return bs.equals(that.bs);
+    }
+    return false;
+  }
+
   /**
    * Gets the order that weapons are appearing for the groups.
    *
@@ -93,6 +101,11 @@ public class WeaponGroups {
     return ans;
   }
 
+  @Override
+  public int hashCode() {
+    return bs.hashCode();
+  }
+
   /**
    * Checks if a weapon is in a given group.
    *
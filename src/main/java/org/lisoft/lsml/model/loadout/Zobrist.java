@@ -0,0 +1,86 @@
+/*
+ * Li Song Mechlab - A 'mech building tool for PGI's MechWarrior: Online.
+ * Copyright (C) 2013-2023  Li Song
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.lisoft.lsml.model.loadout;
+
+import org.lisoft.mwo_data.equipment.MwoObject;
+import org.lisoft.mwo_data.mechs.ArmourSide;
+import org.lisoft.mwo_data.mechs.Location;
+
+/**
+ * Provides the pseudo random keys that make up the fingerprint of a {@link Loadout}.
+ *
+ * <p>Each feature of a loadout, such as an item in a location or an amount of armour on a side,
+ * has a fixed 64-bit key. The fingerprint is the sum of the keys of all features and is updated by
+ * adding and subtracting keys as features change. Sums are used rather than the XOR of classic
+ * Zobrist hashing because a component can hold several of the same item, which would cancel out
+ * with XOR.
+ *
+ * <p>The keys only depend on the game ids of the objects, so fingerprints are stable between runs.
+ *
+ * @author Li Song
+ */
+final class Zobrist {
+  static final int ARMOUR = 1;
+  static final int CHASSIS = 2;
+  static final int CONSUMABLE = 3;
+  static final int ITEM = 4;
+  static final int OMNIPOD = 5;
+  static final int TOGGLE = 6;
+  static final int UPGRADE = 7;
+
+  private Zobrist() {
+    // Utility class
+  }
+
+  /**
+   * @param aLocation The location the armour is on.
+   * @param aSide The side of the location the armour is on.
+   * @param aAmount The amount of armour.
+   * @return The key for the given amount of armour.
+   */
+  static long armour(Location aLocation, ArmourSide aSide, int aAmount) {
+    return key(ARMOUR, ordinal(aLocation) * ArmourSide.values().length + ordinal(aSide), aAmount);
+  }
+
+  /**
+   * @param aFeature The kind of feature, one of the constants in this class.
+   * @param aLocation The location of the feature, may be <code>null</code> for global features.
+   * @param aObject The object to get the key for, may be <code>null</code>.
+   * @return The key for the given object.
+   */
+  static long key(int aFeature, Location aLocation, MwoObject aObject) {
+    return key(aFeature, ordinal(aLocation), null == aObject ? 0 : aObject.getId());
+  }
+
+  private static long key(int aFeature, int aIndex, int aValue) {
+    final long seed = mix(((long) aFeature << 32) | (aIndex & 0xFFFFFFFFL));
+    return mix(seed + aValue * 0x9E3779B97F4A7C15L);
+  }
+
+  /** The finalizer of SplitMix64, spreads every input bit over the output. */
+  private static long mix(long aValue) {
+    long z = aValue;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  private static int ordinal(Enum<?> aEnum) {
+    return null == aEnum ? -1 : aEnum.ordinal();
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ * Li Song Mechlab - A 'mech building tool for PGI's MechWarrior: Online.
+ * Copyright (C) 2013-2023  Li Song
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.lisoft.lsml.model.metrics;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.lisoft.lsml.messages.Message;
+import org.lisoft.lsml.messages.MessageReceiver;
+import org.lisoft.lsml.messages.MessageReception;
+import org.lisoft.lsml.model.loadout.Loadout;
+import org.lisoft.lsml.model.loadout.LoadoutFactory;
+
+/**
+ * Computes expensive metrics on a background worker so that the owning thread (typically the
+ * JavaFX application thread) isn't stalled.
+ *
+ * <p>Computations are run on a snapshot of the {@link Loadout} that is cloned on the owning thread
+ * the first time it is needed after the loadout changed. The snapshot is never modified, so it can
+ * be read from the worker while the user keeps editing the loadout. Results are handed back to the
+ * owning thread through the publisher {@link Executor}.
+ *
+ * <p>Each result consumer gets its own {@link Channel}. Requesting a new value on a channel cancels
+ * any computation that is in flight for it, and results from superseded requests are never
+ * published.
+ *
+ * <p>All methods must be called from the owning thread, the thread that the publisher runs tasks
+ * on. The worker must not run more than one task at a time, as the snapshot is shared between all
+ * channels and not all metrics are safe to compute concurrently on the same loadout.
+ *
+ * @author Li Song
+ */
+public class AsyncMetricEngine implements MessageReceiver {
+  /**
+   * A channel delivers the results of computations to a single consumer.
+   *
+   * @param <T> The type of the computed values.
+   */
+  public class Channel<T> {
+    private final Consumer<T> consumer;
+    private Future<?> inFlight;
+    private long version;
+
+    private Channel(Consumer<T> aConsumer) {
+      consumer = aConsumer;
+    }
+
+    /** Cancels any computation in flight, its result will not be published. */
+    public void cancel() {
+      version++;
+      if (null != inFlight) {
+        inFlight.cancel(true);
+        inFlight = null;
+      }
+    }
+
+    /**
+     * @return <code>true</code> if a computation has been requested on this channel and its result
+     *     hasn't been published yet.
+     */
+    public boolean isComputing() {
+      return null != inFlight;
+    }
+
+    /**
+     * Requests a new value to be computed on the current snapshot of the loadout. Any computation
+     * already in flight on this channel is cancelled.
+     *
+     * @param aComputation A function that computes the value from a loadout snapshot. It will be
+     *     called on the worker thread and must only read from the snapshot.
+     */
+    public void request(Function<Loadout, T> aComputation) {
+      cancel();
+      final long requestVersion = version;
+      final Loadout target = snapshot();
+      inFlight =
+          worker.submit(
+              () -> {
+                if (Thread.currentThread().isInterrupted()) {
+                  return;
+                }
+                try {
+                  final T value = aComputation.apply(target);
+                  publisher.execute(() -> publish(requestVersion, value));
+                } catch (final Throwable e) {
+                  publisher.execute(() -> fail(requestVersion, e));
+                }
+              });
+    }
+
+    private void fail(long aVersion, Throwable aThrowable) {
+      if (aVersion == version) {
+        inFlight = null;
+        errorHandler.accept(aThrowable);
+      }
+    }
+
+    private void publish(long aVersion, T aValue) {
+      if (aVersion == version) {
+        inFlight = null;
+        consumer.accept(aValue);
+      }
+    }
+  }
+
+  private final Consumer<Throwable> errorHandler;
+  private final Loadout loadout;
+  private final LoadoutFactory loadoutFactory;
+  private final Executor publisher;
+  private final ExecutorService worker;
+  private Loadout snapshot;
+  private int snapshotVersion;
+
+  /**
+   * Creates a new engine.
+   *
+   * @param aLoadout The {@link Loadout} to compute metrics for.
+   * @param aLoadoutFactory A {@link LoadoutFactory} used to create snapshots of the loadout.
+   * @param aReception A {@link MessageReception} to listen for changes to the loadout on.
+   * @param aWorker The {@link ExecutorService} to run computations on. Must be single threaded.
+   * @param aPublisher An {@link Executor} that runs the given tasks on the owning thread.
+   * @param aErrorHandler Called on the owning thread with any exception thrown by a computation.
+   */
+  public AsyncMetricEngine(
+      Loadout aLoadout,
+      LoadoutFactory aLoadoutFactory,
+      MessageReception aReception,
+      ExecutorService aWorker,
+      Executor aPublisher,
+      Consumer<Throwable> aErrorHandler) {
+    loadout = aLoadout;
+    loadoutFactory = aLoadoutFactory;
+    worker = aWorker;
+    publisher = aPublisher;
+    errorHandler = aErrorHandler;
+    aReception.attach(this);
+  }
+
+  /**
+   * Creates a new {@link Channel} for delivering results to the given consumer.
+   *
+   * @param aConsumer Called on the owning thread with each up-to-date result.
+   * @param <T> The type of the values computed on the channel.
+   * @return A new {@link Channel}.
+   */
+  public <T> Channel<T> createChannel(Consumer<T> aConsumer) {
+    return new Channel<>(aConsumer);
+  }
+
+  @Override
+  public void receive(Message aMsg) {
+    // Not every change to a loadout, for example weapon groups, bumps the modification count.
+    snapshot = null;
+  }
+
+  /**
+   * @return A snapshot of the current state of the loadout. Must not be modified.
+   */
+  public Loadout snapshot() {
+    final int currentVersion = loadout.getModificationCount();
+    if (null == snapshot || snapshotVersion != currentVersion) {
+      snapshot = loadoutFactory.produceClone(loadout);
+      snapshotVersion = currentVersion;
+    }
+    return snapshot;
+  }
+}
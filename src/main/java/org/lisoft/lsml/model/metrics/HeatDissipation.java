@@ -75,6 +75,10 @@ public class HeatDissipation implements Metric {
     return heatDissipation.value(modifiers) - environmentDissipation;
   }
 
+  public Environment getEnvironment() {
+    return environment;
+  }
+
   public void changeEnvironment(Environment anEnvironment) {
     environment = anEnvironment;
   }
@@ -19,6 +19,7 @@ package org.lisoft.lsml.model.metrics;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import org.lisoft.lsml.messages.Message;
 import org.lisoft.lsml.messages.MessageReceiver;
@@ -93,6 +94,13 @@ public class HeatOverTime implements VariableMetric, MessageReceiver {
     return ans;
   }
 
+  /**
+   * @return The heat signals of all the heat sources, the heat over time is their sum.
+   */
+  public List<IntegratedSignal> getHeatSignals() {
+    return Collections.unmodifiableList(heatIntegrals);
+  }
+
   @Override
   public String getMetricName() {
     return "Heat";
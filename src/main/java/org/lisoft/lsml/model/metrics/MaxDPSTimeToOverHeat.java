@@ -20,9 +20,17 @@
 package org.lisoft.lsml.model.metrics;
 
 import org.lisoft.lsml.model.loadout.LoadoutStandard;
+import org.lisoft.lsml.model.metrics.helpers.IntegratedSignal;
+
+import java.util.List;
 
 /**
  * This class calculates the time a mech can keep firing all weapons before it over heats.
+ * <p>
+ * The heat is simulated in fixed time steps of 0.1 seconds. The heat generation is a sum of impulse and pulse
+ * trains and constant signals, so between the discontinuities of these signals every step generates the same amount of
+ * heat. Only steps that contain a discontinuity are evaluated individually, the steps in between are solved for in
+ * closed form. If the heat signals don't report their discontinuities, every step is integrated numerically.
  *
  * @author Li Song
  */
@@ -49,24 +57,158 @@ public class MaxDPSTimeToOverHeat implements Metric {
 
     @Override
     public double calculate() {
+        final double capacity = heatCapacity.calculate();
+        final double dissipation = heatDissipation.calculate();
+        final List<IntegratedSignal> signals = heatOverTime.getHeatSignals();
+        if (signals.isEmpty() || !signals.stream().allMatch(s -> s.nextDiscontinuity(0.0) > 0.0)) {
+            return integrate(capacity, dissipation);
+        }
+        if (neverOverHeats(signals, capacity, dissipation)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return solve(signals, capacity, dissipation);
+    }
+
+    /**
+     * Calculates the time to over heat by numerically integrating the heat over time.
+     */
+    double integrate(double aCapacity, double aDissipation) {
         double heat = 0;
-        double time = 0;
         double lastHeat = 0;
-        final double dissipated = heatDissipation.calculate() * TIME_STEP;
+        final double dissipated = aDissipation * TIME_STEP;
 
-        final double capacity = heatCapacity.calculate();
         // First order linear ODE, using Euler's method.
-        while (time < MAX_TIME) {
-            final double currentHeat = heatOverTime.calculate(time);
+        for (int step = 0; step * TIME_STEP < MAX_TIME; ++step) {
+            final double currentHeat = heatOverTime.calculate(step * TIME_STEP);
             final double generated = currentHeat - lastHeat;
             heat += generated - dissipated;
             heat = Math.max(0, heat);
-            time += TIME_STEP;
             lastHeat = currentHeat;
-            if (heat >= capacity) {
-                return time;
+            if (heat >= aCapacity) {
+                return (step + 1) * TIME_STEP;
             }
         }
         return Double.POSITIVE_INFINITY;
     }
+
+    /**
+     * @return The last time step that starts strictly before the given time.
+     */
+    private static long lastStepBefore(double aTime) {
+        long ans = (long) Math.ceil(aTime / TIME_STEP) - 1;
+        while ((ans + 1) * TIME_STEP < aTime) {
+            ans++;
+        }
+        while (ans >= 0 && ans * TIME_STEP >= aTime) {
+            ans--;
+        }
+        return ans;
+    }
+
+    /**
+     * The heat at any time is the largest net heat gain over any interval ending at that time. A periodic signal can
+     * generate at most its average rate times the length of the interval plus what it generates in one period. If the
+     * average heat generation doesn't exceed the dissipation, the heat thus never exceeds the sum of what the signals
+     * generate in one period.
+     */
+    private boolean neverOverHeats(List<IntegratedSignal> aSignals, double aCapacity, double aDissipation) {
+        double averageRate = 0;
+        double maxExcess = 0;
+        for (final IntegratedSignal signal : aSignals) {
+            final double period = signal.getPeriod();
+            if (Double.isNaN(period)) {
+                return false;
+            }
+            if (period > 0) {
+                final double perPeriod = signal.integrateFromZeroTo(period) - signal.integrateFromZeroTo(0.0);
+                averageRate += perPeriod / period;
+                maxExcess += perPeriod;
+            } else {
+                averageRate += signal.integrateFromZeroTo(1.0) - signal.integrateFromZeroTo(0.0);
+            }
+        }
+        return averageRate <= aDissipation && maxExcess < aCapacity;
+    }
+
+    /**
+     * The rate of the signal on the linear segment that starts at the given time.
+     */
+    private double rateAfter(IntegratedSignal aSignal, double aTime, double aNext) {
+        final double probe = Double.isInfinite(aNext) ? aTime + 1.0 : aTime + (aNext - aTime) / 2;
+        return (aSignal.integrateFromZeroTo(probe) - aSignal.integrateFromZeroTo(aTime)) / (probe - aTime);
+    }
+
+    /**
+     * Calculates the same result as {@link #integrate(double, double)} without visiting every time step. Only the time
+     * steps that contain a discontinuity of a heat signal are evaluated. In between, every time step generates the same
+     * amount of heat, so the heat after a run of such steps, or the step where the capacity is reached, is solved for
+     * directly.
+     */
+    private double solve(List<IntegratedSignal> aSignals, double aCapacity, double aDissipation) {
+        final int numSignals = aSignals.size();
+        final double[] next = new double[numSignals];
+        final double[] rates = new double[numSignals];
+        final long lastStep = lastStepBefore(MAX_TIME);
+        final double dissipated = aDissipation * TIME_STEP;
+
+        // The first step generates the heat of all impulses at time zero.
+        double heat = -dissipated;
+        double rate = 0;
+        for (int i = 0; i < numSignals; ++i) {
+            final IntegratedSignal signal = aSignals.get(i);
+            heat += signal.integrateFromZeroTo(0.0);
+            next[i] = signal.nextDiscontinuity(0.0);
+            rates[i] = rateAfter(signal, 0.0, next[i]);
+            rate += rates[i];
+        }
+        heat = Math.max(0, heat);
+
+        long step = 1;
+        while (heat < aCapacity) {
+            // Steps that end before the next discontinuity all generate the same heat.
+            // A loadout has few heat signals, a linear search is faster than a priority queue.
+            double nextEvent = Double.POSITIVE_INFINITY;
+            for (final double time : next) {
+                nextEvent = Math.min(nextEvent, time);
+            }
+            final long lastLinear =
+                    Double.isInfinite(nextEvent) ? lastStep : Math.min(lastStepBefore(nextEvent), lastStep);
+            final long linearSteps = lastLinear - step + 1;
+            if (linearSteps > 0) {
+                final double delta = rate * TIME_STEP - dissipated;
+                if (delta > 0) {
+                    final long stepsToOverHeat = Math.max(1, (long) Math.ceil((aCapacity - heat) / delta));
+                    if (stepsToOverHeat <= linearSteps) {
+                        return (step + stepsToOverHeat) * TIME_STEP;
+                    }
+                }
+                heat = Math.max(0, heat + linearSteps * delta);
+                step = lastLinear + 1;
+            }
+            if (step > lastStep) {
+                return Double.POSITIVE_INFINITY;
+            }
+
+            // This step contains at least one discontinuity.
+            final double time = step * TIME_STEP;
+            final double previousTime = (step - 1) * TIME_STEP;
+            double generated = rate * TIME_STEP;
+            for (int i = 0; i < numSignals; ++i) {
+                if (next[i] > time) {
+                    continue;
+                }
+                final IntegratedSignal signal = aSignals.get(i);
+                // Replace the linear part with the actual heat generated during the step.
+                generated += signal.integrateFromZeroTo(time) - signal.integrateFromZeroTo(previousTime);
+                generated -= rates[i] * TIME_STEP;
+                rate -= rates[i];
+                next[i] = signal.nextDiscontinuity(time);
+                rates[i] = rateAfter(signal, time, next[i]);
+                rate += rates[i];
+            }
+            heat = Math.max(0, heat + generated - dissipated);
+            step++;
+        }
+        return step * TIME_STEP;
+    }
 }
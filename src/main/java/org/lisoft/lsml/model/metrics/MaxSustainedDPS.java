@@ -90,42 +90,85 @@ public class MaxSustainedDPS extends AbstractRangeMetric {
    *     of how often the weapon is used.
    */
   public Map<Weapon, Double> getWeaponRatios(final double aRange) {
+    return new HashMap<>(getWeaponRatios(List.of(aRange)).get(0));
+  }
+
+  /**
+   * Calculates the same as {@link #getWeaponRatios(double)} for a series of ranges, for example to
+   * draw a graph.
+   *
+   * <p>The weapons are fired in order of decreasing damage per heat at the range, which only
+   * changes at some ranges. The firing order is only sorted, and the ratios only computed, at the
+   * ranges where the order from the previous range no longer holds. The remaining ranges share the
+   * ratios of the previous range.
+   *
+   * @param aRanges The ranges to calculate for.
+   * @return A {@link List} with an unmodifiable {@link Map} of ratios for each range in the same
+   *     order as the ranges.
+   */
+  public List<Map<Weapon, Double>> getWeaponRatios(final List<Double> aRanges) {
     final Collection<Modifier> modifiers = loadout.getAllModifiers();
-    double heatLeft = dissipation.calculate();
+    double heatAvailable = dissipation.calculate();
     final Engine engine = loadout.getEngine();
     if (null != engine) {
-      heatLeft -= engine.getHeat(modifiers);
+      heatAvailable -= engine.getHeat(modifiers);
     }
 
-    final Comparator<Weapon> byDPH =
-        (aO1, aO2) -> {
-          // Note: D/H == DPS / HPS so we're ordering by highest DPS per HPS.
-          final double rangeFactor1 =
-              aRange >= 0.0 ? aO1.getRangeEffectiveness(aRange, modifiers) : 1.0;
-          final double rangeFactor2 =
-              aRange >= 0.0 ? aO2.getRangeEffectiveness(aRange, modifiers) : 1.0;
-          // Note that getStat(d/h) may return +Infinity for some weapons (e.g. Machine Gun), if in
-          // that case
-          // rangeFactor is 0.0 then 0.0*Infinity will result in NaN which will ruin the sorting.
-          // Avoid this by
-          // shorting out getStat(d/h) if the range factor is 0.0.
-          final double dps1 = rangeFactor1 == 0 ? 0 : rangeFactor1 * aO1.getStat("d/h", modifiers);
-          final double dps2 = rangeFactor2 == 0 ? 0 : rangeFactor2 * aO2.getStat("d/h", modifiers);
-          return Double.compare(dps2, dps1);
-        };
-
-    final Stream<Weapon> weapons;
+    final Stream<Weapon> weaponStream;
     if (weaponGroup < 0) {
-      weapons = StreamSupport.stream(loadout.items(Weapon.class).spliterator(), false);
+      weaponStream = StreamSupport.stream(loadout.items(Weapon.class).spliterator(), false);
     } else {
-      weapons = loadout.getWeaponGroups().getWeapons(weaponGroup, loadout).stream();
+      weaponStream = loadout.getWeaponGroups().getWeapons(weaponGroup, loadout).stream();
     }
+    final List<Weapon> weapons = weaponStream.filter(Weapon::isOffensive).toList();
 
-    final List<Weapon> filteredWeapons = weapons.filter(Weapon::isOffensive).sorted(byDPH).toList();
+    final int numWeapons = weapons.size();
+    final double[] damagePerHeat = new double[numWeapons];
+    final double[] heatPerSecond = new double[numWeapons];
+    for (int i = 0; i < numWeapons; ++i) {
+      damagePerHeat[i] = weapons.get(i).getStat("d/h", modifiers);
+      heatPerSecond[i] = weapons.get(i).getStat("h/s", modifiers);
+    }
+
+    // Note: D/H == DPS / HPS so we're ordering by highest DPS per HPS. Ties are kept in the order
+    // the weapons were found in.
+    final double[] keys = new double[numWeapons];
+    final Comparator<Integer> byDPH = (aO1, aO2) -> Double.compare(keys[aO2], keys[aO1]);
+    Integer[] order = null;
+    Map<Weapon, Double> ratios = null;
 
+    final List<Map<Weapon, Double>> ans = new ArrayList<>(aRanges.size());
+    for (final double range : aRanges) {
+      for (int i = 0; i < numWeapons; ++i) {
+        final double rangeFactor =
+            range >= 0.0 ? weapons.get(i).getRangeEffectiveness(range, modifiers) : 1.0;
+        // Note that getStat(d/h) may return +Infinity for some weapons (e.g. Machine Gun), if in
+        // that case rangeFactor is 0.0 then 0.0*Infinity will result in NaN which will ruin the
+        // sorting. Avoid this by shorting out getStat(d/h) if the range factor is 0.0.
+        keys[i] = rangeFactor == 0 ? 0 : rangeFactor * damagePerHeat[i];
+      }
+
+      if (order == null || !isSorted(order, byDPH)) {
+        order = new Integer[numWeapons];
+        for (int i = 0; i < numWeapons; ++i) {
+          order[i] = i;
+        }
+        Arrays.sort(order, byDPH);
+        ratios =
+            Collections.unmodifiableMap(
+                distributeHeat(weapons, order, heatPerSecond, heatAvailable));
+      }
+      ans.add(ratios);
+    }
+    return ans;
+  }
+
+  private static Map<Weapon, Double> distributeHeat(
+      List<Weapon> aWeapons, Integer[] aOrder, double[] aHeatPerSecond, double aHeatAvailable) {
+    double heatLeft = aHeatAvailable;
     final Map<Weapon, Double> ans = new HashMap<>();
-    for (final Weapon weapon : filteredWeapons) {
-      final double heat = weapon.getStat("h/s", modifiers);
+    for (final int i : aOrder) {
+      final double heat = aHeatPerSecond[i];
       final double ratio;
 
       if (heatLeft == 0) {
@@ -138,9 +181,22 @@ public class MaxSustainedDPS extends AbstractRangeMetric {
         heatLeft = 0;
       }
 
-      final Double oldValue = ans.computeIfAbsent(weapon, aWeapon -> 0.0);
-      ans.put(weapon, ratio + oldValue);
+      final Double oldValue = ans.computeIfAbsent(aWeapons.get(i), aWeapon -> 0.0);
+      ans.put(aWeapons.get(i), ratio + oldValue);
     }
     return ans;
   }
+
+  /**
+   * @return <code>true</code> if a stable sort of the weapon indices would produce the given order.
+   */
+  private static boolean isSorted(Integer[] aOrder, Comparator<Integer> aComparator) {
+    for (int i = 1; i < aOrder.length; ++i) {
+      final int cmp = aComparator.compare(aOrder[i - 1], aOrder[i]);
+      if (cmp > 0 || cmp == 0 && aOrder[i - 1] > aOrder[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
 }
@@ -17,10 +17,12 @@
  */
 package org.lisoft.lsml.model.metrics.helpers;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import org.lisoft.lsml.model.loadout.ConfiguredComponent;
 import org.lisoft.lsml.model.metrics.CriticalStrikeProbability;
 import org.lisoft.mwo_data.equipment.Engine;
@@ -45,43 +47,88 @@ import org.lisoft.mwo_data.modifiers.Modifier;
  *   <li>15% of critical damage is always transferred to the component IS. FIXME: NYI
  * </ul>
  *
+ * <p>The outcome of the remaining shots only depends on how many of each item are left and how much
+ * health they have left, not on the order of the hits that lead there. The state of the component
+ * is encoded as a single number and the expected number of destroyed items from each state is
+ * computed only once. This makes the result exact and the run time proportional to the number of
+ * distinct states rather than the number of possible sequences of hits.
+ *
  * @author Li Song
  */
 public class ComponentDestructionSimulator {
-  private static class ItemState {
-    double P_destroyed;
-    double healthLeft;
+  /**
+   * All items of the same type share a pool of health, every critical hit on the type removes
+   * {@link #WEAPON_ALPHA} from the pool until the pool is too small to absorb a hit. Thereafter
+   * every critical hit destroys one item. The state of an item type is thus the number of items
+   * left and the number of hits absorbed by the pool.
+   */
+  private static class ItemType {
+    final Item item;
+    final int slots;
+    /** The number of hits that can be absorbed before items start getting destroyed. */
+    int absorbableHits;
+    /** The health left in the pool after the given number of absorbed hits. */
+    double[] healthAfterHits;
+
     int multiplicity;
+    /** The number to add to the state to record one more absorbed hit. */
+    long strideHits;
+    /** The number to add to the state to record one more item. */
+    long strideMultiplicity;
 
-    ItemState() {
-      multiplicity = 0;
-      healthLeft = 0.0;
-      P_destroyed = 0.0;
-    }
+    double totalHealth;
 
-    ItemState(ItemState aState) {
-      multiplicity = aState.multiplicity;
-      healthLeft = aState.healthLeft;
-      P_destroyed = aState.P_destroyed;
+    ItemType(Item aItem) {
+      item = aItem;
+      slots = aItem.getSlots();
     }
 
     void add(Item aItem) {
-      final double hp;
-      if (aItem instanceof Engine) {
-        // Engines are currently indestructible and act as infinite crit buffer.
-        hp = Double.POSITIVE_INFINITY;
-      } else {
-        hp = aItem.getHealth();
-      }
+      // Engines are currently indestructible and act as infinite crit buffer.
+      totalHealth += aItem instanceof Engine ? Double.POSITIVE_INFINITY : aItem.getHealth();
       multiplicity++;
-      healthLeft += hp;
+    }
+
+    int hits(long aState) {
+      return (int) (aState / strideHits % (absorbableHits + 1));
+    }
+
+    int multiplicity(long aState) {
+      return (int) (aState / strideMultiplicity % (multiplicity + 1));
+    }
+
+    /**
+     * Prepares the type for being encoded into the state.
+     *
+     * @param aStride The stride of the first digit of this type in the state.
+     * @return The stride of the next type.
+     */
+    long setup(long aStride) {
+      final List<Double> health = new ArrayList<>();
+      double healthLeft = totalHealth;
+      health.add(healthLeft);
+      while (!Double.isInfinite(healthLeft) && !canBeDestroyed(healthLeft)) {
+        healthLeft -= WEAPON_ALPHA;
+        health.add(healthLeft);
+      }
+      absorbableHits = health.size() - 1;
+      healthAfterHits = health.stream().mapToDouble(x -> x).toArray();
+
+      strideHits = aStride;
+      strideMultiplicity = Math.multiplyExact(aStride, absorbableHits + 1);
+      return Math.multiplyExact(strideMultiplicity, multiplicity + 1);
     }
   }
 
+  private static final double[] NOTHING_DESTROYED = new double[0];
   private static final double WEAPON_ALPHA = 10.0;
   private final ConfiguredComponent component;
-  // Key: Item - Value: <multiplicity, total probability>
-  private final Map<Item, ItemState> stateMap = new HashMap<>();
+  private final Map<Long, double[]> memo = new HashMap<>();
+  private final Map<Item, ItemType> types = new LinkedHashMap<>();
+  private final Map<Item, Double> probabilities = new HashMap<>();
+  private ItemType[] typeArray;
+  private long strideRolls;
+  private long strideShots;
 
   /**
    * Creates a new {@link ComponentDestructionSimulator}.
@@ -93,12 +140,7 @@ public class ComponentDestructionSimulator {
   }
 
   public double getProbabilityOfDestruction(Item aItem) {
-    final ItemState itemState = stateMap.get(aItem);
-    if (itemState == null) {
-      return 0.0;
-    }
-
-    return itemState.P_destroyed / itemState.multiplicity;
+    return probabilities.getOrDefault(aItem, 0.0);
   }
 
   /**
@@ -110,111 +152,134 @@ public class ComponentDestructionSimulator {
   public void simulate(Collection<Modifier> aModifiers) {
     final double componentHealth = component.getInternalComponent().getHitPoints(aModifiers);
     final int numShots = (int) Math.ceil(componentHealth / WEAPON_ALPHA);
-    stateMap.clear();
+    types.clear();
+    probabilities.clear();
 
-    int slots = 0;
     for (final Item item : component.getItemsEquipped()) {
-      slots += addItemToSimulation(item);
+      addItemToSimulation(item);
     }
 
     for (final Item item : component.getItemsFixed()) {
-      slots += addItemToSimulation(item);
+      addItemToSimulation(item);
+    }
+
+    typeArray = types.values().toArray(new ItemType[0]);
+    long state = 0;
+    long stride = 1;
+    for (final ItemType type : typeArray) {
+      stride = type.setup(stride);
+      state += type.multiplicity * type.strideMultiplicity;
     }
+    // The memo key also encodes the number of crit rolls and shots left. Every key must fit in a
+    // long, which it does by a wide margin with the items and components that exist in the game.
+    strideRolls = stride;
+    strideShots =
+        Math.multiplyExact(strideRolls, CriticalStrikeProbability.CRITICAL_HIT_CHANCE.size() + 1);
+    Math.multiplyExact(strideShots, numShots + 1L);
 
-    simulateShot(stateMap, slots, 1.0, numShots);
+    final double[] destroyed = simulateShot(state, numShots);
+    memo.clear();
+    for (int i = 0; i < destroyed.length; ++i) {
+      final ItemType type = typeArray[i];
+      probabilities.put(type.item, destroyed[i] / type.multiplicity);
+    }
   }
 
-  private int addItemToSimulation(Item aItem) {
-    if (!aItem.canBeCriticallyHit()) {
-      return 0;
+  private static void accumulate(double[] aSum, double aP, double[] aDestroyed) {
+    for (int i = 0; i < aDestroyed.length; ++i) {
+      aSum[i] += aP * aDestroyed[i];
     }
+  }
 
-    stateMap.computeIfAbsent(aItem, x -> new ItemState()).add(aItem);
-    return aItem.getSlots();
+  private static boolean canBeDestroyed(double aHealthLeft) {
+    return aHealthLeft <= WEAPON_ALPHA + Math.ulp(WEAPON_ALPHA) * 10;
   }
 
-  private Map<Item, ItemState> cloneState(Map<Item, ItemState> aMap) {
-    final Map<Item, ItemState> ans = new HashMap<>(aMap.size());
-    for (final Entry<Item, ItemState> entry : aMap.entrySet()) {
-      ans.put(entry.getKey(), new ItemState(entry.getValue()));
+  private void addItemToSimulation(Item aItem) {
+    if (aItem.canBeCriticallyHit()) {
+      types.computeIfAbsent(aItem, ItemType::new).add(aItem);
     }
-    return ans;
   }
 
   /**
-   * HERE BE DRAGONS! DO NOT TOUCH!
+   * Computes the expected number of destroyed items of each type given the state of the component
+   * before the current shot's critical hit rolls are performed.
    *
-   * @param aState
-   * @param aP_this
-   * @param aTotalSlots
-   * @param aShotsLeft
-   * @param aCritRollsLeft
+   * @param aState The encoded state of the items.
+   * @param aCritRollsLeft The number of critical hit rolls left for the current shot.
+   * @param aShotsLeft The number of shots left, including the current.
+   * @return An array with the expected number of destroyed items for each type.
    */
-  private void simulateRound(
-      Map<Item, ItemState> aState,
-      double aP_this,
-      int aTotalSlots,
-      int aCritRollsLeft,
-      int aShotsLeft) {
+  private double[] simulateRound(long aState, int aCritRollsLeft, int aShotsLeft) {
     if (aShotsLeft <= 0) {
-      return;
-    }
-    if (aP_this < 0.0005) {
-      return; // Too small to have significant effect on results
-    }
-
-    // If there are critical hit rolls left for this shot, perform them
-    if (aCritRollsLeft > 0) {
-      // For every item that can be hit...
-      for (final Entry<Item, ItemState> entry : aState.entrySet()) {
-        final Item item = entry.getKey();
-        int itemSlots = item.getSlots();
-        final int multi = entry.getValue().multiplicity;
-
-        // Determine the probability that it'll be hit
-        double P_hit = (double) itemSlots / aTotalSlots;
-        P_hit *= multi;
-
-        // Generate a new state where the item has been destroyed
-        final Map<Item, ItemState> newState = cloneState(aState);
-        final ItemState pair = newState.get(item);
-        if (pair.healthLeft <= WEAPON_ALPHA + Math.ulp(WEAPON_ALPHA) * 10) {
-          if (pair.multiplicity == 1) {
-            newState.remove(item);
-          } else {
-            pair.multiplicity--;
-          }
-          updateResultProbability(item, P_hit * aP_this);
-        } else {
-          pair.healthLeft -= WEAPON_ALPHA;
-          itemSlots = 0;
-        }
-        simulateRound(
-            newState, aP_this * P_hit, aTotalSlots - itemSlots, aCritRollsLeft - 1, aShotsLeft);
+      return NOTHING_DESTROYED;
+    }
+    if (aCritRollsLeft <= 0) {
+      return simulateShot(aState, aShotsLeft - 1);
+    }
+
+    final long key = aState + aCritRollsLeft * strideRolls + aShotsLeft * strideShots;
+    final double[] cached = memo.get(key);
+    if (cached != null) {
+      return cached;
+    }
+
+    int totalSlots = 0;
+    for (final ItemType type : typeArray) {
+      totalSlots += type.slots * type.multiplicity(aState);
+    }
+
+    final double[] ans = new double[typeArray.length];
+    for (int i = 0; i < typeArray.length; ++i) {
+      final ItemType type = typeArray[i];
+      final int multiplicity = type.multiplicity(aState);
+      if (multiplicity == 0) {
+        continue;
+      }
+
+      // Determine the probability that it'll be hit and the state after it's been hit
+      final double P_hit = (double) type.slots / totalSlots * multiplicity;
+      final int hits = type.hits(aState);
+      final long newState;
+      if (canBeDestroyed(type.healthAfterHits[hits])) {
+        ans[i] += P_hit;
+        newState =
+            multiplicity == 1
+                ? aState - type.strideMultiplicity - hits * type.strideHits
+                : aState - type.strideMultiplicity;
+      } else if (hits < type.absorbableHits) {
+        newState = aState + type.strideHits;
+      } else {
+        newState = aState; // Infinite health
       }
-    } else {
-      simulateShot(aState, aTotalSlots, aP_this, aShotsLeft - 1);
+
+      accumulate(ans, P_hit, simulateRound(newState, aCritRollsLeft - 1, aShotsLeft));
     }
+    memo.put(key, ans);
+    return ans;
   }
 
-  private void simulateShot(
-      Map<Item, ItemState> aState, int aTotalSlots, double aP_this, int aShotsLeft) {
-    // No critical hits
-    simulateRound(
-        aState, CriticalStrikeProbability.MISS_CHANCE * aP_this, aTotalSlots, 0, aShotsLeft);
+  private double[] simulateShot(long aState, int aShotsLeft) {
+    if (aShotsLeft <= 0) {
+      return NOTHING_DESTROYED;
+    }
+
+    // Rounds always have crit rolls left so zero rolls left identifies the shot.
+    final long key = aState + aShotsLeft * strideShots;
+    final double[] cached = memo.get(key);
+    if (cached != null) {
+      return cached;
+    }
 
+    final double[] ans = new double[typeArray.length];
+    accumulate(ans, CriticalStrikeProbability.MISS_CHANCE, simulateRound(aState, 0, aShotsLeft));
     for (int i = 0; i < CriticalStrikeProbability.CRITICAL_HIT_CHANCE.size(); ++i) {
-      simulateRound(
-          aState,
-          CriticalStrikeProbability.CRITICAL_HIT_CHANCE.get(i) * aP_this,
-          aTotalSlots,
-          i + 1,
-          aShotsLeft);
+      accumulate(
+          ans,
+          CriticalStrikeProbability.CRITICAL_HIT_CHANCE.get(i),
+          simulateRound(aState, i + 1, aShotsLeft));
     }
-  }
-
-  private void updateResultProbability(Item aItem, double aP) {
-    final ItemState itemState = stateMap.get(aItem);
-    itemState.P_destroyed += aP;
+    memo.put(key, ans);
+    return ans;
   }
 }
@@ -68,8 +68,18 @@ public class ExpectedHeatSignal implements IntegratedSignal {
     }
   }
 
+  @Override
+  public double getPeriod() {
+    return signal.getPeriod();
+  }
+
   @Override
   public double integrateFromZeroTo(double aTime) {
     return signal.integrateFromZeroTo(aTime);
   }
+
+  @Override
+  public double nextDiscontinuity(double aTime) {
+    return signal.nextDiscontinuity(aTime);
+  }
 }
@@ -29,8 +29,18 @@ public class IntegratedConstantSignal implements IntegratedSignal {
 
     public IntegratedConstantSignal(double aConstant) {this.constant = aConstant;}
 
+    @Override
+    public double getPeriod() {
+        return 0.0;
+    }
+
     @Override
     public double integrateFromZeroTo(double aTime) {
         return constant * aTime;
     }
+
+    @Override
+    public double nextDiscontinuity(double aTime) {
+        return Double.POSITIVE_INFINITY;
+    }
 }
@@ -38,9 +38,25 @@ public class IntegratedImpulseTrain implements IntegratedSignal {
     amplitude = aAmplitude;
   }
 
+  @Override
+  public double getPeriod() {
+    return period;
+  }
+
   @Override
   public double integrateFromZeroTo(double aTime) {
     final double impulses = Math.floor(aTime / period + 1);
     return impulses * amplitude;
   }
+
+  @Override
+  public double nextDiscontinuity(double aTime) {
+    final double impulses = Math.floor(aTime / period + 1);
+    // The product may round down to a time where the integral doesn't include the impulse yet.
+    double ans = Math.max(impulses * period, Math.nextUp(aTime));
+    while (Math.floor(ans / period + 1) <= impulses) {
+      ans = Math.nextUp(ans);
+    }
+    return ans;
+  }
 }
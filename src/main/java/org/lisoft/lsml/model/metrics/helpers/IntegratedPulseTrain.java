@@ -35,6 +35,20 @@ public class IntegratedPulseTrain implements IntegratedSignal {
         amplitude = aAmplitude;
     }
 
+    @Override
+    public double getPeriod() {
+        return period;
+    }
+
+    @Override
+    public double nextDiscontinuity(double aTime) {
+        final int periods = (int) (aTime / period);
+        final double start = periods * period;
+        final double ans =
+                aTime - start < pulseWidth && pulseWidth < period ? start + pulseWidth : start + period;
+        return ans > aTime ? ans : Math.nextUp(aTime);
+    }
+
     @Override
     public double integrateFromZeroTo(double aTime) {
         int periods = (int) (aTime / period);
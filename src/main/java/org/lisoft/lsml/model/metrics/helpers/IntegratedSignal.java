@@ -32,4 +32,27 @@ public interface IntegratedSignal {
      * @return The integral value.
      */
     double integrateFromZeroTo(double aTime);
+
+    /**
+     * Finds the next discontinuity of the signal after the given time. A discontinuity is an impulse or a change of
+     * the value of the signal. Between two consecutive discontinuities the integral is linear, which allows the
+     * signal to be evaluated from one discontinuity to the next instead of being sampled.
+     * <p>
+     * The integral at the returned time includes any impulse at that time.
+     *
+     * @param aTime The time to search from.
+     * @return The time of the first discontinuity strictly after <code>aTime</code>,
+     * {@link Double#POSITIVE_INFINITY} if there is none or {@link Double#NaN} if the signal doesn't know.
+     */
+    default double nextDiscontinuity(double aTime) {
+        return Double.NaN;
+    }
+
+    /**
+     * @return The period with which the signal repeats, zero if the signal is constant or {@link Double#NaN} if the
+     * signal isn't periodic or doesn't know.
+     */
+    default double getPeriod() {
+        return Double.NaN;
+    }
 }
@@ -34,6 +34,14 @@ public class TruncatedSignal implements IntegratedSignal {
         truncationTime = aTruncationTime;
     }
 
+    @Override
+    public double nextDiscontinuity(double aTime) {
+        if (aTime >= truncationTime) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Math.min(signal.nextDiscontinuity(aTime), truncationTime);
+    }
+
     @Override
     public double integrateFromZeroTo(double aTime) {
         if (aTime >= truncationTime) {
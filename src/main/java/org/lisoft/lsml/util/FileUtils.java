@@ -0,0 +1,68 @@
+/*
+ * Li Song Mechlab - A 'mech building tool for PGI's MechWarrior: Online.
+ * Copyright (C) 2013-2023  Li Song
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.lisoft.lsml.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Utility functions for working with files.
+ *
+ * @author Li Song
+ */
+public class FileUtils {
+  private FileUtils() {
+    // Utility class
+  }
+
+  /**
+   * Writes the given data to a file so that the file either has its old contents or the new
+   * contents, even if the application crashes during the write.
+   *
+   * <p>The data is written to a temporary file next to the target, synced to disk and then moved
+   * over the target.
+   *
+   * @param aFile The file to write.
+   * @param aData The new contents of the file.
+   * @throws IOException if the file couldn't be written. The target is left untouched.
+   */
+  public static void writeAtomically(File aFile, byte[] aData) throws IOException {
+    final File temporary = new File(aFile.getParentFile(), aFile.getName() + ".tmp");
+    try {
+      try (FileOutputStream fos = new FileOutputStream(temporary)) {
+        fos.write(aData);
+        fos.getFD().sync();
+      }
+      try {
+        Files.move(
+            temporary.toPath(),
+            aFile.toPath(),
+            StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+      } catch (final AtomicMoveNotSupportedException e) {
+        Files.move(temporary.toPath(), aFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temporary.toPath());
+    }
+  }
+}
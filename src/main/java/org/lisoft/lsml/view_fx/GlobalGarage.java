@@ -37,10 +37,16 @@ import org.lisoft.lsml.messages.MessageDelivery;
 import org.lisoft.lsml.model.NamedObject;
 import org.lisoft.lsml.model.garage.Garage;
 import org.lisoft.lsml.model.garage.GarageDirectory;
+import org.lisoft.lsml.model.garage.GarageIndex;
+import org.lisoft.lsml.model.garage.GarageJournal;
 import org.lisoft.lsml.model.garage.GaragePath;
 import org.lisoft.lsml.model.garage.GarageSerializer;
+import org.lisoft.lsml.model.garage.GarageWriter;
+import org.lisoft.lsml.model.garage.LazyValue;
 import org.lisoft.lsml.model.loadout.Loadout;
+import org.lisoft.lsml.model.loadout.LoadoutFactory;
 import org.lisoft.lsml.util.CommandStack;
+import org.lisoft.lsml.util.FileUtils;
 import org.lisoft.lsml.view_fx.controls.LsmlAlert;
 
 import javax.inject.Inject;
@@ -52,6 +58,10 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 /**
@@ -62,25 +72,57 @@ import java.util.stream.Collectors;
  */
 @ApplicationSingleton
 public class GlobalGarage {
-    private static class GarageOnDisk {
+    private class GarageOnDisk {
         private final File autoSaveFile;
         private final File currentFile;
         private final Garage garage;
-        private final GarageSerializer serializer;
+        private final GarageWriter writer;
 
-        private GarageOnDisk(File aFile, GarageSerializer aGarageSerializer, Settings aSettings) throws IOException {
+        private GarageOnDisk(File aFile) throws IOException {
             currentFile = aFile;
-            serializer = aGarageSerializer;
             autoSaveFile = deriveAutoSaveGarageFileName(currentFile);
-            try (FileInputStream fis = new FileInputStream(currentFile);
-                 BufferedInputStream bis = new BufferedInputStream(fis)) {
-                garage = serializer.load(bis);
-                if (null == garage) {
-                    throw new IOException("XStream returned null!");
-                }
+            final byte[] snapshot = Files.readAllBytes(currentFile.toPath());
+            Garage indexed = null;
+            try {
+                // Only the directory tree and loadout headers are read, loadouts are decoded when first needed.
+                indexed = GarageIndex.load(GarageIndex.fileFor(currentFile), snapshot, serializer);
+            } catch (IOException | RuntimeException e) {
+                // Fall back to loading the garage file in full, the index is rewritten below.
+                final File indexFile = GarageIndex.fileFor(currentFile);
+                Platform.runLater(() -> reporter.error("Unable to read garage index",
+                                                       "LSML was unable to read the index of your garage, the garage " +
+                                                       "was loaded in full instead and the index will be rebuilt: " +
+                                                       indexFile.getAbsolutePath(), e));
+            }
+            garage = null != indexed ? indexed : serializer.load(new ByteArrayInputStream(snapshot));
+            if (null == garage) {
+                throw new IOException("XStream returned null!");
+            }
+            // Recover any changes that were made after the garage file was last written
+            final GarageJournal journal = GarageJournal.open(GarageJournal.fileFor(currentFile), garage, snapshot,
+                                                             serializer);
+            writer = new GarageWriter(currentFile, garage, journal, snapshot.length, serializer, loadoutFactory,
+                                      GARAGE_WRITER, this::reportAutoSaveError);
+            if (null == indexed) {
+                writer.index(snapshot);
+            } else {
+                final List<LazyValue<?>> pending = GarageIndex.pending(garage);
+                GARAGE_PREFETCH.execute(() -> {
+                    for (final LazyValue<?> value : pending) {
+                        try {
+                            value.get();
+                        } catch (RuntimeException e) {
+                            // The value is kept as it is in the garage file, but it won't show up in the garage.
+                            Platform.runLater(() -> reporter.error("Unable to load from garage",
+                                                                   "LSML was unable to load \"" + value +
+                                                                   "\" from your garage file: " +
+                                                                   currentFile.getAbsolutePath(), e));
+                        }
+                    }
+                });
             }
             // Set the last opened garage as the currently loaded file
-            aSettings.getString(Settings.CORE_GARAGE_FILE).setValue(currentFile.getAbsolutePath());
+            settings.getString(Settings.CORE_GARAGE_FILE).setValue(currentFile.getAbsolutePath());
         }
 
         static private File deriveAutoSaveGarageFileName(File file) {
@@ -92,12 +134,6 @@ public class GlobalGarage {
             return expectedAutoSaveName.exists() && expectedAutoSaveName.lastModified() > aFile.lastModified();
         }
 
-        static private GarageOnDisk newGarage(File aFile, GarageSerializer aGarageSerializer, Settings aSettings)
-            throws IOException {
-            save(aFile, new Garage(), aGarageSerializer);
-            return new GarageOnDisk(aFile, aGarageSerializer, aSettings);
-        }
-
         static private File recoverAutoSaveFor(File aOldFile) throws IOException {
             if (!hasAutoSaveFor(aOldFile)) {
                 throw new IOException("Cannot restore non-existent auto save!");
@@ -123,35 +159,38 @@ public class GlobalGarage {
             return aOldBackup;
         }
 
-        static private void save(File aFile, Garage aGarage, GarageSerializer aGarageSerializer) throws IOException {
-            try (FileOutputStream fos = new FileOutputStream(aFile);
-                 BufferedOutputStream bos = new BufferedOutputStream(fos)) {
-                aGarageSerializer.save(bos, aGarage);
-            }
-        }
-
-        static private GarageOnDisk saveAs(File aFile, GarageOnDisk aGarageFile, Settings aSettings)
-            throws IOException {
-            save(aFile, aGarageFile.garage, aGarageFile.serializer);
-            return new GarageOnDisk(aFile, aGarageFile.serializer, aSettings);
+        private void reportAutoSaveError(Throwable aThrowable) {
+            Platform.runLater(() -> reporter.error("Unable to create auto save",
+                                                   "LSML was unable to write to your garage file: " +
+                                                   currentFile.getAbsolutePath(), aThrowable));
         }
 
-        private void autoSave() throws IOException {
-            save(autoSaveFile, garage, serializer);
-        }
-
-        private void save() throws IOException {
-            save(currentFile, garage, serializer);
-            // If the save was successful (didn't throw), delete the last auto save
-
+        private CompletableFuture<Void> save() throws IOException {
+            final CompletableFuture<Void> done = writer.save();
+            // If the save was successful, delete the last auto save left by older versions
             //noinspection ResultOfMethodCallIgnored -- We don't really care if the deletion succeeded.
-            autoSaveFile.delete();
+            return done.thenRun(autoSaveFile::delete);
         }
     }
 
     private static final String DEFAULT_NEW_FOLDER_NAME = "New Folder";
     private static final ExtensionFilter LSML_EXT = new ExtensionFilter("LSML Garage 1.0", "*.xml");
     private static final ExtensionFilter LSML_EXT2 = new ExtensionFilter("LSML Garage 2.0", "*.lsxml");
+    // Decodes loadouts of garages opened from their index before the user gets to them.
+    private static final ExecutorService GARAGE_PREFETCH = Executors.newSingleThreadExecutor(aRunnable -> {
+        final Thread thread = new Thread(aRunnable, "Garage prefetch");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    // Garage files are written in the background so that saving never stalls the UI.
+    private static final ExecutorService GARAGE_WRITER = Executors.newSingleThreadExecutor(aRunnable -> {
+        final Thread thread = new Thread(aRunnable, "Garage writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final LoadoutFactory loadoutFactory;
     private final ErrorReporter reporter;
     private final GarageSerializer serializer;
     private final Settings settings;
@@ -159,10 +198,12 @@ public class GlobalGarage {
     private GarageOnDisk garageFile = null;
 
     @Inject
-    public GlobalGarage(Settings aSettings, ErrorReporter aErrorReporter, GarageSerializer aGarageSerializer) {
+    public GlobalGarage(Settings aSettings, ErrorReporter aErrorReporter, GarageSerializer aGarageSerializer,
+                        LoadoutFactory aLoadoutFactory) {
         settings = aSettings;
         serializer = aGarageSerializer;
         reporter = aErrorReporter;
+        loadoutFactory = aLoadoutFactory;
     }
 
     /**
@@ -232,12 +273,15 @@ public class GlobalGarage {
     }
 
     /**
-     * Saves a copy of the garage to an adjacent auto save file.
+     * Records the changes made to the garage since the last auto save in the journal next to the garage file. The
+     * journal is compacted into the garage file when it grows too large. Does nothing if the garage hasn't changed.
+     * <p>
+     * The changes are written in the background, any errors are reported asynchronously.
      */
     public void autoSave() {
         if (garageFile != null) {
             try {
-                garageFile.autoSave();
+                garageFile.writer.autoSave();
             } catch (IOException e) {
                 reporter.error("Unable to create auto save", e.getMessage(), e);
             }
@@ -342,7 +386,8 @@ public class GlobalGarage {
                 break; // User cancelled
             }
             try {
-                garageFile = GarageOnDisk.newGarage(fileOptional.get(), serializer, settings);
+                writeGarage(fileOptional.get(), new Garage());
+                garageFile = new GarageOnDisk(fileOptional.get());
                 return true;
             } catch (IOException e) {
                 reporter.error("Unable to save new garage", "Couldn't write the selected garage file.", e);
@@ -371,7 +416,7 @@ public class GlobalGarage {
                 break; // User cancelled
             }
             try {
-                garageFile = new GarageOnDisk(file, serializer, settings);
+                garageFile = new GarageOnDisk(file);
                 return true;
             } catch (Exception e) {
                 reporter.error("Unable to open garage",
@@ -418,7 +463,7 @@ public class GlobalGarage {
 
         if (lastOpenedGarageFile.exists()) {
             try {
-                garageFile = new GarageOnDisk(lastOpenedGarageFile, serializer, settings);
+                garageFile = new GarageOnDisk(lastOpenedGarageFile);
             } catch (IOException e) {
                 reporter.error("Unable to load garage!",
                                "Please make a backup of: " + lastOpenedGarageFile.getAbsolutePath() +
@@ -442,13 +487,43 @@ public class GlobalGarage {
         }
 
         try {
-            garageFile.save();
+            garageFile.save().get();
             return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reportSaveError(e);
+        } catch (IOException | ExecutionException e) {
+            reportSaveError(e.getCause() != null ? e.getCause() : e);
+        }
+        return saveGarageAs(aOwner);
+    }
+
+    /**
+     * Saves the garage to the current file in the background, if it exists. The user is asked to save to another file
+     * if the save fails.
+     *
+     * @param aOwner The window that is opening the save dialog on errors.
+     */
+    public void saveGarageInBackground(Window aOwner) {
+        if (null == garageFile) {
+            return;
+        }
+
+        final GarageOnDisk target = garageFile;
+        try {
+            target.save().whenComplete((aResult, aThrowable) -> {
+                if (null != aThrowable) {
+                    Platform.runLater(() -> {
+                        if (target == garageFile) {
+                            reportSaveError(aThrowable.getCause() != null ? aThrowable.getCause() : aThrowable);
+                            saveGarageAs(aOwner);
+                        }
+                    });
+                }
+            });
         } catch (IOException e) {
-            reporter.error("Unable to save garage",
-                           "LSML was unable to save your garage file: " + garageFile.currentFile.getAbsolutePath() +
-                           ". Please chose another file to save to.", e);
-            return saveGarageAs(aOwner);
+            reportSaveError(e);
+            saveGarageAs(aOwner);
         }
     }
 
@@ -467,7 +542,8 @@ public class GlobalGarage {
 
             final File file = fileOptional.get();
             try {
-                garageFile = GarageOnDisk.saveAs(file, garageFile, settings);
+                writeGarage(file, garageFile.garage);
+                garageFile = new GarageOnDisk(file);
                 return true;
             } catch (IOException e) {
                 reporter.error("Unable to save garage as",
@@ -532,6 +608,12 @@ public class GlobalGarage {
         return result.isPresent() && ButtonType.OK == result.get();
     }
 
+    private void reportSaveError(Throwable aThrowable) {
+        reporter.error("Unable to save garage",
+                       "LSML was unable to save your garage file: " + garageFile.currentFile.getAbsolutePath() +
+                       ". Please chose another file to save to.", aThrowable);
+    }
+
     private FileChooser garageFileChooser(String aTitle) {
         final FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle(aTitle);
@@ -547,4 +629,10 @@ public class GlobalGarage {
         }
         return fileChooser;
     }
+
+    private void writeGarage(File aFile, Garage aGarage) throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        serializer.save(bos, aGarage);
+        FileUtils.writeAtomically(aFile, bos.toByteArray());
+    }
 }
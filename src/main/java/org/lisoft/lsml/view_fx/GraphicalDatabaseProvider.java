@@ -198,6 +198,17 @@ public class GraphicalDatabaseProvider extends AbstractDatabaseProvider {
     return false;
   }
 
+  /**
+   * The archive index is kept next to the database as it's derived from the same game files.
+   *
+   * @return A {@link File} to persist the index of the game archives in.
+   */
+  private File getArchiveIndexLocation() {
+    final File databaseFile =
+        new File(settings.getString(Settings.CORE_DATABASE).getValue()).getAbsoluteFile();
+    return new File(databaseFile.getParentFile(), "archive_index.dat");
+  }
+
   /**
    * Figures out where to place a new (or overwritten) database files.
    *
@@ -220,7 +231,13 @@ public class GraphicalDatabaseProvider extends AbstractDatabaseProvider {
   }
 
   private Optional<Database> getPreviouslyParsed() {
-    final String databaseFile = settings.getString(Settings.CORE_DATABASE).getValue();
+    final File databaseFile = new File(settings.getString(Settings.CORE_DATABASE).getValue());
+    final File snapshotFile = getSnapshotLocation(databaseFile);
+    final Optional<Database> snapshot = readSnapshot(databaseFile, snapshotFile);
+    if (snapshot.isPresent()) {
+      return snapshot;
+    }
+
     Database database;
     try (InputStream is = new FileInputStream(databaseFile);
         BufferedInputStream bis = new BufferedInputStream(is)) {
@@ -236,9 +253,21 @@ public class GraphicalDatabaseProvider extends AbstractDatabaseProvider {
     if (version == null || !version.equals(currentVersion)) {
       return Optional.empty();
     }
+    writeSnapshot(database, snapshotFile);
     return Optional.of(database);
   }
 
+  /**
+   * The snapshot is a cache of the database file for faster start up, it is kept next to it.
+   *
+   * @param aDatabaseFile The database file.
+   * @return A {@link File} to store a binary snapshot of the database in.
+   */
+  private File getSnapshotLocation(File aDatabaseFile) {
+    final File databaseFile = aDatabaseFile.getAbsoluteFile();
+    return new File(databaseFile.getParentFile(), databaseFile.getName() + ".snapshot");
+  }
+
   private Database loadDatabase() {
     // This method is executed in a background task so that the splash can display while we're doing
     // work.
@@ -271,7 +300,8 @@ public class GraphicalDatabaseProvider extends AbstractDatabaseProvider {
     Optional<Database> dataBase = getPreviouslyParsed();
     try {
       if (dataBase.isEmpty()
-          || dataReader.shouldUpdate(dataBase.get(), new File(gameDirectory.getValue()))) {
+          || dataReader.shouldUpdate(
+              dataBase.get(), new File(gameDirectory.getValue()), getArchiveIndexLocation())) {
         dataBase = updateDatabase();
       }
     } catch (Throwable t) {
@@ -283,6 +313,22 @@ public class GraphicalDatabaseProvider extends AbstractDatabaseProvider {
     return dataBase.orElseGet(this::getBundled);
   }
 
+  private Optional<Database> readSnapshot(File aDatabaseFile, File aSnapshotFile) {
+    // A snapshot older than the database doesn't reflect it.
+    if (!aSnapshotFile.isFile() || aSnapshotFile.lastModified() < aDatabaseFile.lastModified()) {
+      return Optional.empty();
+    }
+    try (InputStream is = new FileInputStream(aSnapshotFile)) {
+      final Database database = Database.readSnapshot(is);
+      if (currentVersion.equals(database.getVersion())) {
+        return Optional.of(database);
+      }
+    } catch (final Throwable e) {
+      // The snapshot was written by a different version of LSML, fall back to the database file.
+    }
+    return Optional.empty();
+  }
+
   private void setSubText(String aText) {
     Platform.runLater(() -> splashScreen.subProgressTextProperty().set(aText));
   }
@@ -298,7 +344,8 @@ public class GraphicalDatabaseProvider extends AbstractDatabaseProvider {
   private Optional<Database> updateDatabase() {
     try {
       final Property<String> gameDirectory = settings.getString(Settings.CORE_GAME_DIRECTORY);
-      final Database parsedDatabase = dataReader.parseGameFiles(new File(gameDirectory.getValue()));
+      final Database parsedDatabase =
+          dataReader.parseGameFiles(new File(gameDirectory.getValue()), getArchiveIndexLocation());
       writeDatabase(parsedDatabase);
       return Optional.of(parsedDatabase);
     } catch (final IOException e) {
@@ -324,5 +371,15 @@ public class GraphicalDatabaseProvider extends AbstractDatabaseProvider {
       aDatabase.writeToStream(fos);
     }
     settings.getString(Settings.CORE_DATABASE).setValue(databaseFile.getPath());
+    writeSnapshot(aDatabase, getSnapshotLocation(databaseFile));
+  }
+
+  private void writeSnapshot(Database aDatabase, File aSnapshotFile) {
+    try (FileOutputStream fos = new FileOutputStream(aSnapshotFile)) {
+      aDatabase.writeSnapshot(fos);
+    } catch (final IOException e) {
+      // The snapshot is only a cache, remove it so that a stale one isn't used.
+      aSnapshotFile.delete();
+    }
   }
 }
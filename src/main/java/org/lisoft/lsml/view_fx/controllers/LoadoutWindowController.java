@@ -650,11 +650,9 @@ public class LoadoutWindowController extends AbstractFXStageController {
       categoryRoots.put(category, categoryRoot);
     }
     // Add all items (after filtering for impossible items) to their respective categories
-    ItemDB.lookup(Item.class).stream()
+    ItemDB.items(Item.class, chassis.getFaction()).stream()
         .sorted(new ItemComparator(pgiMode))
-        .filter(
-            aItem ->
-                aItem.getFaction().isCompatible(chassis.getFaction()) && chassis.isAllowed(aItem))
+        .filter(chassis::isAllowed)
         .forEachOrdered(
             aItem ->
                 categoryRoots.get(EquipmentCategory.classify(aItem)).add(new TreeItem<>(aItem)));
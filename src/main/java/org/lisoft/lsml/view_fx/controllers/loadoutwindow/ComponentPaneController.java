@@ -115,7 +115,7 @@ public class ComponentPaneController extends AbstractFXController implements Mes
       DynamicSlotDistributor aDistributor,
       ItemToolTipFormatter aToolTipFormatter,
       LoadoutFactory aLoadoutFactory) {
-    aMessageXBar.attach(this);
+    aMessageXBar.attach(OmniPodMessage.class, this);
     settings = aSettings;
     stack = aStack;
     model = aModel;
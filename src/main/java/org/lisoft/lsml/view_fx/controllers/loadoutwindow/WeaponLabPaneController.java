@@ -22,6 +22,8 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.SortedMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import javafx.application.Platform;
 import javafx.beans.binding.DoubleBinding;
 import javafx.beans.binding.ListBinding;
@@ -53,6 +55,10 @@ import org.lisoft.lsml.model.graphs.MaxDpsGraphModel;
 import org.lisoft.lsml.model.graphs.SustainedDpsGraphModel;
 import org.lisoft.lsml.model.loadout.Loadout;
 import org.lisoft.lsml.model.loadout.WeaponGroups;
+import org.lisoft.lsml.model.metrics.AlphaStrike;
+import org.lisoft.lsml.model.metrics.AsyncMetricEngine;
+import org.lisoft.lsml.model.metrics.HeatDissipation;
+import org.lisoft.lsml.model.metrics.MaxSustainedDPS;
 import org.lisoft.lsml.util.Pair;
 import org.lisoft.lsml.view_fx.controllers.AbstractFXController;
 import org.lisoft.lsml.view_fx.controls.FixedRowsTableView;
@@ -60,6 +66,7 @@ import org.lisoft.lsml.view_fx.properties.LoadoutMetrics;
 import org.lisoft.lsml.view_fx.style.StyleManager;
 import org.lisoft.lsml.view_fx.util.FxControlUtils;
 import org.lisoft.lsml.view_fx.util.FxTableUtils;
+import org.lisoft.mwo_data.Environment;
 import org.lisoft.mwo_data.equipment.Weapon;
 
 /**
@@ -95,11 +102,58 @@ public class WeaponLabPaneController extends AbstractFXController implements Mes
     }
   }
 
+  /**
+   * The data series of a graph. The graph model is evaluated on a loadout snapshot by the {@link
+   * AsyncMetricEngine} and the series are replaced once the new data is available.
+   */
+  private static class AsyncGraphData extends ListBinding<Series<Double, Double>> {
+    private final AsyncMetricEngine.Channel<SortedMap<Weapon, List<Pair<Double, Double>>>> channel;
+    private final Supplier<Function<Loadout, DamageGraphModel>> modelFactory;
+    private ObservableList<Series<Double, Double>> series = FXCollections.observableArrayList();
+    private boolean stale = true;
+
+    AsyncGraphData(
+        AsyncMetricEngine aEngine, Supplier<Function<Loadout, DamageGraphModel>> aModelFactory) {
+      channel = aEngine.createChannel(this::publish);
+      modelFactory = aModelFactory;
+    }
+
+    public void refresh() {
+      stale = true;
+      invalidate();
+    }
+
+    @Override
+    protected ObservableList<Series<Double, Double>> computeValue() {
+      if (stale) {
+        stale = false;
+        final Function<Loadout, DamageGraphModel> factory = modelFactory.get();
+        channel.request(aSnapshot -> factory.apply(aSnapshot).getData());
+      }
+      return series;
+    }
+
+    private void publish(SortedMap<Weapon, List<Pair<Double, Double>>> aData) {
+      final ObservableList<Series<Double, Double>> ans = FXCollections.observableArrayList();
+      for (final Entry<Weapon, List<Pair<Double, Double>>> entry : aData.entrySet()) {
+        final XYChart.Series<Double, Double> weaponSeries = new XYChart.Series<>();
+        weaponSeries.setName(entry.getKey().getName());
+        final ObservableList<Data<Double, Double>> seriesData = weaponSeries.getData();
+        for (final Pair<Double, Double> point : entry.getValue()) {
+          seriesData.add(new XYChart.Data<>(point.first, point.second));
+        }
+        ans.add(weaponSeries);
+      }
+      series = ans;
+      invalidate();
+    }
+  }
+
   private static final double MINIMUM_Y_AXIS_UPPER_BOUND = 1.0;
-  private final ListBinding<Series<Double, Double>> alphaStrikeData;
+  private final AsyncGraphData alphaStrikeData;
   private final Loadout loadout;
-  private final ListBinding<Series<Double, Double>> maxDpsData;
-  private final ListBinding<Series<Double, Double>> sustainedDpsData;
+  private final AsyncGraphData maxDpsData;
+  private final AsyncGraphData sustainedDpsData;
   private final List<TitledPane> wpnGroupPanes = new ArrayList<>();
   private final MessageXBar xBar;
   @FXML private StackedAreaChart<Double, Double> graphAlphaStrike;
@@ -110,15 +164,25 @@ public class WeaponLabPaneController extends AbstractFXController implements Mes
 
   @Inject
   public WeaponLabPaneController(
-      @Named("local") MessageXBar aXBar, Loadout aLoadout, LoadoutMetrics aMetrics) {
+      @Named("local") MessageXBar aXBar,
+      Loadout aLoadout,
+      LoadoutMetrics aMetrics,
+      AsyncMetricEngine aEngine) {
     loadout = aLoadout;
     xBar = aXBar;
     xBar.attach(this);
-    AlphaStrikeGraphModel graphModelAlpha =
-        new AlphaStrikeGraphModel(aMetrics.alphaGroup.alphaDamage.getMetric(), loadout);
-    SustainedDpsGraphModel graphModelSustained =
-        new SustainedDpsGraphModel(aMetrics.alphaGroup.sustainedDPS.getMetric(), loadout);
-    MaxDpsGraphModel graphModelMaxDPS = new MaxDpsGraphModel(loadout);
+    final Supplier<Function<Loadout, DamageGraphModel>> graphModelAlpha =
+        () -> aSnapshot -> new AlphaStrikeGraphModel(new AlphaStrike(aSnapshot), aSnapshot);
+    final Supplier<Function<Loadout, DamageGraphModel>> graphModelSustained =
+        () -> {
+          final Environment environment = aMetrics.heatDissipation.getMetric().getEnvironment();
+          return aSnapshot ->
+              new SustainedDpsGraphModel(
+                  new MaxSustainedDPS(aSnapshot, new HeatDissipation(aSnapshot, environment)),
+                  aSnapshot);
+        };
+    final Supplier<Function<Loadout, DamageGraphModel>> graphModelMaxDPS =
+        () -> MaxDpsGraphModel::new;
 
     for (int i = 0; i < WeaponGroups.MAX_GROUPS; ++i) {
       // FIXME: Factory or injection
@@ -147,9 +211,9 @@ public class WeaponLabPaneController extends AbstractFXController implements Mes
     weaponGroupTable.setEditable(true);
     Platform.runLater(() -> FxTableUtils.resizeColumnsToFit(weaponGroupTable));
 
-    alphaStrikeData = setupGraph(graphAlphaStrike, graphModelAlpha);
-    sustainedDpsData = setupGraph(graphSustainedDPS, graphModelSustained);
-    maxDpsData = setupGraph(graphMaxDPS, graphModelMaxDPS);
+    alphaStrikeData = setupGraph(graphAlphaStrike, aEngine, graphModelAlpha);
+    sustainedDpsData = setupGraph(graphSustainedDPS, aEngine, graphModelSustained);
+    maxDpsData = setupGraph(graphMaxDPS, aEngine, graphModelMaxDPS);
 
     graphAlphaStrike.setLegendSide(Side.TOP);
     graphSustainedDPS.setLegendVisible(false);
@@ -196,33 +260,19 @@ public class WeaponLabPaneController extends AbstractFXController implements Mes
     }
   }
 
-  private ListBinding<Series<Double, Double>> setupGraph(
-      StackedAreaChart<Double, Double> aChart, DamageGraphModel aModel) {
-    aChart.setTitle(aModel.getTitle());
-    aChart.getXAxis().setLabel(aModel.getXAxisLabel());
-    aChart.getYAxis().setLabel(aModel.getYAxisLabel());
+  private AsyncGraphData setupGraph(
+      StackedAreaChart<Double, Double> aChart,
+      AsyncMetricEngine aEngine,
+      Supplier<Function<Loadout, DamageGraphModel>> aModelFactory) {
+    final DamageGraphModel model = aModelFactory.get().apply(loadout);
+    aChart.setTitle(model.getTitle());
+    aChart.getXAxis().setLabel(model.getXAxisLabel());
+    aChart.getYAxis().setLabel(model.getYAxisLabel());
     aChart.getXAxis().setAutoRanging(false);
     aChart.getYAxis().setAutoRanging(false);
     aChart.setCreateSymbols(false);
 
-    final ListBinding<Series<Double, Double>> dataBinding =
-        new ListBinding<>() {
-          @Override
-          protected ObservableList<Series<Double, Double>> computeValue() {
-            final ObservableList<Series<Double, Double>> ans = FXCollections.observableArrayList();
-            final SortedMap<Weapon, List<Pair<Double, Double>>> data = aModel.getData();
-            for (final Entry<Weapon, List<Pair<Double, Double>>> entry : data.entrySet()) {
-              final XYChart.Series<Double, Double> series = new XYChart.Series<>();
-              series.setName(entry.getKey().getName());
-              final ObservableList<Data<Double, Double>> seriesData = series.getData();
-              for (final Pair<Double, Double> point : entry.getValue()) {
-                seriesData.add(new XYChart.Data<>(point.first, point.second));
-              }
-              ans.add(series);
-            }
-            return ans;
-          }
-        };
+    final AsyncGraphData dataBinding = new AsyncGraphData(aEngine, aModelFactory);
 
     final Axis<? extends Number> xAxisRaw = aChart.getXAxis();
     final Axis<? extends Number> yAxisRaw = aChart.getYAxis();
@@ -293,9 +343,9 @@ public class WeaponLabPaneController extends AbstractFXController implements Mes
   }
 
   private void updateGraphs() {
-    sustainedDpsData.invalidate();
-    maxDpsData.invalidate();
-    alphaStrikeData.invalidate();
+    sustainedDpsData.refresh();
+    maxDpsData.refresh();
+    alphaStrikeData.refresh();
   }
 
   private void updateGroups() {
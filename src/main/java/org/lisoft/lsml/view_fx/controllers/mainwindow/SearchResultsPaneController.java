@@ -58,6 +58,7 @@ public class SearchResultsPaneController extends AbstractFXController implements
   private final ObservableList<Loadout> resultList;
   private final SearchIndex searchIndex = new SearchIndex();
   private final MessageXBar xBar;
+  private boolean indexed;
   @FXML private TableView<Loadout> results;
 
   @Inject
@@ -83,7 +84,6 @@ public class SearchResultsPaneController extends AbstractFXController implements
                 })
             .collect(Collectors.toUnmodifiableSet());
 
-    buildIndex();
     FxTableUtils.setupChassisTable(results);
 
     resultList = FXCollections.observableArrayList();
@@ -109,7 +109,8 @@ public class SearchResultsPaneController extends AbstractFXController implements
 
   @Override
   public void receive(Message aMsg) {
-    if (aMsg instanceof final GarageMessage<?> garageMessage) {
+    // Until the first search, the index is built from the garage when needed.
+    if (indexed && aMsg instanceof final GarageMessage<?> garageMessage) {
       if (garageMessage.type == GarageMessageType.ADDED) {
         garageMessage
             .path
@@ -137,7 +138,7 @@ public class SearchResultsPaneController extends AbstractFXController implements
             .ifPresent(
                 document -> {
                   if (document instanceof Loadout) {
-                    searchIndex.update();
+                    searchIndex.update((Loadout) document);
                   }
                 });
       }
@@ -154,7 +155,12 @@ public class SearchResultsPaneController extends AbstractFXController implements
     return filterString;
   }
 
+  /**
+   * Indexes the whole garage. This is deferred to the first search as it decodes every loadout of a
+   * garage that was opened from its index.
+   */
   private void buildIndex() {
+    indexed = true;
     allEmptyLoadouts.forEach(searchIndex::merge);
 
     final Stack<GarageDirectory<Loadout>> fringe = new Stack<>();
@@ -191,6 +197,9 @@ public class SearchResultsPaneController extends AbstractFXController implements
   }
 
   private void refreshQuery(String aNew) {
+    if (!indexed) {
+      buildIndex();
+    }
     resultList.setAll(searchIndex.query(aNew));
   }
 
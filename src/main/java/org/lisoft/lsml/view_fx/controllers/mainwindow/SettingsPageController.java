@@ -170,7 +170,7 @@ public class SettingsPageController extends AbstractFXController {
 
   @FXML
   public void saveGarage() {
-    globalGarage.saveGarage(root.getScene().getWindow());
+    globalGarage.saveGarageInBackground(root.getScene().getWindow());
   }
 
   private void bindCheckBoxProperty(CheckBox aButton, String aProperty) {
@@ -60,32 +60,28 @@ public class WeaponsPageController extends AbstractFXController {
   @Inject
   public WeaponsPageController() {
     predicate =
-        aWeapon -> {
-          if (aWeapon.getHardpointType() == HardPointType.ENERGY && !showEnergy.isSelected()
-              || //
-              aWeapon.getHardpointType() == HardPointType.MISSILE && !showMissile.isSelected()
-              || //
-              aWeapon.getHardpointType() == HardPointType.BALLISTIC && !showBallistic.isSelected()
-              || //
-              !aWeapon.isOffensive() && !showMisc.isSelected()) {
-            return false;
-          }
-          return aWeapon.getFaction().isCompatible(faction.getValue());
-        };
+        aWeapon ->
+            !(aWeapon.getHardpointType() == HardPointType.ENERGY && !showEnergy.isSelected()
+                || //
+                aWeapon.getHardpointType() == HardPointType.MISSILE && !showMissile.isSelected()
+                || //
+                aWeapon.getHardpointType() == HardPointType.BALLISTIC && !showBallistic.isSelected()
+                || //
+                !aWeapon.isOffensive() && !showMisc.isSelected());
 
     ObservableList<Weapon> sourceList = FXCollections.observableArrayList();
     filtered = new FilteredList<>(sourceList, predicate);
     faction =
         FxBindingUtils.createFactionBinding(
             factionFilterGroup.selectedToggleProperty(), factionFilterClan, factionFilterIS);
-    faction.addListener((aObs, aOld, aNew) -> refresh());
+    // The weapons of each faction are indexed by the item database
+    faction.addListener((aObs, aOld, aNew) -> sourceList.setAll(ItemDB.items(Weapon.class, aNew)));
     showEnergy.selectedProperty().addListener((aObs, aOld, aNew) -> refresh());
     showBallistic.selectedProperty().addListener((aObs, aOld, aNew) -> refresh());
     showMissile.selectedProperty().addListener((aObs, aOld, aNew) -> refresh());
     showMisc.selectedProperty().addListener((aObs, aOld, aNew) -> refresh());
 
-    sourceList.addAll(ItemDB.lookup(Weapon.class));
-    // filtered.getSource().(ItemDB.lookup(Weapon.class));
+    sourceList.setAll(ItemDB.items(Weapon.class, faction.getValue()));
 
     final SortedList<Weapon> sorted = new SortedList<>(filtered);
     sorted.comparatorProperty().bind(weapons.comparatorProperty());
@@ -36,7 +36,7 @@ public class EquippedConsumablesList extends ObservableListBase<Consumable>
   private final Loadout loadout;
 
   public EquippedConsumablesList(MessageReception aMessageReception, Loadout aLoadout) {
-    aMessageReception.attach(this);
+    aMessageReception.attach(LoadoutMessage.class, this);
     loadout = aLoadout;
   }
 
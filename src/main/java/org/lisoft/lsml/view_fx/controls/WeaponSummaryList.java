@@ -40,7 +40,7 @@ public class WeaponSummaryList extends ObservableListBase<WeaponSummary>
   private final Loadout loadout;
 
   public WeaponSummaryList(MessageReception aReception, Loadout aLoadoutBase) {
-    aReception.attach(this);
+    aReception.attach(ItemMessage.class, this);
     loadout = aLoadoutBase;
     for (final Ammunition ammunition : aLoadoutBase.items(Ammunition.class)) {
       add(ammunition);
@@ -0,0 +1,100 @@
+/*
+ * Li Song Mechlab - A 'mech building tool for PGI's MechWarrior: Online.
+ * Copyright (C) 2013-2023  Li Song
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.lisoft.lsml.view_fx.properties;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import javafx.beans.binding.DoubleBinding;
+import org.lisoft.lsml.messages.Message;
+import org.lisoft.lsml.messages.MessageReceiver;
+import org.lisoft.lsml.messages.MessageReception;
+import org.lisoft.lsml.model.loadout.Loadout;
+import org.lisoft.lsml.model.metrics.AsyncMetricEngine;
+import org.lisoft.lsml.model.metrics.Metric;
+
+/**
+ * This binding computes an expensive {@link Metric} on the background worker of an {@link
+ * AsyncMetricEngine}. Until the new value is available, the binding keeps its previous value.
+ *
+ * @author Li Song
+ */
+public class AsyncMetricBinding extends DoubleBinding implements MessageReceiver {
+  private final AsyncMetricEngine.Channel<Double> channel;
+  private final Predicate<Message> filter;
+  private final Supplier<Function<Loadout, Metric>> metricFactory;
+  private boolean stale = true;
+  private double value;
+
+  /**
+   * Creates a new {@link AsyncMetricBinding}.
+   *
+   * @param aMessageReception The {@link MessageReception} to listen to messages on.
+   * @param aLoadout The {@link Loadout} to listen to messages for.
+   * @param aMessageTypes The types of messages that can affect the {@link Metric}.
+   * @param aEngine The {@link AsyncMetricEngine} to compute the metric with.
+   * @param aMetricFactory Called on the JavaFX application thread for every computation. Returns a
+   *     function that creates the {@link Metric} for a loadout snapshot on the worker thread. Any
+   *     settings, such as range or time, should be captured by the returned function.
+   * @param aFilter A {@link Predicate} which returns true if the given message might have affected
+   *     the {@link Metric}.
+   */
+  public AsyncMetricBinding(
+      MessageReception aMessageReception,
+      Loadout aLoadout,
+      List<Class<? extends Message>> aMessageTypes,
+      AsyncMetricEngine aEngine,
+      Supplier<Function<Loadout, Metric>> aMetricFactory,
+      Predicate<Message> aFilter) {
+    for (final Class<? extends Message> messageType : aMessageTypes) {
+      aMessageReception.attach(messageType, aLoadout, this);
+    }
+    channel = aEngine.createChannel(this::publish);
+    metricFactory = aMetricFactory;
+    filter = aFilter;
+  }
+
+  @Override
+  public void receive(Message aMsg) {
+    if (filter.test(aMsg)) {
+      refresh();
+    }
+  }
+
+  /** Forces the metric to be recomputed, for example after changing the settings of the metric. */
+  public void refresh() {
+    stale = true;
+    invalidate();
+  }
+
+  @Override
+  protected double computeValue() {
+    if (stale) {
+      stale = false;
+      final Function<Loadout, Metric> factory = metricFactory.get();
+      channel.request(aSnapshot -> factory.apply(aSnapshot).calculate());
+    }
+    return value;
+  }
+
+  private void publish(Double aValue) {
+    value = aValue;
+    invalidate();
+  }
+}
@@ -17,7 +17,7 @@
  */
 package org.lisoft.lsml.view_fx.properties;
 
-import java.util.Collection;
+import java.util.List;
 import java.util.function.Predicate;
 import javafx.beans.binding.DoubleBinding;
 import javafx.beans.binding.IntegerBinding;
@@ -35,7 +35,6 @@ import org.lisoft.lsml.model.loadout.WeaponGroups;
 import org.lisoft.lsml.model.metrics.*;
 import org.lisoft.mwo_data.Environment;
 import org.lisoft.mwo_data.mechs.MovementProfile;
-import org.lisoft.mwo_data.modifiers.Modifier;
 
 /**
  * This class wraps all the metrics that are calculated for a {@link Loadout} in a JavaFX friendly
@@ -55,44 +54,84 @@ public class LoadoutMetrics {
 
     public final RangeMetricBinding<MaxDPS> maxDPS;
     public final MetricBinding<CoolingRatio> maxDPSCoolingRatio;
-    public final MetricBinding<MaxDPSTimeToOverHeat> maxDPSTtO;
+    public final AsyncMetricBinding maxDPSTtO;
     public final RangeMetricBinding<MaxSustainedDPS> sustainedDPS;
 
     public GroupMetrics(
         MessageXBar aRcv,
+        AsyncMetricEngine aEngine,
         Loadout aLoadout,
         int aGroup,
         HeatCapacity aHeatCapacity,
         HeatDissipation aHeatDissipation,
+        List<Class<? extends Message>> aMessageTypes,
         Predicate<Message> aFilter) {
       final HeatGeneration heatGeneration = new HeatGeneration(aLoadout, aGroup);
       final HeatOverTime heatOverTime = new HeatOverTime(aLoadout, aRcv, aGroup);
 
+      // Solving for the time to overheat integrates the heat of every weapon over time, it's too
+      // slow to do on the FX thread while the user is editing the loadout.
       maxDPSTtO =
-          new MetricBinding<>(
+          new AsyncMetricBinding(
               aRcv,
-              new MaxDPSTimeToOverHeat(aHeatCapacity, heatOverTime, aHeatDissipation),
+              aLoadout,
+              aMessageTypes,
+              aEngine,
+              () -> {
+                final Environment environment = aHeatDissipation.getEnvironment();
+                return aSnapshot ->
+                    new MaxDPSTimeToOverHeat(
+                        new HeatCapacity(aSnapshot),
+                        new HeatOverTime(aSnapshot, new MessageXBar(), aGroup),
+                        new HeatDissipation(aSnapshot, environment));
+              },
               aFilter);
-      alphaGhostHeat = new MetricBinding<>(aRcv, new GhostHeat(aLoadout, aGroup), aFilter);
-      alphaDamage = new RangeMetricBinding<>(aRcv, new AlphaStrike(aLoadout, aGroup), aFilter);
-      alphaHeat = new MetricBinding<>(aRcv, new AlphaHeat(aLoadout, aGroup), aFilter);
+      alphaGhostHeat =
+          new MetricBinding<>(
+              aRcv, aLoadout, aMessageTypes, new GhostHeat(aLoadout, aGroup), aFilter);
+      alphaDamage =
+          new RangeMetricBinding<>(
+              aRcv, aLoadout, aMessageTypes, new AlphaStrike(aLoadout, aGroup), aFilter);
+      alphaHeat =
+          new MetricBinding<>(
+              aRcv, aLoadout, aMessageTypes, new AlphaHeat(aLoadout, aGroup), aFilter);
       alphaHeatPct =
           new MetricBinding<>(
               aRcv,
+              aLoadout,
+              aMessageTypes,
               new AlphaHeatPercent(
                   alphaGhostHeat.getMetric(), aHeatDissipation, aHeatCapacity, aLoadout, aGroup),
               aFilter);
       final BurstDamageOverTime burstDamageOverTime =
           new BurstDamageOverTime(aLoadout, aRcv, aGroup);
-      burstDamage = new RangeTimeMetricBinding<>(aRcv, burstDamageOverTime, aFilter);
+      burstDamage =
+          new RangeTimeMetricBinding<>(
+              aRcv, aLoadout, aMessageTypes, burstDamageOverTime, aFilter);
       burstHeat =
-          new MetricBinding<>(aRcv, new BurstHeat(burstDamageOverTime, heatOverTime), aFilter);
-      maxDPS = new RangeMetricBinding<>(aRcv, new MaxDPS(aLoadout, aGroup), aFilter);
+          new MetricBinding<>(
+              aRcv,
+              aLoadout,
+              aMessageTypes,
+              new BurstHeat(burstDamageOverTime, heatOverTime),
+              aFilter);
+      maxDPS =
+          new RangeMetricBinding<>(
+              aRcv, aLoadout, aMessageTypes, new MaxDPS(aLoadout, aGroup), aFilter);
       sustainedDPS =
           new RangeMetricBinding<>(
-              aRcv, new MaxSustainedDPS(aLoadout, aHeatDissipation, aGroup), aFilter);
+              aRcv,
+              aLoadout,
+              aMessageTypes,
+              new MaxSustainedDPS(aLoadout, aHeatDissipation, aGroup),
+              aFilter);
       maxDPSCoolingRatio =
-          new MetricBinding<>(aRcv, new CoolingRatio(aHeatDissipation, heatGeneration), aFilter);
+          new MetricBinding<>(
+              aRcv,
+              aLoadout,
+              aMessageTypes,
+              new CoolingRatio(aHeatDissipation, heatGeneration),
+              aFilter);
     }
 
     /**
@@ -143,9 +182,12 @@ public class LoadoutMetrics {
   private final MessageXBar xBar;
 
   @Inject
-  public LoadoutMetrics(Loadout aLoadout, @Named("local") MessageXBar aRcv, ErrorReporter aER) {
+  public LoadoutMetrics(
+      Loadout aLoadout,
+      @Named("local") MessageXBar aRcv,
+      AsyncMetricEngine aEngine,
+      ErrorReporter aER) {
     xBar = aRcv;
-    final Collection<Modifier> modifiers = aLoadout.getAllModifiers();
     final Environment aEnvironment = Environment.NEUTRAL;
     final MovementProfile mp = aLoadout.getMovementProfile();
     // Update predicates
@@ -157,61 +199,155 @@ public class LoadoutMetrics {
         (aMsg) -> itemsChanged.test(aMsg) || effsChanged.test(aMsg);
     final Predicate<Message> itemsOrPodsChanged =
         (aMsg) -> itemsChanged.test(aMsg) || omniPodChanged.test(aMsg);
+    // Subscriptions, the predicates above only see messages of these types for this loadout
+    final List<Class<? extends Message>> engineOrEffsMessages =
+        List.of(ItemMessage.class, PilotSkillMessage.class);
+    final List<Class<? extends Message>> itemsOrPodsMessages =
+        List.of(ItemMessage.class, OmniPodMessage.class);
+    // All message types that may return true from Message.affectsHeatOrDamage()
+    final List<Class<? extends Message>> heatOrDamageMessages =
+        List.of(
+            ItemMessage.class,
+            LoadoutMessage.class,
+            OmniPodMessage.class,
+            PilotSkillMessage.class,
+            UpgradesMessage.class);
 
     // Mobility
-    topSpeed = new MetricBinding<>(aRcv, new TopSpeed(aLoadout), engineOrEffsChanged);
+    topSpeed =
+        new MetricBinding<>(
+            aRcv, aLoadout, engineOrEffsMessages, new TopSpeed(aLoadout), engineOrEffsChanged);
     mascSpeed =
         new MetricBinding<>(
-            aRcv, new MASCSpeed(aLoadout, topSpeed.getMetric()), engineOrEffsChanged);
-    turnSpeed = new MetricBinding<>(aRcv, new TurningSpeed(aLoadout), engineOrEffsChanged);
+            aRcv,
+            aLoadout,
+            engineOrEffsMessages,
+            new MASCSpeed(aLoadout, topSpeed.getMetric()),
+            engineOrEffsChanged);
+    turnSpeed =
+        new MetricBinding<>(
+            aRcv, aLoadout, engineOrEffsMessages, new TurningSpeed(aLoadout), engineOrEffsChanged);
     torsoPitchSpeed =
-        new MetricBinding<>(aRcv, new TorsoTwistPitchSpeed(aLoadout), engineOrEffsChanged);
+        new MetricBinding<>(
+            aRcv,
+            aLoadout,
+            engineOrEffsMessages,
+            new TorsoTwistPitchSpeed(aLoadout),
+            engineOrEffsChanged);
     torsoYawSpeed =
-        new MetricBinding<>(aRcv, new TorsoTwistYawSpeed(aLoadout), engineOrEffsChanged);
+        new MetricBinding<>(
+            aRcv,
+            aLoadout,
+            engineOrEffsMessages,
+            new TorsoTwistYawSpeed(aLoadout),
+            engineOrEffsChanged);
     armPitchSpeed =
-        new MetricBinding<>(aRcv, new ArmRotatePitchSpeed(aLoadout), engineOrEffsChanged);
-    armYawSpeed = new MetricBinding<>(aRcv, new ArmRotateYawSpeed(aLoadout), engineOrEffsChanged);
+        new MetricBinding<>(
+            aRcv,
+            aLoadout,
+            engineOrEffsMessages,
+            new ArmRotatePitchSpeed(aLoadout),
+            engineOrEffsChanged);
+    armYawSpeed =
+        new MetricBinding<>(
+            aRcv,
+            aLoadout,
+            engineOrEffsMessages,
+            new ArmRotateYawSpeed(aLoadout),
+            engineOrEffsChanged);
 
-    jumpJetCount = new LsmlIntegerBinding(aRcv, aLoadout::getJumpJetCount, itemsOrPodsChanged, aER);
-    jumpJetMax = new LsmlIntegerBinding(aRcv, aLoadout::getJumpJetsMax, itemsOrPodsChanged, aER);
+    jumpJetCount =
+        new LsmlIntegerBinding(
+            aRcv,
+            aLoadout,
+            itemsOrPodsMessages,
+            aLoadout::getJumpJetCount,
+            itemsOrPodsChanged,
+            aER);
+    jumpJetMax =
+        new LsmlIntegerBinding(
+            aRcv, aLoadout, itemsOrPodsMessages, aLoadout::getJumpJetsMax, itemsOrPodsChanged, aER);
     torsoPitch =
-        new LsmlDoubleBinding(aRcv, () -> mp.getTorsoPitchMax(modifiers), engineOrEffsChanged, aER);
+        new LsmlDoubleBinding(
+            aRcv,
+            aLoadout,
+            engineOrEffsMessages,
+            () -> mp.getTorsoPitchMax(aLoadout.getAllModifiers()),
+            engineOrEffsChanged,
+            aER);
     torsoYaw =
-        new LsmlDoubleBinding(aRcv, () -> mp.getTorsoYawMax(modifiers), engineOrEffsChanged, aER);
+        new LsmlDoubleBinding(
+            aRcv,
+            aLoadout,
+            engineOrEffsMessages,
+            () -> mp.getTorsoYawMax(aLoadout.getAllModifiers()),
+            engineOrEffsChanged,
+            aER);
     armPitch =
-        new LsmlDoubleBinding(aRcv, () -> mp.getArmPitchMax(modifiers), engineOrEffsChanged, aER);
+        new LsmlDoubleBinding(
+            aRcv,
+            aLoadout,
+            engineOrEffsMessages,
+            () -> mp.getArmPitchMax(aLoadout.getAllModifiers()),
+            engineOrEffsChanged,
+            aER);
     armYaw =
-        new LsmlDoubleBinding(aRcv, () -> mp.getArmYawMax(modifiers), engineOrEffsChanged, aER);
+        new LsmlDoubleBinding(
+            aRcv,
+            aLoadout,
+            engineOrEffsMessages,
+            () -> mp.getArmYawMax(aLoadout.getAllModifiers()),
+            engineOrEffsChanged,
+            aER);
 
     // Heat
     heatSinkCount =
-        new LsmlIntegerBinding(aRcv, aLoadout::getTotalHeatSinksCount, itemsOrPodsChanged, aER);
-    heatCapacity = new MetricBinding<>(aRcv, new HeatCapacity(aLoadout), affectsHeatOrDamage);
+        new LsmlIntegerBinding(
+            aRcv,
+            aLoadout,
+            itemsOrPodsMessages,
+            aLoadout::getTotalHeatSinksCount,
+            itemsOrPodsChanged,
+            aER);
+    heatCapacity =
+        new MetricBinding<>(
+            aRcv, aLoadout, heatOrDamageMessages, new HeatCapacity(aLoadout), affectsHeatOrDamage);
     heatDissipation =
-        new MetricBinding<>(aRcv, new HeatDissipation(aLoadout, aEnvironment), affectsHeatOrDamage);
+        new MetricBinding<>(
+            aRcv,
+            aLoadout,
+            heatOrDamageMessages,
+            new HeatDissipation(aLoadout, aEnvironment),
+            affectsHeatOrDamage);
     timeToCool =
         new MetricBinding<>(
             aRcv,
+            aLoadout,
+            heatOrDamageMessages,
             new TimeToCool(heatCapacity.getMetric(), heatDissipation.getMetric()),
             affectsHeatOrDamage);
 
     alphaGroup =
         new GroupMetrics(
             xBar,
+            aEngine,
             aLoadout,
             -1,
             heatCapacity.getMetric(),
             heatDissipation.getMetric(),
+            heatOrDamageMessages,
             affectsHeatOrDamage);
 
     for (int i = 0; i < WeaponGroups.MAX_GROUPS; ++i) {
       weaponGroups[i] =
           new GroupMetrics(
               xBar,
+              aEngine,
               aLoadout,
               i,
               heatCapacity.getMetric(),
               heatDissipation.getMetric(),
+              heatOrDamageMessages,
               affectsHeatOrDamage);
     }
 
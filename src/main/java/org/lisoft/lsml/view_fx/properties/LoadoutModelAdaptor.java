@@ -21,6 +21,7 @@ import static javafx.beans.binding.Bindings.subtract;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Predicate;
 import javafx.beans.binding.BooleanBinding;
@@ -70,10 +71,17 @@ public class LoadoutModelAdaptor {
 
       health =
           new LsmlDoubleBinding(
-              aXBar, () -> internalComponent.getHitPoints(null), aQuirksChanged, aErrorReporter);
+              aXBar,
+              loadout,
+              QUIRKS_MESSAGES,
+              () -> internalComponent.getHitPoints(null),
+              aQuirksChanged,
+              aErrorReporter);
       healthEff =
           new LsmlDoubleBinding(
               aXBar,
+              loadout,
+              QUIRKS_MESSAGES,
               () -> internalComponent.getHitPoints(loadout.getAllModifiers()),
               aQuirksChanged,
               aErrorReporter);
@@ -104,6 +112,16 @@ public class LoadoutModelAdaptor {
       }
     }
   }
+  // The message types each of the predicates in the constructor accepts
+  private static final List<Class<? extends Message>> ARMOUR_MESSAGES =
+      List.of(ArmourMessage.class);
+  private static final List<Class<? extends Message>> ITEMS_MESSAGES = List.of(ItemMessage.class);
+  private static final List<Class<? extends Message>> MASS_MESSAGES =
+      List.of(ArmourMessage.class, ItemMessage.class, UpgradesMessage.class, OmniPodMessage.class);
+  private static final List<Class<? extends Message>> QUIRKS_MESSAGES =
+      List.of(OmniPodMessage.class);
+  private static final List<Class<? extends Message>> SLOTS_MESSAGES =
+      List.of(ItemMessage.class, UpgradesMessage.class);
   // Armour
   public final Map<Location, ComponentModel> components;
   // Toggles
@@ -134,11 +152,16 @@ public class LoadoutModelAdaptor {
     //
     // General
     //
-    statsMass = new LsmlDoubleBinding(aXBar, loadout::getMass, massChanged, aER);
+    statsMass =
+        new LsmlDoubleBinding(aXBar, loadout, MASS_MESSAGES, loadout::getMass, massChanged, aER);
     statsFreeMass = statsMass.negate().add(loadout.getChassis().getMassMax());
-    statsArmour = new LsmlIntegerBinding(aXBar, loadout::getArmour, armourChanged, aER);
+    statsArmour =
+        new LsmlIntegerBinding(
+            aXBar, loadout, ARMOUR_MESSAGES, loadout::getArmour, armourChanged, aER);
     statsArmourFree = statsArmour.negate().add(loadout.getChassis().getArmourMax());
-    statsSlots = new LsmlIntegerBinding(aXBar, loadout::getSlotsUsed, slotsChanged, aER);
+    statsSlots =
+        new LsmlIntegerBinding(
+            aXBar, loadout, SLOTS_MESSAGES, loadout::getSlotsUsed, slotsChanged, aER);
 
     //
     // Toggles
@@ -166,6 +189,8 @@ public class LoadoutModelAdaptor {
     final ConfiguredComponent component = loadout.getComponent(location);
     return new LsmlIntegerBinding(
         aXBar,
+        loadout,
+        ARMOUR_MESSAGES,
         () -> component.getArmour(aArmourSide),
         aMsg -> armourChanged.test(aMsg) && ((ArmourMessage) aMsg).component == component,
         aErrorReporter);
@@ -180,6 +205,8 @@ public class LoadoutModelAdaptor {
     final ConfiguredComponent component = loadout.getComponent(location);
     return new LsmlIntegerBinding(
         aXBar,
+        loadout,
+        ARMOUR_MESSAGES,
         () -> component.getEffectiveArmour(aArmourSide, loadout.getAllModifiers()),
         aMsg -> armourChanged.test(aMsg) && ((ArmourMessage) aMsg).component == component,
         aErrorReporter);
@@ -195,7 +222,12 @@ public class LoadoutModelAdaptor {
       final ConfiguredComponentOmniMech component = loadoutOmni.getComponent(aLocation);
       if (component.getOmniPod().getToggleableItems().contains(aItem)) {
         return new LsmlBooleanBinding(
-            aXBar, () -> component.getToggleState(aItem), aItemsChanged, aErrorReporter);
+            aXBar,
+            loadout,
+            ITEMS_MESSAGES,
+            () -> component.getToggleState(aItem),
+            aItemsChanged,
+            aErrorReporter);
       }
     }
     return null;
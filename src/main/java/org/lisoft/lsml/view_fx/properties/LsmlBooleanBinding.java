@@ -17,6 +17,7 @@
  */
 package org.lisoft.lsml.view_fx.properties;
 
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.function.Predicate;
 import javafx.beans.binding.BooleanBinding;
@@ -24,6 +25,7 @@ import org.lisoft.lsml.application.ErrorReporter;
 import org.lisoft.lsml.messages.Message;
 import org.lisoft.lsml.messages.MessageReceiver;
 import org.lisoft.lsml.messages.MessageReception;
+import org.lisoft.lsml.model.loadout.Loadout;
 
 /**
  * This binding will bind to an arbitrary attribute of a loadout and provide automatic updating.
@@ -37,10 +39,14 @@ public class LsmlBooleanBinding extends BooleanBinding implements MessageReceive
 
   public LsmlBooleanBinding(
       MessageReception aMessageReception,
+      Loadout aLoadout,
+      List<Class<? extends Message>> aMessageTypes,
       Callable<Boolean> aValueFunction,
       Predicate<Message> aInvalidationFilter,
       ErrorReporter aErrorReporter) {
-    aMessageReception.attach(this);
+    for (final Class<? extends Message> messageType : aMessageTypes) {
+      aMessageReception.attach(messageType, aLoadout, this);
+    }
     valueFunction = aValueFunction;
     invalidationFilter = aInvalidationFilter;
     errorReporter = aErrorReporter;
@@ -24,8 +24,10 @@ import javafx.beans.binding.DoubleExpression;
 import org.lisoft.lsml.messages.Message;
 import org.lisoft.lsml.messages.MessageReceiver;
 import org.lisoft.lsml.messages.MessageReception;
+import org.lisoft.lsml.model.loadout.Loadout;
 import org.lisoft.lsml.model.metrics.Metric;
 
+import java.util.List;
 import java.util.function.Predicate;
 
 /**
@@ -42,11 +44,16 @@ public class MetricBinding<T extends Metric> extends DoubleBinding implements Me
      * Creates a new {@link MetricBinding}.
      *
      * @param aMessageReception The {@link MessageReception} to listen to messages on.
+     * @param aLoadout          The {@link Loadout} to listen to messages for.
+     * @param aMessageTypes     The types of messages that can affect the {@link Metric}.
      * @param aMetric           The {@link Metric} to wrap.
      * @param aFilter           A {@link Predicate} which returns true if the given message might have affected the {@link Metric}.
      */
-    public MetricBinding(MessageReception aMessageReception, T aMetric, Predicate<Message> aFilter) {
-        aMessageReception.attach(this);
+    public MetricBinding(MessageReception aMessageReception, Loadout aLoadout,
+                         List<Class<? extends Message>> aMessageTypes, T aMetric, Predicate<Message> aFilter) {
+        for (final Class<? extends Message> messageType : aMessageTypes) {
+            aMessageReception.attach(messageType, aLoadout, this);
+        }
         metric = aMetric;
         filter = aFilter;
     }
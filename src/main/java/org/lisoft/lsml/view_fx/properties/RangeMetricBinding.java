@@ -26,8 +26,10 @@ import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.value.ObservableDoubleValue;
 import org.lisoft.lsml.messages.Message;
 import org.lisoft.lsml.messages.MessageReception;
+import org.lisoft.lsml.model.loadout.Loadout;
 import org.lisoft.lsml.model.metrics.RangeMetric;
 
+import java.util.List;
 import java.util.function.Predicate;
 
 /**
@@ -40,8 +42,9 @@ public class RangeMetricBinding<T extends RangeMetric> extends MetricBinding<T>
     private final DoubleBinding displayRange;
     private final SimpleDoubleProperty userRange;
 
-    public RangeMetricBinding(MessageReception aMessageReception, T aMetric, Predicate<Message> aFilter) {
-        super(aMessageReception, aMetric, aFilter);
+    public RangeMetricBinding(MessageReception aMessageReception, Loadout aLoadout,
+                              List<Class<? extends Message>> aMessageTypes, T aMetric, Predicate<Message> aFilter) {
+        super(aMessageReception, aLoadout, aMessageTypes, aMetric, aFilter);
 
         userRange = new SimpleDoubleProperty(aMetric.getUserRange()) {
             @Override
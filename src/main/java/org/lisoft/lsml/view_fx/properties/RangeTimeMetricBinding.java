@@ -26,9 +26,11 @@ import org.lisoft.lsml.messages.LoadoutMessage;
 import org.lisoft.lsml.messages.LoadoutMessage.Type;
 import org.lisoft.lsml.messages.Message;
 import org.lisoft.lsml.messages.MessageXBar;
+import org.lisoft.lsml.model.loadout.Loadout;
 import org.lisoft.lsml.model.metrics.RangeMetric;
 import org.lisoft.lsml.model.metrics.RangeTimeMetric;
 
+import java.util.List;
 import java.util.function.Predicate;
 
 /**
@@ -40,8 +42,9 @@ import java.util.function.Predicate;
 public class RangeTimeMetricBinding<T extends RangeTimeMetric> extends RangeMetricBinding<T> {
     private final SimpleDoubleProperty time;
 
-    public RangeTimeMetricBinding(MessageXBar aXBar, T aMetric, Predicate<Message> aFilter) {
-        super(aXBar, aMetric, aFilter);
+    public RangeTimeMetricBinding(MessageXBar aXBar, Loadout aLoadout, List<Class<? extends Message>> aMessageTypes,
+                                  T aMetric, Predicate<Message> aFilter) {
+        super(aXBar, aLoadout, aMessageTypes, aMetric, aFilter);
 
         time = new SimpleDoubleProperty(aMetric.getTime()) {
             @Override
@@ -43,6 +43,7 @@ import org.lisoft.mwo_data.equipment.BallisticWeapon;
 import org.lisoft.mwo_data.equipment.EnergyWeapon;
 import org.lisoft.mwo_data.equipment.MissileWeapon;
 import org.lisoft.mwo_data.equipment.Weapon;
+import org.lisoft.mwo_data.equipment.WeaponStat;
 import org.lisoft.mwo_data.mechs.Chassis;
 import org.lisoft.mwo_data.mechs.ChassisStandard;
 import org.lisoft.mwo_data.mechs.HardPointType;
@@ -111,9 +112,10 @@ public class FxTableUtils {
   public static void addStatColumn(
       TableView<Weapon> aTable, String aName, String aStat, String aTooltip) {
     final TableColumn<Weapon, String> col = new TableColumn<>(aName);
+    final WeaponStat stat = WeaponStat.of(aStat);
     col.setCellValueFactory(
         aFeatures ->
-            FxBindingUtils.formatValue(STAT_FMT, true, aFeatures.getValue().getStat(aStat, null)));
+            FxBindingUtils.formatValue(STAT_FMT, true, stat.evaluate(aFeatures.getValue(), null)));
     col.setComparator(FxTableUtils.NUMERICAL_ORDERING);
     aTable.getColumns().add(col);
     addColumnToolTip(col, aTooltip);
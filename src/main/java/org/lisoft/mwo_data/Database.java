@@ -91,6 +91,31 @@ public class Database {
     return (Database) makeXStream().fromXML(aInputStream);
   }
 
+  /**
+   * Produces a {@link Database} from an {@link InputStream} pointing to a binary snapshot written
+   * by {@link #writeSnapshot(OutputStream)}. Reading a snapshot is considerably faster than reading
+   * the XML format but snapshots are only readable by the same version of LSML that wrote them.
+   *
+   * @param aInputStream The input to read from.
+   * @return The parsed database.
+   * @throws IOException If the stream isn't a snapshot, is corrupt or was written by an
+   *     incompatible version. The caller should fall back to the XML database.
+   */
+  public static Database readSnapshot(InputStream aInputStream) throws IOException {
+    return DatabaseSnapshot.read(aInputStream);
+  }
+
+  /**
+   * Writes this {@link Database} as a binary snapshot that can be read by {@link
+   * #readSnapshot(InputStream)}.
+   *
+   * @param aOutputStream The output to write to.
+   * @throws IOException If the database couldn't be written.
+   */
+  public void writeSnapshot(OutputStream aOutputStream) throws IOException {
+    DatabaseSnapshot.write(this, aOutputStream);
+  }
+
   public void writeToStream(OutputStream aOutputStream) throws IOException {
     final XStream stream = makeXStream();
     try (OutputStreamWriter ow = new OutputStreamWriter(aOutputStream, StandardCharsets.UTF_8);
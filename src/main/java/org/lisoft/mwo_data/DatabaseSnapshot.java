@@ -0,0 +1,568 @@
+/*
+ * Li Song Mechlab - A 'mech building tool for PGI's MechWarrior: Online.
+ * Copyright (C) 2013-2023  Li Song
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.lisoft.mwo_data;
+
+import com.thoughtworks.xstream.converters.reflection.ReflectionProvider;
+import com.thoughtworks.xstream.core.JVM;
+import java.io.*;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Reads and writes {@link Database}s in a compact binary snapshot format.
+ *
+ * <p>A snapshot consists of a header with the format version, a table of all strings, a table of
+ * all classes together with the names and types of their serialized fields and finally the object
+ * graph. Every object is written once, later references to the same object are written as the index
+ * of its first occurrence and strings are written as indices into the string table.
+ *
+ * <p>Just like the XML format, all non-static and non-transient fields are serialized. A snapshot
+ * is only read if the recorded field layout of every class matches the running application, a
+ * snapshot written by a different version of LSML is rejected with an {@link IOException} so that
+ * the caller can fall back to the XML database.
+ *
+ * @author Li Song
+ */
+final class DatabaseSnapshot {
+  private static final String ALLOWED_PACKAGE = "org.lisoft.mwo_data.";
+  private static final int FORMAT_VERSION = 1;
+  private static final int KIND_ARRAY = 2;
+  private static final int KIND_COLLECTION = 5;
+  private static final int KIND_ENUM = 1;
+  private static final int KIND_LIST = 3;
+  private static final int KIND_MAP = 6;
+  private static final int KIND_OBJECT = 0;
+  private static final int KIND_SET = 4;
+  private static final ClassValue<Field[]> LAYOUTS =
+      new ClassValue<>() {
+        @Override
+        protected Field[] computeValue(Class<?> aClass) {
+          final List<Field> fields = new ArrayList<>();
+          for (Class<?> c = aClass; c != Object.class; c = c.getSuperclass()) {
+            final List<Field> declared = new ArrayList<>();
+            for (final Field field : c.getDeclaredFields()) {
+              final int modifiers = field.getModifiers();
+              if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)) {
+                field.setAccessible(true);
+                declared.add(field);
+              }
+            }
+            declared.sort(Comparator.comparing(Field::getName));
+            fields.addAll(0, declared);
+          }
+          return fields.toArray(new Field[0]);
+        }
+      };
+  private static final byte[] MAGIC = {'L', 'S', 'M', 'L', 'S', 'N', 'A', 'P'};
+  private static final ReflectionProvider REFLECTION_PROVIDER = JVM.newReflectionProvider();
+  private static final int TAG_BOOLEAN = 4;
+  private static final int TAG_BYTE = 5;
+  private static final int TAG_CHAR = 6;
+  private static final int TAG_DOUBLE = 11;
+  private static final int TAG_FLOAT = 10;
+  private static final int TAG_INSTANCE = 2;
+  private static final int TAG_INT = 8;
+  private static final int TAG_LONG = 9;
+  private static final int TAG_NULL = 0;
+  private static final int TAG_REFERENCE = 1;
+  private static final int TAG_SHORT = 7;
+  private static final int TAG_STRING = 3;
+
+  private static class Reader {
+    private final List<Class<?>> classes = new ArrayList<>();
+    private final DataInputStream in;
+    private final List<Integer> kinds = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+    private final List<Object> objects = new ArrayList<>();
+    private final String[] strings;
+
+    Reader(DataInputStream aInput) throws IOException {
+      in = aInput;
+      strings = new String[readVarInt(in)];
+      for (int i = 0; i < strings.length; ++i) {
+        final byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        strings[i] = new String(bytes, StandardCharsets.UTF_8);
+      }
+
+      final int numClasses = readVarInt(in);
+      for (int i = 0; i < numClasses; ++i) {
+        final String name = readString();
+        final int kind = in.readByte();
+        names.add(name);
+        kinds.add(kind);
+        classes.add(resolve(name, kind));
+      }
+    }
+
+    Object readValue() throws IOException {
+      final int tag = in.readByte();
+      switch (tag) {
+        case TAG_NULL:
+          return null;
+        case TAG_REFERENCE:
+          return objects.get(readVarInt(in));
+        case TAG_STRING:
+          return readString();
+        case TAG_BOOLEAN:
+          return in.readBoolean();
+        case TAG_BYTE:
+          return in.readByte();
+        case TAG_CHAR:
+          return in.readChar();
+        case TAG_SHORT:
+          return in.readShort();
+        case TAG_INT:
+          return in.readInt();
+        case TAG_LONG:
+          return in.readLong();
+        case TAG_FLOAT:
+          return in.readFloat();
+        case TAG_DOUBLE:
+          return in.readDouble();
+        case TAG_INSTANCE:
+          return readInstance(readVarInt(in));
+        default:
+          throw new IOException("Corrupt snapshot, unknown tag: " + tag);
+      }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Object readInstance(int aClassIndex) throws IOException {
+      final Class<?> type = classes.get(aClassIndex);
+      final String name = names.get(aClassIndex);
+      final int kind = kinds.get(aClassIndex);
+      switch (kind) {
+        case KIND_ENUM:
+          return Enum.valueOf((Class<Enum>) type, readString());
+        case KIND_ARRAY:
+          {
+            final int length = readVarInt(in);
+            final Object array = Array.newInstance(type.getComponentType(), length);
+            objects.add(array);
+            for (int i = 0; i < length; ++i) {
+              Array.set(array, i, read(type.getComponentType()));
+            }
+            return array;
+          }
+        case KIND_MAP:
+          {
+            final int size = readVarInt(in);
+            final int index = reserve();
+            final Map<Object, Object> map =
+                switch (name) {
+                  case "java.util.HashMap" -> new HashMap<>();
+                  case "java.util.TreeMap" -> new TreeMap<>();
+                  default -> new LinkedHashMap<>();
+                };
+            Object result = map;
+            if (name.startsWith("java.util.Collections$Unmodifiable")) {
+              result = Collections.unmodifiableMap(map);
+            }
+            objects.set(index, result);
+            for (int i = 0; i < size; ++i) {
+              final Object key = readValue();
+              map.put(key, readValue());
+            }
+            if (name.startsWith("java.util.ImmutableCollections$")) {
+              result = Map.copyOf(map);
+              objects.set(index, result);
+            }
+            return result;
+          }
+        case KIND_LIST:
+        case KIND_SET:
+        case KIND_COLLECTION:
+          {
+            final int size = readVarInt(in);
+            final int index = reserve();
+            if ("java.util.Arrays$ArrayList".equals(name)) {
+              final List<Object> list = Arrays.asList(new Object[size]);
+              objects.set(index, list);
+              for (int i = 0; i < size; ++i) {
+                list.set(i, readValue());
+              }
+              return list;
+            }
+
+            final Collection<Object> collection =
+                switch (name) {
+                  case "java.util.HashSet" -> new HashSet<>();
+                  case "java.util.LinkedList" -> new LinkedList<>();
+                  case "java.util.TreeSet" -> new TreeSet<>();
+                  default -> kind == KIND_SET ? new LinkedHashSet<>() : new ArrayList<>(size);
+                };
+            Object result = collection;
+            if (name.startsWith("java.util.Collections$Unmodifiable")) {
+              result =
+                  switch (kind) {
+                    case KIND_LIST -> Collections.unmodifiableList((List<Object>) collection);
+                    case KIND_SET -> Collections.unmodifiableSet((Set<Object>) collection);
+                    default -> Collections.unmodifiableCollection(collection);
+                  };
+            }
+            objects.set(index, result);
+            for (int i = 0; i < size; ++i) {
+              collection.add(readValue());
+            }
+            if (name.startsWith("java.util.ImmutableCollections$")) {
+              result = kind == KIND_SET ? Set.copyOf(collection) : List.copyOf(collection);
+              objects.set(index, result);
+            }
+            return result;
+          }
+        default:
+          {
+            final Object object = REFLECTION_PROVIDER.newInstance(type);
+            objects.add(object);
+            try {
+              for (final Field field : LAYOUTS.get(type)) {
+                field.set(object, read(field.getType()));
+              }
+            } catch (final IllegalAccessException | IllegalArgumentException e) {
+              throw new IOException("Unable to restore: " + name, e);
+            }
+            return object;
+          }
+      }
+    }
+
+    private Object read(Class<?> aType) throws IOException {
+      if (!aType.isPrimitive()) {
+        return readValue();
+      } else if (aType == int.class) {
+        return in.readInt();
+      } else if (aType == double.class) {
+        return in.readDouble();
+      } else if (aType == boolean.class) {
+        return in.readBoolean();
+      } else if (aType == long.class) {
+        return in.readLong();
+      } else if (aType == float.class) {
+        return in.readFloat();
+      } else if (aType == short.class) {
+        return in.readShort();
+      } else if (aType == byte.class) {
+        return in.readByte();
+      }
+      return in.readChar();
+    }
+
+    private String readString() throws IOException {
+      return strings[readVarInt(in)];
+    }
+
+    private int reserve() {
+      objects.add(null);
+      return objects.size() - 1;
+    }
+
+    private Class<?> resolve(String aName, int aKind) throws IOException {
+      if (aKind == KIND_LIST
+          || aKind == KIND_SET
+          || aKind == KIND_COLLECTION
+          || aKind == KIND_MAP) {
+        // Collections are only used to pick a suitable implementation, never instantiated by name.
+        return null;
+      }
+
+      final Class<?> type;
+      try {
+        type = Class.forName(aName, false, DatabaseSnapshot.class.getClassLoader());
+      } catch (final ClassNotFoundException e) {
+        throw new IOException("Snapshot refers to an unknown class: " + aName, e);
+      }
+
+      Class<?> base = type;
+      while (base.isArray()) {
+        base = base.getComponentType();
+      }
+      if (!base.isPrimitive()
+          && base != String.class
+          && base != Object.class
+          && !base.getName().startsWith(ALLOWED_PACKAGE)) {
+        throw new IOException("Class not allowed in snapshot: " + aName);
+      }
+      if (aKind == KIND_OBJECT) {
+        final int numFields = readVarInt(in);
+        final Field[] fields = LAYOUTS.get(type);
+        boolean matches = numFields == fields.length;
+        for (int i = 0; i < numFields; ++i) {
+          final String field = readString();
+          final String fieldType = readString();
+          matches =
+              matches
+                  && fields[i].getName().equals(field)
+                  && fields[i].getType().getName().equals(fieldType);
+        }
+        if (!matches) {
+          throw new IOException("The snapshot is out of date, the layout of " + aName + " differs");
+        }
+      }
+      return type;
+    }
+  }
+
+  private static class Writer {
+    private final Map<Class<?>, Integer> classes = new HashMap<>();
+    private final ByteArrayOutputStream classTable = new ByteArrayOutputStream();
+    private final Map<Object, Integer> objects = new IdentityHashMap<>();
+    private final DataOutputStream out;
+    private final Map<String, Integer> strings = new LinkedHashMap<>();
+
+    Writer(DataOutputStream aOutput) {
+      out = aOutput;
+    }
+
+    void writeTo(DataOutputStream aOutput) throws IOException {
+      writeVarInt(aOutput, strings.size());
+      for (final String string : strings.keySet()) {
+        final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(aOutput, bytes.length);
+        aOutput.write(bytes);
+      }
+      writeVarInt(aOutput, classes.size());
+      classTable.writeTo(aOutput);
+    }
+
+    void writeValue(Object aValue) throws IOException {
+      if (aValue == null) {
+        out.writeByte(TAG_NULL);
+      } else if (aValue instanceof String string) {
+        out.writeByte(TAG_STRING);
+        writeVarInt(out, string(string));
+      } else if (aValue instanceof Integer value) {
+        out.writeByte(TAG_INT);
+        out.writeInt(value);
+      } else if (aValue instanceof Double value) {
+        out.writeByte(TAG_DOUBLE);
+        out.writeDouble(value);
+      } else if (aValue instanceof Boolean value) {
+        out.writeByte(TAG_BOOLEAN);
+        out.writeBoolean(value);
+      } else if (aValue instanceof Long value) {
+        out.writeByte(TAG_LONG);
+        out.writeLong(value);
+      } else if (aValue instanceof Float value) {
+        out.writeByte(TAG_FLOAT);
+        out.writeFloat(value);
+      } else if (aValue instanceof Short value) {
+        out.writeByte(TAG_SHORT);
+        out.writeShort(value);
+      } else if (aValue instanceof Byte value) {
+        out.writeByte(TAG_BYTE);
+        out.writeByte(value);
+      } else if (aValue instanceof Character value) {
+        out.writeByte(TAG_CHAR);
+        out.writeChar(value);
+      } else if (aValue instanceof Enum<?> value) {
+        out.writeByte(TAG_INSTANCE);
+        writeVarInt(out, classIndex(value.getDeclaringClass(), KIND_ENUM));
+        writeVarInt(out, string(value.name()));
+      } else if (objects.containsKey(aValue)) {
+        out.writeByte(TAG_REFERENCE);
+        writeVarInt(out, objects.get(aValue));
+      } else {
+        writeInstance(aValue);
+      }
+    }
+
+    private int classIndex(Class<?> aClass, int aKind) throws IOException {
+      final Integer index = classes.get(aClass);
+      if (index != null) {
+        return index;
+      }
+
+      final DataOutputStream table = new DataOutputStream(classTable);
+      writeVarInt(table, string(aClass.getName()));
+      table.writeByte(aKind);
+      if (aKind == KIND_OBJECT) {
+        if (!aClass.getName().startsWith(ALLOWED_PACKAGE)) {
+          throw new IOException("Class not allowed in snapshot: " + aClass.getName());
+        }
+        final Field[] fields = LAYOUTS.get(aClass);
+        writeVarInt(table, fields.length);
+        for (final Field field : fields) {
+          writeVarInt(table, string(field.getName()));
+          writeVarInt(table, string(field.getType().getName()));
+        }
+      }
+      classes.put(aClass, classes.size());
+      return classes.size() - 1;
+    }
+
+    private int string(String aString) {
+      return strings.computeIfAbsent(aString, s -> strings.size());
+    }
+
+    private void write(Class<?> aType, Object aValue) throws IOException {
+      if (!aType.isPrimitive()) {
+        writeValue(aValue);
+      } else if (aType == int.class) {
+        out.writeInt((Integer) aValue);
+      } else if (aType == double.class) {
+        out.writeDouble((Double) aValue);
+      } else if (aType == boolean.class) {
+        out.writeBoolean((Boolean) aValue);
+      } else if (aType == long.class) {
+        out.writeLong((Long) aValue);
+      } else if (aType == float.class) {
+        out.writeFloat((Float) aValue);
+      } else if (aType == short.class) {
+        out.writeShort((Short) aValue);
+      } else if (aType == byte.class) {
+        out.writeByte((Byte) aValue);
+      } else {
+        out.writeChar((Character) aValue);
+      }
+    }
+
+    private void writeInstance(Object aValue) throws IOException {
+      final Class<?> type = aValue.getClass();
+      objects.put(aValue, objects.size());
+      if (type.isArray()) {
+        out.writeByte(TAG_INSTANCE);
+        writeVarInt(out, classIndex(type, KIND_ARRAY));
+        final int length = Array.getLength(aValue);
+        writeVarInt(out, length);
+        for (int i = 0; i < length; ++i) {
+          write(type.getComponentType(), Array.get(aValue, i));
+        }
+      } else if (aValue instanceof Map<?, ?> map) {
+        if (map instanceof SortedMap<?, ?> sorted && sorted.comparator() != null) {
+          throw new IOException("Maps with comparators are not supported: " + type.getName());
+        }
+        out.writeByte(TAG_INSTANCE);
+        writeVarInt(out, classIndex(type, KIND_MAP));
+        writeVarInt(out, map.size());
+        for (final Map.Entry<?, ?> entry : map.entrySet()) {
+          writeValue(entry.getKey());
+          writeValue(entry.getValue());
+        }
+      } else if (aValue instanceof Collection<?> collection) {
+        if (collection instanceof SortedSet<?> sorted && sorted.comparator() != null) {
+          throw new IOException("Sets with comparators are not supported: " + type.getName());
+        }
+        final int kind =
+            collection instanceof List
+                ? KIND_LIST
+                : collection instanceof Set ? KIND_SET : KIND_COLLECTION;
+        out.writeByte(TAG_INSTANCE);
+        writeVarInt(out, classIndex(type, kind));
+        writeVarInt(out, collection.size());
+        for (final Object element : collection) {
+          writeValue(element);
+        }
+      } else {
+        out.writeByte(TAG_INSTANCE);
+        writeVarInt(out, classIndex(type, KIND_OBJECT));
+        try {
+          for (final Field field : LAYOUTS.get(type)) {
+            write(field.getType(), field.get(aValue));
+          }
+        } catch (final IllegalAccessException e) {
+          throw new IOException("Unable to snapshot: " + type.getName(), e);
+        }
+      }
+    }
+  }
+
+  private DatabaseSnapshot() {
+    // No instances
+  }
+
+  /**
+   * Reads a snapshot previously written by {@link #write(Database, OutputStream)}.
+   *
+   * @param aInputStream The stream to read from.
+   * @return The {@link Database} in the snapshot.
+   * @throws IOException If the stream is not a snapshot, is corrupt, or was written by an
+   *     incompatible version.
+   */
+  static Database read(InputStream aInputStream) throws IOException {
+    final DataInputStream in =
+        new DataInputStream(
+            aInputStream instanceof BufferedInputStream
+                ? aInputStream
+                : new BufferedInputStream(aInputStream));
+    final byte[] magic = new byte[MAGIC.length];
+    in.readFully(magic);
+    if (!Arrays.equals(MAGIC, magic)) {
+      throw new IOException("Not a database snapshot");
+    }
+    final int version = in.readInt();
+    if (version != FORMAT_VERSION) {
+      throw new IOException("Unsupported snapshot version: " + version);
+    }
+
+    try {
+      final Object database = new Reader(in).readValue();
+      if (!(database instanceof Database)) {
+        throw new IOException("The snapshot doesn't contain a database");
+      }
+      return (Database) database;
+    } catch (final RuntimeException e) {
+      throw new IOException("Corrupt snapshot", e);
+    }
+  }
+
+  /**
+   * Writes a snapshot of the given {@link Database}. The snapshot is prepared in memory first so
+   * that nothing is written to the stream if serialization fails.
+   *
+   * @param aDatabase The {@link Database} to write.
+   * @param aOutputStream The stream to write to.
+   * @throws IOException If the database couldn't be serialized or written.
+   */
+  static void write(Database aDatabase, OutputStream aOutputStream) throws IOException {
+    final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    final Writer writer = new Writer(new DataOutputStream(body));
+    writer.writeValue(aDatabase);
+
+    final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(aOutputStream));
+    out.write(MAGIC);
+    out.writeInt(FORMAT_VERSION);
+    writer.writeTo(out);
+    body.writeTo(out);
+    out.flush();
+  }
+
+  private static int readVarInt(DataInput aInput) throws IOException {
+    int value = 0;
+    int shift = 0;
+    int b;
+    do {
+      b = aInput.readUnsignedByte();
+      value |= (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0 && shift < 35);
+    return value;
+  }
+
+  private static void writeVarInt(DataOutput aOutput, int aValue) throws IOException {
+    int value = aValue;
+    while ((value & ~0x7F) != 0) {
+      aOutput.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    aOutput.writeByte(value);
+  }
+}
@@ -78,11 +78,11 @@ public class GuidanceUpgrade extends Upgrade {
       return aOldAmmo;
     }
 
-    for (final MissileWeapon weapon : ItemDB.lookup(MissileWeapon.class)) {
+    for (final MissileWeapon weapon : ItemDB.items(MissileWeapon.class)) {
       if (weapon.isCompatibleAmmo(aOldAmmo)) {
         final MissileWeapon representative = upgrade(weapon);
 
-        for (final Ammunition ammunition : ItemDB.lookup(Ammunition.class)) {
+        for (final Ammunition ammunition : ItemDB.items(Ammunition.class)) {
           if (representative.isCompatibleAmmo(ammunition)
               && ammunition.getMass() == aOldAmmo.getMass()) {
             return ammunition;
@@ -107,7 +107,7 @@ public class GuidanceUpgrade extends Upgrade {
       return aOldWeapon;
     }
 
-    for (final MissileWeapon weapon : ItemDB.lookup(MissileWeapon.class)) {
+    for (final MissileWeapon weapon : ItemDB.items(MissileWeapon.class)) {
       if (weapon.getBaseVariant() == baseVariant && weapon.getRequiredUpgrade() == this) {
         return weapon;
       }
@@ -78,7 +78,7 @@ public class ItemComparator implements Comparator<Item>, Serializable {
   static {
     ITEM_PRIORITY = new HashMap<>();
 
-    for (final Item item : ItemDB.lookup(Item.class)) {
+    for (final Item item : ItemDB.items(Item.class)) {
       if (item instanceof final BallisticWeapon weapon) {
         final int rank = rankBallistic(weapon);
         ITEM_PRIORITY.put(weapon, new Pair<>(rank, rank));
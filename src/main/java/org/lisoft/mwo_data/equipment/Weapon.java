@@ -244,7 +244,8 @@ public class Weapon extends HeatSource {
   /**
    * Calculates an arbitrary statistic for the weapon based on a string, the format is
    * "[dsthcr]+(/[dsthcr]+)?". For example "d/hhs" is damage per heat^2 second, see {@link
-   * #getStat(char, Collection)} for format details.
+   * #getStat(char, Collection)} for format details. The string is compiled into a {@link
+   * WeaponStat} the first time it's used.
    *
    * @param aWeaponStat A string specifying the statistic to be calculated. Must match the regexp
    *     pattern "[dsthcr]+(/[dsthcr]+)?".
@@ -252,21 +253,7 @@ public class Weapon extends HeatSource {
    * @return The calculated statistic.
    */
   public double getStat(String aWeaponStat, Collection<Modifier> aModifiers) {
-    double nominator = 1.0;
-    int index = 0;
-    while (index < aWeaponStat.length() && aWeaponStat.charAt(index) != '/') {
-      nominator *= getStat(aWeaponStat.charAt(index++), aModifiers);
-    }
-    index++; // Skip past the '/' if we encountered it, otherwise we'll be at the end of the string
-    // anyway.
-    double denominator = 1.0;
-    while (index < aWeaponStat.length()) {
-      denominator *= getStat(aWeaponStat.charAt(index++), aModifiers);
-    }
-    if (nominator == 0.0 && denominator == 0.0) {
-      return 0;
-    }
-    return nominator / denominator;
+    return WeaponStat.of(aWeaponStat).evaluate(this, aModifiers);
   }
 
   public boolean hasSpread() {
@@ -119,6 +119,223 @@ public class WeaponRangeProfile {
     }
   }
 
+  /**
+   * A {@link WeaponRangeProfile} with the node ranges and spread evaluated for one set of
+   * modifiers. Use this when querying a profile at many ranges, for example when drawing graphs.
+   * The profile doesn't change if the modifiers used to create it change.
+   */
+  public static class Resolved {
+    private final double[] damageModifiers;
+    private final double[] exponents;
+    private final boolean sorted;
+    private final double spread;
+    private final double[] starts;
+    private final InterpolationType[] typesToNext;
+
+    private Resolved(WeaponRangeProfile aProfile, Collection<Modifier> aModifiers) {
+      // The sentinels are included to make the evaluation identical to the node list.
+      final int numNodes = aProfile.nodes.size() + 2;
+      starts = new double[numNodes];
+      damageModifiers = new double[numNodes];
+      exponents = new double[numNodes];
+      typesToNext = new InterpolationType[numNodes];
+      for (int i = 0; i < numNodes; ++i) {
+        final RangeNode node;
+        if (i == 0) {
+          node = SENTINEL_HEAD;
+        } else if (i == numNodes - 1) {
+          node = SENTINEL_TAIL;
+        } else {
+          node = aProfile.nodes.get(i - 1);
+        }
+        starts[i] = node.start.value(aModifiers);
+        damageModifiers[i] = node.damageModifier;
+        exponents[i] = node.exponent == null ? Double.NaN : node.exponent;
+        typesToNext[i] = node.typeToNext;
+      }
+      spread = aProfile.spread == null ? Double.NaN : aProfile.spread.value(aModifiers);
+
+      boolean ascending = true;
+      for (int i = 2; i < numNodes - 1; ++i) {
+        ascending &= starts[i - 1] <= starts[i];
+      }
+      sorted = ascending;
+    }
+
+    /**
+     * @see WeaponRangeProfile#getPolygonTrainRanges(double, Collection)
+     * @param aDx The step the use in smooth segments of the polygon train.
+     * @return An array with the ranges.
+     */
+    public double[] getPolygonTrainRanges(double aDx) {
+      final int numNodes = starts.length - 2;
+      if (numNodes == 0) {
+        return new double[0];
+      }
+
+      double[] ans = new double[2 * numNodes + 1];
+      int size = 0;
+      double nextStep = aDx;
+      InterpolationType interpolationType = InterpolationType.LINEAR;
+      for (int i = 1; i <= numNodes; ++i) {
+        final double r = starts[i];
+        while (nextStep < r) {
+          if (size + 3 > ans.length) {
+            ans = Arrays.copyOf(ans, 2 * ans.length);
+          }
+          ans[size++] = nextStep;
+          nextStep += aDx;
+        }
+
+        if (size + 3 > ans.length) {
+          ans = Arrays.copyOf(ans, 2 * ans.length);
+        }
+        if (interpolationType == InterpolationType.STEP) {
+          ans[size++] = Math.nextDown(r);
+        }
+        ans[size++] = r;
+        interpolationType = typesToNext[i];
+      }
+
+      if (damageModifiers[numNodes] != 0.0) {
+        ans[size++] = Math.nextUp(starts[numNodes]);
+      }
+      return Arrays.copyOf(ans, size);
+    }
+
+    /**
+     * @see WeaponRangeProfile#getPercentileRange(double, Collection)
+     * @param aPercentile The percentile of damage to get the range for.
+     * @return A {@link Range} that represents the minimum and maximum range at which the weapon
+     *     does the percentile damage.
+     */
+    public Range getPercentileRange(double aPercentile) {
+      final double[] samplePoints = getPolygonTrainRanges(10);
+      final double[] damagePoints = new double[samplePoints.length];
+      rangeEffectiveness(samplePoints, damagePoints);
+
+      if (damagePoints.length == 0) {
+        return new Range(0.0, 0.0);
+      }
+      double max = damagePoints[0];
+      for (final double damage : damagePoints) {
+        if (Double.compare(damage, max) > 0) {
+          max = damage;
+        }
+      }
+      final double threshold = max * aPercentile;
+
+      Range longestRange = null;
+      double longestLength = Double.NEGATIVE_INFINITY;
+      double rangeStart = Double.NEGATIVE_INFINITY;
+
+      double prevDamage = Double.NEGATIVE_INFINITY;
+      for (int i = 0; i < samplePoints.length; ++i) {
+        final double currDamage = damagePoints[i];
+
+        if (prevDamage < threshold && currDamage >= threshold) {
+          rangeStart = samplePoints[i];
+        } else if (prevDamage >= threshold && currDamage < threshold) {
+          final double rangeEnd = samplePoints[i - 1];
+          final double rangeLength = rangeEnd - rangeStart;
+          if (rangeLength > longestLength) {
+            longestLength = rangeLength;
+            longestRange = new Range(rangeStart, rangeEnd);
+          }
+        }
+        prevDamage = currDamage;
+      }
+      return longestRange;
+    }
+
+    /**
+     * @see WeaponRangeProfile#rangeEffectiveness(double, Collection)
+     * @param aRange The range to calculate for.
+     * @return A scale value to apply to weapon damage at the range.
+     */
+    public double rangeEffectiveness(double aRange) {
+      // The node that starts at or before the range, the next node starts after it.
+      final int startNode = findStartNode(aRange);
+      final int endNode = startNode + 1;
+
+      // Range completely outside the profile, make it zero.
+      if (endNode == starts.length - 1) {
+        if (starts[startNode] == aRange) {
+          return damageModifiers[startNode] * calcSpreadFactor(aRange);
+        }
+        return 0.0;
+      }
+
+      final double spreadFactor = calcSpreadFactor(aRange);
+      final double low = starts[startNode];
+      final double high = starts[endNode];
+      final double damageRange = damageModifiers[endNode] - damageModifiers[startNode];
+      final double dT = (aRange - low) / (high - low);
+
+      double damageFactor = damageModifiers[startNode];
+      switch (typesToNext[startNode]) {
+        case EXPONENTIAL:
+          damageFactor += damageRange * Math.pow(dT, exponents[startNode]);
+          break;
+        case LINEAR:
+          damageFactor += damageRange * dT;
+          break;
+        case STEP:
+          break;
+        default:
+          throw new RuntimeException("Missing interpolation type from switch!");
+      }
+      return spreadFactor * damageFactor;
+    }
+
+    /**
+     * Computes the effectiveness of the weapon at many ranges at once.
+     *
+     * @param aRanges The ranges to calculate for.
+     * @param aOut An array at least as long as <code>aRanges</code> where the effectiveness at
+     *     each range is stored.
+     */
+    public void rangeEffectiveness(double[] aRanges, double[] aOut) {
+      for (int i = 0; i < aRanges.length; ++i) {
+        aOut[i] = rangeEffectiveness(aRanges[i]);
+      }
+    }
+
+    private double calcSpreadFactor(double aRange) {
+      if (!Double.isNaN(spread)) {
+        final double targetRadius = 6; // [m]
+        final double maxAngle = Math.atan2(targetRadius, aRange) * 180 / Math.PI; // [deg]
+        return 2 * GAUSSIAN.cdf(maxAngle / spread) - 1;
+      }
+      return 1.0;
+    }
+
+    private int findStartNode(double aRange) {
+      final int last = starts.length - 1;
+      if (!sorted) {
+        int i = 1;
+        while (i < last && starts[i] <= aRange) {
+          i++;
+        }
+        return i - 1;
+      }
+
+      // The first node that doesn't start at or before the range.
+      int low = 1;
+      int high = last;
+      while (low < high) {
+        final int mid = (low + high) >>> 1;
+        if (starts[mid] <= aRange) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low - 1;
+    }
+  }
+
+  private static final GaussianDistribution GAUSSIAN = new GaussianDistribution();
   private static final RangeNode SENTINEL_HEAD =
       new RangeNode(
           new Attribute(Double.NEGATIVE_INFINITY, ModifierDescription.SEL_ALL),
@@ -200,37 +417,7 @@ public class WeaponRangeProfile {
    *     the percentile damage.
    */
   public Range getPercentileRange(double aPercentile, Collection<Modifier> aModifiers) {
-    final List<Double> samplePoints = getPolygonTrainRanges(10, aModifiers);
-    final List<Double> damagePoints =
-        samplePoints.stream().map(x -> rangeEffectiveness(x, aModifiers)).toList();
-
-    final Optional<Double> max = damagePoints.stream().max(Comparator.naturalOrder());
-    if (max.isEmpty()) {
-      return new Range(0.0, 0.0);
-    }
-    final double threshold = max.get() * aPercentile;
-
-    Range longestRange = null;
-    double longestLength = Double.NEGATIVE_INFINITY;
-    double rangeStart = Double.NEGATIVE_INFINITY;
-
-    double prevDamage = Double.NEGATIVE_INFINITY;
-    for (int i = 0; i < samplePoints.size(); ++i) {
-      final double currDamage = damagePoints.get(i);
-
-      if (prevDamage < threshold && currDamage >= threshold) {
-        rangeStart = samplePoints.get(i);
-      } else if (prevDamage >= threshold && currDamage < threshold) {
-        final double rangeEnd = samplePoints.get(i - 1);
-        final double rangeLength = rangeEnd - rangeStart;
-        if (rangeLength > longestLength) {
-          longestLength = rangeLength;
-          longestRange = new Range(rangeStart, rangeEnd);
-        }
-      }
-      prevDamage = currDamage;
-    }
-    return longestRange;
+    return resolve(aModifiers).getPercentileRange(aPercentile);
   }
 
   /**
@@ -242,31 +429,11 @@ public class WeaponRangeProfile {
    * @return A {@link List} of {@link Double}s with the ranges.
    */
   public List<Double> getPolygonTrainRanges(double aDx, Collection<Modifier> aModifiers) {
-    final List<Double> ans = new ArrayList<>();
-
-    if (!nodes.isEmpty()) {
-      double nextStep = aDx;
-      InterpolationType interpolationType = InterpolationType.LINEAR;
-      for (final RangeNode rangeNode : nodes) {
-        final double r = rangeNode.start.value(aModifiers);
-        while (nextStep < r) {
-          ans.add(nextStep);
-          nextStep += aDx;
-        }
-
-        if (interpolationType == InterpolationType.STEP) {
-          ans.add(Math.nextDown(r));
-        }
-        ans.add(r);
-        interpolationType = rangeNode.typeToNext;
-      }
-
-      final RangeNode lastNode = nodes.get(nodes.size() - 1);
-      if (lastNode.damageModifier != 0.0) {
-        ans.add(Math.nextUp(lastNode.start.value(aModifiers)));
-      }
+    final double[] ranges = resolve(aModifiers).getPolygonTrainRanges(aDx);
+    final List<Double> ans = new ArrayList<>(ranges.length);
+    for (final double range : ranges) {
+      ans.add(range);
     }
-
     return ans;
   }
 
@@ -275,7 +442,18 @@ public class WeaponRangeProfile {
   }
 
   /**
-   * Computes the effectiveness of the weapon at the given range.
+   * Evaluates the node ranges and spread of the profile for the given modifiers.
+   *
+   * @param aModifiers A collection of {@link Modifier}s that might affect the results.
+   * @return A {@link Resolved} profile.
+   */
+  public Resolved resolve(Collection<Modifier> aModifiers) {
+    return new Resolved(this, aModifiers);
+  }
+
+  /**
+   * Computes the effectiveness of the weapon at the given range. When computing the effectiveness
+   * at many ranges with the same modifiers, {@link #resolve(Collection)} the profile first.
    *
    * @param aRange The range to calculate for.
    * @param aModifiers A collection of {@link Modifier}s that might affect the results.
@@ -329,8 +507,6 @@ public class WeaponRangeProfile {
       // Assumption:
       // The 'spread' value is the standard deviation of a zero-mean Gaussian distribution of
       // angles.
-      final GaussianDistribution gaussianDistribution = new GaussianDistribution();
-
       final double targetRadius = 6; // [m]
       final double maxAngle = Math.atan2(targetRadius, aRange) * 180 / Math.PI; // [deg]
 
@@ -338,7 +514,7 @@ public class WeaponRangeProfile {
       // P_hit = P(-maxAngle <= X; X <= +maxAngle)
       // Xn = (X - 0) / spread ~ N(0,1)
       // P_hit = cdf(maxAngle / spread) - cdf(-maxAngle / spread) = 2*cdf(maxAngle / spread) - 1.0;
-      return 2 * gaussianDistribution.cdf(maxAngle / spread.value(aModifiers)) - 1;
+      return 2 * GAUSSIAN.cdf(maxAngle / spread.value(aModifiers)) - 1;
     }
     return 1.0;
   }
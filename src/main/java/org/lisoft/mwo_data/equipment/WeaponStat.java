@@ -0,0 +1,106 @@
+/*
+ * Li Song Mechlab - A 'mech building tool for PGI's MechWarrior: Online.
+ * Copyright (C) 2013-2023  Li Song
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.lisoft.mwo_data.equipment;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.lisoft.mwo_data.modifiers.Modifier;
+
+/**
+ * A compiled weapon statistic such as "d/s" for damage per second. The format is
+ * "[dsthcr]+(/[dsthcr]+)?", see {@link Weapon#getStat(char, Collection)} for the meaning of the
+ * characters.
+ *
+ * <p>The expression is parsed and validated once, evaluating it doesn't allocate.
+ *
+ * @author Li Song
+ */
+public final class WeaponStat {
+  // The stats are string literals in the code, so the cache stays small.
+  private static final Map<String, WeaponStat> cache = new ConcurrentHashMap<>();
+  private final char[] denominator;
+  private final String expression;
+  private final char[] nominator;
+
+  private WeaponStat(String aExpression) {
+    expression = aExpression;
+    final int slash = aExpression.indexOf('/');
+    if (slash < 0) {
+      nominator = aExpression.toCharArray();
+      denominator = new char[0];
+    } else {
+      nominator = aExpression.substring(0, slash).toCharArray();
+      denominator = aExpression.substring(slash + 1).toCharArray();
+    }
+    validate(nominator);
+    validate(denominator);
+  }
+
+  /**
+   * Gets the compiled form of the given statistic, compiling it only the first time it is asked
+   * for.
+   *
+   * @param aExpression A string matching the pattern "[dsthcr]+(/[dsthcr]+)?".
+   * @return A {@link WeaponStat} for the expression.
+   * @throws IllegalArgumentException If the expression isn't a valid statistic.
+   */
+  public static WeaponStat of(String aExpression) {
+    final WeaponStat stat = cache.get(aExpression);
+    if (stat != null) {
+      return stat;
+    }
+    return cache.computeIfAbsent(aExpression, WeaponStat::new);
+  }
+
+  private static void validate(char[] aStats) {
+    for (final char stat : aStats) {
+      if ("dsthcr".indexOf(stat) < 0) {
+        throw new IllegalArgumentException("Unknown identifier: " + stat);
+      }
+    }
+  }
+
+  /**
+   * Calculates the statistic for a weapon.
+   *
+   * @param aWeapon The weapon to calculate the statistic for.
+   * @param aModifiers A list of {@link Modifier}s to take into account.
+   * @return The calculated statistic. If both nominator and denominator are zero, the result is
+   *     zero.
+   */
+  public double evaluate(Weapon aWeapon, Collection<Modifier> aModifiers) {
+    double nominatorValue = 1.0;
+    for (final char stat : nominator) {
+      nominatorValue *= aWeapon.getStat(stat, aModifiers);
+    }
+    double denominatorValue = 1.0;
+    for (final char stat : denominator) {
+      denominatorValue *= aWeapon.getStat(stat, aModifiers);
+    }
+    if (nominatorValue == 0.0 && denominatorValue == 0.0) {
+      return 0;
+    }
+    return nominatorValue / denominatorValue;
+  }
+
+  @Override
+  public String toString() {
+    return expression;
+  }
+}
@@ -33,6 +33,7 @@ public class Upgrades {
   protected GuidanceUpgrade guidanceType;
   protected HeatSinkUpgrade heatSinkType;
   protected StructureUpgrade structureType;
+  private int modificationCount;
 
   public Upgrades(
       ArmourUpgrade aArmour,
@@ -63,6 +64,7 @@ public class Upgrades {
     structureType = aUpgrades.structureType;
     guidanceType = aUpgrades.guidanceType;
     heatSinkType = aUpgrades.heatSinkType;
+    markModified();
   }
 
   @Override
@@ -88,6 +90,14 @@ public class Upgrades {
     return heatSinkType;
   }
 
+  /**
+   * @return A counter that is incremented every time this object is modified. Can be used to detect
+   *     changes and invalidate cached values.
+   */
+  public int getModificationCount() {
+    return modificationCount;
+  }
+
   public StructureUpgrade getStructure() {
     return structureType;
   }
@@ -129,5 +139,11 @@ public class Upgrades {
    */
   public void setGuidance(GuidanceUpgrade aGuidanceUpgrade) {
     guidanceType = aGuidanceUpgrade;
+    markModified();
+  }
+
+  /** Must be called by all methods that change the upgrades. */
+  protected void markModified() {
+    modificationCount++;
   }
 }
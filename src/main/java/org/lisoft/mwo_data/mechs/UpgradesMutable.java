@@ -63,6 +63,7 @@ public class UpgradesMutable extends Upgrades {
    */
   public void setArmour(ArmourUpgrade aArmourUpgrade) {
     armourType = aArmourUpgrade;
+    markModified();
   }
 
   /**
@@ -74,6 +75,7 @@ public class UpgradesMutable extends Upgrades {
    */
   public void setHeatSink(HeatSinkUpgrade aHeatsinkUpgrade) {
     heatSinkType = aHeatsinkUpgrade;
+    markModified();
   }
 
   /**
@@ -85,5 +87,6 @@ public class UpgradesMutable extends Upgrades {
    */
   public void setStructure(StructureUpgrade aStructureUpgrade) {
     structureType = aStructureUpgrade;
+    markModified();
   }
 }
@@ -59,7 +59,7 @@ public class AffectsWeaponPredicate implements Predicate<Modifier> {
     HEAT_SELECTORS.addAll(ModifierDescription.SEL_HEAT_EXTERNAL_TRANSFER);
 
     WEAPON_SELECTORS =
-        ItemDB.lookup(Weapon.class).stream()
+        ItemDB.items(Weapon.class).stream()
             .flatMap(weapon -> weapon.getAliases().stream())
             .collect(Collectors.toSet());
   }
@@ -118,11 +118,16 @@ public class Attribute {
 
   /**
    * @param aModifiers A {@link Collection} of {@link Modifier} that should be applied (if
-   *     applicable) to this attribute.
+   *     applicable) to this attribute. If this is a {@link ModifierIndex} the index is used instead
+   *     of scanning all modifiers.
    * @return The value of this {@link Attribute} after applying the {@link Modifier}s that affect
    *     this attribute from the given list.
    */
   public double value(Collection<Modifier> aModifiers) {
+    if (aModifiers instanceof ModifierIndex index) {
+      return index.value(this);
+    }
+
     double additive = 0.0;
     double multiplicative = 1.0;
     if (aModifiers != null) {
@@ -0,0 +1,163 @@
+/*
+ * Li Song Mechlab - A 'mech building tool for PGI's MechWarrior: Online.
+ * Copyright (C) 2013-2023  Li Song
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.lisoft.mwo_data.modifiers;
+
+import java.util.*;
+
+/**
+ * An immutable, compiled list of {@link Modifier}s that can quickly compute the value of an {@link
+ * Attribute}.
+ *
+ * <p>The modifiers are bucketed by specifier and selector the first time the index is used. When an
+ * {@link Attribute} is evaluated the first time, only the modifiers in the buckets matching the
+ * attribute's specifier and selectors are visited. The resulting additive and multiplicative totals
+ * are then cached for that attribute so that subsequent evaluations are constant time.
+ *
+ * <p>The matching modifiers are always summed in the same order as they appear in the collection
+ * the index was created from. This means that {@link #value(Attribute)} produces bit-identical
+ * results to scanning the source collection with {@link ModifierDescription#affects(Attribute)}.
+ *
+ * <p>{@link Attribute#value(Collection)} detects instances of this class and will use the index
+ * automatically.
+ *
+ * @author Li Song
+ */
+public class ModifierIndex extends AbstractList<Modifier> implements RandomAccess {
+  /** Bucket key used for modifiers and attributes that have a <code>null</code> specifier. */
+  private static final String NO_SPECIFIER = "";
+
+  private static final String SELECTOR_ALL = ModifierDescription.SEL_ALL.iterator().next();
+
+  private final Modifier[] modifiers;
+  private final Map<Attribute, double[]> totals =
+      Collections.synchronizedMap(new IdentityHashMap<>());
+  private Map<String, Map<String, int[]>> buckets;
+
+  /**
+   * Creates a new index from the given modifiers.
+   *
+   * @param aModifiers The {@link Modifier}s to index, the iteration order is preserved.
+   */
+  public ModifierIndex(Collection<Modifier> aModifiers) {
+    modifiers = aModifiers.toArray(new Modifier[0]);
+  }
+
+  /**
+   * Returns the given modifiers as a {@link ModifierIndex}, creating a new index only if necessary.
+   *
+   * @param aModifiers The modifiers to index.
+   * @return A {@link ModifierIndex} containing the modifiers.
+   */
+  public static ModifierIndex of(Collection<Modifier> aModifiers) {
+    if (aModifiers instanceof ModifierIndex index) {
+      return index;
+    }
+    return new ModifierIndex(aModifiers);
+  }
+
+  @Override
+  public Modifier get(int aIndex) {
+    return modifiers[aIndex];
+  }
+
+  @Override
+  public int size() {
+    return modifiers.length;
+  }
+
+  /**
+   * Computes the value of the given attribute after applying all the modifiers in this index that
+   * affect it.
+   *
+   * @param aAttribute The {@link Attribute} to compute the value for.
+   * @return The modified value, identical to {@link Attribute#value(Collection)} on the source
+   *     collection.
+   */
+  public double value(Attribute aAttribute) {
+    final double[] sums = totals.computeIfAbsent(aAttribute, this::compile);
+    return (aAttribute.getBaseValue() + sums[0]) * sums[1];
+  }
+
+  private static String specifierKey(String aSpecifier) {
+    return aSpecifier == null ? NO_SPECIFIER : aSpecifier;
+  }
+
+  private void collect(Map<String, int[]> aBySelector, String aSelector, BitSet aMatches) {
+    final int[] matching = aBySelector.get(aSelector);
+    if (matching != null) {
+      for (final int i : matching) {
+        aMatches.set(i);
+      }
+    }
+  }
+
+  private synchronized Map<String, Map<String, int[]>> buckets() {
+    if (buckets == null) {
+      final Map<String, Map<String, List<Integer>>> lists = new HashMap<>();
+      for (int i = 0; i < modifiers.length; ++i) {
+        final ModifierDescription description = modifiers[i].getDescription();
+        final Map<String, List<Integer>> bySelector =
+            lists.computeIfAbsent(specifierKey(description.getSpecifier()), k -> new HashMap<>());
+        for (final String selector : description.getSelectors()) {
+          bySelector.computeIfAbsent(selector, k -> new ArrayList<>()).add(i);
+        }
+      }
+
+      buckets = new HashMap<>();
+      for (final Map.Entry<String, Map<String, List<Integer>>> specifier : lists.entrySet()) {
+        final Map<String, int[]> bySelector = new HashMap<>();
+        for (final Map.Entry<String, List<Integer>> selector : specifier.getValue().entrySet()) {
+          bySelector.put(
+              selector.getKey(),
+              selector.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+        buckets.put(specifier.getKey(), bySelector);
+      }
+    }
+    return buckets;
+  }
+
+  private void collect(Attribute aAttribute, String aSpecifierKey, BitSet aMatches) {
+    final Map<String, int[]> bySelector = buckets().get(aSpecifierKey);
+    if (bySelector != null) {
+      collect(bySelector, SELECTOR_ALL, aMatches);
+      for (final String selector : aAttribute.getSelectors()) {
+        collect(bySelector, selector, aMatches);
+      }
+    }
+  }
+
+  private double[] compile(Attribute aAttribute) {
+    final BitSet matches = new BitSet(modifiers.length);
+    collect(aAttribute, specifierKey(aAttribute.getSpecifier()), matches);
+    collect(aAttribute, ModifierDescription.SPEC_ALL, matches);
+
+    double additive = 0.0;
+    double multiplicative = 1.0;
+    for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+      final Modifier modifier = modifiers[i];
+      final Operation op = modifier.getDescription().getOperation();
+      switch (op) {
+        case ADD -> additive += modifier.getValue();
+        case MUL -> multiplicative += modifier.getValue();
+        default -> throw new IllegalArgumentException("Unhandled operation: " + op);
+      }
+    }
+    return new double[] {additive, multiplicative};
+  }
+}
@@ -28,6 +28,7 @@ import java.util.List;
  * @author Li Song
  */
 public class PilotSkills {
+  private int modificationCount;
 
   /**
    * Assigns this to be equal to that.
@@ -37,6 +38,7 @@ public class PilotSkills {
   @SuppressWarnings("unused")
   public void assign(PilotSkills aEfficiencies) {
     // TODO: Implement this.
+    modificationCount++;
   }
 
   /**
@@ -45,4 +47,12 @@ public class PilotSkills {
   public List<Modifier> getModifiers() {
     return Collections.emptyList();
   }
+
+  /**
+   * @return A counter that is incremented every time this object is modified. Can be used to detect
+   *     changes and invalidate cached values.
+   */
+  public int getModificationCount() {
+    return modificationCount;
+  }
 }
@@ -0,0 +1,196 @@
+/*
+ * Li Song Mechlab - A 'mech building tool for PGI's MechWarrior: Online.
+ * Copyright (C) 2013-2023  Li Song
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.lisoft.mwo_data.mwo_parser;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A persistent index of which entries are contained in which game archive (.pak file).
+ *
+ * <p>Opening and enumerating every archive in the game directory is the dominant cost of locating
+ * game files. This index remembers the entry names of every archive together with the size and
+ * modification time the archive had when it was scanned. On {@link #refresh(Path)} only archives
+ * that are new or whose size or modification time have changed are opened again, archives that no
+ * longer exist are dropped.
+ *
+ * @author Li Song
+ */
+class ArchiveIndex {
+  private static class Record {
+    final List<String> entries;
+    final long lastModified;
+    final long size;
+
+    Record(long aSize, long aLastModified, List<String> aEntries) {
+      size = aSize;
+      lastModified = aLastModified;
+      entries = aEntries;
+    }
+
+    boolean isUpToDate(File aArchive) {
+      return aArchive.length() == size && aArchive.lastModified() == lastModified;
+    }
+  }
+
+  private static final int FORMAT_VERSION = 1;
+  private static final String MAGIC = "LSML-ARCHIVE-INDEX";
+  private final Map<String, Record> records = new TreeMap<>();
+
+  /**
+   * Loads an index from the given file. If the file doesn't exist or cannot be read, an empty index
+   * is returned which will be populated by the next call to {@link #refresh(Path)}.
+   *
+   * @param aIndexFile The file to read the index from.
+   * @return A new {@link ArchiveIndex}.
+   */
+  static ArchiveIndex load(File aIndexFile) {
+    final ArchiveIndex index = new ArchiveIndex();
+    if (!aIndexFile.isFile()) {
+      return index;
+    }
+
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(aIndexFile)))) {
+      if (!MAGIC.equals(in.readUTF()) || in.readInt() != FORMAT_VERSION) {
+        return index;
+      }
+      final int numArchives = in.readInt();
+      for (int i = 0; i < numArchives; ++i) {
+        final String path = in.readUTF();
+        final long size = in.readLong();
+        final long lastModified = in.readLong();
+        final int numEntries = in.readInt();
+        final List<String> entries = new ArrayList<>(numEntries);
+        for (int j = 0; j < numEntries; ++j) {
+          entries.add(in.readUTF());
+        }
+        index.records.put(path, new Record(size, lastModified, entries));
+      }
+    } catch (final IOException e) {
+      // A corrupt or truncated index is no worse than no index at all, it will simply be rebuilt.
+      index.records.clear();
+    }
+    return index;
+  }
+
+  /**
+   * @return The game root relative paths of all indexed archives, using '/' as separator.
+   */
+  Set<String> getArchives() {
+    return Collections.unmodifiableSet(records.keySet());
+  }
+
+  /**
+   * @param aArchive A game root relative path as returned by {@link #getArchives()}.
+   * @return The names of all the entries in the given archive.
+   */
+  List<String> getEntries(String aArchive) {
+    final Record record = records.get(aArchive);
+    return record == null ? Collections.emptyList() : Collections.unmodifiableList(record.entries);
+  }
+
+  /**
+   * Brings the index up to date with the archives under the given game root.
+   *
+   * @param aGameRoot The root of the game installation.
+   * @return <code>true</code> if the index changed and should be saved.
+   * @throws IOException If a new or changed archive couldn't be read.
+   */
+  boolean refresh(Path aGameRoot) throws IOException {
+    final Map<String, File> archives = new TreeMap<>();
+    findArchives(aGameRoot, aGameRoot.toFile(), archives);
+
+    boolean changed = records.keySet().retainAll(archives.keySet());
+    for (final Map.Entry<String, File> archive : archives.entrySet()) {
+      final Record record = records.get(archive.getKey());
+      if (record == null || !record.isUpToDate(archive.getValue())) {
+        records.put(archive.getKey(), scan(archive.getValue()));
+        changed = true;
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Writes the index to the given file. The index is first written to a temporary file which then
+   * replaces the target so that a crash never leaves a partially written index behind.
+   *
+   * @param aIndexFile The file to write to.
+   * @throws IOException If the index couldn't be written.
+   */
+  void save(File aIndexFile) throws IOException {
+    final File parent = aIndexFile.getAbsoluteFile().getParentFile();
+    if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+      throw new IOException("Unable to create directory: " + parent);
+    }
+
+    final File tmp = new File(parent, aIndexFile.getName() + ".tmp");
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+      out.writeUTF(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeInt(records.size());
+      for (final Map.Entry<String, Record> entry : records.entrySet()) {
+        final Record record = entry.getValue();
+        out.writeUTF(entry.getKey());
+        out.writeLong(record.size);
+        out.writeLong(record.lastModified);
+        out.writeInt(record.entries.size());
+        for (final String name : record.entries) {
+          out.writeUTF(name);
+        }
+      }
+    }
+    Files.move(tmp.toPath(), aIndexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  private static void findArchives(Path aGameRoot, File aDirectory, Map<String, File> aArchives) {
+    final File[] files = aDirectory.listFiles();
+    if (files == null) {
+      return;
+    }
+    for (final File file : files) {
+      if (file.isDirectory()) {
+        findArchives(aGameRoot, file, aArchives);
+      } else if (GameVFS.isArchive(file)) {
+        final String path = aGameRoot.relativize(file.toPath()).toString().replace('\\', '/');
+        aArchives.put(path, file);
+      }
+    }
+  }
+
+  private static Record scan(File aArchive) throws IOException {
+    // Read size and time before opening so that a concurrent modification is detected next time.
+    final long size = aArchive.length();
+    final long lastModified = aArchive.lastModified();
+    final List<String> entries = new ArrayList<>();
+    try (ZipFile zipFile = new ZipFile(aArchive)) {
+      final Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+      while (zipEntries.hasMoreElements()) {
+        entries.add(zipEntries.nextElement().getName());
+      }
+    }
+    return new Record(size, lastModified, entries);
+  }
+}
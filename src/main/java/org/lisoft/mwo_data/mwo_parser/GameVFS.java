@@ -26,6 +26,7 @@ import java.io.*;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
@@ -91,6 +92,97 @@ public class GameVFS {
     }
   }
 
+  /**
+   * A scope during which the {@link GameVFS} keeps the archives it opens open, so that they don't
+   * have to be opened again for every game file. All pooled archives are closed when the last
+   * session of a {@link GameVFS} is closed.
+   *
+   * @author Li Song
+   */
+  class Session implements AutoCloseable {
+    private boolean closed = false;
+
+    private Session() {
+      synchronized (archivePool) {
+        sessions++;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      final List<Archive> toClose;
+      synchronized (archivePool) {
+        if (closed) {
+          return;
+        }
+        closed = true;
+        if (--sessions > 0) {
+          return;
+        }
+        toClose = new ArrayList<>(archivePool.values());
+        archivePool.clear();
+      }
+
+      IOException exception = null;
+      for (final Archive archive : toClose) {
+        try {
+          archive.close();
+        } catch (final IOException e) {
+          exception = e;
+        }
+      }
+      if (null != exception) {
+        throw exception;
+      }
+    }
+  }
+
+  /**
+   * An open game archive that can look up entries by name, ignoring case.
+   *
+   * @author Li Song
+   */
+  private static class Archive implements Closeable {
+    final ZipFile zipFile;
+    private Map<String, ZipEntry> lowerCaseEntries = null;
+
+    Archive(File aFile) throws IOException {
+      zipFile = new ZipFile(aFile);
+    }
+
+    @Override
+    public void close() throws IOException {
+      zipFile.close();
+    }
+
+    ZipEntry getEntry(String aPath) {
+      final ZipEntry entry = zipFile.getEntry(aPath);
+      if (null != entry) {
+        return entry;
+      }
+      // Apparently PGI is still as lousy as ever at being consistent with case so, check if we can
+      // find a case-insensitive match before giving up.
+      return getLowerCaseEntries().get(aPath.toLowerCase(Locale.US));
+    }
+
+    private synchronized Map<String, ZipEntry> getLowerCaseEntries() {
+      if (null == lowerCaseEntries) {
+        lowerCaseEntries = new HashMap<>();
+        final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while (entries.hasMoreElements()) {
+          final ZipEntry entry = entries.nextElement();
+          lowerCaseEntries.putIfAbsent(entry.getName().toLowerCase(Locale.US), entry);
+        }
+      }
+      return lowerCaseEntries;
+    }
+  }
+
+  @FunctionalInterface
+  private interface ArchiveAction<T> {
+    T apply(Archive aArchive) throws IOException;
+  }
+
   private static class GameFinder extends SimpleFileVisitor<Path> {
     private final Callback<Path, Boolean> confirmGameInstallCallback;
     private final Callback<Path, Void> fileVisitCallback;
@@ -165,6 +257,10 @@ public class GameVFS {
 
   private final Map<File, File> file2archive = new HashMap<>();
   private final Path gamePath;
+  private final boolean indexed;
+  private final Set<File> scannedArchives = new HashSet<>();
+  private final Map<File, Archive> archivePool = new HashMap<>();
+  private int sessions = 0;
 
   /**
    * Creates a new virtual file system for game files in the given directory which must be a valid
@@ -174,11 +270,50 @@ public class GameVFS {
    * @throws IOException Throw in an error was encountered wile initializing the VFS.
    */
   public GameVFS(File gameDir) throws IOException {
+    this(gameDir, null);
+  }
+
+  /**
+   * Creates a new virtual file system for game files in the given directory which must be a valid
+   * game install. See {@link GameVFS#isValidGameDirectory(File)}.
+   *
+   * <p>If an index file is given, the contents of all archives are read from the index and only
+   * archives that have been added or changed since the index was written are scanned. The index is
+   * updated on disk if anything changed.
+   *
+   * @param gameDir The {@link File} where the game directory is.
+   * @param aIndexFile A {@link File} to persist the archive index in, or <code>null</code> to scan
+   *     archives lazily without persisting anything.
+   * @throws IOException Throw in an error was encountered wile initializing the VFS.
+   */
+  public GameVFS(File gameDir, File aIndexFile) throws IOException {
     if (isValidGameDirectory(gameDir)) {
       gamePath = gameDir.toPath();
     } else {
       throw new FileNotFoundException("Not a valid game directory!");
     }
+
+    indexed = aIndexFile != null;
+    if (indexed) {
+      final ArchiveIndex index = ArchiveIndex.load(aIndexFile);
+      if (index.refresh(gamePath)) {
+        try {
+          index.save(aIndexFile);
+        } catch (final IOException e) {
+          // The index is only an optimisation, failing to write it will only cost time on the
+          // next start.
+        }
+      }
+
+      for (final String archivePath : index.getArchives()) {
+        final File archive = gamePath.resolve(archivePath).toFile();
+        final File relativeBasePath = new File(archivePath).getParentFile();
+        for (final String entry : index.getEntries(archivePath)) {
+          cacheArchive(new File(relativeBasePath, entry), archive);
+        }
+        scannedArchives.add(archive);
+      }
+    }
   }
 
   /**
@@ -280,43 +415,57 @@ public class GameVFS {
    * @throws ZipException if the game file couldn't be extracted from the pak file.
    */
   GameFile openGameFile(File aGameLocalPath) throws ZipException, IOException {
-    final Optional<File> sourceArchive = findArchiveForFile(aGameLocalPath, gamePath.toFile());
-    if (sourceArchive.isEmpty()) {
-      throw new IOException(
-          "Failed to find sought for file (" + aGameLocalPath + ") in the game files!");
-    }
-
-    try (ZipFile zipFile = new ZipFile(sourceArchive.get())) {
+    final File sourceArchive = getArchiveForFile(aGameLocalPath);
+    return withArchive(
+        sourceArchive,
+        archive ->
+            new GameFile(
+                archive.zipFile,
+                getEntry(archive, sourceArchive, aGameLocalPath),
+                aGameLocalPath.toString()));
+  }
 
-      String archivePath =
-          gamePath
-              .relativize(sourceArchive.get().getParentFile().toPath())
-              .relativize(aGameLocalPath.toPath())
-              .toString();
+  /**
+   * Opens a new {@link Session}, until the session is closed all archives opened through this VFS
+   * are kept open. Sessions may be nested and overlap, the archives are closed when the last open
+   * session is closed.
+   *
+   * @return A new {@link Session}, must be closed.
+   */
+  Session openSession() {
+    return new Session();
+  }
 
-      // Canonize to Unix file system separator.
-      archivePath = archivePath.replaceAll("\\\\", "/");
+  /**
+   * Determines the CRC32 of the given game file. The CRC is read from the central directory of the
+   * archive, the file is only inflated if the archive doesn't record a CRC for it.
+   *
+   * @param aGameLocalPath The path to the file, with archive file names expanded. For example
+   *     "Game/Objects/mechs/spider/sdr-5k.mdf"
+   * @return The CRC32 of the uncompressed file, the same as {@link GameFile#crc32}.
+   * @throws IOException if the game file couldn't be read.
+   */
+  long getCrc32(File aGameLocalPath) throws IOException {
+    final File sourceArchive = getArchiveForFile(aGameLocalPath);
+    return withArchive(
+        sourceArchive,
+        archive -> {
+          final ZipEntry entry = getEntry(archive, sourceArchive, aGameLocalPath);
+          final long crc = entry.getCrc();
+          if (crc != -1) {
+            return crc;
+          }
 
-      ZipEntry entry = zipFile.getEntry(archivePath);
-      if (null == entry) {
-        final Enumeration<? extends ZipEntry> entries = zipFile.entries();
-        // Apparently PGI is still as lousy as ever at being consistent
-        // with case so, manually check if we can
-        // find a case-insensitive match before giving up
-        while (entries.hasMoreElements()) {
-          final ZipEntry nextEntry = entries.nextElement();
-          final String next = nextEntry.getName();
-          if (archivePath.equalsIgnoreCase(next)) {
-            entry = nextEntry;
-            break;
+          final CRC32 crc32 = new CRC32();
+          final byte[] buffer = new byte[64 * 1024];
+          try (InputStream is = archive.zipFile.getInputStream(entry)) {
+            int bytesRead;
+            while ((bytesRead = is.read(buffer)) != -1) {
+              crc32.update(buffer, 0, bytesRead);
+            }
           }
-        }
-        if (null == entry) {
-          throw new IOException("Unable to find previously found file!?!?!");
-        }
-      }
-      return new GameFile(zipFile, entry, aGameLocalPath.toString());
-    }
+          return crc32.getValue();
+        });
   }
 
   Collection<GameFile> openGameFiles(Collection<File> aFiles) throws IOException {
@@ -327,7 +476,7 @@ public class GameVFS {
     return ans;
   }
 
-  private static boolean isArchive(File aFile) {
+  static boolean isArchive(File aFile) {
     final String name = aFile.getName().toLowerCase();
     return aFile.isFile() && name.endsWith(".pak") && !name.contains("french");
   }
@@ -337,6 +486,7 @@ public class GameVFS {
   }
 
   private void cacheContentsOfArchive(File aArchive, File aRelativeBasePath) throws IOException {
+    scannedArchives.add(aArchive);
     try (ZipFile zipFile = new ZipFile(aArchive)) {
       final Enumeration<? extends ZipEntry> entries = zipFile.entries();
       while (entries.hasMoreElements()) {
@@ -356,6 +506,54 @@ public class GameVFS {
     return new File(aFile.toString().toLowerCase(Locale.US));
   }
 
+  // Synchronized as the file to archive cache is populated lazily when there is no index.
+  private synchronized File getArchiveForFile(File aGameLocalPath) throws IOException {
+    final Optional<File> sourceArchive = findArchiveForFile(aGameLocalPath, gamePath.toFile());
+    if (sourceArchive.isEmpty()) {
+      throw new IOException(
+          "Failed to find sought for file (" + aGameLocalPath + ") in the game files!");
+    }
+    return sourceArchive.get();
+  }
+
+  private ZipEntry getEntry(Archive aArchive, File aArchiveFile, File aGameLocalPath)
+      throws IOException {
+    String archivePath =
+        gamePath
+            .relativize(aArchiveFile.getParentFile().toPath())
+            .relativize(aGameLocalPath.toPath())
+            .toString();
+
+    // Canonize to Unix file system separator.
+    archivePath = archivePath.replaceAll("\\\\", "/");
+
+    final ZipEntry entry = aArchive.getEntry(archivePath);
+    if (null == entry) {
+      throw new IOException("Unable to find previously found file!?!?!");
+    }
+    return entry;
+  }
+
+  private <T> T withArchive(File aArchiveFile, ArchiveAction<T> aAction) throws IOException {
+    Archive pooled = null;
+    synchronized (archivePool) {
+      if (sessions > 0) {
+        pooled = archivePool.get(aArchiveFile);
+        if (null == pooled) {
+          pooled = new Archive(aArchiveFile);
+          archivePool.put(aArchiveFile, pooled);
+        }
+      }
+    }
+
+    if (null != pooled) {
+      return aAction.apply(pooled);
+    }
+    try (Archive archive = new Archive(aArchiveFile)) {
+      return aAction.apply(archive);
+    }
+  }
+
   private Optional<File> findArchiveForFile(File aGameLocalPath, File aSearchRoot)
       throws IOException {
     final File sourceArchive = getCachedArchive(aGameLocalPath);
@@ -363,7 +561,11 @@ public class GameVFS {
       return Optional.of(sourceArchive);
     }
 
-    final Collection<File> visitedArchives = file2archive.values();
+    if (indexed) {
+      // All archives are already in the cache, no need to search the disk.
+      return Optional.empty();
+    }
+
     final Path relativePath = gamePath.relativize(aSearchRoot.toPath());
 
     final File[] listFiles = aSearchRoot.listFiles();
@@ -378,7 +580,7 @@ public class GameVFS {
           return file;
         }
       } else {
-        if (isArchive(fileOnDisk) && !visitedArchives.contains(fileOnDisk)) {
+        if (isArchive(fileOnDisk) && !scannedArchives.contains(fileOnDisk)) {
           cacheContentsOfArchive(fileOnDisk, relativePath.toFile());
           if (null != getCachedArchive(aGameLocalPath)) {
             return Optional.of(fileOnDisk);
@@ -17,10 +17,14 @@
  */
 package org.lisoft.mwo_data.mwo_parser;
 
-import com.thoughtworks.xstream.XStream;
 import java.io.File;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import org.lisoft.mwo_data.Database;
 import org.lisoft.mwo_data.mwo_parser.GameVFS.GameFile;
 
@@ -28,6 +32,9 @@ import org.lisoft.mwo_data.mwo_parser.GameVFS.GameFile;
  * This class will provide localization (and implicitly all naming) of items through the MWO data
  * files.
  *
+ * <p>The localisation workbook is large, it is streamed row by row rather than unmarshalled into an
+ * object tree so that only the resulting key to string map is kept in memory.
+ *
  * <p>Caution: This class will only be initialized if the {@link Database} performs a database
  * update.
  *
@@ -36,30 +43,28 @@ import org.lisoft.mwo_data.mwo_parser.GameVFS.GameFile;
 class Localisation {
   private static final String LOCALISATION_XML_FILE =
       "Game/Localized/Localization/English/TheRealLoc.xml";
+  // The order here is important, we cannot replace substrings of longer matches before the longer
+  // matches are tried. They've also mistaken an l (ell) for an 1 (one).
+  private static final String[][] MK_NUMERALS = {
+    {"_mkiii", "_mk3"},
+    {"_mkii", "_mk2"},
+    {"_mkiv", "_mk4"},
+    {"_mki", "_mk1"},
+    {"_mkvi", "_mk6"},
+    {"_mkv", "_mk5"},
+    {"_mkl", "_mk1"}
+  };
+  // These share their trailing underscore with whatever term follows them.
+  private static final String[][] RANGE_TERMS = {{"_longrange", "_range"}, {"_maxrange", "_range"}};
+  private static final String[][] TERMS = {{"_multiplier", "_mult"}, {"_additive", "_add"}};
   private final Map<String, String> key2string = new HashMap<>();
 
   public Localisation(GameVFS aGameVFS) throws Exception {
     final File[] files = new File[] {new File(LOCALISATION_XML_FILE)};
 
-    final XStream xstream = GameVFS.makeMwoSuitableXStream();
-    xstream.alias("Workbook", Workbook.class);
     for (final File filePath : files) {
       try (GameFile file = aGameVFS.openGameFile(filePath)) {
-        final Workbook workbook = (Workbook) xstream.fromXML(file.stream);
-        for (final Workbook.Worksheet.Table.Row row : workbook.Worksheet.Table.rows) {
-          if (row.cells == null || row.cells.size() < 1) {
-            // Skip past junk
-            continue;
-          }
-          if (row.cells.get(0).Data == null) {
-            continue;
-          }
-          if (row.cells.size() >= 2) {
-            final String key = row.cells.get(0).Data;
-            final String data = row.cells.get(1).Data;
-            key2string.put(canonize(key), data);
-          }
-        }
+        read(file.stream);
       }
     }
 
@@ -67,13 +72,66 @@ class Localisation {
     key2string.putIfAbsent("@fnr-j", "JAILBIRD");
   }
 
+  /**
+   * Normalises a localisation key so that the different spellings PGI uses for the same thing map
+   * to the same key. The key is processed in a single pass over its underscores.
+   *
+   * @param aKey The key to normalise.
+   * @return A lower case key starting with '@'.
+   */
+  static String canonize(String aKey) {
+    final String lower = aKey.toLowerCase();
+    final StringBuilder canonized = new StringBuilder(lower.length() + 4);
+    if (!lower.startsWith("@")) {
+      canonized.append('@');
+    }
+
+    final int[] rangeTermEnds = {-1, -1};
+    int start = 0;
+    int underscore = lower.indexOf('_');
+    while (underscore >= 0) {
+      canonized.append(lower, start, underscore);
+      start = underscore;
+      if (lower.startsWith("_mk", underscore)) {
+        start = replace(lower, underscore, MK_NUMERALS, canonized);
+      } else {
+        start = replace(lower, underscore, TERMS, canonized);
+        for (int i = 0; i < RANGE_TERMS.length && start == underscore; ++i) {
+          final String term = RANGE_TERMS[i][0];
+          // A term cannot start on the underscore that ended a previous match of the same term.
+          if (underscore != rangeTermEnds[i]
+              && lower.startsWith(term, underscore)
+              && lower.startsWith("_", underscore + term.length())) {
+            canonized.append(RANGE_TERMS[i][1]);
+            start = rangeTermEnds[i] = underscore + term.length();
+          }
+        }
+      }
+      if (start == underscore) {
+        canonized.append('_');
+        start++;
+      }
+      underscore = lower.indexOf('_', start);
+    }
+    canonized.append(lower, start, lower.length());
+
+    if (lower.endsWith("_ad")) {
+      // Really PGI?, really?
+      canonized.append('d');
+    } else if (lower.endsWith("clanheavymediumlaser_minheatpenaltylevel_")) {
+      // Goddamnit PGI...
+      canonized.append("add");
+    }
+    return canonized.toString();
+  }
+
   public String key2string(String aKey) {
     final String canon = canonize(aKey);
     if (!key2string.containsKey(canon)) {
       final String noFamily = canon.replace("family", "");
       if (canon.contains("_desc") || canon.endsWith("desc")) {
         return "Empty Description";
-      }else if (key2string.containsKey(noFamily)){
+      } else if (key2string.containsKey(noFamily)) {
         // PGI, plz...
         return key2string.get(noFamily);
       }
@@ -82,40 +140,80 @@ class Localisation {
     return key2string.get(canon);
   }
 
-  private static String canonize(String aKey) {
-    String canonized = aKey;
-    // We need to normalize MKII -> MK2 etc
-    canonized = canonized.toLowerCase();
-    if (canonized.contains("_mk")) {
-      // The order here is important, we cannot replace substrings of longer matches before the
-      // longer
-      // matches are tried.
-      canonized = canonized.replaceAll("_mkiii", "_mk3");
-      canonized = canonized.replaceAll("_mkii", "_mk2");
-      canonized = canonized.replaceAll("_mkiv", "_mk4");
-      canonized = canonized.replaceAll("_mki", "_mk1");
-      canonized = canonized.replaceAll("_mkvi", "_mk6");
-      canonized = canonized.replaceAll("_mkv", "_mk5");
-      canonized =
-          canonized.replaceAll("_mkl", "_mk1"); // They've mistaken an l (ell) for an 1 (one)
-    }
-    if (canonized.endsWith("_ad")) {
-      // Really PGI?, really?
-      canonized = canonized + "d";
+  private static String readText(XMLStreamReader aReader) throws XMLStreamException {
+    final StringBuilder sb = new StringBuilder();
+    int depth = 1;
+    while (depth > 0) {
+      switch (aReader.next()) {
+        case XMLStreamConstants.START_ELEMENT -> depth++;
+        case XMLStreamConstants.END_ELEMENT -> depth--;
+        case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA -> sb.append(
+            aReader.getTextCharacters(), aReader.getTextStart(), aReader.getTextLength());
+        default -> {
+          // Comments and processing instructions are of no interest.
+        }
+      }
     }
-    if(canonized.endsWith("clanheavymediumlaser_minheatpenaltylevel_")){
-      // Goddamnit PGI...
-      canonized = canonized + "add";
+    return sb.toString();
+  }
+
+  private static int replace(
+      String aKey, int aOffset, String[][] aReplacements, StringBuilder aOutput) {
+    for (final String[] replacement : aReplacements) {
+      if (aKey.startsWith(replacement[0], aOffset)) {
+        aOutput.append(replacement[1]);
+        return aOffset + replacement[0].length();
+      }
     }
+    return aOffset;
+  }
 
-    canonized = canonized.replaceAll("_multiplier", "_mult");
-    canonized = canonized.replaceAll("_additive", "_add");
-    canonized = canonized.replaceAll("_longrange_", "_range_");
-    canonized = canonized.replaceAll("_maxrange_", "_range_");
+  /**
+   * Reads the rows of the workbook. The first cell of each row holds the key and the second cell
+   * the string, rows without a key or string are junk and are skipped.
+   */
+  private void read(InputStream aStream) throws XMLStreamException {
+    final XMLInputFactory factory = XMLInputFactory.newFactory();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, true);
 
-    if (!canonized.startsWith("@")) {
-      canonized = "@" + canonized;
+    final XMLStreamReader reader = factory.createXMLStreamReader(aStream);
+    try {
+      int cells = 0;
+      String key = null;
+      String data = null;
+      while (reader.hasNext()) {
+        final int event = reader.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          switch (reader.getLocalName()) {
+            case "Row" -> {
+              cells = 0;
+              key = null;
+              data = null;
+            }
+            case "Cell" -> cells++;
+            case "Data" -> {
+              final String text = readText(reader);
+              if (cells == 1) {
+                key = text;
+              } else if (cells == 2) {
+                data = text;
+              }
+            }
+            default -> {
+              // Other elements are of no interest.
+            }
+          }
+        } else if (event == XMLStreamConstants.END_ELEMENT
+            && "Row".equals(reader.getLocalName())
+            && cells >= 2
+            && key != null) {
+          key2string.put(canonize(key), data);
+        }
+      }
+    } finally {
+      reader.close();
     }
-    return canonized;
   }
 }
@@ -39,7 +39,7 @@ import org.lisoft.mwo_data.Database;
  * @author Li Song
  */
 public class MwoDataReader {
-  private static final List<File> FILES_TO_PARSE =
+  static final List<File> FILES_TO_PARSE =
       Arrays.asList(
           new File("Game/Libs/Items/Weapons/Weapons.xml"),
           new File("Game/Libs/Items/UpgradeTypes/UpgradeTypes.xml"),
@@ -54,6 +54,7 @@ public class MwoDataReader {
           new File("Game/Libs/Items/Modules/MASC.xml"),
           new File("Game/Libs/Items/Mechs/Mechs.xml"),
           new File("Game/Libs/Items/OmniPods.xml"));
+  private static final int PARSE_THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
   private final String runningVersion;
 
   @Inject
@@ -68,12 +69,28 @@ public class MwoDataReader {
    * @return A {@link Database} if the parsing succeeds without fatal errors.
    */
   public Database parseGameFiles(File aGameDirectory) throws ParseErrorException {
+    return parseGameFiles(aGameDirectory, null);
+  }
+
+  /**
+   * Reads the latest data from the game files and creates a new database.
+   *
+   * @param aGameDirectory A directory that contains a game installation.
+   * @param aArchiveIndex A file to persist the index of the game archives in between runs, or
+   *     <code>null</code> if no index should be used.
+   * @return A {@link Database} if the parsing succeeds without fatal errors.
+   */
+  public Database parseGameFiles(File aGameDirectory, File aArchiveIndex)
+      throws ParseErrorException {
     try {
-      final GameVFS gameVFS = new GameVFS(aGameDirectory);
-      final Collection<GameVFS.GameFile> gameFiles = gameVFS.openGameFiles(FILES_TO_PARSE);
-      final PartialDatabase partialDatabase =
-          new PartialDatabase(new Localisation(gameVFS), gameFiles);
-      return partialDatabase.generateDatabase(runningVersion, gameVFS);
+      final GameVFS gameVFS = new GameVFS(aGameDirectory, aArchiveIndex);
+      // Keep the archives open while parsing, the same few archives are read thousands of times.
+      try (GameVFS.Session session = gameVFS.openSession()) {
+        final Collection<GameVFS.GameFile> gameFiles = gameVFS.openGameFiles(FILES_TO_PARSE);
+        final PartialDatabase partialDatabase =
+            new PartialDatabase(new Localisation(gameVFS), gameFiles, PARSE_THREADS);
+        return partialDatabase.generateDatabase(runningVersion, gameVFS);
+      }
     } catch (final Throwable t) {
       throw new ParseErrorException("Unable to parse game files!", t);
     }
@@ -88,18 +105,36 @@ public class MwoDataReader {
    * @return <code>true</code> if the game files have newer data than what's in the database.
    */
   public boolean shouldUpdate(Database aDatabase, File aGameDirectory) throws ParseErrorException {
-    try {
-      final GameVFS gameVFS = new GameVFS(aGameDirectory);
-      final Collection<GameVFS.GameFile> gameFiles = gameVFS.openGameFiles(FILES_TO_PARSE);
-      final Map<String, Long> checkSums = aDatabase.getChecksums();
-      if (gameFiles.size() != checkSums.size()) {
-        return true;
-      }
+    return shouldUpdate(aDatabase, aGameDirectory, null);
+  }
 
-      for (final GameVFS.GameFile gameFile : gameFiles) {
-        if (gameFile.crc32 != checkSums.get(gameFile.path)) {
+  /**
+   * Compares the database to the game files and determines if there is any reason to attempt a
+   * further parse.
+   *
+   * @param aDatabase The {@link Database} to compare to.
+   * @param aGameDirectory The directory to read game files to compare to.
+   * @param aArchiveIndex A file to persist the index of the game archives in between runs, or
+   *     <code>null</code> if no index should be used.
+   * @return <code>true</code> if the game files have newer data than what's in the database.
+   */
+  public boolean shouldUpdate(Database aDatabase, File aGameDirectory, File aArchiveIndex)
+      throws ParseErrorException {
+    try {
+      final GameVFS gameVFS = new GameVFS(aGameDirectory, aArchiveIndex);
+      try (GameVFS.Session session = gameVFS.openSession()) {
+        final Map<String, Long> checkSums = aDatabase.getChecksums();
+        if (FILES_TO_PARSE.size() != checkSums.size()) {
           return true;
         }
+
+        // The CRCs are read from the archive directories, no need to inflate the files.
+        for (final File file : FILES_TO_PARSE) {
+          final Long checkSum = checkSums.get(file.toString());
+          if (checkSum == null || gameVFS.getCrc32(file) != checkSum) {
+            return true;
+          }
+        }
       }
     } catch (final IOException e) {
       throw new ParseErrorException("Error when opening game files for reading!", e);
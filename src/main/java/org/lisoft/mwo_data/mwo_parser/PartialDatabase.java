@@ -23,6 +23,10 @@ import com.thoughtworks.xstream.XStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -41,6 +45,21 @@ import org.lisoft.mwo_data.modifiers.ModifierDescription;
  * @author Li Song
  */
 class PartialDatabase {
+  /** The unmarshalled game files that a chassis is constructed from. */
+  private record ChassisFiles(
+      MechReferenceXML mech,
+      MdfMechDefinition mdf,
+      XMLLoadout stockLoadout,
+      XMLHardpoints hardPoints) {}
+
+  /** The unmarshalled game files that the omnipods of a chassis series are constructed from. */
+  private record OmniPodFiles(String series, XMLOmniPods omniPods, XMLHardpoints hardPoints) {}
+
+  @FunctionalInterface
+  private interface IOFunction<T, R> {
+    R apply(T aInput) throws IOException;
+  }
+
   private final List<Item> items = new ArrayList<>();
   private final Map<String, ModifierDescription> modifierDescriptions = new HashMap<>();
   private final List<Consumable> consumables = new ArrayList<>();
@@ -53,9 +72,29 @@ class PartialDatabase {
   private final RawMergedXML mergedXML = new RawMergedXML();
   private final Localisation localisation;
   private final Map<Integer, Item> id2item = new HashMap<>();
+  private final int parallelism;
 
   PartialDatabase(Localisation aLocalisation, Collection<GameVFS.GameFile> aGameFiles) {
+    this(aLocalisation, aGameFiles, 1);
+  }
+
+  /**
+   * Creates a new partial database.
+   *
+   * @param aLocalisation The {@link Localisation} to use for naming things.
+   * @param aGameFiles The XML files that will be merged into the {@link RawMergedXML}.
+   * @param aParallelism The maximal number of threads to use for reading and unmarshalling chassis
+   *     and omnipod files. Only reading is done in parallel, the data is assembled in the same
+   *     order as a sequential parse so the resulting {@link Database} is identical regardless of
+   *     parallelism. A value of 1 parses sequentially on the calling thread.
+   */
+  PartialDatabase(
+      Localisation aLocalisation, Collection<GameVFS.GameFile> aGameFiles, int aParallelism) {
+    if (aParallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1!");
+    }
     localisation = aLocalisation;
+    parallelism = aParallelism;
     for (final GameVFS.GameFile file : aGameFiles) {
       mergedXML.append(file);
       checksums.put(file.path, file.crc32);
@@ -139,33 +178,106 @@ class PartialDatabase {
     try (GameVFS.GameFile mechIdMapFile = aGameVFS.openGameFile(MECH_ID_MAP_XML)) {
       XMLMechIdMap mechIdMap = XMLMechIdMap.fromXml(mechIdMapFile.stream);
 
-      for (final MechReferenceXML mech : mergedXML.MechList) {
+      final List<Optional<ChassisFiles>> allFiles =
+          readInParallel(mergedXML.MechList, mech -> readChassisFiles(aGameVFS, mech));
+      for (final Optional<ChassisFiles> optionalFiles : allFiles) {
+        if (optionalFiles.isEmpty()) {
+          continue;
+        }
+        final ChassisFiles files = optionalFiles.get();
         try {
-          try (GameVFS.GameFile mdfFile = aGameVFS.openGameFile(mech.mdfFilePath())) {
-            final MdfMechDefinition mdf = MdfMechDefinition.fromXml(mdfFile.stream);
+          if (null != files.stockLoadout()) {
+            chassis.add(
+                files.mdf().asChassisOmniMech(files.mech(), this, mechIdMap, files.stockLoadout()));
+          } else {
+            chassis.add(
+                files.mdf().asChassisStandard(files.mech(), this, mechIdMap, files.hardPoints()));
+          }
+        } catch (final Exception e) {
+          throw new IOException(
+              "Unable to load chassis configuration for [" + files.mech().name + "]!", e);
+        }
+      }
+    }
+  }
 
-            if(mdf.isTrialMech(mech, this)){
-              continue;
-            }
+  /**
+   * Reads and unmarshals the files needed to construct a chassis. This doesn't modify the state of
+   * the partial database and may be called from any thread.
+   *
+   * @param aGameVFS A {@link GameVFS} used to open the game files.
+   * @param aMech The {@link MechReferenceXML} to read the files for.
+   * @return The files for the chassis or empty if the mech is not a playable chassis.
+   * @throws IOException If the files couldn't be read.
+   */
+  private Optional<ChassisFiles> readChassisFiles(GameVFS aGameVFS, MechReferenceXML aMech)
+      throws IOException {
+    try {
+      try (GameVFS.GameFile mdfFile = aGameVFS.openGameFile(aMech.mdfFilePath())) {
+        final MdfMechDefinition mdf = MdfMechDefinition.fromXml(mdfFile.stream);
+
+        if (mdf.isTrialMech(aMech, this)) {
+          return Optional.empty();
+        }
 
-            if (mdf.isPlayableOmniMech()) {
-              try (GameVFS.GameFile loadoutXmlFile =
-                  aGameVFS.openGameFile(mech.stockLoadoutPath())) {
-                final XMLLoadout stockXML = XMLLoadout.fromXml(loadoutXmlFile.stream);
-                chassis.add(mdf.asChassisOmniMech(mech, this, mechIdMap, stockXML));
-              }
-            } else if (mdf.isPlayableStandardMech()) {
-              try (GameVFS.GameFile hardPointsXmlFile =
-                  aGameVFS.openGameFile(mech.hardPointsXmlPath())) {
-                final XMLHardpoints hardPoints = XMLHardpoints.fromXml(hardPointsXmlFile.stream);
-                chassis.add(mdf.asChassisStandard(mech, this, mechIdMap, hardPoints));
-              }
-            }
+        if (mdf.isPlayableOmniMech()) {
+          try (GameVFS.GameFile loadoutXmlFile = aGameVFS.openGameFile(aMech.stockLoadoutPath())) {
+            final XMLLoadout stockXML = XMLLoadout.fromXml(loadoutXmlFile.stream);
+            return Optional.of(new ChassisFiles(aMech, mdf, stockXML, null));
+          }
+        } else if (mdf.isPlayableStandardMech()) {
+          try (GameVFS.GameFile hardPointsXmlFile =
+              aGameVFS.openGameFile(aMech.hardPointsXmlPath())) {
+            final XMLHardpoints hardPoints = XMLHardpoints.fromXml(hardPointsXmlFile.stream);
+            return Optional.of(new ChassisFiles(aMech, mdf, null, hardPoints));
           }
-        } catch (final Exception e) {
-          throw new IOException("Unable to load chassis configuration for [" + mech.name + "]!", e);
         }
+        return Optional.empty();
+      }
+    } catch (final Exception e) {
+      throw new IOException("Unable to load chassis configuration for [" + aMech.name + "]!", e);
+    }
+  }
+
+  /**
+   * Applies the given function to all the inputs, using up to {@link #parallelism} threads.
+   *
+   * @param aInputs The inputs to process.
+   * @param aFunction The function to apply, must not modify the partial database.
+   * @return A {@link List} with the results in the same order as the inputs.
+   * @throws IOException The exception thrown by the first failing input, in input order.
+   */
+  private <T, R> List<R> readInParallel(List<T> aInputs, IOFunction<T, R> aFunction)
+      throws IOException {
+    final List<R> ans = new ArrayList<>(aInputs.size());
+    if (parallelism == 1 || aInputs.size() < 2) {
+      for (final T input : aInputs) {
+        ans.add(aFunction.apply(input));
+      }
+      return ans;
+    }
+
+    final ExecutorService executor =
+        Executors.newFixedThreadPool(Math.min(parallelism, aInputs.size()));
+    try {
+      final List<Future<R>> futures = new ArrayList<>(aInputs.size());
+      for (final T input : aInputs) {
+        futures.add(executor.submit(() -> aFunction.apply(input)));
       }
+      for (final Future<R> future : futures) {
+        ans.add(future.get());
+      }
+      return ans;
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while reading game files!", e);
+    } catch (final ExecutionException e) {
+      if (e.getCause() instanceof IOException ioException) {
+        throw ioException;
+      }
+      throw new IOException("Unable to read game files!", e.getCause());
+    } finally {
+      executor.shutdownNow();
     }
   }
 
@@ -273,21 +385,36 @@ class PartialDatabase {
   }
 
   private void parseOmniPods(GameVFS aGameVFS) throws IOException {
-    final Set<String> series =
-        mergedXML.OmniPodList.stream()
-            .map((omniPod) -> omniPod.chassis)
-            .collect(Collectors.toSet());
-
-    for (final String chassis : series) {
-      try (var omniPodsFile = aGameVFS.openGameFile(MechReferenceXML.omniPodsXmlPath(chassis))) {
-        final XMLOmniPods xmlOmniPods = XMLOmniPods.fromXml(omniPodsFile.stream);
-        try (GameVFS.GameFile hardPointsXmlFile =
-            aGameVFS.openGameFile(MechReferenceXML.hardPointsXmlPath(chassis))) {
-          final XMLHardpoints hardPoints = XMLHardpoints.fromXml(hardPointsXmlFile.stream);
-          omniPods.addAll(xmlOmniPods.asOmniPods(mergedXML, hardPoints, this));
-        }
+    final List<String> series =
+        new ArrayList<>(
+            mergedXML.OmniPodList.stream()
+                .map((omniPod) -> omniPod.chassis)
+                .collect(Collectors.toSet()));
+
+    final List<OmniPodFiles> allFiles =
+        readInParallel(
+            series,
+            chassis -> {
+              try (var omniPodsFile =
+                      aGameVFS.openGameFile(MechReferenceXML.omniPodsXmlPath(chassis));
+                  var hardPointsXmlFile =
+                      aGameVFS.openGameFile(MechReferenceXML.hardPointsXmlPath(chassis))) {
+                return new OmniPodFiles(
+                    chassis,
+                    XMLOmniPods.fromXml(omniPodsFile.stream),
+                    XMLHardpoints.fromXml(hardPointsXmlFile.stream));
+              } catch (final Exception e) {
+                throw new IOException(
+                    "Unable to load chassis configuration! Chassis: " + chassis, e);
+              }
+            });
+
+    for (final OmniPodFiles files : allFiles) {
+      try {
+        omniPods.addAll(files.omniPods().asOmniPods(mergedXML, files.hardPoints(), this));
       } catch (final Exception e) {
-        throw new IOException("Unable to load chassis configuration! Chassis: " + chassis, e);
+        throw new IOException(
+            "Unable to load chassis configuration! Chassis: " + files.series(), e);
       }
     }
   }
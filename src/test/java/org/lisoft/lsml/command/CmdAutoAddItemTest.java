@@ -35,6 +35,7 @@ import org.lisoft.lsml.model.UpgradeDB;
 import org.lisoft.lsml.model.loadout.*;
 import org.lisoft.lsml.model.loadout.EquipResult.EquipResultType;
 import org.lisoft.lsml.util.CommandStack;
+import org.lisoft.lsml.util.CommandStack.Command;
 import org.lisoft.lsml.util.ListArrayUtils;
 import org.lisoft.lsml.util.TestHelpers;
 import org.lisoft.mwo_data.Faction;
@@ -492,4 +493,61 @@ public class CmdAutoAddItemTest {
     verify(xBar).post(new ItemMessage(la, Type.Removed, lrm5, 0));
     verify(xBar).post(new ItemMessage(la, Type.Added, lrm10, 0));
   }
+
+  /**
+   * {@link CmdAutoAddItem} shall find exactly the same solutions as the previous implementation,
+   * {@link CmdAutoAddItemReference}, on all stock loadouts.
+   */
+  @Test
+  public void testSameAsReferenceOnStockLoadouts() throws Exception {
+    final List<Item> isItems =
+        List.of(
+            ItemDB.AMS,
+            ItemDB.CASE,
+            ItemDB.lookup("MEDIUM LASER"),
+            ItemDB.lookup("LRM 15"),
+            ItemDB.lookup("AC/20"));
+    final List<Item> clanItems =
+        List.of(
+            ItemDB.C_AMS,
+            ItemDB.lookup("C-ER PPC"),
+            ItemDB.lookup("C-LRM 20"),
+            ItemDB.lookup("C-SRM 4"),
+            ItemDB.lookup("C-ULTRA AC/10"));
+
+    for (final Chassis chassis : ChassisDB.lookupAll()) {
+      final Loadout stock = loadoutFactory.produceStock(chassis);
+      final List<Item> items = new ArrayList<>();
+      items.add(stock.getUpgrades().getHeatSink().getHeatSinkType());
+      items.addAll(chassis.getFaction() == Faction.CLAN ? clanItems : isItems);
+
+      for (final Item item : items) {
+        final Loadout expected = loadoutFactory.produceClone(stock);
+        final Loadout actual = loadoutFactory.produceClone(stock);
+        final String message = chassis.getKey() + " + " + item.getKey();
+
+        final boolean expectedEquipped =
+            tryApply(new CmdAutoAddItemReference(expected, null, item, true, loadoutFactory));
+        final boolean actualEquipped =
+            tryApply(new CmdAutoAddItem(actual, null, item, true, loadoutFactory));
+
+        assertEquals(message, expectedEquipped, actualEquipped);
+        for (final Location location : Location.values()) {
+          assertEquals(
+              message + " in " + location,
+              expected.getComponent(location).getItemsEquipped(),
+              actual.getComponent(location).getItemsEquipped());
+        }
+      }
+    }
+  }
+
+  private boolean tryApply(Command aCommand) throws Exception {
+    try {
+      aCommand.apply();
+      return true;
+    } catch (final EquipException e) {
+      return false;
+    }
+  }
 }
@@ -17,10 +17,16 @@
  */
 package org.lisoft.lsml.messages;
 
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
 import static org.mockito.Mockito.*;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.Test;
+import org.lisoft.lsml.model.loadout.Loadout;
+import org.mockito.InOrder;
 
 /**
  * A test suite for {@link MessageXBar}.
@@ -28,7 +34,174 @@ import org.junit.Test;
  * @author Li Song
  */
 public class MessageXBarTest {
+  private static class BaseMessage implements Message {
+    final Loadout loadout;
+
+    BaseMessage(Loadout aLoadout) {
+      loadout = aLoadout;
+    }
+
+    @Override
+    public boolean affectsHeatOrDamage() {
+      return false;
+    }
+
+    @Override
+    public boolean isForMe(Loadout aLoadout) {
+      return aLoadout == loadout;
+    }
+  }
+
+  private static class DerivedMessage extends BaseMessage {
+    DerivedMessage(Loadout aLoadout) {
+      super(aLoadout);
+    }
+  }
+
+  private static class OtherMessage extends BaseMessage {
+    OtherMessage(Loadout aLoadout) {
+      super(aLoadout);
+    }
+  }
+
   final MessageXBar cut = new MessageXBar();
+  private final List<Message> received = new ArrayList<>();
+  private final MessageReceiver logger = received::add;
+
+  @Test
+  public void testAttachLoadout() {
+    final Loadout loadout0 = mock(Loadout.class);
+    final Loadout loadout1 = mock(Loadout.class);
+    final MessageReceiver reader0 = mock(MessageReceiver.class);
+    final MessageReceiver reader1 = mock(MessageReceiver.class);
+    final Message msg0 = new BaseMessage(loadout0);
+    final Message msg1 = new BaseMessage(loadout1);
+    final Message msg2 = new OtherMessage(loadout0);
+
+    cut.attach(BaseMessage.class, loadout0, reader0);
+    cut.attach(OtherMessage.class, loadout1, reader1);
+    cut.post(msg0);
+    cut.post(msg1);
+    cut.post(msg2);
+
+    verify(reader0).receive(msg0);
+    verify(reader0).receive(msg2);
+    verifyNoMoreInteractions(reader0);
+    verifyNoInteractions(reader1);
+  }
+
+  @Test
+  public void testAttachType() {
+    final MessageReceiver base = mock(MessageReceiver.class);
+    final MessageReceiver derived = mock(MessageReceiver.class);
+    final MessageReceiver other = mock(MessageReceiver.class);
+    final Message msg0 = new BaseMessage(null);
+    final Message msg1 = new DerivedMessage(null);
+    final Message msg2 = mock(Message.class);
+
+    cut.attach(BaseMessage.class, base);
+    cut.attach(DerivedMessage.class, derived);
+    cut.attach(OtherMessage.class, other);
+    cut.post(msg0);
+    cut.post(msg1);
+    cut.post(msg2);
+
+    verify(base).receive(msg0);
+    verify(base).receive(msg1);
+    verifyNoMoreInteractions(base);
+    verify(derived).receive(msg1);
+    verifyNoMoreInteractions(derived);
+    verifyNoInteractions(other);
+  }
+
+  /**
+   * Receivers that have been garbage collected are no longer called and their subscriptions are
+   * purged, also for message types that are never posted.
+   */
+  @Test
+  public void testGarbageCollectedReceivers() throws Exception {
+    cut.attach(logger);
+    final List<WeakReference<MessageReceiver>> garbage = attachGarbage(100);
+
+    for (int i = 0; i < 50 && garbage.stream().anyMatch(ref -> ref.get() != null); ++i) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assumeTrue("Garbage wasn't collected", garbage.stream().allMatch(ref -> ref.get() == null));
+
+    final Message msg = new BaseMessage(null);
+    cut.post(msg);
+    assertEquals(List.of(msg), received);
+    // Only the subscriptions that were visited by the dispatch are purged right away
+    assertTrue(cut.getSubscriptionCount() > 1);
+
+    // The rest are purged as more subscriptions are added
+    final List<MessageReceiver> more = new ArrayList<>();
+    for (int i = 0; i < 200; ++i) {
+      final MessageReceiver receiver = mock(MessageReceiver.class);
+      more.add(receiver);
+      cut.attach(OtherMessage.class, receiver);
+    }
+    assertEquals(1 + 200, cut.getSubscriptionCount());
+
+    cut.post(new OtherMessage(null));
+    for (final MessageReceiver receiver : more) {
+      verify(receiver).receive(any(OtherMessage.class));
+    }
+  }
+
+  /** Messages posted during dispatch are delivered after the current message, in order. */
+  @Test
+  public void testMessagesPostedFromReceiverAreQueued() {
+    final Message msg0 = new BaseMessage(null);
+    final Message msg1 = new DerivedMessage(null);
+    final Message msg2 = new OtherMessage(null);
+    final MessageReceiver poster =
+        aMsg -> {
+          if (aMsg == msg0) {
+            cut.post(msg1);
+            cut.post(msg2);
+          }
+        };
+
+    cut.attach(poster);
+    cut.attach(logger);
+    cut.post(msg0);
+
+    assertEquals(List.of(msg0, msg1, msg2), received);
+  }
+
+  /** Receivers get messages in the order they were attached, regardless of how. */
+  @Test
+  public void testOrder() {
+    final Loadout loadout = mock(Loadout.class);
+    final MessageReceiver reader0 = mock(MessageReceiver.class);
+    final MessageReceiver reader1 = mock(MessageReceiver.class);
+    final MessageReceiver reader2 = mock(MessageReceiver.class);
+    final MessageReceiver reader3 = mock(MessageReceiver.class);
+    final MessageReceiver reader4 = mock(MessageReceiver.class);
+    final Message msg0 = new DerivedMessage(loadout);
+    final Message msg1 = new BaseMessage(loadout);
+
+    cut.attach(DerivedMessage.class, reader0);
+    cut.attach(reader1);
+    cut.attach(BaseMessage.class, loadout, reader2);
+    cut.attach(DerivedMessage.class, loadout, reader3);
+    cut.attach(reader4);
+    cut.post(msg0);
+    cut.post(msg1);
+
+    final InOrder inOrder = inOrder(reader0, reader1, reader2, reader3, reader4);
+    inOrder.verify(reader0).receive(msg0);
+    inOrder.verify(reader1).receive(msg0);
+    inOrder.verify(reader2).receive(msg0);
+    inOrder.verify(reader3).receive(msg0);
+    inOrder.verify(reader4).receive(msg0);
+    inOrder.verify(reader1).receive(msg1);
+    inOrder.verify(reader2).receive(msg1);
+    inOrder.verify(reader4).receive(msg1);
+    inOrder.verifyNoMoreInteractions();
+  }
 
   @Test
   public void testDetach() {
@@ -82,4 +255,21 @@ public class MessageXBarTest {
     cut.post(msg1);
     verify(reader0, never()).receive(msg1);
   }
+
+  /**
+   * Attaches receivers that are unreachable once this method returns.
+   *
+   * @return References that are cleared when the receivers have been garbage collected.
+   */
+  private List<WeakReference<MessageReceiver>> attachGarbage(int aCount) {
+    final List<WeakReference<MessageReceiver>> ans = new ArrayList<>();
+    for (int i = 0; i < aCount; ++i) {
+      final int index = i;
+      final MessageReceiver receiver = aMsg -> fail("Garbage " + index + " received " + aMsg);
+      cut.attach(receiver);
+      cut.attach(OtherMessage.class, receiver);
+      ans.add(new WeakReference<>(receiver));
+    }
+    return ans;
+  }
 }
@@ -17,14 +17,14 @@
  */
 package org.lisoft.lsml.model;
 
+import static java.lang.Math.max;
 import static org.junit.Assert.*;
 
 import java.util.*;
-
 import org.junit.Test;
-import org.lisoft.mwo_data.mechs.ChassisOmniMech;
-import org.lisoft.mwo_data.mechs.Location;
-import org.lisoft.mwo_data.mechs.OmniPod;
+import org.lisoft.lsml.math.graph.BackTrackingSolver;
+import org.lisoft.lsml.math.graph.PartialCandidate;
+import org.lisoft.mwo_data.mechs.*;
 
 /**
  * Test suite for the {@link OmniPodSelector} class.
@@ -32,6 +32,259 @@ import org.lisoft.mwo_data.mechs.OmniPod;
  * @author Li Song
  */
 public class OmniPodSelectorTest {
+  /**
+   * The original implementation of the selector on top of {@link BackTrackingSolver}, kept as a
+   * reference for the results of the optimised search.
+   */
+  private static class LegacySelection implements PartialCandidate<LegacySelection> {
+    /** The order in which different locations are tried. */
+    private static final Location[] LOCATION_ORDER =
+        new Location[] {
+          Location.CenterTorso,
+          Location.RightTorso,
+          Location.LeftTorso,
+          Location.RightArm,
+          Location.LeftArm,
+          Location.Head,
+          Location.LeftLeg,
+          Location.RightLeg
+        };
+
+    private final Map<Location, List<OmniPod>> allowedPods;
+    private final Map<Location, OmniPod> currentState;
+    private final int location;
+    private final int pod;
+    private final int remainingBallistic;
+    private final int remainingECM;
+    private final int remainingEnergy;
+    private final int remainingJumpJet;
+    private final int remainingMissile;
+
+    /**
+     * Creates a root partial selection to start searching for. Also defines the constraints.
+     *
+     * @param aAllowedPods The pods that are allowed to be selected (preferably (but not
+     *     necessarily) pruned from pods that do not affect the constraints).
+     * @param aWantedEnergy The number of wanted energy hard points.
+     * @param aWantedMissile The number of wanted missile hard points.
+     * @param aWantedBallistic The number of wanted ballistics hard points.
+     * @param aWantedJumpJet The number of wanted jump jets.
+     * @param aWantEcm Whether ECM is wanted or not.
+     */
+    LegacySelection(
+        Map<Location, List<OmniPod>> aAllowedPods,
+        int aWantedEnergy,
+        int aWantedMissile,
+        int aWantedBallistic,
+        int aWantedJumpJet,
+        boolean aWantEcm) {
+      location = 0; // CT
+      pod = -1; // Not used on root
+      allowedPods = aAllowedPods;
+
+      currentState = new HashMap<>();
+      remainingEnergy = aWantedEnergy;
+      remainingMissile = aWantedMissile;
+      remainingBallistic = aWantedBallistic;
+      remainingJumpJet = aWantedJumpJet;
+      remainingECM = aWantEcm ? 1 : 0;
+    }
+
+    static int getHardpointCountDifference(OmniPod removed, OmniPod added, HardPointType type) {
+      return added.getHardPointCount(type) - removed.getHardPointCount(type);
+    }
+
+    private LegacySelection(LegacySelection aPrevious, int aLocation, int aPod) {
+      location = aLocation;
+      pod = aPod;
+      allowedPods = aPrevious.allowedPods;
+
+      currentState = new HashMap<>(aPrevious.currentState);
+      final Location key = LOCATION_ORDER[location];
+      if (aPrevious.location == location) {
+        // Change pod
+        final OmniPod oldPod = currentState.get(key);
+        final OmniPod newPod = allowedPods.get(key).get(pod);
+        remainingEnergy =
+            aPrevious.remainingEnergy
+                - getHardpointCountDifference(oldPod, newPod, HardPointType.ENERGY);
+        remainingMissile =
+            aPrevious.remainingMissile
+                - getHardpointCountDifference(oldPod, newPod, HardPointType.MISSILE);
+        remainingBallistic =
+            aPrevious.remainingBallistic
+                - getHardpointCountDifference(oldPod, newPod, HardPointType.BALLISTIC);
+        remainingJumpJet =
+            aPrevious.remainingJumpJet - newPod.getJumpJetsMax() + oldPod.getJumpJetsMax();
+        remainingECM =
+            aPrevious.remainingECM
+                - getHardpointCountDifference(oldPod, newPod, HardPointType.ECM);
+        currentState.put(key, newPod);
+      } else {
+        // Add new pod
+        final OmniPod newPod = allowedPods.get(key).get(pod);
+        remainingEnergy =
+            aPrevious.remainingEnergy - newPod.getHardPointCount(HardPointType.ENERGY);
+        remainingMissile =
+            aPrevious.remainingMissile - newPod.getHardPointCount(HardPointType.MISSILE);
+        remainingBallistic =
+            aPrevious.remainingBallistic - newPod.getHardPointCount(HardPointType.BALLISTIC);
+        remainingJumpJet = aPrevious.remainingJumpJet - newPod.getJumpJetsMax();
+        remainingECM = aPrevious.remainingECM - newPod.getHardPointCount(HardPointType.ECM);
+        currentState.put(key, newPod);
+      }
+    }
+
+    @Override
+    public boolean accept() {
+      return remainingBallistic <= 0
+          && //
+          remainingMissile <= 0
+          && //
+          remainingEnergy <= 0
+          && //
+          remainingJumpJet <= 0
+          && //
+          remainingECM <= 0;
+    }
+
+    @Override
+    public Optional<LegacySelection> first() {
+      int newLocation = location;
+      final int newPod = 0;
+      List<OmniPod> allowed;
+      do {
+        newLocation = newLocation + 1;
+        if (newLocation >= LOCATION_ORDER.length) {
+          return Optional.empty();
+        }
+        allowed = allowedPods.get(LOCATION_ORDER[newLocation]);
+      } while (allowed.isEmpty());
+      return Optional.of(new LegacySelection(this, newLocation, newPod));
+    }
+
+    @Override
+    public Optional<LegacySelection> next() {
+      final List<OmniPod> allowed = allowedPods.get(LOCATION_ORDER[location]);
+      final int newPod = pod + 1;
+      if (newPod < allowed.size()) {
+        return Optional.of(new LegacySelection(this, location, newPod));
+      }
+      return Optional.empty();
+    }
+
+    @Override
+    public boolean reject() {
+      int maxPossibleEnergy = 0;
+      int maxPossibleMissile = 0;
+      int maxPossibleBallistic = 0;
+      int maxPossibleJumpJet = 0;
+      int maxPossibleEcm = 0;
+
+      for (int remLoc = location + 1; remLoc < LOCATION_ORDER.length; ++remLoc) {
+        final List<OmniPod> allowed = allowedPods.get(LOCATION_ORDER[remLoc]);
+        int localMaxPossibleEnergy = 0;
+        int localMaxPossibleMissile = 0;
+        int localMaxPossibleBallistic = 0;
+        int localMaxPossibleJumpJet = 0;
+        int localMaxPossibleEcm = 0;
+
+        for (final OmniPod omniPod : allowed) {
+          localMaxPossibleBallistic =
+              max(localMaxPossibleBallistic, omniPod.getHardPointCount(HardPointType.BALLISTIC));
+          localMaxPossibleEnergy =
+              max(localMaxPossibleEnergy, omniPod.getHardPointCount(HardPointType.ENERGY));
+          localMaxPossibleMissile =
+              max(localMaxPossibleMissile, omniPod.getHardPointCount(HardPointType.MISSILE));
+          localMaxPossibleEcm =
+              max(localMaxPossibleEcm, omniPod.getHardPointCount(HardPointType.ECM));
+          localMaxPossibleJumpJet = max(localMaxPossibleJumpJet, omniPod.getJumpJetsMax());
+        }
+        maxPossibleEnergy += localMaxPossibleEnergy;
+        maxPossibleMissile += localMaxPossibleMissile;
+        maxPossibleBallistic += localMaxPossibleBallistic;
+        maxPossibleJumpJet += localMaxPossibleJumpJet;
+        maxPossibleEcm += localMaxPossibleEcm;
+      }
+
+      return maxPossibleEnergy < remainingEnergy
+          || // Break it up for coverage
+          maxPossibleMissile < remainingMissile
+          || //
+          maxPossibleBallistic < remainingBallistic
+          || //
+          maxPossibleJumpJet < remainingJumpJet
+          || //
+          maxPossibleEcm < remainingECM;
+    }
+  }
+
+  @Test
+  public void testSameAsBackTracking() {
+    final OmniPodSelector cut = new OmniPodSelector();
+    final BackTrackingSolver<LegacySelection> solver = new BackTrackingSolver<>();
+    int solutions = 0;
+
+    for (final Chassis chassis : ChassisDB.lookupAll()) {
+      if (!(chassis instanceof final ChassisOmniMech omniMech)) {
+        continue;
+      }
+      final Map<Location, List<OmniPod>> allowedPods = new HashMap<>();
+      for (final Location location : Location.values()) {
+        if (location == Location.CenterTorso) {
+          allowedPods.put(
+              location, List.of(omniMech.getComponent(location).getFixedOmniPod()));
+        } else {
+          allowedPods.put(location, OmniPodDB.lookup(omniMech, location));
+        }
+      }
+      final OmniPod ct = omniMech.getComponent(Location.CenterTorso).getFixedOmniPod();
+
+      for (final int energy : new int[] {0, 2, 4, 7, 10}) {
+        for (final int missile : new int[] {0, 2, 4, 8}) {
+          for (final int ballistic : new int[] {0, 1, 3}) {
+            for (final int jumpJet : new int[] {0, 2, 5}) {
+              for (final boolean ecm : new boolean[] {false, true}) {
+                final LegacySelection root =
+                    new LegacySelection(
+                        allowedPods,
+                        energy - ct.getHardPointCount(HardPointType.ENERGY),
+                        missile - ct.getHardPointCount(HardPointType.MISSILE),
+                        ballistic - ct.getHardPointCount(HardPointType.BALLISTIC),
+                        jumpJet - omniMech.getFixedJumpJets(),
+                        ct.getHardPointCount(HardPointType.ECM) <= 0 && ecm);
+                final Optional<Map<Location, OmniPod>> expected =
+                    solver.solveOne(root).map(aSelection -> aSelection.currentState);
+
+                final String message =
+                    omniMech.getKey() + " " + energy + "/" + missile + "/" + ballistic + "/"
+                        + jumpJet + "/" + ecm;
+                assertEquals(
+                    message,
+                    expected,
+                    cut.selectPods(omniMech, energy, missile, ballistic, jumpJet, ecm));
+                // Served from the cache
+                assertEquals(
+                    message,
+                    expected,
+                    cut.selectPods(omniMech, energy, missile, ballistic, jumpJet, ecm));
+                assertEquals(
+                    message,
+                    expected,
+                    cut.selectPods(
+                        omniMech, energy, missile, ballistic, jumpJet, ecm, allowedPods));
+                if (expected.isPresent()) {
+                  solutions++;
+                }
+              }
+            }
+          }
+        }
+      }
+    }
+    assertTrue(solutions > 0);
+  }
+
 
   @Test
   public void testSelectPods() {
@@ -21,9 +21,7 @@ import static org.junit.Assert.*;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
+import java.util.*;
 import org.junit.Test;
 import org.lisoft.lsml.model.loadout.Loadout;
 import org.lisoft.mwo_data.Faction;
@@ -293,6 +291,139 @@ public class SearchIndexTest {
     assertTrue(cut.query("hello").contains(l));
   }
 
+  @Test
+  public void testMergeTwice() {
+    final Loadout l = makeLoadout();
+    when(l.getName()).thenReturn("abc");
+    cut.merge(l);
+    cut.merge(l);
+
+    assertEquals(1, cut.query("abc").size());
+    cut.unmerge(l);
+    assertTrue(cut.query("abc").isEmpty());
+  }
+
+  /** Compares the index to a straightforward prefix map on a large randomly mutated garage. */
+  @Test
+  public void testSameResultsAsPrefixMap() {
+    final Random random = new Random(1234);
+    final String[] vocabulary = {
+      "alpha", "alp", "beta", "bet", "gamma", "hunch", "hunchback", "atlas", "at", "ENERGY",
+      "HEAT", "5%", "ilya", "muromets", "dire", "wolf", "direwolf", "x", "-k2", "kk"
+    };
+    final Faction[] factions = Faction.values();
+    final List<Chassis> chassis = new ArrayList<>();
+    for (int i = 0; i < 40; ++i) {
+      final Chassis c = mock(Chassis.class);
+      when(c.getName()).thenReturn(randomPhrase(random, vocabulary));
+      when(c.getShortName()).thenReturn(randomPhrase(random, vocabulary));
+      when(c.getSeriesName()).thenReturn(randomPhrase(random, vocabulary));
+      when(c.getMassMax()).thenReturn(20 + 5 * random.nextInt(17));
+      when(c.getFaction()).thenReturn(factions[random.nextInt(factions.length)]);
+      chassis.add(c);
+    }
+
+    final List<Loadout> garage = new ArrayList<>();
+    final Map<Loadout, String> names = new HashMap<>();
+    for (int i = 0; i < 3000; ++i) {
+      final Loadout l = mock(Loadout.class);
+      final Chassis c = chassis.get(random.nextInt(chassis.size()));
+      when(l.getChassis()).thenReturn(c);
+      when(l.getAllModifiers()).thenReturn(modifiers);
+      when(l.getName()).thenAnswer(aInvocation -> names.get(l));
+      names.put(l, randomPhrase(random, vocabulary));
+      garage.add(l);
+      cut.merge(l);
+    }
+
+    for (int round = 0; round < 5; ++round) {
+      for (int i = 0; i < 200; ++i) {
+        final Loadout l = garage.get(random.nextInt(garage.size()));
+        switch (random.nextInt(3)) {
+          case 0 -> {
+            garage.remove(l);
+            cut.unmerge(l);
+          }
+          case 1 -> {
+            names.put(l, randomPhrase(random, vocabulary));
+            cut.update(l);
+          }
+          default -> {
+            final Loadout clone = mock(Loadout.class);
+            when(clone.getChassis()).thenReturn(l.getChassis());
+            when(clone.getAllModifiers()).thenReturn(modifiers);
+            when(clone.getName()).thenAnswer(aInvocation -> names.get(clone));
+            names.put(clone, randomPhrase(random, vocabulary));
+            garage.add(clone);
+            cut.merge(clone);
+          }
+        }
+      }
+
+      final Map<String, Set<Loadout>> prefixes = new HashMap<>();
+      for (final Loadout l : garage) {
+        final Chassis c = l.getChassis();
+        for (final String keyword :
+            List.of(
+                l.getName(),
+                c.getName(),
+                c.getShortName(),
+                c.getSeriesName(),
+                c.getMassMax() + "ton",
+                c.getMassMax() + " ton",
+                c.getFaction().getUiName(),
+                c.getFaction().getUiShortName())) {
+          for (final String word : keyword.toLowerCase().split(" ")) {
+            for (int i = 1; i <= word.length(); ++i) {
+              prefixes.computeIfAbsent(word.substring(0, i), k -> new HashSet<>()).add(l);
+            }
+          }
+        }
+      }
+
+      for (int i = 0; i < 200; ++i) {
+        final String query = randomQuery(random, vocabulary);
+        final Set<Loadout> expected = new HashSet<>(garage);
+        for (final String term : query.trim().toLowerCase().split(" ")) {
+          if (!term.isEmpty()) {
+            expected.retainAll(prefixes.getOrDefault(term, Collections.emptySet()));
+          }
+        }
+        final Collection<Loadout> ans = cut.query(query);
+        assertEquals(query, expected, new HashSet<>(ans));
+        assertEquals(query, expected.size(), ans.size());
+      }
+    }
+  }
+
+  @Test
+  public void testUnmergeThenMerge() {
+    final Loadout l1 = makeLoadout();
+    when(l1.getName()).thenReturn("abc");
+    final Loadout l2 = makeLoadout();
+    when(l2.getName()).thenReturn("abd");
+    cut.merge(l1);
+    cut.unmerge(l1);
+    cut.merge(l2);
+
+    assertEquals(List.of(l2), new ArrayList<>(cut.query("ab")));
+    assertTrue(cut.query("abc").isEmpty());
+  }
+
+  @Test
+  public void testUpdateSingle() {
+    final Loadout l1 = makeLoadout();
+    when(l1.getName()).thenReturn("nope").thenReturn("hello");
+    final Loadout l2 = makeLoadout();
+    when(l2.getName()).thenReturn("nope");
+    cut.merge(l1);
+    cut.merge(l2);
+    cut.update(l1);
+
+    assertEquals(List.of(l2), new ArrayList<>(cut.query("nope")));
+    assertEquals(List.of(l1), new ArrayList<>(cut.query("hello")));
+  }
+
   private Loadout makeLoadout() {
     return makeLoadout(Faction.CLAN);
   }
@@ -305,4 +436,29 @@ public class SearchIndexTest {
     when(c.getFaction()).thenReturn(aFaction);
     return l;
   }
+
+  private String randomPhrase(Random aRandom, String[] aVocabulary) {
+    final StringBuilder sb = new StringBuilder();
+    final int words = 1 + aRandom.nextInt(3);
+    for (int i = 0; i < words; ++i) {
+      if (i > 0) {
+        sb.append(' ');
+      }
+      sb.append(aVocabulary[aRandom.nextInt(aVocabulary.length)]);
+    }
+    return sb.toString();
+  }
+
+  private String randomQuery(Random aRandom, String[] aVocabulary) {
+    final StringBuilder sb = new StringBuilder();
+    final int terms = 1 + aRandom.nextInt(3);
+    for (int i = 0; i < terms; ++i) {
+      if (i > 0) {
+        sb.append(' ');
+      }
+      final String word = aVocabulary[aRandom.nextInt(aVocabulary.length)];
+      sb.append(word, 0, 1 + aRandom.nextInt(word.length()));
+    }
+    return sb.toString();
+  }
 }
@@ -18,6 +18,7 @@
 package org.lisoft.lsml.model.export;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.io.StringReader;
@@ -42,6 +43,34 @@ public class BasePGICoderTest {
     }
   }
 
+  @Test
+  public void testCountAvailable() {
+    final BasePGICoder cut = new BasePGICoder();
+    final String input = "9|8pA";
+
+    assertEquals(1, cut.countAvailable(input, 0, 3));
+    assertEquals(0, cut.countAvailable(input, 1, 3));
+    assertEquals(1, cut.countAvailable(input, 2, 3));
+    assertEquals(1, cut.countAvailable(input, 4, 3));
+    assertEquals(0, cut.countAvailable(input, 5, 3));
+    assertEquals(1, cut.countAvailable("98", 0, 1));
+    assertEquals(0, cut.countAvailable("\u00e59", 0, 2));
+  }
+
+  @Test
+  public void testEncodeDecodeCharSequence() throws DecodingException {
+    final BasePGICoder cut = new BasePGICoder();
+
+    final StringBuilder output = new StringBuilder();
+    for (int i = 0; i < (64 * 64); ++i) {
+      cut.append(i, output, 2, 2);
+    }
+
+    for (int i = 0; i < (64 * 64); ++i) {
+      assertEquals(i, cut.parseExactly(output, i * 2, 2));
+    }
+  }
+
   @Test
   public void testEncodeDecodeUniqueAlphabet() throws DecodingException, IOException {
     final BasePGICoder cut = new BasePGICoder();
@@ -63,6 +92,22 @@ public class BasePGICoderTest {
     assertEquals("@K7", output.toString());
   }
 
+  @Test
+  public void testParseExactlyEndOfInput() {
+    final BasePGICoder cut = new BasePGICoder();
+    try {
+      cut.parseExactly("98", 1, 2);
+      fail("Expected exception");
+    } catch (final DecodingException e) {
+      // Expected
+    }
+  }
+
+  @Test(expected = DecodingException.class)
+  public void testParseExactlyUnexpectedCharacter() throws DecodingException {
+    new BasePGICoder().parseExactly("9|", 0, 2);
+  }
+
   @Test
   public void testParseAvailableLimit() throws IOException {
     final BasePGICoder cut = new BasePGICoder();
@@ -23,12 +23,14 @@ import static org.mockito.Mockito.mock;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 import org.junit.Test;
 import org.lisoft.lsml.application.ErrorReporter;
 import org.lisoft.lsml.model.ChassisDB;
 import org.lisoft.lsml.model.loadout.DefaultLoadoutFactory;
 import org.lisoft.lsml.model.loadout.Loadout;
 import org.lisoft.lsml.model.loadout.LoadoutFactory;
+import org.lisoft.lsml.util.DecodingException;
 import org.lisoft.mwo_data.mechs.Chassis;
 import org.lisoft.mwo_data.mechs.ChassisClass;
 
@@ -58,6 +60,49 @@ public class MWOCoderTest {
     assertFalse(cut.canDecode("B?502:P0|Xb|Y?|Y?pF0|i^|Y?qF0|i^|Y?rH0sH0|]?tP0uP0vB0w<0:0:0"));
   }
 
+  @Test
+  public void testDecodeAll() throws Exception {
+    final String atlas = cut.encode(loadoutFactory.produceStock(ChassisDB.lookup("AS7-D-DC")));
+    final String timber = cut.encode(loadoutFactory.produceStock(ChassisDB.lookup("TBR-A")));
+
+    final List<Loadout> decoded = cut.decodeAll(Stream.of(atlas, timber, EMPTY_LCT_1VP));
+
+    assertEquals(3, decoded.size());
+    assertEquals(cut.decode(atlas), decoded.get(0));
+    assertEquals(cut.decode(timber), decoded.get(1));
+    assertEquals(cut.decode(EMPTY_LCT_1VP), decoded.get(2));
+  }
+
+  @Test
+  public void testDecodeAllReportsBrokenString() {
+    try {
+      cut.decodeAll(Stream.of(EMPTY_LCT_1VP, EMPTY_LCT_1VP.replace('q', 'x')));
+      fail("Expected exception");
+    } catch (final DecodingException e) {
+      assertTrue(e.getMessage().contains("2"));
+    }
+  }
+
+  @Test(expected = DecodingException.class)
+  public void testDecodeTruncated() throws Exception {
+    cut.decode(EMPTY_LCT_1VP.substring(0, EMPTY_LCT_1VP.length() - 1));
+  }
+
+  @Test
+  public void testDecodeCharSequence() throws Exception {
+    assertEquals(cut.decode(EMPTY_LCT_1VP), cut.decode(new StringBuilder(EMPTY_LCT_1VP)));
+  }
+
+  @Test
+  public void testEncodeAppends() throws Exception {
+    final Loadout loadout = loadoutFactory.produceStock(ChassisDB.lookup("AS7-D-DC"));
+    final String expected = cut.encode(loadout);
+    final StringBuilder output = new StringBuilder();
+    cut.encode(loadout, output);
+    cut.encode(loadout, output);
+    assertEquals(expected + expected, output.toString());
+  }
+
   /**
    * The coder shall be able to decode all stock 'Mechs.
    *
@@ -0,0 +1,227 @@
+/*
+ * Li Song Mechlab - A 'mech building tool for PGI's MechWarrior: Online.
+ * Copyright (C) 2013-2023  Li Song
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.lisoft.lsml.model.garage;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lisoft.lsml.application.ErrorReporter;
+import org.lisoft.lsml.command.CmdGarageMove;
+import org.lisoft.lsml.command.CmdGarageRename;
+import org.lisoft.lsml.messages.MessageDelivery;
+import org.lisoft.lsml.model.ChassisDB;
+import org.lisoft.lsml.model.loadout.*;
+import org.lisoft.mwo_data.Faction;
+
+/**
+ * Test suite for {@link GarageIndex} and lazily decoded garages.
+ *
+ * @author Li Song
+ */
+public class GarageIndexTest {
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+  private final LoadoutFactory loadoutFactory = new DefaultLoadoutFactory();
+  private final MessageDelivery messageDelivery = mock(MessageDelivery.class);
+  private final GarageSerializer serializer =
+      new GarageSerializer(mock(ErrorReporter.class), loadoutFactory, new LoadoutBuilder());
+  private Garage garage;
+  private File indexFile;
+  private byte[] snapshot;
+
+  @Before
+  public void setup() throws Exception {
+    indexFile = folder.newFile("garage.lsxml.index");
+    garage = new Garage();
+    final GarageDirectory<Loadout> assaults = new GarageDirectory<>("Assaults");
+    final GarageDirectory<Loadout> lights = new GarageDirectory<>("Lights");
+    garage.getLoadoutRoot().getDirectories().add(assaults);
+    garage.getLoadoutRoot().getDirectories().add(lights);
+    assaults.getValues().add(loadoutFactory.produceStock(ChassisDB.lookup("AS7-D-DC")));
+    assaults.getValues().add(loadoutFactory.produceStock(ChassisDB.lookup("HGN-733C")));
+    lights.getValues().add(loadoutFactory.produceStock(ChassisDB.lookup("CDA-3M")));
+    final Loadout jenner = loadoutFactory.produceStock(ChassisDB.lookup("JR7-F"));
+    jenner.setName("My JR7-F");
+    garage.getLoadoutRoot().getValues().add(jenner);
+    final DropShip dropShip = new DropShip(Faction.INNERSPHERE);
+    dropShip.setName("Lance");
+    dropShip.setMech(0, loadoutFactory.produceStock(ChassisDB.lookup("HBK-4G")));
+    garage.getDropShipRoot().getValues().add(dropShip);
+
+    snapshot = serialize(garage);
+    GarageIndex.write(indexFile, garage, snapshot, serializer);
+  }
+
+  @Test
+  public void testDecodeOnAccess() throws Exception {
+    final Garage cut = GarageIndex.load(indexFile, snapshot, serializer);
+    final GarageDirectory<Loadout> assaults = cut.getLoadoutRoot().getDirectories().get(0);
+
+    // The tree and headers are available without decoding anything
+    assertEquals("Assaults", assaults.getName());
+    assertEquals(
+        List.of("AS7-D-DC", "HGN-733C"),
+        garage.getLoadoutRoot().getDirectories().get(0).getValueNames());
+    assertEquals(List.of("AS7-D-DC", "HGN-733C"), assaults.getValueNames());
+    assertEquals(List.of("My JR7-F"), cut.getLoadoutRoot().getValueNames());
+    assertEquals(List.of("Lance"), cut.getDropShipRoot().getValueNames());
+    assertEquals(5, GarageIndex.pending(cut).size());
+    assertFalse(assaults.isDecoded());
+
+    assertEquals(garage.getLoadoutRoot().getDirectories().get(0).getValues(), assaults.getValues());
+    assertTrue(assaults.isDecoded());
+    assertFalse(cut.getLoadoutRoot().getDirectories().get(1).isDecoded());
+    assertEquals(3, GarageIndex.pending(cut).size());
+
+    assertEquals(garage, cut);
+    assertTrue(GarageIndex.pending(cut).isEmpty());
+  }
+
+  @Test
+  public void testDecodeFailureKept() throws Exception {
+    final Garage cut = GarageIndex.load(indexFile, snapshot, serializer);
+    final GarageDirectory<Loadout> lights = cut.getLoadoutRoot().getDirectories().get(1);
+    final LazyValue<Loadout> broken =
+        new LazyValue<>("Broken", "CDA-3M", "<loadout".getBytes(), serializer);
+    final List<Object> entries = new ArrayList<>(lights.getEntries());
+    entries.add(0, broken);
+    lights.setEntries(entries);
+
+    final RuntimeException failure = assertThrows(RuntimeException.class, broken::get);
+    assertEquals(1, lights.getValues().size());
+    assertSame(failure, assertThrows(RuntimeException.class, broken::get));
+    assertFalse(broken.isDecoded());
+
+    // The broken value is saved as it was read so that it isn't lost
+    assertEquals(List.of("CDA-3M", "Broken (CDA-3M)"), lights.getValueNames());
+    assertSame(broken, lights.getEntries().get(1));
+    assertTrue(GarageIndex.pending(cut).contains(broken));
+  }
+
+  @Test
+  public void testJournalDoesNotSeeDecoding() throws Exception {
+    final File journalFile = folder.newFile("garage.lsxml.journal");
+    final Garage cut = GarageIndex.load(indexFile, snapshot, serializer);
+    final GarageJournal journal = GarageJournal.create(journalFile, cut, snapshot, serializer);
+
+    final GarageDirectory<Loadout> assaults = cut.getLoadoutRoot().getDirectories().get(0);
+    assaults.getValues();
+    assertFalse(journal.append(cut));
+
+    // Changes to decoded and undecoded entries are journaled and replayed onto an index load
+    assaults.getValues().get(1).setName("Renamed");
+    cut.getLoadoutRoot().getDirectories().get(1).setName("Small");
+    assertTrue(journal.append(cut));
+
+    final Garage reopened = GarageIndex.load(indexFile, snapshot, serializer);
+    GarageJournal.open(journalFile, reopened, snapshot, serializer);
+    assertFalse(reopened.getLoadoutRoot().getDirectories().get(1).isDecoded());
+    assertEquals(cut, reopened);
+  }
+
+  @Test
+  public void testMoveAndRenameUndecoded() throws Exception {
+    final Garage cut = GarageIndex.load(indexFile, snapshot, serializer);
+    final GaragePath<Loadout> root = new GaragePath<>(cut.getLoadoutRoot());
+    final GarageDirectory<Loadout> assaults = cut.getLoadoutRoot().getDirectories().get(0);
+    final GarageDirectory<Loadout> lights = cut.getLoadoutRoot().getDirectories().get(1);
+
+    new CmdGarageMove<>(
+            messageDelivery, new GaragePath<>(root, lights), new GaragePath<>(root, assaults))
+        .apply();
+    final GaragePath<Loadout> moved = new GaragePath<>(new GaragePath<>(root, lights), assaults);
+    new CmdGarageRename<>(messageDelivery, moved, "Big ones").apply();
+    new CmdGarageRename<>(messageDelivery, new GaragePath<>(root, lights), "Mixed").apply();
+
+    assertFalse(assaults.isDecoded());
+    assertFalse(lights.isDecoded());
+    assertFalse(cut.getLoadoutRoot().isDecoded());
+    assertEquals(List.of(lights), cut.getLoadoutRoot().getDirectories());
+    assertEquals(List.of(assaults), lights.getDirectories());
+
+    // Saving copies the undecoded values as they are
+    final byte[] saved = serialize(cut);
+    assertFalse(assaults.isDecoded());
+
+    final GarageDirectory<Loadout> expectedAssaults = garage.getLoadoutRoot().getDirectories().get(0);
+    final GarageDirectory<Loadout> expectedLights = garage.getLoadoutRoot().getDirectories().get(1);
+    garage.getLoadoutRoot().getDirectories().remove(expectedAssaults);
+    expectedLights.getDirectories().add(expectedAssaults);
+    expectedAssaults.setName("Big ones");
+    expectedLights.setName("Mixed");
+    assertEquals(garage, serializer.load(new ByteArrayInputStream(saved)));
+    assertEquals(garage, cut);
+  }
+
+  @Test
+  public void testNameConflictWithUndecoded() throws Exception {
+    final Garage cut = GarageIndex.load(indexFile, snapshot, serializer);
+    final GaragePath<Loadout> root = new GaragePath<>(cut.getLoadoutRoot());
+    assertFalse(GaragePath.isNameAvailalble(root, "My JR7-F"));
+    assertTrue(GaragePath.isNameAvailalble(root, "Other"));
+    assertFalse(cut.getLoadoutRoot().isDecoded());
+  }
+
+  @Test
+  public void testPrefetch() throws Exception {
+    final Garage cut = GarageIndex.load(indexFile, snapshot, serializer);
+    final List<LazyValue<?>> pending = GarageIndex.pending(cut);
+    final List<Object> decoded = new ArrayList<>();
+    final Thread prefetch = new Thread(() -> pending.forEach(aValue -> decoded.add(aValue.get())));
+    prefetch.start();
+    prefetch.join();
+
+    assertTrue(pending.stream().allMatch(LazyValue::isDecoded));
+    assertSame(decoded.get(0), cut.getLoadoutRoot().getValues().get(0));
+    assertEquals(garage, cut);
+  }
+
+  @Test
+  public void testStaleIndexIgnored() throws Exception {
+    garage.getLoadoutRoot().getValues().get(0).setName("Changed");
+    assertNull(GarageIndex.load(indexFile, serialize(garage), serializer));
+  }
+
+  @Test
+  public void testWriteUndecoded() throws Exception {
+    final Garage cut = GarageIndex.load(indexFile, snapshot, serializer);
+    cut.getLoadoutRoot().getValues().get(0).setName("Renamed");
+    final byte[] newSnapshot = serialize(cut);
+    GarageIndex.write(indexFile, cut, newSnapshot, serializer);
+    assertFalse(cut.getLoadoutRoot().getDirectories().get(0).isDecoded());
+
+    final Garage reopened = GarageIndex.load(indexFile, newSnapshot, serializer);
+    assertEquals(List.of("Renamed"), reopened.getLoadoutRoot().getValueNames());
+    assertEquals(serializer.load(new ByteArrayInputStream(newSnapshot)), reopened);
+    assertEquals(cut, reopened);
+  }
+
+  private byte[] serialize(Garage aGarage) throws Exception {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    serializer.save(out, aGarage);
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,235 @@
+/*
+ * Li Song Mechlab - A 'mech building tool for PGI's MechWarrior: Online.
+ * Copyright (C) 2013-2023  Li Song
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.lisoft.lsml.model.garage;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lisoft.lsml.application.ErrorReporter;
+import org.lisoft.lsml.model.ChassisDB;
+import org.lisoft.lsml.model.ItemDB;
+import org.lisoft.lsml.model.loadout.*;
+import org.lisoft.mwo_data.Faction;
+import org.lisoft.mwo_data.equipment.Item;
+import org.lisoft.mwo_data.mechs.ArmourSide;
+import org.lisoft.mwo_data.mechs.Location;
+
+/**
+ * Test suite for {@link GarageJournal}.
+ *
+ * @author Li Song
+ */
+public class GarageJournalTest {
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+  private final LoadoutFactory loadoutFactory = new DefaultLoadoutFactory();
+  private final GarageSerializer serializer =
+      new GarageSerializer(mock(ErrorReporter.class), loadoutFactory, new LoadoutBuilder());
+  private File journalFile;
+  private Garage garage;
+  private byte[] snapshot;
+
+  @Before
+  public void setup() throws Exception {
+    journalFile = folder.newFile("garage.lsxml.journal");
+    garage = new Garage();
+    final GarageDirectory<Loadout> assaults = new GarageDirectory<>("Assaults");
+    garage.getLoadoutRoot().getDirectories().add(assaults);
+    assaults.getValues().add(loadoutFactory.produceStock(ChassisDB.lookup("AS7-D-DC")));
+    final List<Loadout> root = garage.getLoadoutRoot().getValues();
+    root.add(loadoutFactory.produceStock(ChassisDB.lookup("JR7-F")));
+    root.add(loadoutFactory.produceStock(ChassisDB.lookup("TBR-C")));
+    snapshot = serialize(garage);
+  }
+
+  /** Simulates crashes throughout the journal, each must recover all batches before it. */
+  @Test
+  public void testCrashAnywhere() throws Exception {
+    final GarageJournal cut = GarageJournal.create(journalFile, garage, snapshot, serializer);
+    final List<Long> batchEnds = new ArrayList<>();
+    final List<byte[]> expectedStates = new ArrayList<>();
+    batchEnds.add(cut.getSize());
+    expectedStates.add(serialize(garage));
+
+    final GarageDirectory<Loadout> assaults = garage.getLoadoutRoot().getDirectories().get(0);
+    final Loadout atlas = assaults.getValues().get(0);
+    final Loadout jenner = garage.getLoadoutRoot().getValues().get(0);
+    final Item mediumLaser = ItemDB.lookup("MEDIUM LASER");
+    final List<Runnable> edits =
+        List.of(
+            () -> atlas.getComponent(Location.LeftArm).setArmour(ArmourSide.ONLY, 3, true),
+            () -> {
+              garage.getLoadoutRoot().getValues().remove(jenner);
+              assaults.getValues().add(jenner);
+            },
+            () -> jenner.setName("Renamed"),
+            () -> garage.getLoadoutRoot().getValues().remove(0),
+            () -> {
+              final GarageDirectory<Loadout> lights = new GarageDirectory<>("Lights");
+              lights.getValues().add(loadoutFactory.produceStock(ChassisDB.lookup("CDA-3M")));
+              assaults.getDirectories().add(lights);
+            },
+            () -> assaults.setName("Big ones"),
+            () -> atlas.getComponent(Location.RightTorso).addItem(mediumLaser),
+            () -> {
+              final DropShip dropShip = new DropShip(Faction.CLAN);
+              dropShip.setName("Star");
+              garage.getDropShipRoot().getValues().add(dropShip);
+            });
+
+    for (final Runnable edit : edits) {
+      edit.run();
+      assertTrue(cut.append(garage));
+      batchEnds.add(cut.getSize());
+      expectedStates.add(serialize(garage));
+    }
+    assertFalse(cut.append(garage));
+
+    final byte[] journal = Files.readAllBytes(journalFile.toPath());
+    assertEquals(journal.length, (long) batchEnds.get(batchEnds.size() - 1));
+
+    // Every offset near the batch boundaries and a sample of offsets inside the batches
+    final SortedSet<Integer> crashes = new TreeSet<>();
+    for (int length = 0; length <= journal.length; length += 97) {
+      crashes.add(length);
+    }
+    for (final long end : batchEnds) {
+      for (int length = (int) end - 9; length <= end + 1; ++length) {
+        crashes.add(Math.max(0, Math.min(journal.length, length)));
+      }
+    }
+
+    for (final int length : crashes) {
+      Files.write(journalFile.toPath(), Arrays.copyOf(journal, length));
+      final Garage recovered = serializer.load(new ByteArrayInputStream(snapshot));
+      final GarageJournal opened = GarageJournal.open(journalFile, recovered, snapshot, serializer);
+
+      int batches = 0;
+      while (batches + 1 < batchEnds.size() && batchEnds.get(batches + 1) <= length) {
+        batches++;
+      }
+      final Garage expected =
+          serializer.load(new ByteArrayInputStream(expectedStates.get(batches)));
+      assertEquals("Crash at " + length, expected, recovered);
+      assertEquals(batches, opened.getReplayedBatches());
+    }
+  }
+
+  @Test
+  public void testContinueAfterTornWrite() throws Exception {
+    final GarageJournal cut = GarageJournal.create(journalFile, garage, snapshot, serializer);
+    final Loadout jenner = garage.getLoadoutRoot().getValues().get(0);
+    jenner.setName("First");
+    cut.append(garage);
+
+    // Crash in the middle of the second batch
+    final long end = cut.getSize();
+    jenner.setName("Second");
+    cut.append(garage);
+    final byte[] journal = Files.readAllBytes(journalFile.toPath());
+    Files.write(journalFile.toPath(), Arrays.copyOf(journal, (int) end + 10));
+
+    Garage recovered = serializer.load(new ByteArrayInputStream(snapshot));
+    final GarageJournal opened = GarageJournal.open(journalFile, recovered, snapshot, serializer);
+    assertEquals("First", recovered.getLoadoutRoot().getValues().get(0).getName());
+    assertEquals(end, journalFile.length());
+
+    recovered.getLoadoutRoot().getValues().get(0).setName("Third");
+    recovered.getLoadoutRoot().getValues().remove(1);
+    assertTrue(opened.append(recovered));
+    final byte[] expected = serialize(recovered);
+
+    recovered = serializer.load(new ByteArrayInputStream(snapshot));
+    GarageJournal.open(journalFile, recovered, snapshot, serializer);
+    assertEquals(serializer.load(new ByteArrayInputStream(expected)), recovered);
+  }
+
+  @Test
+  public void testNothingChanged() throws Exception {
+    final GarageJournal cut = GarageJournal.create(journalFile, garage, snapshot, serializer);
+    final long size = cut.getSize();
+    assertFalse(cut.append(garage));
+    assertEquals(size, cut.getSize());
+  }
+
+  @Test
+  public void testRandomEdits() throws Exception {
+    final Random random = new Random(17);
+    GarageJournal cut = GarageJournal.create(journalFile, garage, snapshot, serializer);
+    for (int i = 0; i < 40; ++i) {
+      final List<Loadout> loadouts = garage.getLoadoutRoot().getValues();
+      switch (random.nextInt(4)) {
+        case 0 -> loadouts.add(loadoutFactory.produceStock(ChassisDB.lookup("HBK-4G")));
+        case 1 -> {
+          if (!loadouts.isEmpty()) {
+            loadouts.remove(random.nextInt(loadouts.size()));
+          }
+        }
+        case 2 -> {
+          if (!loadouts.isEmpty()) {
+            loadouts.get(random.nextInt(loadouts.size())).setName("Name " + i);
+          }
+        }
+        default -> {
+          final GarageDirectory<Loadout> directory = new GarageDirectory<>("Dir " + i);
+          if (!loadouts.isEmpty()) {
+            directory.getValues().add(loadouts.remove(0));
+          }
+          garage.getLoadoutRoot().getDirectories().add(directory);
+        }
+      }
+      cut.append(garage);
+
+      // Reopening must give the same garage and keep journaling correctly
+      final Garage recovered = serializer.load(new ByteArrayInputStream(snapshot));
+      cut = GarageJournal.open(journalFile, recovered, snapshot, serializer);
+      assertEquals(garage, recovered);
+      garage = recovered;
+    }
+  }
+
+  @Test
+  public void testStaleJournalIgnored() throws Exception {
+    final GarageJournal cut = GarageJournal.create(journalFile, garage, snapshot, serializer);
+    garage.getLoadoutRoot().getValues().get(0).setName("Changed");
+    cut.append(garage);
+
+    // A new snapshot was written but the application died before the journal was restarted.
+    final byte[] newSnapshot = serialize(garage);
+    final Garage recovered = serializer.load(new ByteArrayInputStream(newSnapshot));
+    final GarageJournal opened =
+        GarageJournal.open(journalFile, recovered, newSnapshot, serializer);
+
+    assertEquals(0, opened.getReplayedBatches());
+    assertEquals(garage, recovered);
+  }
+
+  private byte[] serialize(Garage aGarage) {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    serializer.save(out, aGarage);
+    return out.toByteArray();
+  }
+}
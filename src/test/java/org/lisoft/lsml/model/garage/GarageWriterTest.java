@@ -0,0 +1,291 @@
+/*
+ * Li Song Mechlab - A 'mech building tool for PGI's MechWarrior: Online.
+ * Copyright (C) 2013-2023  Li Song
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.lisoft.lsml.model.garage;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lisoft.lsml.application.ErrorReporter;
+import org.lisoft.lsml.model.ChassisDB;
+import org.lisoft.lsml.model.ItemDB;
+import org.lisoft.lsml.model.loadout.*;
+import org.lisoft.mwo_data.Faction;
+import org.lisoft.mwo_data.mechs.ArmourSide;
+import org.lisoft.mwo_data.mechs.Location;
+
+/**
+ * Test suite for {@link GarageWriter}. The writer is emulated by the test running the queued tasks,
+ * except where real concurrency is tested.
+ *
+ * @author Li Song
+ */
+public class GarageWriterTest {
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+  private final List<Throwable> errors = new ArrayList<>();
+  private final LoadoutFactory loadoutFactory = new DefaultLoadoutFactory();
+  private final BlockingQueue<Runnable> queued = new LinkedBlockingQueue<>();
+  private final GarageSerializer reference =
+      new GarageSerializer(mock(ErrorReporter.class), loadoutFactory, new LoadoutBuilder());
+  private final GarageSerializer serializer = spy(reference);
+  private File file;
+  private Garage garage;
+
+  @Before
+  public void setup() throws Exception {
+    file = folder.newFile("garage.lsxml");
+    garage = new Garage();
+    final GarageDirectory<Loadout> assaults = new GarageDirectory<>("Assaults");
+    garage.getLoadoutRoot().getDirectories().add(assaults);
+    assaults.getValues().add(loadoutFactory.produceStock(ChassisDB.lookup("AS7-D-DC")));
+    garage.getLoadoutRoot().getValues().add(loadoutFactory.produceStock(ChassisDB.lookup("JR7-F")));
+    final DropShip dropShip = new DropShip(Faction.INNERSPHERE);
+    dropShip.setMech(0, garage.getLoadoutRoot().getValues().get(0));
+    garage.getDropShipRoot().getValues().add(dropShip);
+    Files.write(file.toPath(), serialize(garage));
+  }
+
+  @Test
+  public void testAutoSaveJournalsChanges() throws Exception {
+    final byte[] original = snapshot();
+    final GarageWriter cut = open(queued::add);
+    garage.getLoadoutRoot().getValues().get(0).setName("Renamed");
+    cut.autoSave();
+    assertArrayEquals(original, snapshot()); // Nothing is written on the owning thread
+    runQueued();
+
+    // The garage file is untouched, the change is recovered from the journal
+    assertArrayEquals(original, snapshot());
+    assertEquals(garage, reopen());
+    assertTrue(errors.isEmpty());
+  }
+
+  @Test
+  public void testAutoSaveNothingChanged() throws Exception {
+    final GarageWriter cut = open(queued::add);
+    cut.autoSave();
+    assertTrue(queued.isEmpty());
+
+    garage.getLoadoutRoot().getValues().get(0).setName("Renamed");
+    cut.autoSave();
+    runQueued();
+    cut.autoSave();
+    assertTrue(queued.isEmpty());
+    verify(serializer, never()).save(any(), any());
+  }
+
+  @Test
+  public void testAutoSaveBeforeSaveWritten() throws Exception {
+    final GarageWriter cut = open(queued::add);
+    final Loadout jenner = garage.getLoadoutRoot().getValues().get(0);
+    jenner.setName("Saved");
+    final Future<Void> saved = cut.save();
+
+    // Journaled against the new snapshot, must only be written after it
+    jenner.setName("Journaled");
+    cut.autoSave();
+    runQueued();
+
+    saved.get(5, TimeUnit.SECONDS);
+    final Garage written = load(snapshot());
+    assertEquals("Saved", written.getLoadoutRoot().getValues().get(0).getName());
+    assertEquals(garage, reopen());
+  }
+
+  @Test
+  public void testConcurrentEditsDuringSave() throws Exception {
+    final ExecutorService writer = Executors.newSingleThreadExecutor();
+    try {
+      final CountDownLatch serializing = new CountDownLatch(1);
+      final CountDownLatch edited = new CountDownLatch(1);
+      doAnswer(
+              aInvocation -> {
+                serializing.countDown();
+                assertTrue(edited.await(5, TimeUnit.SECONDS));
+                return aInvocation.callRealMethod();
+              })
+          .when(serializer)
+          .save(any(), any());
+
+      final GarageWriter cut = open(writer);
+      final Loadout atlas = garage.getLoadoutRoot().getDirectories().get(0).getValues().get(0);
+      atlas.setName("Before save");
+      final byte[] expected = serialize(garage);
+      final Future<Void> saved = cut.save();
+
+      // Edit the garage while the writer is serialising the snapshot
+      assertTrue(serializing.await(5, TimeUnit.SECONDS));
+      atlas.setName("After save");
+      atlas.getComponent(Location.LeftArm).setArmour(ArmourSide.ONLY, 2, true);
+      atlas.getComponent(Location.RightTorso).addItem(ItemDB.lookup("MEDIUM LASER"));
+      garage.getLoadoutRoot().getValues().remove(0);
+      garage.getLoadoutRoot().getDirectories().get(0).setName("Renamed");
+      edited.countDown();
+      saved.get(5, TimeUnit.SECONDS);
+
+      assertEquals(load(expected), load(snapshot()));
+
+      // The edits are picked up by the next auto save
+      cut.autoSave();
+      writer.submit(() -> {}).get(5, TimeUnit.SECONDS);
+      assertEquals(garage, reopen());
+      assertTrue(errors.isEmpty());
+    } finally {
+      writer.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testSavesCoalesced() throws Exception {
+    final GarageWriter cut = open(queued::add);
+    final Loadout jenner = garage.getLoadoutRoot().getValues().get(0);
+    jenner.setName("First");
+    final Future<Void> first = cut.save();
+    jenner.setName("Second");
+    final Future<Void> second = cut.save();
+    runQueued();
+
+    verify(serializer, times(1)).save(any(), any());
+    assertTrue(first.isDone());
+    assertTrue(second.isDone());
+    first.get();
+    assertEquals(garage, load(snapshot()));
+    assertEquals(garage, reopen());
+  }
+
+  @Test
+  public void testSnapshotReusesUnchangedCopies() throws Exception {
+    final LoadoutFactory factory = spy(loadoutFactory);
+    final GarageWriter cut =
+        new GarageWriter(
+            file,
+            garage,
+            GarageJournal.open(GarageJournal.fileFor(file), garage, snapshot(), serializer),
+            file.length(),
+            serializer,
+            factory,
+            queued::add,
+            errors::add);
+    cut.save();
+    runQueued();
+    // The Jenner is both in the drop ship and the loadout tree, it is only copied once
+    verify(factory, times(2)).produceClone(any());
+
+    garage.getLoadoutRoot().getValues().get(0).setName("Renamed");
+    cut.save();
+    runQueued();
+    verify(factory, times(3)).produceClone(any());
+    assertEquals(garage, load(snapshot()));
+  }
+
+  @Test
+  public void testInterruptedWrite() throws Exception {
+    final byte[] original = snapshot();
+    doAnswer(
+            aInvocation -> {
+              final OutputStream out = aInvocation.getArgument(0);
+              out.write("<garage><loadouts>".getBytes(StandardCharsets.UTF_8));
+              throw new UncheckedIOException(new IOException("Disk full"));
+            })
+        .when(serializer)
+        .save(any(), any());
+
+    final GarageWriter cut = open(queued::add);
+    garage.getLoadoutRoot().getValues().get(0).setName("Renamed");
+    final Future<Void> saved = cut.save();
+    runQueued();
+
+    try {
+      saved.get();
+      fail("Expected the save to fail");
+    } catch (final ExecutionException e) {
+      assertTrue(e.getCause() instanceof UncheckedIOException);
+    }
+    assertArrayEquals(original, snapshot());
+    assertFalse(new File(folder.getRoot(), file.getName() + ".tmp").exists());
+    // Explicit saves report through the future only
+    assertTrue(errors.isEmpty());
+
+    // The next auto save retries with a full save, and reports the failure
+    cut.autoSave();
+    runQueued();
+    assertEquals(1, errors.size());
+    assertArrayEquals(original, snapshot());
+
+    doCallRealMethod().when(serializer).save(any(), any());
+    cut.autoSave();
+    runQueued();
+    assertEquals(garage, load(snapshot()));
+    assertEquals(garage, reopen());
+  }
+
+  private Garage load(byte[] aData) {
+    return reference.load(new ByteArrayInputStream(aData));
+  }
+
+  private GarageWriter open(Executor aWriter) throws Exception {
+    final byte[] snapshot = snapshot();
+    final Garage loaded = load(snapshot);
+    assertEquals(garage, loaded);
+    garage = loaded;
+    final GarageJournal journal =
+        GarageJournal.open(GarageJournal.fileFor(file), garage, snapshot, serializer);
+    return new GarageWriter(
+        file, garage, journal, snapshot.length, serializer, loadoutFactory, aWriter, errors::add);
+  }
+
+  /** Loads the garage and its journal from disk, like the application does on start up. */
+  private Garage reopen() throws Exception {
+    final byte[] snapshot = snapshot();
+    final Garage reopened = load(snapshot);
+    GarageJournal.open(GarageJournal.fileFor(file), reopened, snapshot, serializer);
+    return reopened;
+  }
+
+  private void runQueued() {
+    Runnable task;
+    while (null != (task = queued.poll())) {
+      task.run();
+    }
+  }
+
+  private byte[] serialize(Garage aGarage) {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    reference.save(out, aGarage);
+    return out.toByteArray();
+  }
+
+  private byte[] snapshot() throws Exception {
+    return Files.readAllBytes(file.toPath());
+  }
+}
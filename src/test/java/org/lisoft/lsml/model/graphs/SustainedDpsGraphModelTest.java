@@ -73,7 +73,9 @@ public class SustainedDpsGraphModelTest {
     final Map<Weapon, Double> ratios = new HashMap<>();
     ratios.put(w1, 2.0);
     ratios.put(w2, 1.4);
-    when(maxSustDPS.getWeaponRatios(anyDouble())).thenReturn(ratios);
+    when(maxSustDPS.getWeaponRatios(anyList()))
+        .thenAnswer(
+            aInvocation -> Collections.nCopies(aInvocation.<List<?>>getArgument(0).size(), ratios));
 
     final SortedMap<Weapon, List<Pair<Double, Double>>> ans = cut.getData();
 
@@ -123,17 +125,20 @@ public class SustainedDpsGraphModelTest {
             rangeEff.apply(41.0) * dps * ratios.get(weapon), series.get(10).second, tolerance);
       }
     }
-    verify(maxSustDPS, times(1)).getWeaponRatios(0.0);
-    verify(maxSustDPS, times(1)).getWeaponRatios(10.0);
-    verify(maxSustDPS, times(1)).getWeaponRatios(11.0);
-    verify(maxSustDPS, times(1)).getWeaponRatios(Math.nextDown(20.0));
-    verify(maxSustDPS, times(1)).getWeaponRatios(20.0);
-    verify(maxSustDPS, times(1)).getWeaponRatios(Math.nextDown(21.0));
-    verify(maxSustDPS, times(1)).getWeaponRatios(21.0);
-    verify(maxSustDPS, times(1)).getWeaponRatios(30.0);
-    verify(maxSustDPS, times(1)).getWeaponRatios(31.0);
-    verify(maxSustDPS, times(1)).getWeaponRatios(40.0);
-    verify(maxSustDPS, times(1)).getWeaponRatios(41.0);
+    verify(maxSustDPS, times(1))
+        .getWeaponRatios(
+            List.of(
+                0.0,
+                10.0,
+                11.0,
+                Math.nextDown(20.0),
+                20.0,
+                Math.nextDown(21.0),
+                21.0,
+                30.0,
+                31.0,
+                40.0,
+                41.0));
     verifyNoMoreInteractions(maxSustDPS);
   }
 
@@ -153,6 +153,17 @@ public class ConfiguredComponentOmniMechTest extends ConfiguredComponentTest {
     makeDefaultCUT().changeOmniPod(null);
   }
 
+  @Test
+  public final void testCopyCtor_Fingerprint() {
+    togglables.add(ItemDB.LAA);
+    final ConfiguredComponentOmniMech cut = makeDefaultCUT();
+    cut.setToggleState(ItemDB.LAA, false);
+
+    final ConfiguredComponentOmniMech copy = new ConfiguredComponentOmniMech(cut);
+    assertEquals(cut.getFingerprint(), copy.getFingerprint());
+    assertEquals(cut, copy);
+  }
+
   @Test
   public final void testCopyCtor_ToggleStateNotLinked() {
     togglables.add(ItemDB.LAA);
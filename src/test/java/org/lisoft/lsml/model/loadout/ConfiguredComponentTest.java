@@ -32,6 +32,7 @@ import org.lisoft.mwo_data.equipment.Engine;
 import org.lisoft.mwo_data.equipment.HeatSink;
 import org.lisoft.mwo_data.equipment.Internal;
 import org.lisoft.mwo_data.equipment.Item;
+import org.lisoft.mwo_data.equipment.JumpJet;
 import org.lisoft.mwo_data.mechs.ArmourSide;
 import org.lisoft.mwo_data.mechs.Component;
 import org.lisoft.mwo_data.mechs.HardPointType;
@@ -247,6 +248,17 @@ public abstract class ConfiguredComponentTest {
     assertEquals(maxArmour / 2, cut.getArmourTotal());
   }
 
+  @Test
+  public final void testGetArmourTotal_Changed() {
+    location = Location.CenterTorso;
+    maxArmour = 4 * 10;
+    final ConfiguredComponent cut = makeDefaultCUT();
+    cut.setArmour(ArmourSide.FRONT, 20, manualArmour);
+    cut.setArmour(ArmourSide.BACK, 10, manualArmour);
+    cut.setArmour(ArmourSide.FRONT, 5, manualArmour);
+    assertEquals(15, cut.getArmourTotal());
+  }
+
   @Test
   public final void testGetEngineHeatSinks() {
     final HeatSink fixed1 = Mockito.mock(HeatSink.class);
@@ -339,6 +351,42 @@ public abstract class ConfiguredComponentTest {
     assertEquals(17.0, cut.getItemMass(), 0.0);
   }
 
+  @Test
+  public final void testGetItemMassAndHardpointsAfterRemove() {
+    final Item item1 = Mockito.mock(Item.class);
+    Mockito.when(item1.getMass()).thenReturn(5.0);
+    Mockito.when(item1.getHardpointType()).thenReturn(HardPointType.ENERGY);
+    final Item item2 = Mockito.mock(Item.class);
+    Mockito.when(item2.getMass()).thenReturn(7.0);
+    Mockito.when(item2.getHardpointType()).thenReturn(HardPointType.MISSILE);
+
+    final ConfiguredComponent cut = makeDefaultCUT();
+    cut.addItem(item1);
+    cut.addItem(item2);
+    cut.addItem(item1);
+    cut.removeItem(item1);
+    cut.removeItem(item2);
+
+    assertEquals(5.0, cut.getItemMass(), 0.0);
+    assertEquals(1, cut.getItemsOfHardpointType(HardPointType.ENERGY));
+    assertEquals(0, cut.getItemsOfHardpointType(HardPointType.MISSILE));
+  }
+
+  @Test
+  public final void testGetJumpJetCount() {
+    final JumpJet fixed = Mockito.mock(JumpJet.class);
+    internalFixedItems.add(fixed);
+    final JumpJet item = Mockito.mock(JumpJet.class);
+
+    final ConfiguredComponent cut = makeDefaultCUT();
+    cut.addItem(item);
+    cut.addItem(item);
+    assertEquals(3, cut.getJumpJetCount());
+
+    cut.removeItem(item);
+    assertEquals(2, cut.getJumpJetCount());
+  }
+
   @Test
   public final void testGetItemsEquipped() {
     final Item fixed1 = Mockito.mock(Item.class);
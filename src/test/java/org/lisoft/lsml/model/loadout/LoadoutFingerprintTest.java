@@ -0,0 +1,241 @@
+/*
+ * Li Song Mechlab - A 'mech building tool for PGI's MechWarrior: Online.
+ * Copyright (C) 2013-2023  Li Song
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.lisoft.lsml.model.loadout;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.lisoft.lsml.command.*;
+import org.lisoft.lsml.model.ChassisDB;
+import org.lisoft.lsml.model.ConsumableDB;
+import org.lisoft.lsml.model.ItemDB;
+import org.lisoft.lsml.model.OmniPodDB;
+import org.lisoft.lsml.model.UpgradeDB;
+import org.lisoft.lsml.util.CommandStack;
+import org.lisoft.lsml.util.CommandStack.Command;
+import org.lisoft.mwo_data.Faction;
+import org.lisoft.mwo_data.equipment.Consumable;
+import org.lisoft.mwo_data.equipment.GuidanceUpgrade;
+import org.lisoft.mwo_data.equipment.Item;
+import org.lisoft.mwo_data.mechs.ArmourSide;
+import org.lisoft.mwo_data.mechs.ChassisOmniMech;
+import org.lisoft.mwo_data.mechs.Location;
+import org.lisoft.mwo_data.mechs.OmniPod;
+
+/**
+ * Test suite for {@link Loadout#getFingerprint()}. Loadouts are modified by random commands and
+ * the fingerprints are compared against deep equality.
+ *
+ * @author Li Song
+ */
+public class LoadoutFingerprintTest {
+  private static final String[] CHASSIS = {"AS7-D-DC", "JR7-F", "TBR-PRIME", "SCR-PRIME"};
+  private static final String[] ITEMS = {
+    "MEDIUM LASER", "C-ER MEDIUM LASER", "SRM 6", "AC/20", "C-ULTRA AC/5", "ECM", "BAP"
+  };
+  private final DefaultLoadoutFactory loadoutFactory = new DefaultLoadoutFactory();
+
+  @Test
+  public void testCloneHasSameFingerprint() {
+    for (final String chassis : CHASSIS) {
+      final Loadout loadout = loadoutFactory.produceStock(ChassisDB.lookup(chassis));
+      final Loadout clone = loadoutFactory.produceClone(loadout);
+      assertEquals(loadout, clone);
+      assertEquals(loadout.getFingerprint(), clone.getFingerprint());
+      assertEquals(loadout.hashCode(), clone.hashCode());
+    }
+  }
+
+  @Test
+  public void testDifferentArmourDifferentFingerprint() {
+    final Loadout loadout = loadoutFactory.produceEmpty(ChassisDB.lookup("AS7-D-DC"));
+    final Loadout clone = loadoutFactory.produceClone(loadout);
+
+    clone.getComponent(Location.LeftArm).setArmour(ArmourSide.ONLY, 1, true);
+    assertNotEquals(loadout.getFingerprint(), clone.getFingerprint());
+
+    // Same total armour but on a different location
+    clone.getComponent(Location.LeftArm).setArmour(ArmourSide.ONLY, 0, true);
+    clone.getComponent(Location.RightArm).setArmour(ArmourSide.ONLY, 1, true);
+    loadout.getComponent(Location.LeftArm).setArmour(ArmourSide.ONLY, 1, true);
+    assertNotEquals(loadout.getFingerprint(), clone.getFingerprint());
+  }
+
+  @Test
+  public void testDuplicateItemsDoNotCancel() throws Exception {
+    final Loadout loadout = loadoutFactory.produceEmpty(ChassisDB.lookup("AS7-D-DC"));
+    final long empty = loadout.getFingerprint();
+    final ConfiguredComponent rightTorso = loadout.getComponent(Location.RightTorso);
+    final Item item = ItemDB.lookup("MEDIUM LASER");
+
+    rightTorso.addItem(item);
+    final long one = loadout.getFingerprint();
+    rightTorso.addItem(item);
+
+    assertNotEquals(empty, loadout.getFingerprint());
+    assertNotEquals(one, loadout.getFingerprint());
+  }
+
+  @Test
+  public void testModulesChangeFingerprint() throws Exception {
+    final Loadout loadout = loadoutFactory.produceEmpty(ChassisDB.lookup("AS7-D-DC"));
+    final long before = loadout.getFingerprint();
+
+    loadout.addModule(ConsumableDB.lookup("COOL SHOT"));
+    assertNotEquals(before, loadout.getFingerprint());
+
+    loadout.removeModule(ConsumableDB.lookup("COOL SHOT"));
+    assertEquals(before, loadout.getFingerprint());
+  }
+
+  @Test
+  public void testRandomCommandsRestoreFingerprint() throws Exception {
+    final Random random = new Random(4711);
+    for (final String chassis : CHASSIS) {
+      final Loadout loadout = loadoutFactory.produceStock(ChassisDB.lookup(chassis));
+      final Loadout original = loadoutFactory.produceClone(loadout);
+      final long fingerprint = loadout.getFingerprint();
+
+      for (int i = 0; i < 50; ++i) {
+        final CommandStack stack = new CommandStack(Integer.MAX_VALUE);
+        for (int j = 0; j < 5; ++j) {
+          final Command command = randomCommand(random, loadout);
+          try {
+            stack.pushAndApply(command);
+          } catch (final EquipException e) {
+            // Not every random command is valid, failed commands leave the loadout unchanged.
+          }
+
+          final Loadout clone = loadoutFactory.produceClone(loadout);
+          assertEquals(clone, loadout);
+          assertEquals(clone.getFingerprint(), loadout.getFingerprint());
+          if (original.equals(loadout)) {
+            assertEquals(fingerprint, loadout.getFingerprint());
+          } else {
+            assertNotEquals(fingerprint, loadout.getFingerprint());
+          }
+        }
+
+        while (null != stack.nextUndo()) {
+          stack.undo();
+        }
+        assertEquals(original, loadout);
+        assertEquals(fingerprint, loadout.getFingerprint());
+      }
+    }
+  }
+
+  /** Creates a random command for the loadout, the command isn't necessarily valid. */
+  private Command randomCommand(Random aRandom, Loadout aLoadout) throws Exception {
+    final Location location = Location.values()[aRandom.nextInt(Location.values().length)];
+    final ConfiguredComponent component = aLoadout.getComponent(location);
+
+    switch (aRandom.nextInt(7)) {
+      case 0:
+        {
+          final Item item = ItemDB.lookup(ITEMS[aRandom.nextInt(ITEMS.length)]);
+          return new CmdAddItem(null, aLoadout, component, item);
+        }
+      case 1:
+        {
+          final List<Item> removable =
+              component.getItemsEquipped().stream().filter(component::canRemoveItem).toList();
+          if (!removable.isEmpty()) {
+            final Item item = removable.get(aRandom.nextInt(removable.size()));
+            return new CmdRemoveItem(null, aLoadout, component, item);
+          }
+          break;
+        }
+      case 2:
+        {
+          final ArmourSide side = location.isTwoSided() ? ArmourSide.FRONT : ArmourSide.ONLY;
+          final int amount = aRandom.nextInt(component.getArmourMax(side) + 1);
+          return new CmdSetArmour(null, aLoadout, component, side, amount, true);
+        }
+      case 3:
+        {
+          if (component instanceof final ConfiguredComponentOmniMech omniComponent
+              && !omniComponent.getInternalComponent().hasFixedOmniPod()) {
+            final ChassisOmniMech chassis = (ChassisOmniMech) aLoadout.getChassis();
+            final List<OmniPod> pods = OmniPodDB.lookup(chassis, location);
+            final OmniPod pod = pods.get(aRandom.nextInt(pods.size()));
+            return new CmdSetOmniPod(null, (LoadoutOmniMech) aLoadout, omniComponent, pod);
+          }
+          break;
+        }
+      case 4:
+        {
+          if (component instanceof final ConfiguredComponentOmniMech omniComponent) {
+            final Item item = aRandom.nextBoolean() ? ItemDB.HA : ItemDB.LAA;
+            if (omniComponent.getOmniPod().getToggleableItems().contains(item)) {
+              return new CmdToggleItem(
+                  null, aLoadout, omniComponent, item, !omniComponent.getToggleState(item));
+            }
+          }
+          break;
+        }
+      case 5:
+        {
+          final int upgrade = aRandom.nextInt(4);
+          if (upgrade == 0 || !(aLoadout instanceof final LoadoutStandard loadoutStandard)) {
+            final GuidanceUpgrade guidance =
+                aRandom.nextBoolean() ? UpgradeDB.ARTEMIS_IV : UpgradeDB.STD_GUIDANCE;
+            return new CmdSetGuidanceType(null, aLoadout, guidance);
+          }
+          final boolean clan = aLoadout.getChassis().getFaction() == Faction.CLAN;
+          final boolean other = aRandom.nextBoolean();
+          return switch (upgrade) {
+            case 1 -> new CmdSetArmourType(
+                null,
+                loadoutStandard,
+                clan
+                    ? (other ? UpgradeDB.CLAN_FF_ARMOUR : UpgradeDB.CLAN_STD_ARMOUR)
+                    : (other ? UpgradeDB.IS_FF_ARMOUR : UpgradeDB.IS_STD_ARMOUR));
+            case 2 -> new CmdSetStructureType(
+                null,
+                loadoutStandard,
+                clan
+                    ? (other ? UpgradeDB.CLAN_ES_STRUCTURE : UpgradeDB.CLAN_STD_STRUCTURE)
+                    : (other ? UpgradeDB.IS_ES_STRUCTURE : UpgradeDB.IS_STD_STRUCTURE));
+            default -> new CmdSetHeatSinkType(
+                null,
+                loadoutStandard,
+                clan
+                    ? (other ? UpgradeDB.CLAN_DHS : UpgradeDB.CLAN_SHS)
+                    : (other ? UpgradeDB.IS_DHS : UpgradeDB.IS_SHS));
+          };
+        }
+      case 6:
+        {
+          final List<Consumable> equipped = aLoadout.getConsumables();
+          if (!equipped.isEmpty() && aRandom.nextBoolean()) {
+            final Consumable consumable = equipped.get(aRandom.nextInt(equipped.size()));
+            return new CmdRemoveModule(null, aLoadout, consumable);
+          }
+          final List<Consumable> consumables = ConsumableDB.lookup(Consumable.class);
+          final Consumable consumable = consumables.get(aRandom.nextInt(consumables.size()));
+          return new CmdAddModule(null, aLoadout, consumable);
+        }
+      default:
+        throw new AssertionError();
+    }
+    return randomCommand(aRandom, aLoadout);
+  }
+}
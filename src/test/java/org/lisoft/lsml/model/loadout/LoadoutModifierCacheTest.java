@@ -0,0 +1,246 @@
+/*
+ * Li Song Mechlab - A 'mech building tool for PGI's MechWarrior: Online.
+ * Copyright (C) 2013-2023  Li Song
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.lisoft.lsml.model.loadout;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.lisoft.lsml.command.*;
+import org.lisoft.lsml.messages.MessageXBar;
+import org.lisoft.lsml.model.ChassisDB;
+import org.lisoft.lsml.model.ItemDB;
+import org.lisoft.lsml.model.OmniPodDB;
+import org.lisoft.lsml.model.UpgradeDB;
+import org.lisoft.lsml.util.CommandStack;
+import org.lisoft.lsml.util.CommandStack.Command;
+import org.lisoft.lsml.view_fx.LiSongMechLab;
+import org.lisoft.mwo_data.equipment.*;
+import org.lisoft.mwo_data.mechs.ArmourSide;
+import org.lisoft.mwo_data.mechs.Location;
+import org.lisoft.mwo_data.mechs.OmniPod;
+import org.lisoft.mwo_data.modifiers.Modifier;
+
+/**
+ * Test suite that verifies that {@link Loadout#getAllModifiers()} is never stale after any of the
+ * commands that mutate a loadout have been applied or undone.
+ *
+ * @author Li Song
+ */
+@RunWith(JUnitParamsRunner.class)
+public class LoadoutModifierCacheTest {
+  private final LoadoutFactory loadoutFactory = new DefaultLoadoutFactory();
+  private final MessageXBar xBar = mock(MessageXBar.class);
+
+  public Object[] allLoadouts() {
+    return new Object[] {"HBK-4G", "AS7-D-DC", "JR7-F", "TBR-PRIME", "SCR-PRIME(S)", "KFX-PRIME"};
+  }
+
+  @Test
+  @Parameters(method = "allLoadouts")
+  public void testAddRemoveItem(String aChassis) throws Exception {
+    for (final Item item : List.of(ItemDB.BAP, ItemDB.ECM, ItemDB.lookup("TARGETING COMP. MK I"))) {
+      verifyCommand(
+          aChassis,
+          l -> {
+            for (final ConfiguredComponent component : l.getCandidateLocationsForItem(item)) {
+              if (component.canEquip(item) == EquipResult.SUCCESS) {
+                return new CmdAddItem(xBar, l, component, item);
+              }
+            }
+            return null;
+          });
+    }
+
+    verifyCommand(
+        aChassis,
+        l -> {
+          for (final ConfiguredComponent component : l.getComponents()) {
+            for (final Item item : component.getItemsEquipped()) {
+              if (component.canRemoveItem(item)) {
+                return new CmdRemoveItem(xBar, l, component, item);
+              }
+            }
+          }
+          return null;
+        });
+  }
+
+  @Test
+  @Parameters(method = "allLoadouts")
+  public void testArmour(String aChassis) throws Exception {
+    verifyCommand(
+        aChassis, l -> new CmdSetArmour(xBar, l, Location.CenterTorso, ArmourSide.FRONT, 10, true));
+    verifyCommand(aChassis, l -> new CmdSetMaxArmour(l, xBar, 5.0, true));
+    verifyCommand(aChassis, l -> new CmdStripArmour(l, xBar));
+    verifyCommand(aChassis, l -> new CmdDistributeArmour(l, 200, 8.0, xBar));
+  }
+
+  @Test
+  @Parameters(method = "allLoadouts")
+  public void testModules(String aChassis) throws Exception {
+    for (final Consumable consumable : LiSongMechLab.getDatabase().getPilotModules()) {
+      verifyCommand(aChassis, l -> new CmdAddModule(xBar, l, consumable));
+    }
+    verifyCommand(
+        aChassis,
+        l ->
+            l.getConsumables().isEmpty()
+                ? null
+                : new CmdRemoveModule(xBar, l, l.getConsumables().get(0)));
+  }
+
+  @Test
+  @Parameters(method = "allLoadouts")
+  public void testOmniPods(String aChassis) throws Exception {
+    verifyCommand(
+        aChassis,
+        l -> {
+          if (!(l instanceof final LoadoutOmniMech omniMech)) {
+            return null;
+          }
+          for (final Location location : Location.values()) {
+            final ConfiguredComponentOmniMech component = omniMech.getComponent(location);
+            for (final OmniPod pod : OmniPodDB.lookup(omniMech.getChassis(), location)) {
+              if (pod != component.getOmniPod()
+                  && !component.getInternalComponent().hasFixedOmniPod()) {
+                return new CmdSetOmniPod(xBar, omniMech, component, pod);
+              }
+            }
+          }
+          return null;
+        });
+
+    verifyCommand(
+        aChassis,
+        l -> {
+          if (!(l instanceof final LoadoutOmniMech omniMech)) {
+            return null;
+          }
+          final ConfiguredComponentOmniMech arm = omniMech.getComponent(Location.LeftArm);
+          return new CmdToggleItem(xBar, l, arm, ItemDB.HA, !arm.getToggleState(ItemDB.HA));
+        });
+  }
+
+  @Test
+  @Parameters(method = "allLoadouts")
+  public void testStockAndStrip(String aChassis) throws Exception {
+    verifyCommand(aChassis, l -> new CmdStripEquipment(l, xBar));
+    verifyCommand(aChassis, l -> new CmdStripLoadout(xBar, l));
+    verifyCommand(
+        aChassis,
+        l -> {
+          try {
+            return new CmdLoadStock(l.getChassis(), l, xBar);
+          } catch (final NoSuchItemException e) {
+            throw new AssertionError(e);
+          }
+        });
+    verifyCommand(
+        aChassis, l -> new CmdRemoveMatching("remove", xBar, l, i -> i instanceof Weapon));
+    verifyCommand(aChassis, l -> new CmdFillWithItem(xBar, l, ItemDB.DHS, loadoutFactory));
+  }
+
+  @Test
+  @Parameters(method = "allLoadouts")
+  public void testUpgrades(String aChassis) throws Exception {
+    verifyCommand(aChassis, l -> new CmdSetGuidanceType(xBar, l, UpgradeDB.ARTEMIS_IV));
+    verifyCommand(aChassis, l -> new CmdSetGuidanceType(xBar, l, UpgradeDB.STD_GUIDANCE));
+    verifyCommand(
+        aChassis,
+        l ->
+            l instanceof final LoadoutStandard standard
+                ? new CmdSetHeatSinkType(xBar, standard, UpgradeDB.IS_DHS)
+                : null);
+    verifyCommand(
+        aChassis,
+        l ->
+            l instanceof final LoadoutStandard standard
+                ? new CmdSetArmourType(xBar, standard, UpgradeDB.IS_FF_ARMOUR)
+                : null);
+    verifyCommand(
+        aChassis,
+        l ->
+            l instanceof final LoadoutStandard standard
+                ? new CmdSetStructureType(xBar, standard, UpgradeDB.IS_ES_STRUCTURE)
+                : null);
+  }
+
+  /**
+   * The modification count shall change every time the loadout is changed, regardless of whether
+   * the change is an application or an undo.
+   */
+  @Test
+  public void testModificationCount() throws Exception {
+    final Loadout loadout = loadoutFactory.produceStock(ChassisDB.lookup("HBK-4G"));
+    final CommandStack stack = new CommandStack(1);
+
+    final int before = loadout.getModificationCount();
+    stack.pushAndApply(new CmdSetArmour(xBar, loadout, Location.Head, ArmourSide.ONLY, 3, true));
+    final int applied = loadout.getModificationCount();
+    stack.undo();
+    final int undone = loadout.getModificationCount();
+
+    assertNotEquals(before, applied);
+    assertNotEquals(applied, undone);
+    assertNotEquals(before, undone);
+  }
+
+  /** Repeated calls without changes in between shall return the same cached instance. */
+  @Test
+  public void testCached() throws Exception {
+    final Loadout loadout = loadoutFactory.produceStock(ChassisDB.lookup("HBK-4G"));
+    assertSame(loadout.getAllModifiers(), loadout.getAllModifiers());
+  }
+
+  private void assertNotStale(Loadout aLoadout) {
+    final List<Modifier> expected = new ArrayList<>(aLoadout.getEquipmentModifiers());
+    expected.addAll(aLoadout.getEfficiencies().getModifiers());
+    expected.addAll(aLoadout.getQuirks());
+    assertEquals(expected, new ArrayList<>(aLoadout.getAllModifiers()));
+  }
+
+  private void verifyCommand(String aChassis, Function<Loadout, Command> aCommandFactory)
+      throws Exception {
+    final Loadout loadout = loadoutFactory.produceStock(ChassisDB.lookup(aChassis));
+    final Command command = aCommandFactory.apply(loadout);
+    if (command == null) {
+      return;
+    }
+    final CommandStack stack = new CommandStack(1);
+
+    assertNotStale(loadout); // Populate the cache
+    try {
+      stack.pushAndApply(command);
+    } catch (final EquipException e) {
+      assertNotStale(loadout);
+      return;
+    }
+    assertNotStale(loadout);
+    stack.undo();
+    assertNotStale(loadout);
+    stack.redo();
+    assertNotStale(loadout);
+  }
+}
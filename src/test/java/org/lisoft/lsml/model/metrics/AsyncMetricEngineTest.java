@@ -0,0 +1,185 @@
+/*
+ * Li Song Mechlab - A 'mech building tool for PGI's MechWarrior: Online.
+ * Copyright (C) 2013-2023  Li Song
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.lisoft.lsml.model.metrics;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lisoft.lsml.messages.Message;
+import org.lisoft.lsml.messages.MessageXBar;
+import org.lisoft.lsml.model.loadout.Loadout;
+import org.lisoft.lsml.model.loadout.LoadoutFactory;
+
+/**
+ * Test suite for {@link AsyncMetricEngine}. The owning thread is emulated by the test thread
+ * running the tasks posted to the publisher.
+ *
+ * @author Li Song
+ */
+public class AsyncMetricEngineTest {
+  private final List<Throwable> errors = new ArrayList<>();
+  private final Loadout loadout = mock(Loadout.class);
+  private final LoadoutFactory loadoutFactory = mock(LoadoutFactory.class);
+  private final BlockingQueue<Runnable> published = new LinkedBlockingQueue<>();
+  private final List<Double> results = new ArrayList<>();
+  private final MessageXBar xBar = new MessageXBar();
+  private AsyncMetricEngine cut;
+  private ExecutorService worker;
+
+  @After
+  public void tearDown() {
+    worker.shutdownNow();
+  }
+
+  @Before
+  public void setup() {
+    worker = Executors.newSingleThreadExecutor();
+    when(loadoutFactory.produceClone(loadout)).thenAnswer(aInvocation -> mock(Loadout.class));
+    cut = new AsyncMetricEngine(loadout, loadoutFactory, xBar, worker, published::add, errors::add);
+  }
+
+  @Test
+  public void testComputesOnSnapshot() throws Exception {
+    final AsyncMetricEngine.Channel<Double> channel = cut.createChannel(results::add);
+    final List<Loadout> computedOn = new ArrayList<>();
+
+    channel.request(
+        aSnapshot -> {
+          computedOn.add(aSnapshot);
+          return 42.0;
+        });
+    assertTrue(channel.isComputing());
+    assertTrue(results.isEmpty()); // Only published on the owning thread
+    runPublished();
+
+    assertEquals(List.of(42.0), results);
+    assertFalse(channel.isComputing());
+    assertEquals(1, computedOn.size());
+    assertNotSame(loadout, computedOn.get(0));
+    assertTrue(errors.isEmpty());
+  }
+
+  @Test
+  public void testErrorReported() throws Exception {
+    final AsyncMetricEngine.Channel<Double> channel = cut.createChannel(results::add);
+    final RuntimeException exception = new RuntimeException("Fail");
+
+    channel.request(
+        aSnapshot -> {
+          throw exception;
+        });
+    runPublished();
+
+    assertTrue(results.isEmpty());
+    assertEquals(List.of(exception), errors);
+    assertFalse(channel.isComputing());
+  }
+
+  @Test
+  public void testSnapshotInvalidatedByMessage() {
+    final Loadout first = cut.snapshot();
+    xBar.post(mock(Message.class));
+    assertNotSame(first, cut.snapshot());
+  }
+
+  @Test
+  public void testSnapshotInvalidatedByModification() {
+    when(loadout.getModificationCount()).thenReturn(1);
+    final Loadout first = cut.snapshot();
+    when(loadout.getModificationCount()).thenReturn(2);
+    assertNotSame(first, cut.snapshot());
+  }
+
+  @Test
+  public void testSnapshotReusedUntilModified() {
+    final Loadout first = cut.snapshot();
+    assertSame(first, cut.snapshot());
+    verify(loadoutFactory, times(1)).produceClone(loadout);
+  }
+
+  @Test
+  public void testSupersededRequestCancelled() throws Exception {
+    final AsyncMetricEngine.Channel<Double> channel = cut.createChannel(results::add);
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch interrupted = new CountDownLatch(1);
+
+    channel.request(
+        aSnapshot -> {
+          started.countDown();
+          try {
+            new CountDownLatch(1).await();
+          } catch (final InterruptedException e) {
+            interrupted.countDown();
+          }
+          return 1.0;
+        });
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    channel.request(aSnapshot -> 2.0);
+    assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    runPublished();
+
+    assertEquals(List.of(2.0), results);
+  }
+
+  @Test
+  public void testSupersededResultNotPublished() throws Exception {
+    final AsyncMetricEngine.Channel<Double> channel = cut.createChannel(results::add);
+    final CountDownLatch finished = new CountDownLatch(1);
+
+    channel.request(
+        aSnapshot -> {
+          finished.countDown();
+          return 1.0;
+        });
+    assertTrue(finished.await(5, TimeUnit.SECONDS));
+    channel.request(aSnapshot -> 2.0);
+    runPublished();
+
+    assertEquals(List.of(2.0), results);
+  }
+
+  @Test
+  public void testChannelsIndependent() throws Exception {
+    final List<Double> otherResults = new ArrayList<>();
+    final AsyncMetricEngine.Channel<Double> channel = cut.createChannel(results::add);
+    final AsyncMetricEngine.Channel<Double> other = cut.createChannel(otherResults::add);
+
+    channel.request(aSnapshot -> 1.0);
+    other.request(aSnapshot -> 2.0);
+    runPublished();
+
+    assertEquals(List.of(1.0), results);
+    assertEquals(List.of(2.0), otherResults);
+  }
+
+  /** Waits for the worker to become idle and then runs everything posted to the publisher. */
+  private void runPublished() throws Exception {
+    worker.submit(() -> {}).get(5, TimeUnit.SECONDS);
+    Runnable task;
+    while (null != (task = published.poll())) {
+      task.run();
+    }
+  }
+}
@@ -20,8 +20,22 @@ package org.lisoft.lsml.model.metrics;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.Mockito.mock;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 import org.junit.Test;
+import org.lisoft.lsml.messages.MessageXBar;
+import org.lisoft.lsml.model.ChassisDB;
+import org.lisoft.lsml.model.loadout.DefaultLoadoutFactory;
+import org.lisoft.lsml.model.loadout.Loadout;
+import org.lisoft.lsml.model.metrics.helpers.IntegratedConstantSignal;
+import org.lisoft.lsml.model.metrics.helpers.IntegratedImpulseTrain;
+import org.lisoft.lsml.model.metrics.helpers.IntegratedPulseTrain;
+import org.lisoft.lsml.model.metrics.helpers.IntegratedSignal;
+import org.lisoft.mwo_data.Environment;
+import org.lisoft.mwo_data.mechs.Chassis;
 import org.mockito.Mockito;
 
 /**
@@ -30,6 +44,7 @@ import org.mockito.Mockito;
  * @author Li Song
  */
 public class MaxDPSTimeToOverHeatTest {
+  private static final double TOLERANCE = 1E-9;
 
   @Test
   public void testCalculate() {
@@ -103,4 +118,122 @@ public class MaxDPSTimeToOverHeatTest {
     final MaxDPSTimeToOverHeat cut = new MaxDPSTimeToOverHeat(capacity, generation, dissipation);
     assertTrue(Double.isInfinite(cut.calculate()));
   }
+
+  /** Solving for the time to over heat shall agree with integrating the heat over time. */
+  @Test
+  public void testCalculate_SameAsIntegration() {
+    final Random rng = new Random(4711);
+    for (int i = 0; i < 1000; ++i) {
+      final List<IntegratedSignal> signals = new ArrayList<>();
+      signals.add(new IntegratedConstantSignal(rng.nextDouble()));
+      final int weapons = 1 + rng.nextInt(12);
+      for (int j = 0; j < weapons; ++j) {
+        // Periods that are multiples of the time step put discontinuities on step boundaries.
+        final double period =
+            rng.nextBoolean() ? 0.5 * (2 + rng.nextInt(12)) : 1.0 + 6.0 * rng.nextDouble();
+        final double heat = 1.0 + 14.0 * rng.nextDouble();
+        if (rng.nextBoolean()) {
+          signals.add(new IntegratedImpulseTrain(period, heat));
+        } else {
+          final double duration =
+              rng.nextBoolean() ? 0.1 * (3 + rng.nextInt(9)) : 0.3 + 0.9 * rng.nextDouble();
+          signals.add(new IntegratedPulseTrain(period, duration, heat / duration));
+        }
+      }
+      final double capacity = 30.0 + 50.0 * rng.nextDouble();
+      final double dissipation = 1.0 + 7.0 * rng.nextDouble();
+
+      final MaxDPSTimeToOverHeat cut = makeCut(signals, capacity, dissipation);
+      final double expected = cut.integrate(capacity, dissipation);
+      final double actual = cut.calculate();
+      assertSame(expected, actual);
+    }
+  }
+
+  /** Solving for the time to over heat shall agree with integrating on all stock loadouts. */
+  @Test
+  public void testCalculate_SameAsIntegrationOnStockLoadouts() throws Exception {
+    final DefaultLoadoutFactory loadoutFactory = new DefaultLoadoutFactory();
+    final MessageXBar xBar = mock(MessageXBar.class);
+    for (final Chassis chassis : ChassisDB.lookupAll()) {
+      final Loadout loadout = loadoutFactory.produceStock(chassis);
+      final HeatCapacity capacity = new HeatCapacity(loadout);
+      final HeatDissipation dissipation = new HeatDissipation(loadout, Environment.NEUTRAL);
+      final HeatOverTime heatOverTime = new HeatOverTime(loadout, xBar);
+
+      final MaxDPSTimeToOverHeat cut =
+          new MaxDPSTimeToOverHeat(capacity, heatOverTime, dissipation);
+      final double expected = cut.integrate(capacity.calculate(), dissipation.calculate());
+      assertSame(expected, cut.calculate());
+    }
+  }
+
+  /**
+   * Solving shall agree with integrating when the mech doesn't over heat quickly. Either because it
+   * never over heats or because the weapons fire seldom compared to the time step.
+   */
+  @Test
+  public void testCalculate_SameAsIntegrationSlowOverHeat() {
+    final List<IntegratedSignal> brawler = new ArrayList<>();
+    brawler.add(new IntegratedConstantSignal(0.2));
+    for (int i = 0; i < 6; ++i) {
+      brawler.add(new IntegratedImpulseTrain(2.0 + i * 0.25, 4.0));
+      brawler.add(new IntegratedPulseTrain(3.0 + i * 0.25, 1.0, 4.0));
+    }
+    final List<IntegratedSignal> sniper =
+        List.of(
+            new IntegratedConstantSignal(0.2),
+            new IntegratedImpulseTrain(4.0, 20.0),
+            new IntegratedPulseTrain(5.0, 1.0, 10.0));
+
+    // Never over heats
+    MaxDPSTimeToOverHeat cut = makeCut(brawler, 60.0, 20.0);
+    assertSame(cut.integrate(60.0, 20.0), cut.calculate());
+    // Over heats after a few minutes
+    cut = makeCut(sniper, 60.0, 7.0);
+    assertSame(cut.integrate(60.0, 7.0), cut.calculate());
+  }
+
+  private void assertSame(double aExpected, double aActual) {
+    if (Double.isInfinite(aExpected)) {
+      assertTrue("Expected infinity, was " + aActual, Double.isInfinite(aActual));
+    } else {
+      assertEquals(aExpected, aActual, TOLERANCE);
+    }
+  }
+
+  private MaxDPSTimeToOverHeat makeCut(
+      List<IntegratedSignal> aSignals, double aCapacity, double aDissipation) {
+    final HeatCapacity capacity =
+        new HeatCapacity(null) {
+          @Override
+          public double calculate() {
+            return aCapacity;
+          }
+        };
+    final HeatDissipation dissipation =
+        new HeatDissipation(null, null) {
+          @Override
+          public double calculate() {
+            return aDissipation;
+          }
+        };
+    final HeatOverTime generation =
+        new HeatOverTime(mock(Loadout.class), mock(MessageXBar.class)) {
+          @Override
+          public double calculate(double aTime) {
+            double ans = 0;
+            for (final IntegratedSignal signal : aSignals) {
+              ans += signal.integrateFromZeroTo(aTime);
+            }
+            return ans;
+          }
+
+          @Override
+          public List<IntegratedSignal> getHeatSignals() {
+            return aSignals;
+          }
+        };
+    return new MaxDPSTimeToOverHeat(capacity, generation, dissipation);
+  }
 }
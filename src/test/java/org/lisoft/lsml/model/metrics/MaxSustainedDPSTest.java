@@ -28,9 +28,15 @@ import org.junit.Before;
 import org.junit.Test;
 import org.lisoft.lsml.model.ItemDB;
 import org.lisoft.lsml.model.helpers.MockLoadoutContainer;
+import org.lisoft.lsml.util.WeaponRanges;
 import org.lisoft.mwo_data.equipment.Engine;
 import org.lisoft.mwo_data.equipment.Weapon;
+import org.lisoft.mwo_data.equipment.WeaponRangeProfile;
+import org.lisoft.mwo_data.equipment.WeaponRangeProfile.RangeNode;
+import org.lisoft.mwo_data.equipment.WeaponRangeProfile.RangeNode.InterpolationType;
+import org.lisoft.mwo_data.modifiers.Attribute;
 import org.lisoft.mwo_data.modifiers.Modifier;
+import org.lisoft.mwo_data.modifiers.ModifierDescription;
 import org.mockito.Mockito;
 
 /**
@@ -203,6 +209,44 @@ public class MaxSustainedDPSTest {
     assertFalse(range750.containsKey(ItemDB.AMS));
   }
 
+  /**
+   * Calculating the ratios for a whole graph shall give exactly the same result as sorting the
+   * weapons at every range, for a boat with many weapons.
+   */
+  @Test
+  public void testGetWeaponRatios_CurveSameAsPerRange() {
+    final List<Modifier> modifiers = new ArrayList<>();
+    when(mlc.loadout.getAllModifiers()).thenReturn(modifiers);
+    when(heatDissipation.calculate()).thenReturn(10.0);
+
+    final Weapon mediumLaser = makeWeapon(0, 270, 540, 1.7, 1.3, modifiers);
+    final Weapon smallPulse = makeWeapon(0, 120, 240, 1.8, 1.1, modifiers);
+    final Weapon lrm = makeWeapon(180, 1000, 1000, 1.1, 1.5, modifiers);
+    final Weapon ac5 = makeWeapon(0, 620, 1240, 4.0, 0.6, modifiers);
+    final Weapon ppc = makeWeapon(90, 540, 1080, 1.0, 2.5, modifiers);
+    final Weapon mg = makeWeapon(0, 90, 180, Double.POSITIVE_INFINITY, 0.0, modifiers);
+    final Weapon[] boat = {
+      mediumLaser, smallPulse, lrm, mediumLaser, ac5, ppc, smallPulse, mg,
+      mediumLaser, lrm, smallPulse, ac5, mediumLaser, ppc, mg, smallPulse
+    };
+    items.addAll(Arrays.asList(boat));
+    final List<Double> ranges = WeaponRanges.getRanges(items, modifiers);
+
+    final List<Map<Weapon, Double>> expected = new ArrayList<>();
+    for (final double range : ranges) {
+      expected.add(sortAtRange(items, 10.0, range, modifiers));
+    }
+
+    final List<Map<Weapon, Double>> actual = cut.getWeaponRatios(ranges);
+
+    assertEquals(ranges.size(), actual.size());
+    for (int j = 0; j < ranges.size(); ++j) {
+      // Same iteration order too, as graphs are built in that order.
+      assertEquals(
+          new ArrayList<>(expected.get(j).entrySet()), new ArrayList<>(actual.get(j).entrySet()));
+    }
+  }
+
   /** Tests that getWeaponRatios correctly handles the machine guns zero heat production. */
   @Test
   public void testGetWeaponRatios_machineGun() throws Exception {
@@ -217,4 +261,71 @@ public class MaxSustainedDPSTest {
     assertTrue(result_0.containsKey(mg));
     assertEquals(0.0, result_0.get(mg), 0.0);
   }
+
+  private Weapon makeWeapon(
+      double aMinRange,
+      double aLongRange,
+      double aMaxRange,
+      double aDamagePerHeat,
+      double aHeatPerSecond,
+      Collection<Modifier> aModifiers) {
+    // Not using TestHelpers as it needs the database.
+    final List<RangeNode> nodes = new ArrayList<>();
+    final double minRangeEff = aMinRange > 0 ? 0.0 : 1.0;
+    nodes.add(new RangeNode(range(0.0), InterpolationType.STEP, minRangeEff));
+    nodes.add(new RangeNode(range(aMinRange), InterpolationType.LINEAR, 1.0));
+    nodes.add(new RangeNode(range(aLongRange), InterpolationType.LINEAR, 1.0));
+    nodes.add(new RangeNode(range(aMaxRange), InterpolationType.LINEAR, 0.0));
+    final WeaponRangeProfile profile = new WeaponRangeProfile(nodes);
+
+    final Weapon weapon = mock(Weapon.class);
+    when(weapon.isOffensive()).thenReturn(true);
+    when(weapon.getRangeProfile()).thenReturn(profile);
+    when(weapon.getRangeEffectiveness(anyDouble(), same(aModifiers)))
+        .thenAnswer(
+            aInvocation -> profile.rangeEffectiveness(aInvocation.getArgument(0), aModifiers));
+    when(weapon.getStat("d/h", aModifiers)).thenReturn(aDamagePerHeat);
+    when(weapon.getStat("h/s", aModifiers)).thenReturn(aHeatPerSecond);
+    return weapon;
+  }
+
+  private static Attribute range(double aRange) {
+    return new Attribute(
+        aRange, ModifierDescription.SEL_ALL, ModifierDescription.SPEC_WEAPON_RANGE);
+  }
+
+  /** The previous implementation of {@link MaxSustainedDPS#getWeaponRatios(double)}. */
+  private static Map<Weapon, Double> sortAtRange(
+      List<Weapon> aWeapons, double aHeat, double aRange, Collection<Modifier> aModifiers) {
+    final Comparator<Weapon> byDPH =
+        (aO1, aO2) -> {
+          final double rangeFactor1 =
+              aRange >= 0.0 ? aO1.getRangeEffectiveness(aRange, aModifiers) : 1.0;
+          final double rangeFactor2 =
+              aRange >= 0.0 ? aO2.getRangeEffectiveness(aRange, aModifiers) : 1.0;
+          final double dps1 = rangeFactor1 == 0 ? 0 : rangeFactor1 * aO1.getStat("d/h", aModifiers);
+          final double dps2 = rangeFactor2 == 0 ? 0 : rangeFactor2 * aO2.getStat("d/h", aModifiers);
+          return Double.compare(dps2, dps1);
+        };
+
+    double heatLeft = aHeat;
+    final Map<Weapon, Double> ans = new HashMap<>();
+    for (final Weapon weapon :
+        aWeapons.stream().filter(Weapon::isOffensive).sorted(byDPH).toList()) {
+      final double heat = weapon.getStat("h/s", aModifiers);
+      final double ratio;
+      if (heatLeft == 0) {
+        ratio = 0;
+      } else if (heat < heatLeft) {
+        ratio = 1.0;
+        heatLeft -= heat;
+      } else {
+        ratio = heatLeft / heat;
+        heatLeft = 0;
+      }
+      final Double oldValue = ans.computeIfAbsent(weapon, aWeapon -> 0.0);
+      ans.put(weapon, ratio + oldValue);
+    }
+    return ans;
+  }
 }
@@ -18,16 +18,23 @@
 package org.lisoft.lsml.model.metrics.helpers;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import org.junit.Test;
+import org.lisoft.lsml.model.ChassisDB;
 import org.lisoft.lsml.model.loadout.ConfiguredComponent;
+import org.lisoft.lsml.model.loadout.DefaultLoadoutFactory;
+import org.lisoft.lsml.model.loadout.Loadout;
 import org.lisoft.lsml.model.metrics.CriticalStrikeProbability;
 import org.lisoft.mwo_data.Faction;
 import org.lisoft.mwo_data.equipment.Item;
+import org.lisoft.mwo_data.mechs.Chassis;
 import org.lisoft.mwo_data.mechs.ComponentStandard;
 import org.lisoft.mwo_data.mechs.HardPointType;
+import org.lisoft.mwo_data.modifiers.Modifier;
 import org.mockito.Mockito;
 
 /**
@@ -99,6 +106,97 @@ public class ComponentDestructionSimulatorTest {
     assertEquals(P_hit, cut.getProbabilityOfDestruction(item), 0.0001);
   }
 
+  /**
+   * Components packed with small items have a large number of possible sequences of hits but few
+   * distinct states. Without pruning the previous implementation shall give the same result.
+   */
+  @Test
+  public void testManySmallItemsSameAsReference() {
+    final Item ammo = makeTestItem(1, 10.0);
+    final Item heatSink = makeTestItem(1, 15.0);
+    final Item laser = makeTestItem(1, 7.5);
+    final Item cannon = makeTestItem(3, 18.0);
+    final ConfiguredComponent component =
+        makeTestComponent(
+            30.0, Arrays.asList(ammo, ammo, ammo, heatSink, heatSink, laser, laser, cannon));
+
+    final ComponentDestructionSimulator cut = new ComponentDestructionSimulator(component);
+    final ComponentDestructionSimulatorReference reference =
+        new ComponentDestructionSimulatorReference(component, 0.0);
+    cut.simulate(null);
+    reference.simulate(null);
+
+    for (final Item item : List.of(ammo, heatSink, laser, cannon)) {
+      assertEquals(
+          reference.getProbabilityOfDestruction(item),
+          cut.getProbabilityOfDestruction(item),
+          1E-12);
+    }
+  }
+
+  /**
+   * With many shots on a packed component the previous implementation prunes much of its tree, the
+   * results shall still agree up to its pruning error.
+   */
+  @Test
+  public void testManySmallItemsManyShots() {
+    final Item ammo = makeTestItem(1, 10.0);
+    final Item heatSink = makeTestItem(1, 15.0);
+    final Item laser = makeTestItem(1, 7.5);
+    final Item cannon = makeTestItem(3, 18.0);
+    final ConfiguredComponent component =
+        makeTestComponent(
+            120.0,
+            Arrays.asList(ammo, ammo, ammo, heatSink, heatSink, laser, laser, laser, cannon));
+
+    final ComponentDestructionSimulator cut = new ComponentDestructionSimulator(component);
+    final ComponentDestructionSimulatorReference reference =
+        new ComponentDestructionSimulatorReference(component);
+    cut.simulate(null);
+    reference.simulate(null);
+
+    for (final Item item : List.of(ammo, heatSink, laser, cannon)) {
+      assertWithinPruningError(
+          item.toString(), reference, cut.getProbabilityOfDestruction(item), item);
+    }
+  }
+
+  /** The results shall agree with the previous implementation up to its pruning error. */
+  @Test
+  public void testSameAsReferenceOnStockLoadouts() throws Exception {
+    final DefaultLoadoutFactory loadoutFactory = new DefaultLoadoutFactory();
+    for (final Chassis chassis : ChassisDB.lookupAll()) {
+      final Loadout loadout = loadoutFactory.produceStock(chassis);
+      final Collection<Modifier> modifiers = loadout.getAllModifiers();
+      for (final ConfiguredComponent component : loadout.getComponents()) {
+        final ComponentDestructionSimulator cut = new ComponentDestructionSimulator(component);
+        final ComponentDestructionSimulatorReference reference =
+            new ComponentDestructionSimulatorReference(component);
+        cut.simulate(modifiers);
+        reference.simulate(modifiers);
+
+        for (final Item item : component.getItemsEquipped()) {
+          assertWithinPruningError(
+              chassis.getKey() + " " + item.getKey(),
+              reference,
+              cut.getProbabilityOfDestruction(item),
+              item);
+        }
+      }
+    }
+  }
+
+  private void assertWithinPruningError(
+      String aMessage,
+      ComponentDestructionSimulatorReference aReference,
+      double aActual,
+      Item aItem) {
+    final double expected = aReference.getProbabilityOfDestruction(aItem);
+    final double tolerance = 1E-12;
+    assertTrue(aMessage, expected <= aActual + tolerance);
+    assertTrue(aMessage, aActual <= expected + aReference.getPrunedProbability() + tolerance);
+  }
+
   // TODO: Add test to test with modifiers
 
   private ConfiguredComponent makeTestComponent(double aHP, List<Item> aItems) {
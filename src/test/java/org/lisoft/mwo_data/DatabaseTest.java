@@ -0,0 +1,125 @@
+/*
+ * Li Song Mechlab - A 'mech building tool for PGI's MechWarrior: Online.
+ * Copyright (C) 2013-2023  Li Song
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.lisoft.mwo_data;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.lisoft.lsml.view_fx.LiSongMechLab;
+
+/**
+ * Test suite for {@link Database}.
+ *
+ * @author Li Song
+ */
+public class DatabaseTest {
+
+  /** A snapshot of the bundled database must read back as an equal database. */
+  @Test
+  public void testSnapshotRoundTrip() throws Exception {
+    final Database database = LiSongMechLab.getDatabase();
+
+    final Database read = Database.readSnapshot(new ByteArrayInputStream(snapshot(database)));
+
+    assertEquals(database.getVersion(), read.getVersion());
+    assertEquals(database.getItems().size(), read.getItems().size());
+    assertEquals(toXml(database), toXml(read));
+  }
+
+  @Test
+  public void testSnapshotPreservesIdentity() throws Exception {
+    final Map<String, Long> checksums = new HashMap<>();
+    checksums.put("foo.xml", 4711L);
+    final List<Environment> environments = new ArrayList<>();
+    environments.add(new Environment("Forest Colony", 0.1));
+    environments.add(environments.get(0));
+
+    final Database read =
+        Database.readSnapshot(
+            new ByteArrayInputStream(snapshot(makeDatabase(checksums, environments))));
+
+    assertEquals("1.2.3", read.getVersion());
+    assertEquals(checksums, read.getChecksums());
+    assertEquals(2, read.getEnvironments().size());
+    assertEquals("Forest Colony", read.getEnvironments().get(0).getName());
+    assertSame(read.getEnvironments().get(0), read.getEnvironments().get(1));
+  }
+
+  @Test(expected = IOException.class)
+  public void testReadSnapshotFromXml() throws Exception {
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    makeDatabase(new HashMap<>(), new ArrayList<>()).writeToStream(baos);
+    Database.readSnapshot(new ByteArrayInputStream(baos.toByteArray()));
+  }
+
+  @Test(expected = IOException.class)
+  public void testReadSnapshotWrongVersion() throws Exception {
+    final byte[] snapshot = snapshot(makeDatabase(new HashMap<>(), new ArrayList<>()));
+    snapshot[11]++; // The format version follows the 8 byte magic
+    Database.readSnapshot(new ByteArrayInputStream(snapshot));
+  }
+
+  /** A snapshot where the fields of a class differ from the running application is rejected. */
+  @Test(expected = IOException.class)
+  public void testReadSnapshotChangedLayout() throws Exception {
+    final byte[] snapshot = snapshot(makeDatabase(new HashMap<>(), new ArrayList<>()));
+    final byte[] field = "dataVersion".getBytes(StandardCharsets.UTF_8);
+    for (int i = 0; i + field.length <= snapshot.length; ++i) {
+      if (new String(snapshot, i, field.length, StandardCharsets.UTF_8).equals("dataVersion")) {
+        snapshot[i + field.length - 1] = 'm';
+        Database.readSnapshot(new ByteArrayInputStream(snapshot));
+        return;
+      }
+    }
+    fail("Field name not found in snapshot");
+  }
+
+  private Database makeDatabase(Map<String, Long> aChecksums, List<Environment> aEnvironments) {
+    return new Database(
+        "1.2.3",
+        aChecksums,
+        new ArrayList<>(),
+        new ArrayList<>(),
+        new ArrayList<>(),
+        new ArrayList<>(),
+        new ArrayList<>(),
+        aEnvironments,
+        new ArrayList<>(),
+        new HashMap<>());
+  }
+
+  private byte[] snapshot(Database aDatabase) throws IOException {
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    aDatabase.writeSnapshot(baos);
+    return baos.toByteArray();
+  }
+
+  private String toXml(Database aDatabase) throws IOException {
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    aDatabase.writeToStream(baos);
+    return baos.toString(StandardCharsets.UTF_8);
+  }
+}
@@ -20,8 +20,10 @@ package org.lisoft.mwo_data.equipment;
 import static org.junit.Assert.*;
 
 import java.util.Collection;
+import java.util.List;
 import org.junit.Test;
 import org.lisoft.lsml.model.ItemDB;
+import org.lisoft.mwo_data.Faction;
 
 /**
  * Test suite for {@link ItemDB}.
@@ -38,6 +40,42 @@ public class ItemLookupTest {
     }
   }
 
+  @Test(expected = NoSuchItemException.class)
+  public void testGetEngineNoSuchRating() throws Exception {
+    ItemDB.getEngine(1234567, Engine.EngineType.STD, Faction.ANY);
+  }
+
+  @Test
+  public void testItemsByFaction() {
+    for (final Faction faction : Faction.values()) {
+      final List<Weapon> weapons = ItemDB.items(Weapon.class, faction);
+      assertFalse(weapons.isEmpty());
+      for (final Weapon weapon : ItemDB.items(Weapon.class)) {
+        assertEquals(weapon.getFaction().isCompatible(faction), weapons.contains(weapon));
+      }
+    }
+  }
+
+  @Test
+  public void testItemsAbstractType() {
+    final List<HeatSource> heatSources = ItemDB.items(HeatSource.class);
+    assertFalse(heatSources.isEmpty());
+    for (final Item item : ItemDB.items(Item.class)) {
+      assertEquals(item instanceof HeatSource, heatSources.contains(item));
+    }
+  }
+
+  @Test
+  public void testItemsMatchesLookup() {
+    assertEquals(ItemDB.lookup(EnergyWeapon.class), ItemDB.items(EnergyWeapon.class));
+    assertEquals(ItemDB.lookup(Item.class), ItemDB.items(Item.class));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testItemsUnmodifiable() {
+    ItemDB.items(Weapon.class).clear();
+  }
+
   /** We have to be able to find items by MWO ID/MWO Key and Name. */
   @Test
   public void testLookup() throws Exception {
@@ -23,6 +23,7 @@ import static org.junit.Assert.fail;
 import java.util.*;
 import org.junit.Test;
 import org.lisoft.lsml.math.probability.BinomialDistribution;
+import org.lisoft.lsml.model.ItemDB;
 import org.lisoft.lsml.util.TestHelpers;
 import org.lisoft.mwo_data.equipment.WeaponRangeProfile.RangeNode;
 import org.lisoft.mwo_data.equipment.WeaponRangeProfile.RangeNode.InterpolationType;
@@ -466,6 +467,67 @@ public class WeaponRangeProfileTest {
     assertEquals(0.0, cut.rangeEffectiveness(maxRange, null), 0.01);
   }
 
+  @Test
+  public void testResolvedBatchRangeEffectiveness() {
+    final List<RangeNode> profile = new ArrayList<>();
+    profile.add(new RangeNode(TestHelpers.rangeNode(0.0), InterpolationType.STEP, 0.25));
+    profile.add(
+        new RangeNode(TestHelpers.rangeNode(100.0), InterpolationType.EXPONENTIAL, 0.5, 2.0));
+    profile.add(new RangeNode(TestHelpers.rangeNode(200.0), InterpolationType.LINEAR, 1.5));
+    profile.add(new RangeNode(TestHelpers.rangeNode(300.0), InterpolationType.LINEAR, 0.0));
+
+    final WeaponRangeProfile.Resolved cut =
+        new WeaponRangeProfile(profile).resolve(modifiersRange10Pct);
+
+    final double[] ranges = {-1.0, 0.0, 55.0, 110.0, 165.0, 220.0, 275.0, 330.0, 1000.0};
+    final double[] ans = new double[ranges.length];
+    cut.rangeEffectiveness(ranges, ans);
+
+    final double[] expected = {0.0, 0.25, 0.25, 0.5, 0.75, 1.5, 0.75, 0.0, 0.0};
+    for (int i = 0; i < ranges.length; ++i) {
+      assertEquals(expected[i], ans[i], TOLERANCE);
+    }
+  }
+
+  @Test
+  public void testResolvedMatchesProfileAllWeapons() {
+    for (final Collection<Modifier> modifiers : List.of(List.<Modifier>of(), modifiersRange10Pct)) {
+      for (final Weapon weapon : ItemDB.lookup(Weapon.class)) {
+        final WeaponRangeProfile profile = weapon.getRangeProfile();
+        final WeaponRangeProfile.Resolved cut = profile.resolve(modifiers);
+
+        final int maxRange = (int) Math.ceil(profile.getMaxRange(modifiers)) + 10;
+        final double[] ranges = new double[maxRange + 1];
+        for (int i = 0; i < ranges.length; ++i) {
+          ranges[i] = i;
+        }
+        final double[] batch = new double[ranges.length];
+        cut.rangeEffectiveness(ranges, batch);
+
+        for (final double range : ranges) {
+          final double expected = profile.rangeEffectiveness(range, modifiers);
+          assertEquals(weapon + " at " + range, expected, cut.rangeEffectiveness(range), 0.0);
+          assertEquals(weapon + " at " + range, expected, batch[(int) range], 0.0);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testResolvedUnsortedNodes() {
+    final List<RangeNode> profile = new ArrayList<>();
+    profile.add(new RangeNode(TestHelpers.rangeNode(0.0), InterpolationType.STEP, 0.5));
+    profile.add(new RangeNode(TestHelpers.rangeNode(300.0), InterpolationType.LINEAR, 1.0));
+    profile.add(new RangeNode(TestHelpers.rangeNode(200.0), InterpolationType.LINEAR, 0.0));
+
+    final WeaponRangeProfile cut = new WeaponRangeProfile(profile);
+    final WeaponRangeProfile.Resolved resolved = cut.resolve(null);
+
+    for (double range = -10.0; range <= 400.0; range += 1.0) {
+      assertEquals(cut.rangeEffectiveness(range, null), resolved.rangeEffectiveness(range), 0.0);
+    }
+  }
+
   private void assertShapeEquals(List<Double> expected, List<Double> actual) {
     if (expected.size() < 2) {
       assertEquals(expected.toString(), actual.toString());
@@ -0,0 +1,138 @@
+/*
+ * Li Song Mechlab - A 'mech building tool for PGI's MechWarrior: Online.
+ * Copyright (C) 2013-2023  Li Song
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.lisoft.mwo_data.equipment;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collection;
+import java.util.List;
+import org.junit.Test;
+import org.lisoft.lsml.model.ItemDB;
+import org.lisoft.mwo_data.modifiers.Modifier;
+
+/**
+ * Test suite for {@link WeaponStat}.
+ *
+ * @author Li Song
+ */
+public class WeaponStatTest {
+  /** All the stats used in the code base, and then some. */
+  private static final List<String> STATS =
+      List.of(
+          "d",
+          "h",
+          "r",
+          "s",
+          "d/h",
+          "d/r",
+          "d/s",
+          "d/st",
+          "d/t",
+          "h/s",
+          "h/d",
+          "s/t",
+          "t/s",
+          "c",
+          "dsthc/dsthc",
+          "h/h",
+          "d/hhs",
+          "/h",
+          "d/",
+          "");
+
+  @Test
+  public void testEvaluate() {
+    final Weapon weapon = mock(Weapon.class);
+    when(weapon.getStat('d', null)).thenReturn(10.0);
+    when(weapon.getStat('h', null)).thenReturn(4.0);
+    when(weapon.getStat('s', null)).thenReturn(2.0);
+    when(weapon.getStat('t', null)).thenReturn(5.0);
+
+    assertEquals(10.0 / (4.0 * 2.0), WeaponStat.of("d/hs").evaluate(weapon, null), 0.0);
+    assertEquals(10.0 * 5.0, WeaponStat.of("dt").evaluate(weapon, null), 0.0);
+    assertEquals(1.0 / 4.0, WeaponStat.of("/h").evaluate(weapon, null), 0.0);
+    assertEquals(1.0, WeaponStat.of("").evaluate(weapon, null), 0.0);
+  }
+
+  /** Zero over zero is interpreted as zero, see {@link WeaponTest#testGetStatZeroOverZero()}. */
+  @Test
+  public void testEvaluateZeroOverZero() {
+    final Weapon weapon = mock(Weapon.class);
+    when(weapon.getStat('c', null)).thenReturn(2.0);
+    assertEquals(0.0, WeaponStat.of("h/h").evaluate(weapon, null), 0.0);
+    assertEquals(0.0, WeaponStat.of("ch/h").evaluate(weapon, null), 0.0);
+    assertEquals(Double.POSITIVE_INFINITY, WeaponStat.of("c/h").evaluate(weapon, null), 0.0);
+  }
+
+  @Test
+  public void testOfCaches() {
+    assertSame(WeaponStat.of("d/s"), WeaponStat.of("d/s"));
+    assertSame(WeaponStat.of(new String("d/h")), WeaponStat.of("d/h"));
+    assertEquals("d/h", WeaponStat.of("d/h").toString());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOfErrorDenominator() {
+    WeaponStat.of("d/x");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOfErrorNominator() {
+    WeaponStat.of("xd/s");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOfErrorTwoDivisions() {
+    WeaponStat.of("d/h/s");
+  }
+
+  /** The compiled stats shall give exactly the same result as parsing the string every time. */
+  @Test
+  public void testSameAsParsingOnAllWeapons() {
+    for (final Weapon weapon : ItemDB.lookup(Weapon.class)) {
+      for (final String stat : STATS) {
+        assertEquals(
+            weapon.getKey() + " " + stat,
+            parseAndEvaluate(weapon, stat, null),
+            weapon.getStat(stat, null),
+            0.0);
+      }
+    }
+  }
+
+  /** The previous implementation of {@link Weapon#getStat(String, Collection)}. */
+  private static double parseAndEvaluate(
+      Weapon aWeapon, String aWeaponStat, Collection<Modifier> aModifiers) {
+    double nominator = 1.0;
+    int index = 0;
+    while (index < aWeaponStat.length() && aWeaponStat.charAt(index) != '/') {
+      nominator *= aWeapon.getStat(aWeaponStat.charAt(index++), aModifiers);
+    }
+    index++;
+    double denominator = 1.0;
+    while (index < aWeaponStat.length()) {
+      denominator *= aWeapon.getStat(aWeaponStat.charAt(index++), aModifiers);
+    }
+    if (nominator == 0.0 && denominator == 0.0) {
+      return 0;
+    }
+    return nominator / denominator;
+  }
+}
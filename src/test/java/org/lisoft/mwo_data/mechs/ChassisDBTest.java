@@ -382,6 +382,16 @@ public class ChassisDBTest {
     }
   }
 
+  @Test
+  public void testLookupByChassisClassCoversAll() {
+    final List<Chassis> all = new ArrayList<>();
+    for (final ChassisClass chassisClass : ChassisClass.values()) {
+      all.addAll(ChassisDB.lookup(chassisClass));
+    }
+    assertEquals(ChassisDB.lookupAll().size(), all.size());
+    assertTrue(all.containsAll(ChassisDB.lookupAll()));
+  }
+
   @Test
   public void testLookupByChassiSeries() {
     final Collection<? extends Chassis> cataphracts = ChassisDB.lookupSeries("CATAphract");
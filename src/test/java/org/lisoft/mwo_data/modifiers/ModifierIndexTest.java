@@ -0,0 +1,175 @@
+/*
+ * Li Song Mechlab - A 'mech building tool for PGI's MechWarrior: Online.
+ * Copyright (C) 2013-2023  Li Song
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.lisoft.mwo_data.modifiers;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import org.junit.Test;
+import org.lisoft.lsml.view_fx.LiSongMechLab;
+import org.lisoft.mwo_data.equipment.Item;
+import org.lisoft.mwo_data.equipment.Weapon;
+
+/**
+ * Test suite for {@link ModifierIndex}.
+ *
+ * @author Li Song
+ */
+public class ModifierIndexTest {
+  private final ModifierType type = ModifierType.INDETERMINATE;
+
+  /**
+   * The index shall produce bit-identical results to the linear scan for random modifier sets drawn
+   * from the bundled database, applied to attributes with the selectors and specifiers that occur
+   * in the database.
+   */
+  @Test
+  public void testEquivalenceOnDatabase() {
+    final Random rng = new Random(4711);
+    final List<ModifierDescription> descriptions =
+        new ArrayList<>(LiSongMechLab.getDatabase().getModifierDescriptions().values());
+    descriptions.sort(Comparator.comparing(ModifierDescription::getKey));
+
+    final List<Attribute> attributes = new ArrayList<>();
+    for (final ModifierDescription description : descriptions) {
+      attributes.add(
+          new Attribute(
+              rng.nextDouble() * 100, description.getSelectors(), description.getSpecifier()));
+      attributes.add(new Attribute(rng.nextDouble() * 100, description.getSelectors()));
+    }
+    for (final Item item : LiSongMechLab.getDatabase().getItems()) {
+      if (item instanceof Weapon weapon) {
+        for (final String specifier :
+            List.of(
+                ModifierDescription.SPEC_WEAPON_COOL_DOWN,
+                ModifierDescription.SPEC_WEAPON_DAMAGE,
+                ModifierDescription.SPEC_WEAPON_HEAT,
+                ModifierDescription.SPEC_WEAPON_RANGE)) {
+          attributes.add(new Attribute(rng.nextDouble() * 10, weapon.getAliases(), specifier));
+        }
+      }
+    }
+
+    for (int round = 0; round < 200; ++round) {
+      final List<Modifier> modifiers = new ArrayList<>();
+      final int numModifiers = rng.nextInt(150);
+      for (int i = 0; i < numModifiers; ++i) {
+        final ModifierDescription description = descriptions.get(rng.nextInt(descriptions.size()));
+        modifiers.add(new Modifier(description, rng.nextGaussian()));
+      }
+      assertEquivalent(modifiers, attributes);
+    }
+  }
+
+  /** The index shall produce bit-identical results for random synthetic modifiers. */
+  @Test
+  public void testEquivalenceSynthetic() {
+    final Random rng = new Random(1337);
+    final List<String> selectors = List.of("all", "foo", "bar", "baz", "energy", "laser");
+    final List<String> specifiers = Arrays.asList(null, "all", "range", "heat", "damage");
+
+    final List<Attribute> attributes = new ArrayList<>();
+    for (int i = 0; i < 100; ++i) {
+      attributes.add(
+          new Attribute(
+              rng.nextDouble(),
+              randomSubset(rng, selectors),
+              specifiers.get(rng.nextInt(specifiers.size()))));
+    }
+
+    for (int round = 0; round < 500; ++round) {
+      final List<Modifier> modifiers = new ArrayList<>();
+      final int numModifiers = rng.nextInt(40);
+      for (int i = 0; i < numModifiers; ++i) {
+        final ModifierDescription description =
+            new ModifierDescription(
+                "name",
+                "key" + i,
+                rng.nextBoolean() ? Operation.ADD : Operation.MUL,
+                randomSubset(rng, selectors),
+                specifiers.get(rng.nextInt(specifiers.size())),
+                type);
+        modifiers.add(new Modifier(description, rng.nextGaussian()));
+      }
+      assertEquivalent(modifiers, attributes);
+    }
+  }
+
+  /** The cached totals shall be independent of the base value of the attribute. */
+  @Test
+  public void testBaseValueChange() {
+    final Attribute attribute = new Attribute(2.0, List.of("foo"), "bar");
+    final ModifierIndex cut =
+        new ModifierIndex(
+            List.of(
+                new Modifier(
+                    new ModifierDescription("", "a", Operation.ADD, List.of("foo"), "bar", type),
+                    1.0),
+                new Modifier(
+                    new ModifierDescription("", "m", Operation.MUL, List.of("foo"), "bar", type),
+                    0.5)));
+
+    assertEquals(4.5, attribute.value(cut), 0.0);
+    attribute.setBaseValue(3.0);
+    assertEquals(6.0, attribute.value(cut), 0.0);
+  }
+
+  @Test
+  public void testCollection() {
+    final Modifier a =
+        new Modifier(
+            new ModifierDescription("", "a", Operation.ADD, List.of("foo"), null, type), 1);
+    final Modifier b =
+        new Modifier(
+            new ModifierDescription("", "b", Operation.ADD, List.of("bar"), null, type), 2);
+    final ModifierIndex cut = new ModifierIndex(List.of(a, b));
+
+    assertEquals(List.of(a, b), new ArrayList<>(cut));
+    assertSame(cut, ModifierIndex.of(cut));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testImmutable() {
+    final Modifier a =
+        new Modifier(
+            new ModifierDescription("", "a", Operation.ADD, List.of("foo"), null, type), 1);
+    new ModifierIndex(List.of(a)).add(a);
+  }
+
+  private void assertEquivalent(List<Modifier> aModifiers, List<Attribute> aAttributes) {
+    final ModifierIndex cut = new ModifierIndex(aModifiers);
+    for (final Attribute attribute : aAttributes) {
+      final double expected = attribute.value(aModifiers);
+      // Evaluate twice to exercise both the compiling and the cached path.
+      assertEquals(
+          Double.doubleToLongBits(expected), Double.doubleToLongBits(cut.value(attribute)));
+      assertEquals(
+          Double.doubleToLongBits(expected), Double.doubleToLongBits(attribute.value(cut)));
+    }
+  }
+
+  private List<String> randomSubset(Random aRng, List<String> aValues) {
+    final List<String> ans = new ArrayList<>();
+    for (final String value : aValues) {
+      if (aRng.nextInt(3) == 0) {
+        ans.add(value);
+      }
+    }
+    return ans;
+  }
+}
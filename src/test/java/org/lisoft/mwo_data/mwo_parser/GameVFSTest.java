@@ -0,0 +1,217 @@
+/*
+ * Li Song Mechlab - A 'mech building tool for PGI's MechWarrior: Online.
+ * Copyright (C) 2013-2023  Li Song
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.lisoft.mwo_data.mwo_parser;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeFalse;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lisoft.lsml.util.OS;
+import org.lisoft.lsml.util.OS.WindowsVersion;
+
+/**
+ * Test suite for {@link GameVFS} and {@link ArchiveIndex} using synthetic game installations.
+ *
+ * @author Li Song
+ */
+public class GameVFSTest {
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+  private File gameDir;
+  private File indexFile;
+
+  @Before
+  public void setup() throws IOException {
+    gameDir = folder.newFolder("game");
+    indexFile = new File(folder.getRoot(), "index.dat");
+    assertTrue(new File(gameDir, "Bin64").mkdirs());
+    assertTrue(new File(gameDir, "Bin64/MWOClient.exe").createNewFile());
+    writePak("Game/Objects.pak", Map.of("Objects/mechs/a.mdf", "a"));
+    writePak("Game/GameData.pak", Map.of("Libs/Items/Weapons/Weapons.xml", "weapons"));
+    writePak("Game/Localized/English.pak", Map.of("Languages/English.xml", "english"));
+    writePak("Game/Localized/French.pak", Map.of("Languages/French.xml", "french"));
+  }
+
+  /** Archives added after the index was written shall be picked up. */
+  @Test
+  public void testArchiveAdded() throws Exception {
+    new GameVFS(gameDir, indexFile);
+
+    writePak("Game/Mechs/Foo.pak", Map.of("Objects/mechs/foo.mdf", "foo"));
+
+    final GameVFS cut = new GameVFS(gameDir, indexFile);
+    assertEquals("foo", read(cut, "Game/Mechs/Objects/mechs/foo.mdf"));
+    assertEquals("weapons", read(cut, "Game/Libs/Items/Weapons/Weapons.xml"));
+  }
+
+  /** Archives modified after the index was written shall be rescanned. */
+  @Test
+  public void testArchiveModified() throws Exception {
+    new GameVFS(gameDir, indexFile);
+
+    final File pak = writePak("Game/GameData.pak", Map.of("Libs/Items/Mechs/Mechs.xml", "mechs"));
+    assertTrue(pak.setLastModified(pak.lastModified() + 10000));
+
+    final GameVFS cut = new GameVFS(gameDir, indexFile);
+    assertEquals("mechs", read(cut, "Game/Libs/Items/Mechs/Mechs.xml"));
+    assertNotFound(cut, "Game/Libs/Items/Weapons/Weapons.xml");
+  }
+
+  /** Archives removed after the index was written shall be dropped from the index. */
+  @Test
+  public void testArchiveRemoved() throws Exception {
+    new GameVFS(gameDir, indexFile);
+
+    Files.delete(new File(gameDir, "Game/Localized/English.pak").toPath());
+
+    final GameVFS cut = new GameVFS(gameDir, indexFile);
+    assertNotFound(cut, "Game/Localized/Languages/English.xml");
+    assertFalse(ArchiveIndex.load(indexFile).getArchives().contains("Game/Localized/English.pak"));
+  }
+
+  /** A corrupt index shall be silently rebuilt. */
+  @Test
+  public void testCorruptIndex() throws Exception {
+    Files.write(indexFile.toPath(), "garbage".getBytes(StandardCharsets.UTF_8));
+
+    final GameVFS cut = new GameVFS(gameDir, indexFile);
+    assertEquals("weapons", read(cut, "Game/Libs/Items/Weapons/Weapons.xml"));
+    assertEquals(3, ArchiveIndex.load(indexFile).getArchives().size());
+  }
+
+  @Test
+  public void testIndexContents() throws Exception {
+    final ArchiveIndex cut = ArchiveIndex.load(indexFile);
+    assertTrue(cut.refresh(gameDir.toPath()));
+    assertFalse(cut.refresh(gameDir.toPath()));
+
+    assertEquals(
+        List.of("Game/GameData.pak", "Game/Localized/English.pak", "Game/Objects.pak"),
+        List.copyOf(cut.getArchives()));
+    assertEquals(List.of("Languages/English.xml"), cut.getEntries("Game/Localized/English.pak"));
+  }
+
+  /** An archive with the same size and time as when indexed shall not be opened again. */
+  @Test
+  public void testUnchangedArchiveNotRescanned() throws Exception {
+    final ArchiveIndex index = ArchiveIndex.load(indexFile);
+    index.refresh(gameDir.toPath());
+    index.save(indexFile);
+
+    // Overwrite with garbage of the same size, opening the archive again would fail.
+    final File pak = new File(gameDir, "Game/Localized/English.pak");
+    final long lastModified = pak.lastModified();
+    Files.write(pak.toPath(), new byte[(int) pak.length()]);
+    assertTrue(pak.setLastModified(lastModified));
+
+    final ArchiveIndex cut = ArchiveIndex.load(indexFile);
+    assertFalse(cut.refresh(gameDir.toPath()));
+    assertEquals(List.of("Languages/English.xml"), cut.getEntries("Game/Localized/English.pak"));
+  }
+
+  @Test
+  public void testIndexedLookupIsCaseInsensitive() throws Exception {
+    final GameVFS cut = new GameVFS(gameDir, indexFile);
+    assertEquals("a", read(cut, "Game/objects/MECHS/A.mdf"));
+    assertNotFound(cut, "Game/Localized/Languages/French.xml");
+  }
+
+  /** Within a session, archives are opened once and kept open until the last session closes. */
+  @Test
+  public void testSessionKeepsArchivesOpen() throws Exception {
+    // Windows doesn't allow deleting open files.
+    assumeFalse(OS.isWindowsOrNewer(WindowsVersion.WIN_OLD));
+
+    final GameVFS cut = new GameVFS(gameDir, indexFile);
+    final File pak = new File(gameDir, "Game/Objects.pak");
+    try (GameVFS.Session outer = cut.openSession()) {
+      try (GameVFS.Session inner = cut.openSession()) {
+        assertEquals("a", read(cut, "Game/Objects/mechs/a.mdf"));
+      }
+      Files.delete(pak.toPath());
+      assertEquals("a", read(cut, "Game/Objects/MECHS/A.MDF"));
+    }
+    assertNotFound(cut, "Game/Objects/mechs/a.mdf");
+  }
+
+  @Test
+  public void testSessionLookups() throws Exception {
+    final GameVFS cut = new GameVFS(gameDir);
+    try (GameVFS.Session session = cut.openSession()) {
+      for (int i = 0; i < 3; ++i) {
+        assertEquals("a", read(cut, "Game/Objects/mechs/a.mdf"));
+        assertEquals("a", read(cut, "Game/objects/Mechs/A.mdf"));
+        assertEquals("weapons", read(cut, "Game/libs/items/weapons/weapons.xml"));
+        assertEquals(
+            read(cut, "Game/Libs/Items/Weapons/Weapons.xml"),
+            read(cut, "Game/LIBS/ITEMS/WEAPONS/WEAPONS.XML"));
+        assertNotFound(cut, "Game/Objects/mechs/b.mdf");
+      }
+      session.close(); // Closing twice is harmless
+    }
+    assertEquals("a", read(cut, "Game/Objects/mechs/a.mdf"));
+  }
+
+  @Test
+  public void testUnindexed() throws Exception {
+    final GameVFS cut = new GameVFS(gameDir);
+    assertEquals("english", read(cut, "Game/Localized/Languages/English.xml"));
+    assertEquals("a", read(cut, "Game/Objects/mechs/a.mdf"));
+    assertNotFound(cut, "Game/Objects/mechs/b.mdf");
+    assertFalse(indexFile.exists());
+  }
+
+  private void assertNotFound(GameVFS aVFS, String aPath) throws Exception {
+    try {
+      aVFS.openGameFile(new File(aPath));
+      fail("Expected exception!");
+    } catch (final IOException e) {
+      // Expected
+    }
+  }
+
+  private String read(GameVFS aVFS, String aPath) throws Exception {
+    try (GameVFS.GameFile gameFile = aVFS.openGameFile(new File(aPath))) {
+      return new String(gameFile.stream.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+  private File writePak(String aPath, Map<String, String> aEntries) throws IOException {
+    final File pak = new File(gameDir, aPath);
+    final File parent = pak.getParentFile();
+    assertTrue(parent.isDirectory() || parent.mkdirs());
+    try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(pak))) {
+      for (final Map.Entry<String, String> entry : new TreeMap<>(aEntries).entrySet()) {
+        zos.putNextEntry(new ZipEntry(entry.getKey()));
+        zos.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+        zos.closeEntry();
+      }
+    }
+    return pak;
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Li Song Mechlab - A 'mech building tool for PGI's MechWarrior: Online.
+ * Copyright (C) 2013-2023  Li Song
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.lisoft.mwo_data.mwo_parser;
+
+import static org.junit.Assert.*;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.annotations.XStreamImplicit;
+import java.io.File;
+import java.util.*;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test suite for {@link Localisation}.
+ *
+ * <p>The results are compared to those of the previous implementation which unmarshalled the whole
+ * workbook with XStream and normalised keys with a chain of regular expressions.
+ *
+ * @author Li Song
+ */
+public class LocalisationTest {
+  /** The workbook model the previous implementation unmarshalled. */
+  static class Workbook {
+    static class Worksheet {
+      static class Table {
+        static class Row {
+          static class Cell {
+            String Data;
+          }
+
+          @XStreamImplicit(itemFieldName = "Cell")
+          List<Cell> cells;
+        }
+
+        @XStreamImplicit(itemFieldName = "Row")
+        List<Row> rows;
+      }
+
+      Table Table;
+    }
+
+    Worksheet Worksheet;
+  }
+
+  private static final String[] FRAGMENTS = {
+    "_mk",
+    "i",
+    "ii",
+    "iii",
+    "iv",
+    "v",
+    "vi",
+    "l",
+    "_multiplier",
+    "_additive",
+    "_longrange",
+    "_maxrange",
+    "_",
+    "_ad",
+    "clanheavymediumlaser_minheatpenaltylevel_",
+    "range",
+    "MK",
+    "@",
+    "x"
+  };
+  private static final int NUM_ROWS = 50000;
+  @ClassRule public static final TemporaryFolder folder = new TemporaryFolder();
+  private static GameVFS gameVFS;
+
+  @BeforeClass
+  public static void setupGame() throws Exception {
+    gameVFS = new GameVFS(SyntheticGame.create(folder.newFolder("game"), 10, NUM_ROWS));
+  }
+
+  @Test
+  public void testCanonize() {
+    assertEquals("@clan_mk2_mult", Localisation.canonize("Clan_MKII_Multiplier"));
+    assertEquals("@foo_mk1_mk6i_mk5", Localisation.canonize("@foo_mkl_mkvii_MkV"));
+    assertEquals("@a_range_range_b", Localisation.canonize("a_longrange_maxrange_b"));
+    assertEquals("@a_range_longrange_", Localisation.canonize("a_longrange_longrange_"));
+    assertEquals("@a_range_add", Localisation.canonize("a_maxrange_additive"));
+    assertEquals("@a_add", Localisation.canonize("a_ad"));
+  }
+
+  /** The single pass normalisation must give the same results as the replacement chain. */
+  @Test
+  public void testCanonizeSameAsLegacy() {
+    final Random rng = new Random(4711);
+    for (int i = 0; i < 100000; ++i) {
+      final StringBuilder key = new StringBuilder();
+      final int fragments = rng.nextInt(8);
+      for (int j = 0; j < fragments; ++j) {
+        key.append(FRAGMENTS[rng.nextInt(FRAGMENTS.length)]);
+      }
+      assertEquals(
+          key.toString(), legacyCanonize(key.toString()), Localisation.canonize(key.toString()));
+    }
+  }
+
+  /** The streaming reader must produce the same strings as unmarshalling the workbook. */
+  @Test
+  public void testSameAsLegacy() throws Exception {
+    final Workbook workbook = readWorkbook();
+    final Map<String, String> legacy = new HashMap<>();
+    for (final Workbook.Worksheet.Table.Row row : workbook.Worksheet.Table.rows) {
+      if (row.cells != null && row.cells.size() >= 2 && row.cells.get(0).Data != null) {
+        legacy.put(legacyCanonize(row.cells.get(0).Data), row.cells.get(1).Data);
+      }
+    }
+    assertTrue(legacy.size() > NUM_ROWS / 2);
+
+    final Localisation cut = new Localisation(gameVFS);
+    for (final Workbook.Worksheet.Table.Row row : workbook.Worksheet.Table.rows) {
+      if (row.cells != null && !row.cells.isEmpty() && row.cells.get(0).Data != null) {
+        final String key = row.cells.get(0).Data;
+        if (row.cells.size() >= 2) {
+          assertEquals(key, legacy.get(legacyCanonize(key)), cut.key2string(key));
+        } else {
+          assertThrows(IllegalArgumentException.class, () -> cut.key2string(key));
+        }
+      }
+    }
+    assertEquals("JAILBIRD", cut.key2string("fnr-j"));
+    assertEquals("Empty Description", cut.key2string("@no_such_desc"));
+  }
+
+  private static String legacyCanonize(String aKey) {
+    String canonized = aKey;
+    canonized = canonized.toLowerCase();
+    if (canonized.contains("_mk")) {
+      canonized = canonized.replaceAll("_mkiii", "_mk3");
+      canonized = canonized.replaceAll("_mkii", "_mk2");
+      canonized = canonized.replaceAll("_mkiv", "_mk4");
+      canonized = canonized.replaceAll("_mki", "_mk1");
+      canonized = canonized.replaceAll("_mkvi", "_mk6");
+      canonized = canonized.replaceAll("_mkv", "_mk5");
+      canonized = canonized.replaceAll("_mkl", "_mk1");
+    }
+    if (canonized.endsWith("_ad")) {
+      canonized = canonized + "d";
+    }
+    if (canonized.endsWith("clanheavymediumlaser_minheatpenaltylevel_")) {
+      canonized = canonized + "add";
+    }
+    canonized = canonized.replaceAll("_multiplier", "_mult");
+    canonized = canonized.replaceAll("_additive", "_add");
+    canonized = canonized.replaceAll("_longrange_", "_range_");
+    canonized = canonized.replaceAll("_maxrange_", "_range_");
+    if (!canonized.startsWith("@")) {
+      canonized = "@" + canonized;
+    }
+    return canonized;
+  }
+
+  private Workbook readWorkbook() throws Exception {
+    final XStream xstream = GameVFS.makeMwoSuitableXStream();
+    xstream.allowTypesByWildcard(new String[] {LocalisationTest.class.getName() + "$**"});
+    xstream.alias("Workbook", Workbook.class);
+    try (GameVFS.GameFile file =
+        gameVFS.openGameFile(new File("Game/Localized/Localization/English/TheRealLoc.xml"))) {
+      return (Workbook) xstream.fromXML(file.stream);
+    }
+  }
+}
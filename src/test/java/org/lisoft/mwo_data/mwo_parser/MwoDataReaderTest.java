@@ -0,0 +1,175 @@
+/*
+ * Li Song Mechlab - A 'mech building tool for PGI's MechWarrior: Online.
+ * Copyright (C) 2013-2023  Li Song
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.lisoft.mwo_data.mwo_parser;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lisoft.mwo_data.Database;
+
+/**
+ * Test suite for {@link MwoDataReader} using a synthetic game installation with large data files.
+ *
+ * @author Li Song
+ */
+public class MwoDataReaderTest {
+  private static final int ENTRY_SIZE = 2 * 1024 * 1024;
+  @ClassRule public static final TemporaryFolder folder = new TemporaryFolder();
+  private static final Map<String, Long> checksums = new HashMap<>();
+  private static File gameDir;
+  private final MwoDataReader cut = new MwoDataReader("1.0.0");
+
+  @BeforeClass
+  public static void setupGame() throws IOException {
+    gameDir = folder.newFolder("game");
+    assertTrue(new File(gameDir, "Bin64").mkdirs());
+    assertTrue(new File(gameDir, "Bin64/MWOClient.exe").createNewFile());
+
+    final File gameFolder = new File(gameDir, "Game");
+    final Path gamePath = new File("Game").toPath();
+    assertTrue(gameFolder.mkdirs());
+    try (ZipOutputStream zos =
+        new ZipOutputStream(new FileOutputStream(new File(gameFolder, "Objects.pak")))) {
+      zos.putNextEntry(new ZipEntry("Objects/mechs/a.mdf"));
+      zos.closeEntry();
+    }
+
+    final Random rng = new Random(4711);
+    final byte[] data = new byte[ENTRY_SIZE];
+    try (ZipOutputStream zos =
+        new ZipOutputStream(new FileOutputStream(new File(gameFolder, "GameData.pak")))) {
+      for (final File file : MwoDataReader.FILES_TO_PARSE) {
+        // Compressible but not trivially so, like XML.
+        for (int i = 0; i < data.length; ++i) {
+          data[i] = (byte) ('a' + rng.nextInt(16));
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(data);
+        checksums.put(file.toString(), crc.getValue());
+
+        // All files to parse are in the "Game" folder, where the archive is.
+        zos.putNextEntry(
+            new ZipEntry(gamePath.relativize(file.toPath()).toString().replace('\\', '/')));
+        zos.write(data);
+        zos.closeEntry();
+      }
+    }
+  }
+
+  /** The CRC read from the archive directory shall match the CRC of the inflated data. */
+  @Test
+  public void testGetCrc32() throws Exception {
+    final GameVFS gameVFS = new GameVFS(gameDir);
+    for (final File file : MwoDataReader.FILES_TO_PARSE) {
+      try (GameVFS.GameFile gameFile = gameVFS.openGameFile(file)) {
+        assertEquals(gameFile.crc32, gameVFS.getCrc32(file));
+      }
+      assertEquals(checksums.get(file.toString()).longValue(), gameVFS.getCrc32(file));
+    }
+  }
+
+  @Test
+  public void testShouldUpdate() throws Exception {
+    assertFalse(cut.shouldUpdate(makeDatabase(checksums), gameDir));
+
+    final Map<String, Long> changed = new HashMap<>(checksums);
+    changed.put(MwoDataReader.FILES_TO_PARSE.get(3).toString(), 0L);
+    assertTrue(cut.shouldUpdate(makeDatabase(changed), gameDir));
+
+    final Map<String, Long> missing = new HashMap<>(checksums);
+    missing.remove(MwoDataReader.FILES_TO_PARSE.get(0).toString());
+    assertTrue(cut.shouldUpdate(makeDatabase(missing), gameDir));
+
+    final Map<String, Long> renamed = new HashMap<>(missing);
+    renamed.put("foo", 0L);
+    assertTrue(cut.shouldUpdate(makeDatabase(renamed), gameDir));
+  }
+
+  /**
+   * Checking for updates shall only use the CRCs in the archive directory and never inflate the
+   * files, which is what {@link MwoDataReader#shouldUpdate(Database, File)} used to do.
+   */
+  @Test
+  public void testShouldUpdateNeverInflates() throws Exception {
+    final File corruptDir = corruptGame();
+    final GameVFS gameVFS = new GameVFS(corruptDir);
+    for (final File file : MwoDataReader.FILES_TO_PARSE) {
+      assertEquals(checksums.get(file.toString()).longValue(), gameVFS.getCrc32(file));
+      assertThrows(IOException.class, () -> gameVFS.openGameFile(file).close());
+    }
+
+    assertFalse(cut.shouldUpdate(makeDatabase(checksums), corruptDir));
+  }
+
+  /**
+   * Copies the game with the compressed data of every file in GameData.pak overwritten so that
+   * inflating any of them fails, while the archive directory and its CRCs are left intact.
+   */
+  private static File corruptGame() throws IOException {
+    final File corruptDir = folder.newFolder();
+    final File corruptFolder = new File(corruptDir, "Game");
+    assertTrue(new File(corruptDir, "Bin64").mkdirs());
+    assertTrue(corruptFolder.mkdirs());
+    Files.copy(
+        new File(gameDir, "Bin64/MWOClient.exe").toPath(),
+        new File(corruptDir, "Bin64/MWOClient.exe").toPath());
+    Files.copy(
+        new File(gameDir, "Game/Objects.pak").toPath(),
+        new File(corruptFolder, "Objects.pak").toPath());
+
+    final File pak = new File(gameDir, "Game/GameData.pak");
+    final byte[] bytes = Files.readAllBytes(pak.toPath());
+    final ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    try (ZipFile zipFile = new ZipFile(pak)) {
+      int offset = 0;
+      for (final ZipEntry entry : Collections.list(zipFile.entries())) {
+        assertEquals(0x04034b50, buffer.getInt(offset));
+        final int flags = buffer.getShort(offset + 6);
+        final int dataStart =
+            offset + 30 + buffer.getShort(offset + 26) + buffer.getShort(offset + 28);
+        // A leading 0xFF byte is a deflate block of the reserved type, which is always invalid.
+        Arrays.fill(bytes, dataStart, dataStart + 16, (byte) 0xFF);
+        // Entries written by ZipOutputStream are followed by a data descriptor.
+        offset = dataStart + (int) entry.getCompressedSize() + ((flags & 8) != 0 ? 16 : 0);
+      }
+    }
+    Files.write(new File(corruptFolder, "GameData.pak").toPath(), bytes);
+    return corruptDir;
+  }
+
+  private Database makeDatabase(Map<String, Long> aChecksums) {
+    final Database database = mock(Database.class);
+    when(database.getChecksums()).thenReturn(aChecksums);
+    return database;
+  }
+}
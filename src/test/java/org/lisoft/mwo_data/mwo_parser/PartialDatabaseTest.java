@@ -0,0 +1,101 @@
+/*
+ * Li Song Mechlab - A 'mech building tool for PGI's MechWarrior: Online.
+ * Copyright (C) 2013-2023  Li Song
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.lisoft.mwo_data.mwo_parser;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lisoft.mwo_data.Database;
+
+/**
+ * Test suite for {@link PartialDatabase} using a synthetic game installation.
+ *
+ * @author Li Song
+ */
+public class PartialDatabaseTest {
+  private static final int NUM_MECHS = 60;
+  @ClassRule public static final TemporaryFolder folder = new TemporaryFolder();
+  private static File gameDir;
+
+  @BeforeClass
+  public static void setupGame() throws Exception {
+    gameDir = SyntheticGame.create(folder.newFolder("game"), NUM_MECHS, 0);
+  }
+
+  /** Parsing in parallel must produce exactly the same database as a sequential parse. */
+  @Test
+  public void testParallelIdenticalToSequential() throws Exception {
+    final String sequential = serialise(parse(1));
+    for (final int parallelism : new int[] {2, 3, 8}) {
+      assertEquals(sequential, serialise(parse(parallelism)));
+    }
+  }
+
+  @Test
+  public void testParse() throws Exception {
+    final Database database = parse(4);
+    // Every 7th mech is a trial mech
+    final int trialMechs = (NUM_MECHS + 3) / 7;
+    assertEquals(NUM_MECHS - trialMechs, database.getChassis().size());
+    assertEquals(NUM_MECHS - trialMechs, database.getStockLoadouts().size());
+    assertEquals(4, database.getUpgrades().size());
+    assertFalse(database.getModifierDescriptions().isEmpty());
+  }
+
+  /** A binary snapshot of a parsed database must read back to the same database. */
+  @Test
+  public void testSnapshotRoundTrip() throws Exception {
+    final Database database = parse(4);
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    database.writeSnapshot(baos);
+
+    final Database read = Database.readSnapshot(new ByteArrayInputStream(baos.toByteArray()));
+    assertEquals(serialise(database), serialise(read));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidParallelism() throws Exception {
+    new PartialDatabase(null, List.of(), 0);
+  }
+
+  private Database parse(int aParallelism) throws Exception {
+    final GameVFS gameVFS = new GameVFS(gameDir);
+    try (GameVFS.Session session = gameVFS.openSession()) {
+      final PartialDatabase partialDatabase =
+          new PartialDatabase(
+              new Localisation(gameVFS),
+              gameVFS.openGameFiles(MwoDataReader.FILES_TO_PARSE),
+              aParallelism);
+      return partialDatabase.generateDatabase("1.0.0", gameVFS);
+    }
+  }
+
+  private String serialise(Database aDatabase) throws Exception {
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    aDatabase.writeToStream(baos);
+    return baos.toString(StandardCharsets.UTF_8);
+  }
+}
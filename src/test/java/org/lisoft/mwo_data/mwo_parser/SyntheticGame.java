@@ -0,0 +1,322 @@
+/*
+ * Li Song Mechlab - A 'mech building tool for PGI's MechWarrior: Online.
+ * Copyright (C) 2013-2023  Li Song
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.lisoft.mwo_data.mwo_parser;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generates a small but complete synthetic game installation that can be parsed by {@link
+ * MwoDataReader}. It contains upgrades, a heat sink and a number of standard 'mechs with hard
+ * points, quirks and stock loadouts.
+ *
+ * @author Li Song
+ */
+class SyntheticGame {
+  private static final String[] QUIRKS = {
+    "armorresist_ct_additive",
+    "internalresist_lt_additive",
+    "energy_cooldown_multiplier",
+    "energy_heat_multiplier",
+    "ballistic_range_multiplier",
+    "torso_yawangle_additive",
+    "arm_pitchspeed_multiplier",
+    "missile_velocity_multiplier"
+  };
+  // Spellings that the localisation has to normalise.
+  private static final String[] JUNK_SUFFIXES = {
+    "_MKII_multiplier",
+    "_mk2_MULT",
+    "_MkIV_LongRange_Additive",
+    "_mkl_maxrange_multiplier",
+    "_mkvii_mkiii_Mk",
+    "_LongRange_MaxRange_",
+    "_AD",
+    "_ClanHeavyMediumLaser_MinHeatPenaltyLevel_",
+    "_family_desc"
+  };
+  private static final String[] SERIES = {"sdr", "jr7", "hbk", "cn9", "tbt", "cplt", "aws", "atl"};
+  private static final int[] TONNAGES = {30, 35, 50, 50, 65, 65, 80, 100};
+  private final File root;
+  private final Map<String, String> localisation = new TreeMap<>();
+  private final Map<String, String> mechFiles = new TreeMap<>();
+  private final Map<String, String> gameData = new TreeMap<>();
+
+  private SyntheticGame(File aRoot) {
+    root = aRoot;
+  }
+
+  /**
+   * Creates a new synthetic game installation.
+   *
+   * @param aRoot The directory to create the game in, will be the game root.
+   * @param aNumMechs The number of 'mechs to generate, some of them will be trial 'mechs.
+   * @param aExtraLocalisationRows Additional junk rows to pad the localisation file with.
+   * @return The game root.
+   * @throws IOException If the game files couldn't be written.
+   */
+  static File create(File aRoot, int aNumMechs, int aExtraLocalisationRows) throws IOException {
+    final SyntheticGame game = new SyntheticGame(aRoot);
+    game.generate(aNumMechs, new Random(aNumMechs));
+    game.write(aExtraLocalisationRows);
+    return aRoot;
+  }
+
+  private static String emptyFile(String aRoot) {
+    return "<" + aRoot + "/>";
+  }
+
+  private static void writeFile(File aFile, String aContent) throws IOException {
+    final File parent = aFile.getParentFile();
+    if (!parent.isDirectory() && !parent.mkdirs()) {
+      throw new IOException("Couldn't create: " + parent);
+    }
+    try (OutputStream os = new FileOutputStream(aFile)) {
+      os.write(aContent.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  private static void writePak(File aFile, Map<String, String> aEntries) throws IOException {
+    final File parent = aFile.getParentFile();
+    if (!parent.isDirectory() && !parent.mkdirs()) {
+      throw new IOException("Couldn't create: " + parent);
+    }
+    try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(aFile))) {
+      for (final Map.Entry<String, String> entry : aEntries.entrySet()) {
+        zos.putNextEntry(new ZipEntry(entry.getKey()));
+        zos.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+        zos.closeEntry();
+      }
+    }
+  }
+
+  private void generate(int aNumMechs, Random aRng) {
+    for (final File file : MwoDataReader.FILES_TO_PARSE) {
+      final String root = file.getName().equals("Mechs.xml") ? "MechList" : "ModuleList";
+      gameData.put(gameDataPath(file.getPath()), emptyFile(root));
+    }
+    gameData.put(gameDataPath("Game/Libs/Items/Weapons/Weapons.xml"), emptyFile("WeaponList"));
+    gameData.put(gameDataPath("Game/Libs/Items/OmniPods.xml"), emptyFile("OmniPodList"));
+    generateItems();
+
+    final StringBuilder mechList = new StringBuilder("<MechList>\n");
+    final StringBuilder mechIdMap = new StringBuilder("<MechIdMap>\n");
+    for (int i = 0; i < aNumMechs; ++i) {
+      final int seriesIndex = i % SERIES.length;
+      final String series = SERIES[seriesIndex];
+      final String name = series + "-" + (i + 1) + "x";
+      final int id = 1000 + i;
+      final boolean trial = i % 7 == 3;
+      final int baseId = i >= SERIES.length ? 1000 + seriesIndex : 0;
+
+      mechList.append(
+          String.format(
+              "<Mech id=\"%d\" name=\"%s\" chassis=\"%s\" faction=\"InnerSphere\"/>%n",
+              id, name, series));
+      if (baseId > 0) {
+        mechIdMap.append(String.format("<Mech baseID=\"%d\" variantID=\"%d\"/>%n", baseId, id));
+      }
+      localisation.put("@" + name, series.toUpperCase() + " " + (i + 1) + "X");
+      localisation.put("@" + name + "_short", name.toUpperCase() + (trial ? "(T)" : ""));
+      mechFiles.put(
+          "Objects/mechs/" + series + "/" + name + ".mdf",
+          generateMdf(name, TONNAGES[seriesIndex], aRng));
+      gameData.put(
+          "Libs/MechLoadout/" + name + ".xml",
+          "<Loadout><ComponentList>"
+              + "<component Name=\"centre_torso\" Armor=\""
+              + aRng.nextInt(40)
+              + "\"/></ComponentList></Loadout>");
+    }
+    mechList.append("</MechList>");
+    mechIdMap.append("</MechIdMap>");
+    gameData.put(gameDataPath("Game/Libs/Items/Mechs/Mechs.xml"), mechList.toString());
+    gameData.put("Libs/Items/MechIDMap.xml", mechIdMap.toString());
+
+    for (final String series : SERIES) {
+      mechFiles.put(
+          "Objects/mechs/" + series + "/" + series + "-hardpoints.xml",
+          "<Hardpoints>"
+              + hardPoint(1, "laser")
+              + hardPoint(2, "ac", "ac")
+              + hardPoint(3, "lrm10")
+              + "</Hardpoints>");
+    }
+
+    for (final String quirk : QUIRKS) {
+      localisation.put("@qrk_" + quirk, quirk.replace('_', ' '));
+    }
+  }
+
+  private String generateMdf(String aName, int aTons, Random aRng) {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("<MechDefinition>\n");
+    sb.append(
+        String.format(
+            "<Mech Variant=\"%s\" MaxTons=\"%d\" MinEngineRating=\"100\" MaxEngineRating=\"%d\""
+                + " MaxJumpJets=\"%d\" CanEquipMasc=\"%d\" UnstoppableByPlayers=\"0\""
+                + " VariantType=\"\" VariantParent=\"0\"/>%n",
+            aName.toUpperCase(), aTons, aTons * 6, aRng.nextInt(5), aRng.nextInt(2)));
+    sb.append(
+        String.format(
+            Locale.US,
+            "<MovementTuningConfiguration MaxMovementSpeed=\"%f\" ReverseSpeedMultiplier=\"0.5\""
+                + " TorsoTurnSpeedYaw=\"%f\" TorsoTurnSpeedPitch=\"30\" ArmTurnSpeedYaw=\"40\""
+                + " ArmTurnSpeedPitch=\"40\" MaxTorsoAngleYaw=\"%f\" MaxTorsoAnglePitch=\"20\""
+                + " MaxArmRotationYaw=\"30\" MaxArmRotationPitch=\"30\" TurnLerpLowSpeed=\"0\""
+                + " TurnLerpMidSpeed=\"0.5\" TurnLerpHighSpeed=\"1\" TurnLerpLowRate=\"1.5\""
+                + " TurnLerpMidRate=\"1\" TurnLerpHighRate=\"0.5\""
+                + " MovementArchetype=\"Medium\"/>%n",
+            10 + aRng.nextDouble() * 10,
+            50 + aRng.nextDouble() * 50,
+            60 + aRng.nextDouble() * 60));
+    sb.append("<ComponentList>\n");
+    final String[][] components = {
+      {"head", "6", ""},
+      {"centre_torso", "12", "<Hardpoint ID=\"3\" Type=\"2\"/>"},
+      {"centre_torso_rear", "0", ""},
+      {"left_torso", "12", "<Hardpoint ID=\"2\" Type=\"0\"/>"},
+      {"left_torso_rear", "0", ""},
+      {"right_torso", "12", ""},
+      {"right_torso_rear", "0", ""},
+      {"left_arm", "12", "<Hardpoint ID=\"1\" Type=\"1\"/>"},
+      {"right_arm", "12", "<Hardpoint ID=\"1\" Type=\"1\"/>"},
+      {"left_leg", "6", ""},
+      {"right_leg", "6", ""}
+    };
+    for (final String[] component : components) {
+      sb.append(
+          String.format(
+              "<Component Name=\"%s\" Slots=\"%s\" HP=\"%d\" CanEquipECM=\"%d\">%s</Component>%n",
+              component[0],
+              component[1],
+              10 + aRng.nextInt(30),
+              aRng.nextInt(10) == 0 ? 1 : 0,
+              component[2]));
+    }
+    sb.append("</ComponentList>\n");
+    sb.append("<QuirkList>\n");
+    final int numQuirks = aRng.nextInt(4);
+    for (int i = 0; i < numQuirks; ++i) {
+      sb.append(
+          String.format(
+              Locale.US,
+              "<Quirk name=\"%s\" value=\"%f\"/>%n",
+              QUIRKS[aRng.nextInt(QUIRKS.length)],
+              aRng.nextDouble()));
+    }
+    sb.append("</QuirkList>\n");
+    sb.append("</MechDefinition>\n");
+    return sb.toString();
+  }
+
+  private void generateItems() {
+    gameData.put(
+        gameDataPath("Game/Libs/Items/Modules/Internals.xml"),
+        "<ModuleList><Module CType=\"CHeatSinkStats\" id=\"3000\" name=\"HeatSink_MkI\""
+            + " faction=\"InnerSphere\"><Loc nameTag=\"@HeatSink_MkI\""
+            + " descTag=\"@HeatSink_MkI_desc\"/><ModuleStats slots=\"1\" weight=\"1\""
+            + " Health=\"10\"/><HeatSinkStats cooling=\"0.1\" engineCooling=\"0.1\" heatbase=\"1\""
+            + " engineHeatbase=\"1\"/></Module></ModuleList>");
+    localisation.put("@HeatSink_MkI", "HEAT SINK");
+
+    gameData.put(
+        gameDataPath("Game/Libs/Items/UpgradeTypes/UpgradeTypes.xml"),
+        "<UpgradeTypeList>"
+            + upgrade("Armor", 2810, "StandardArmor", "<ArmorTypeStats armorPerTon=\"32\"/>")
+            + upgrade(
+                "Structure",
+                3100,
+                "StandardStructure",
+                "<StructureTypeStats weightPerTon=\"0.1\"/>")
+            + upgrade(
+                "HeatSink",
+                3003,
+                "SingleHeatSink",
+                "<HeatSinkTypeStats compatibleHeatSink=\"3000\"/>")
+            + upgrade(
+                "Artemis",
+                3051,
+                "NoArtemis",
+                "<ArtemisTypeStats extraSlots=\"0\" extraTons=\"0\" missileSpread=\"1\"/>")
+            + "</UpgradeTypeList>");
+  }
+
+  private String gameDataPath(String aGamePath) {
+    return aGamePath.replace('\\', '/').substring("Game/".length());
+  }
+
+  private String hardPoint(int aId, String... aSlots) {
+    final StringBuilder sb = new StringBuilder("<Hardpoint id=\"" + aId + "\">");
+    for (final String slot : aSlots) {
+      sb.append("<WeaponSlot><Attachment AName=\"").append(slot).append("\"/></WeaponSlot>");
+    }
+    return sb.append("</Hardpoint>").toString();
+  }
+
+  private String upgrade(String aType, int aId, String aName, String aStats) {
+    localisation.put("@" + aName, aName.toUpperCase());
+    return String.format(
+        "<UpgradeType CType=\"%s\" id=\"%d\" name=\"%s\" faction=\"InnerSphere\">"
+            + "<Loc nameTag=\"@%s\" descTag=\"@%s_desc\"/>%s</UpgradeType>",
+        aType, aId, aName, aName, aName, aStats);
+  }
+
+  private void write(int aExtraLocalisationRows) throws IOException {
+    writeFile(new File(root, "Bin64/MWOClient.exe"), "");
+    writePak(new File(root, "Game/Objects.pak"), Map.of("Objects/dummy.txt", ""));
+    writePak(new File(root, "Game/GameData.pak"), gameData);
+    writePak(new File(root, "Game/mechs/Objects.pak"), mechFiles);
+    if (!new File(root, "Game/Levels").mkdirs()) {
+      throw new IOException("Couldn't create levels directory");
+    }
+
+    final StringBuilder workbook = new StringBuilder();
+    workbook.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    workbook.append("<Workbook xmlns=\"urn:schemas-microsoft-com:office:spreadsheet\"");
+    workbook.append(" xmlns:ss=\"urn:schemas-microsoft-com:office:spreadsheet\">\n");
+    workbook.append("<Worksheet ss:Name=\"Loc\"><Table>\n");
+    // Junk rows are expected
+    workbook.append("<Row></Row>\n");
+    workbook.append("<Row><Cell><Data>@junk_key_only</Data></Cell></Row>\n");
+    workbook.append("<Row><Cell/><Cell><Data>Junk without key</Data></Cell></Row>\n");
+    final Random rng = new Random(aExtraLocalisationRows);
+    final List<Map.Entry<String, String>> rows = new ArrayList<>(localisation.entrySet());
+    for (int i = 0; i < aExtraLocalisationRows; ++i) {
+      final String suffix = JUNK_SUFFIXES[i % JUNK_SUFFIXES.length];
+      rows.add(
+          Map.entry("@junk_" + i / JUNK_SUFFIXES.length + suffix, "Junk &amp; " + rng.nextLong()));
+    }
+    Collections.shuffle(rows, rng);
+    for (final Map.Entry<String, String> row : rows) {
+      workbook
+          .append("<Row><Cell><Data ss:Type=\"String\">")
+          .append(row.getKey())
+          .append("</Data></Cell><Cell><Data ss:Type=\"String\">")
+          .append(row.getValue())
+          .append("</Data></Cell></Row>\n");
+    }
+    workbook.append("</Table></Worksheet></Workbook>\n");
+    writePak(
+        new File(root, "Game/Localized/English.pak"),
+        Map.of("Localization/English/TheRealLoc.xml", workbook.toString()));
+  }
+}